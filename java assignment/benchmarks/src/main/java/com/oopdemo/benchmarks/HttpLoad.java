@@ -0,0 +1,195 @@
+package com.oopdemo.benchmarks;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Load generator for comparing the two server modes over keep-alive
+ * connections, optionally with pipelined requests.
+ * 
+ * Every connection sends a burst of pipelined GET requests, reads all the
+ * responses and repeats until the time is up; the latency of a request is
+ * the time from sending its burst to reading its response. Start the server
+ * with {@code -Dserver.mode=jdk} or {@code -Dserver.mode=nio}, then e.g.:
+ * {@code java -cp target/benchmarks.jar com.oopdemo.benchmarks.HttpLoad localhost:8082 /api/users/status-counts 64 8 20}
+ */
+public final class HttpLoad {
+    private static final int MAX_SAMPLES = 1 << 23; // Latencies kept for the percentiles, over all connections
+    
+    private HttpLoad() {
+    }
+    
+    public static void main(String[] args) throws Exception {
+        String[] hostPort = (args.length > 0 ? args[0] : "localhost:8082").split(":");
+        String path = args.length > 1 ? args[1] : "/api/users/status-counts";
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        int pipeline = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+        int seconds = args.length > 4 ? Integer.parseInt(args[4]) : 20;
+        String host = hostPort[0];
+        int port = Integer.parseInt(hostPort[1]);
+        
+        byte[] request = ("GET " + path + " HTTP/1.1\r\nHost: " + host + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        byte[] burst = new byte[request.length * pipeline];
+        for (int i = 0; i < pipeline; i++) {
+            System.arraycopy(request, 0, burst, i * request.length, request.length);
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        Worker[] workers = new Worker[connections];
+        for (int i = 0; i < connections; i++) {
+            workers[i] = new Worker(host, port, burst, pipeline, MAX_SAMPLES / connections, running);
+            workers[i].start();
+        }
+        long started = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        running.set(false);
+        for (Worker worker : workers) {
+            worker.join();
+        }
+        double elapsed = (System.nanoTime() - started) / 1e9;
+        
+        long requests = 0;
+        long errors = 0;
+        int samples = 0;
+        for (Worker worker : workers) {
+            requests += worker.completed;
+            errors += worker.errors;
+            samples += worker.sampleCount;
+        }
+        long[] latencies = new long[samples];
+        int offset = 0;
+        for (Worker worker : workers) {
+            System.arraycopy(worker.latencies, 0, latencies, offset, worker.sampleCount);
+            offset += worker.sampleCount;
+        }
+        Arrays.sort(latencies);
+        System.out.printf("%d connections x %d pipelined: %,.0f requests/s, %d errors%n",
+                          connections, pipeline, requests / elapsed, errors);
+        if (samples > 0) {
+            System.out.printf("latency p50 %.2f ms  p99 %.2f ms  p999 %.2f ms  max %.2f ms%n",
+                              percentile(latencies, 0.50), percentile(latencies, 0.99),
+                              percentile(latencies, 0.999), latencies[samples - 1] / 1e6);
+        }
+    }
+    
+    private static double percentile(long[] sorted, double fraction) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))] / 1e6;
+    }
+    
+    /**
+     * One keep-alive connection, reconnecting after errors.
+     */
+    private static final class Worker extends Thread {
+        private final String host;
+        private final int port;
+        private final byte[] burst;
+        private final int pipeline;
+        private final AtomicBoolean running;
+        final long[] latencies;
+        int sampleCount;
+        long completed;
+        long errors;
+        
+        Worker(String host, int port, byte[] burst, int pipeline, int samples, AtomicBoolean running) {
+            this.host = host;
+            this.port = port;
+            this.burst = burst;
+            this.pipeline = pipeline;
+            this.running = running;
+            this.latencies = new long[samples];
+            setDaemon(true);
+        }
+        
+        @Override
+        public void run() {
+            while (running.get()) {
+                try (Socket socket = new Socket(host, port)) {
+                    socket.setTcpNoDelay(true);
+                    OutputStream out = socket.getOutputStream();
+                    InputStream in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+                    while (running.get()) {
+                        long sent = System.nanoTime();
+                        out.write(burst);
+                        for (int i = 0; i < pipeline; i++) {
+                            if (!readResponse(in)) {
+                                throw new IOException("Connection closed");
+                            }
+                            completed++;
+                            if (sampleCount < latencies.length) {
+                                latencies[sampleCount++] = System.nanoTime() - sent;
+                            }
+                        }
+                    }
+                } catch (IOException e) {
+                    errors++;
+                }
+            }
+        }
+        
+        // Reads one response with a Content-Length or chunked body; false at end of stream
+        private static boolean readResponse(InputStream in) throws IOException {
+            long contentLength = -1;
+            boolean chunked = false;
+            String line;
+            boolean first = true;
+            while (!(line = readLine(in)).isEmpty()) {
+                if (first && !line.startsWith("HTTP/1.1 2") && !line.startsWith("HTTP/1.1 3")) {
+                    throw new IOException("Unexpected status: " + line);
+                }
+                first = false;
+                String lower = line.toLowerCase(Locale.ROOT);
+                if (lower.startsWith("content-length:")) {
+                    contentLength = Long.parseLong(line.substring(15).trim());
+                } else if (lower.startsWith("transfer-encoding:") && lower.contains("chunked")) {
+                    chunked = true;
+                }
+            }
+            if (first) {
+                return false;
+            }
+            if (chunked) {
+                long size;
+                while ((size = Long.parseLong(readLine(in).trim(), 16)) > 0) {
+                    skip(in, size + 2);
+                }
+                readLine(in);
+            } else if (contentLength > 0) {
+                skip(in, contentLength);
+            }
+            return true;
+        }
+        
+        private static String readLine(InputStream in) throws IOException {
+            StringBuilder line = new StringBuilder();
+            int b;
+            while ((b = in.read()) != '\n') {
+                if (b < 0) {
+                    return "";
+                }
+                if (b != '\r') {
+                    line.append((char) b);
+                }
+            }
+            return line.toString();
+        }
+        
+        private static void skip(InputStream in, long bytes) throws IOException {
+            while (bytes > 0) {
+                long skipped = in.skip(bytes);
+                if (skipped <= 0) {
+                    if (in.read() < 0) {
+                        throw new IOException("Truncated body");
+                    }
+                    skipped = 1;
+                }
+                bytes -= skipped;
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.oopdemo.benchmarks;
+
+import com.oopdemo.billing.CircuitBreaker;
+import com.oopdemo.billing.PaymentClient;
+import com.oopdemo.billing.StubPaymentGateway;
+import com.oopdemo.enums.PaymentResult;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures PaymentClient against the stub gateway with injected latency and
+ * failures.
+ * 
+ * charge waits for each payment, so its sample-time percentiles show the
+ * latency tail that deadlines, retries and slow calls produce. chargeBatch
+ * keeps a batch of payments in flight and reports payments per second.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Dlog.mode=off"})
+public class PaymentClientBenchmark {
+    private static final int BATCH = 1000;
+    
+    @Param({"0", "2"})
+    public double latencyMillis;
+    
+    @Param({"0", "0.05"})
+    public double networkErrorRate;
+    
+    private StubPaymentGateway gateway;
+    private PaymentClient client;
+    private long sequence;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        RegistryFixture.silenceLogging();
+        gateway = new StubPaymentGateway("stub", 4);
+        gateway.setLatency(latencyMillis, latencyMillis);
+        gateway.setSlowCalls(0.01, latencyMillis * 20);
+        gateway.setNetworkErrorRate(networkErrorRate);
+        gateway.setDropRate(networkErrorRate / 10);
+        client = new PaymentClient(gateway, new CircuitBreaker("stub", 20, 100), BATCH * 4);
+        client.setDeadlineMillis(250);
+        client.setAttemptTimeoutMillis(50);
+        client.setBackoff(1, 20);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        gateway.close();
+    }
+    
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public PaymentResult charge() {
+        return client.charge("bench:" + sequence++, 9.99, "USD").join();
+    }
+    
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BATCH)
+    public void chargeBatch() {
+        CompletableFuture<?>[] batch = new CompletableFuture<?>[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            batch[i] = client.charge("bench:" + sequence++, 9.99, "USD");
+        }
+        CompletableFuture.allOf(batch).join();
+    }
+}
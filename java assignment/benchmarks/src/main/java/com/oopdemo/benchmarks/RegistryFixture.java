@@ -0,0 +1,79 @@
+package com.oopdemo.benchmarks;
+
+import com.oopdemo.logging.LogLevel;
+import com.oopdemo.logging.LogManager;
+import com.oopdemo.registry.UserRegistry;
+import com.oopdemo.users.AdminUser;
+import com.oopdemo.users.RegularUser;
+import com.oopdemo.users.User;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds registries of a given size for the benchmarks.
+ * Every tenth user is an admin, roughly like the demo data.
+ */
+final class RegistryFixture {
+    private static final int CHUNK = 10_000;
+    
+    private RegistryFixture() {
+    }
+    
+    /**
+     * Switches logging off so benchmarks measure the code, not the console.
+     */
+    static void silenceLogging() {
+        LogManager.configure(LogManager.Mode.OFF, LogLevel.OFF);
+    }
+    
+    /**
+     * Creates a registry holding exactly the requested number of users.
+     * 
+     * @param size Number of users
+     * @return The filled registry
+     */
+    static UserRegistry filled(int size) {
+        UserRegistry registry = new UserRegistry();
+        List<User> chunk = new ArrayList<>(CHUNK);
+        int created = 0;
+        while (registry.size() < size) {
+            int wanted = Math.min(CHUNK, size - registry.size());
+            for (int i = 0; i < wanted; i++, created++) {
+                chunk.add(newUser(created));
+            }
+            registry.addAll(chunk); // Duplicate ids are rejected and simply replaced in the next round
+            chunk.clear();
+        }
+        return registry;
+    }
+    
+    static User newUser(int index) {
+        if (index % 10 == 0) {
+            return new AdminUser("Admin " + index, "admin" + index + "@admin.com");
+        }
+        return new RegularUser("User " + index, "user" + index + "@email.com");
+    }
+    
+    /**
+     * Picks evenly spread user ids to look up.
+     * 
+     * @param registry The registry to sample
+     * @param count Number of ids
+     * @return The sampled ids
+     */
+    static String[] sampleIds(UserRegistry registry, int count) {
+        String[] ids = new String[Math.min(count, registry.size())];
+        int step = Math.max(1, registry.size() / ids.length);
+        int index = 0;
+        int filled = 0;
+        for (User user : registry.getAll()) {
+            if (filled == ids.length) {
+                break;
+            }
+            if (index++ % step == 0) {
+                ids[filled++] = user.getUserId();
+            }
+        }
+        return ids;
+    }
+}
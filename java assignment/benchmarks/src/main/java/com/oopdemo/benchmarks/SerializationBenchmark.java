@@ -0,0 +1,85 @@
+package com.oopdemo.benchmarks;
+
+import com.google.gson.Gson;
+import com.oopdemo.users.AdminUser;
+import com.oopdemo.users.RegularUser;
+import com.oopdemo.web.RequestBodyException;
+import com.oopdemo.web.RequestBodyParser;
+import com.oopdemo.web.SimpleWebServer;
+import com.oopdemo.web.UserController;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures per-request work that does not depend on the registry size:
+ * converting a user to a map and serializing it with Gson, and parsing
+ * form-encoded and JSON request bodies.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog.mode=off")
+public class SerializationBenchmark {
+    private static final String CREATE_BODY = "name=Jane+Smith&email=jane.smith%40admin.com";
+    private static final String ADMIN_ACTION_BODY =
+            "adminId=USER-1A2B3C4D&targetUserId=USER-5E6F7A8B&action=suspend";
+    private static final byte[] CREATE_FORM_BYTES = CREATE_BODY.getBytes(StandardCharsets.UTF_8);
+    private static final byte[] CREATE_JSON_BYTES =
+            "{\"name\": \"Jane Smith\", \"email\": \"jane.smith@admin.com\"}".getBytes(StandardCharsets.UTF_8);
+    
+    private final Gson gson = new Gson();
+    private UserController controller;
+    private RegularUser regularUser;
+    private AdminUser adminUser;
+    
+    @Setup
+    public void setUp() {
+        RegistryFixture.silenceLogging();
+        controller = new UserController();
+        regularUser = new RegularUser("John Doe", "john.doe@email.com");
+        adminUser = new AdminUser("Jane Smith", "jane.smith@admin.com");
+    }
+    
+    @Benchmark
+    public String regularUserToMapGson() {
+        return gson.toJson(controller.userToMap(regularUser));
+    }
+    
+    @Benchmark
+    public String adminUserToMapGson() {
+        return gson.toJson(controller.userToMap(adminUser));
+    }
+    
+    @Benchmark
+    public Map<String, String> parseCreateUserBody() {
+        return SimpleWebServer.parseFormData(CREATE_BODY);
+    }
+    
+    @Benchmark
+    public Map<String, String> parseAdminActionBody() {
+        return SimpleWebServer.parseFormData(ADMIN_ACTION_BODY);
+    }
+    
+    @Benchmark
+    public Map<String, String> parseCreateUserFormBytes() throws RequestBodyException {
+        return RequestBodyParser.get().parseForm(CREATE_FORM_BYTES, 0, CREATE_FORM_BYTES.length);
+    }
+    
+    @Benchmark
+    public Map<String, String> parseCreateUserJsonBytes() throws RequestBodyException {
+        return RequestBodyParser.get().parseJson(CREATE_JSON_BYTES, 0, CREATE_JSON_BYTES.length);
+    }
+}
@@ -0,0 +1,99 @@
+package com.oopdemo.benchmarks;
+
+import com.oopdemo.enums.SubscriptionStatus;
+import com.oopdemo.subscriptions.AbstractSubscription;
+import com.oopdemo.subscriptions.BasicSubscription;
+import com.oopdemo.subscriptions.EnterpriseSubscription;
+import com.oopdemo.subscriptions.PremiumSubscription;
+import com.oopdemo.subscriptions.SubscriptionManager;
+import com.oopdemo.users.User;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures SubscriptionManager lookups and status changes with 1k to 3M
+ * subscriptions, three per user.
+ * 
+ * subscribe adds to the store while it is measured, each time for a new
+ * user whose construction is included, so the store grows slightly during
+ * each trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx12g", "-Dlog.mode=off"})
+public class SubscriptionManagerBenchmark {
+    private static final int SAMPLES = 4096;
+    
+    @Param({"1000", "100000", "3000000"})
+    public int subscriptions;
+    
+    private SubscriptionManager manager;
+    private User[] sampleUsers;
+    private long[] sampleIds;
+    private int created;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        RegistryFixture.silenceLogging();
+        manager = new SubscriptionManager();
+        int users = Math.max(1, subscriptions / 3);
+        sampleUsers = new User[Math.min(SAMPLES, users)];
+        sampleIds = new long[sampleUsers.length];
+        int step = Math.max(1, users / sampleUsers.length);
+        for (int i = 0; i < users; i++) {
+            User user = RegistryFixture.newUser(i);
+            AbstractSubscription basic = new BasicSubscription(user, 1);
+            manager.subscribe(basic);
+            manager.subscribe(new PremiumSubscription(user, 12, i % 2 == 0));
+            manager.subscribe(new EnterpriseSubscription(user, 1, 1 + i % 200));
+            manager.activate(basic.getSubscriptionId());
+            if (i % step == 0 && i / step < sampleUsers.length) {
+                sampleUsers[i / step] = user;
+                sampleIds[i / step] = basic.getSubscriptionId();
+            }
+        }
+        created = users;
+    }
+    
+    @Benchmark
+    public void subscribe() {
+        manager.subscribe(new BasicSubscription(RegistryFixture.newUser(created++), 1));
+    }
+    
+    @Benchmark
+    public AbstractSubscription findById() {
+        return manager.findById(sampleIds[ThreadLocalRandom.current().nextInt(sampleIds.length)]);
+    }
+    
+    @Benchmark
+    public List<AbstractSubscription> findByUser() {
+        return manager.findByUser(sampleUsers[ThreadLocalRandom.current().nextInt(sampleUsers.length)]);
+    }
+    
+    @Benchmark
+    public boolean pauseAndResume() {
+        long id = sampleIds[ThreadLocalRandom.current().nextInt(sampleIds.length)];
+        return manager.pause(id) & manager.activate(id);
+    }
+    
+    @Benchmark
+    public long countByStatus() {
+        return manager.countByStatus(SubscriptionStatus.ACTIVE);
+    }
+}
@@ -0,0 +1,56 @@
+package com.oopdemo.benchmarks;
+
+import com.oopdemo.registry.UserRegistry;
+import com.oopdemo.users.AdminUser;
+import com.oopdemo.users.RegularUser;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures user construction on its own and together with registration,
+ * the latter against registries from 1k to 10M users.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx12g", "-Dlog.mode=off"})
+public class UserConstructionBenchmark {
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int registrySize;
+    
+    private UserRegistry registry;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        RegistryFixture.silenceLogging();
+        registry = RegistryFixture.filled(registrySize);
+    }
+    
+    @Benchmark
+    public RegularUser newRegularUser() {
+        return new RegularUser("Bench User", "bench.user@email.com");
+    }
+    
+    @Benchmark
+    public AdminUser newAdminUser() {
+        return new AdminUser("Bench Admin", "bench.admin@admin.com");
+    }
+    
+    @Benchmark
+    public boolean newRegularUserRegistered() {
+        return registry.add(new RegularUser("Bench User", "bench.user@email.com"));
+    }
+}
@@ -0,0 +1,66 @@
+package com.oopdemo.benchmarks;
+
+import com.oopdemo.registry.UserRegistry;
+import com.oopdemo.users.User;
+import com.oopdemo.web.UserController;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the UserController operations behind the REST endpoints against
+ * registries from 1k to 10M users.
+ * 
+ * createRegularUser adds to the registry while it is measured, so the
+ * registry grows slightly during each trial; at the larger sizes this is
+ * negligible.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx12g", "-Dlog.mode=off"})
+public class UserControllerBenchmark {
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int registrySize;
+    
+    private UserController controller;
+    private String[] sampleIds;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        RegistryFixture.silenceLogging();
+        UserRegistry registry = RegistryFixture.filled(registrySize);
+        controller = new UserController(registry);
+        sampleIds = RegistryFixture.sampleIds(registry, 4096);
+    }
+    
+    @Benchmark
+    public Map<String, Object> createRegularUser() {
+        return controller.createRegularUser("Bench User", "bench.user@email.com");
+    }
+    
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Map<String, Object> getAllUsers() {
+        return controller.getAllUsers();
+    }
+    
+    @Benchmark
+    public User findUserById() {
+        return controller.findUserById(sampleIds[ThreadLocalRandom.current().nextInt(sampleIds.length)]);
+    }
+}
@@ -0,0 +1,54 @@
+package com.oopdemo.benchmarks;
+
+import com.oopdemo.registry.UserRegistry;
+import com.oopdemo.users.User;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+/**
+ * Reports retained heap per user, for the user objects alone and for a
+ * registry holding them with all of its indexes.
+ * 
+ * Run with enough heap for the requested size, e.g. for 10M users:
+ * {@code java -Xmx6g -cp target/benchmarks.jar com.oopdemo.benchmarks.UserFootprint 10000000}
+ */
+public final class UserFootprint {
+    private UserFootprint() {
+    }
+    
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        String mode = args.length > 1 ? args[1] : "both";
+        RegistryFixture.silenceLogging();
+        
+        if (!mode.equals("registry")) {
+            long baseline = usedHeapAfterGc();
+            User[] users = new User[count];
+            for (int i = 0; i < count; i++) {
+                users[i] = RegistryFixture.newUser(i);
+            }
+            long used = usedHeapAfterGc() - baseline - (16L + 4L * count); // Minus the array itself
+            report("users only", count, used);
+            users = null;
+        }
+        if (!mode.equals("users")) {
+            long baseline = usedHeapAfterGc();
+            UserRegistry registry = RegistryFixture.filled(count);
+            long used = usedHeapAfterGc() - baseline;
+            report("registry", registry.size(), used);
+        }
+    }
+    
+    private static void report(String label, int count, long bytes) {
+        System.out.printf("%-12s %,12d users  %,10d MB  %6.1f bytes/user%n",
+                          label, count, bytes / (1024 * 1024), (double) bytes / count);
+    }
+    
+    private static long usedHeapAfterGc() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
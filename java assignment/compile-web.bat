@@ -22,17 +22,31 @@ if not exist "lib\gson-2.10.1.jar" (
 REM Set classpath
 set CLASSPATH=lib\gson-2.10.1.jar
 
+REM Compile enums
+javac -d out -cp %CLASSPATH% src\main\java\com\oopdemo\enums\*.java
+if %errorlevel% neq 0 (
+    echo Error compiling enums
+    exit /b 1
+)
+
 REM Compile interfaces
-javac -d out -cp %CLASSPATH% src\main\java\com\oopdemo\interfaces\*.java
+javac -d out -cp "%CLASSPATH%;out" src\main\java\com\oopdemo\interfaces\*.java
 if %errorlevel% neq 0 (
     echo Error compiling interfaces
     exit /b 1
 )
 
-REM Compile enums
-javac -d out -cp "%CLASSPATH%;out" src\main\java\com\oopdemo\enums\*.java
+REM Compile logging
+javac -d out -cp "%CLASSPATH%;out" src\main\java\com\oopdemo\logging\*.java
 if %errorlevel% neq 0 (
-    echo Error compiling enums
+    echo Error compiling logging
+    exit /b 1
+)
+
+REM Compile notifications
+javac -d out -cp "%CLASSPATH%;out" src\main\java\com\oopdemo\notifications\*.java
+if %errorlevel% neq 0 (
+    echo Error compiling notifications
     exit /b 1
 )
 
@@ -43,6 +57,27 @@ if %errorlevel% neq 0 (
     exit /b 1
 )
 
+REM Compile subscriptions
+javac -d out -cp "%CLASSPATH%;out" src\main\java\com\oopdemo\subscriptions\*.java
+if %errorlevel% neq 0 (
+    echo Error compiling subscriptions
+    exit /b 1
+)
+
+REM Compile billing
+javac -d out -cp "%CLASSPATH%;out" src\main\java\com\oopdemo\billing\*.java
+if %errorlevel% neq 0 (
+    echo Error compiling billing
+    exit /b 1
+)
+
+REM Compile registry
+javac -d out -cp "%CLASSPATH%;out" src\main\java\com\oopdemo\registry\*.java
+if %errorlevel% neq 0 (
+    echo Error compiling registry
+    exit /b 1
+)
+
 REM Compile utils
 javac -d out -cp "%CLASSPATH%;out" src\main\java\com\oopdemo\utils\*.java
 if %errorlevel% neq 0 (
@@ -50,6 +85,20 @@ if %errorlevel% neq 0 (
     exit /b 1
 )
 
+REM Compile persistence
+javac -d out -cp "%CLASSPATH%;out" src\main\java\com\oopdemo\persistence\*.java
+if %errorlevel% neq 0 (
+    echo Error compiling persistence
+    exit /b 1
+)
+
+REM Compile metrics
+javac -d out -cp "%CLASSPATH%;out" src\main\java\com\oopdemo\metrics\*.java
+if %errorlevel% neq 0 (
+    echo Error compiling metrics
+    exit /b 1
+)
+
 REM Compile web
 javac -d out -cp "%CLASSPATH%;out" src\main\java\com\oopdemo\web\*.java
 if %errorlevel% neq 0 (
@@ -4,17 +4,31 @@ echo Compiling Java OOP Demo Project...
 REM Create output directory
 if not exist "out" mkdir out
 
+REM Compile enums
+javac -d out src\main\java\com\oopdemo\enums\*.java
+if %errorlevel% neq 0 (
+    echo Error compiling enums
+    exit /b 1
+)
+
 REM Compile interfaces
-javac -d out src\main\java\com\oopdemo\interfaces\*.java
+javac -d out -cp out src\main\java\com\oopdemo\interfaces\*.java
 if %errorlevel% neq 0 (
     echo Error compiling interfaces
     exit /b 1
 )
 
-REM Compile enums
-javac -d out -cp out src\main\java\com\oopdemo\enums\*.java
+REM Compile logging
+javac -d out -cp out src\main\java\com\oopdemo\logging\*.java
 if %errorlevel% neq 0 (
-    echo Error compiling enums
+    echo Error compiling logging
+    exit /b 1
+)
+
+REM Compile notifications
+javac -d out -cp out src\main\java\com\oopdemo\notifications\*.java
+if %errorlevel% neq 0 (
+    echo Error compiling notifications
     exit /b 1
 )
 
@@ -25,6 +39,20 @@ if %errorlevel% neq 0 (
     exit /b 1
 )
 
+REM Compile subscriptions
+javac -d out -cp out src\main\java\com\oopdemo\subscriptions\*.java
+if %errorlevel% neq 0 (
+    echo Error compiling subscriptions
+    exit /b 1
+)
+
+REM Compile billing
+javac -d out -cp out src\main\java\com\oopdemo\billing\*.java
+if %errorlevel% neq 0 (
+    echo Error compiling billing
+    exit /b 1
+)
+
 REM Compile utils
 javac -d out -cp out src\main\java\com\oopdemo\utils\*.java
 if %errorlevel% neq 0 (
@@ -0,0 +1,25 @@
+package com.oopdemo.billing;
+
+import com.oopdemo.enums.PaymentResult;
+
+/**
+ * Bank transfer payments - demonstrates a processor with its own rules.
+ * 
+ * Direct debits are never declined for the card, but about 2% bounce for
+ * insufficient funds, and amounts above the mandate limit are refused.
+ */
+public class BankTransferProcessor extends BillingProcessor {
+    public static final double MANDATE_LIMIT = 10_000.00;
+    
+    public BankTransferProcessor() {
+        super("Bank Transfer"); // Constructor chaining to the abstract class
+    }
+    
+    @Override
+    protected PaymentResult process(String idempotencyKey, double amount, String currency) {
+        if (amount > MANDATE_LIMIT) {
+            return PaymentResult.DECLINED;
+        }
+        return draw(idempotencyKey) < 0.02 ? PaymentResult.INSUFFICIENT_FUNDS : PaymentResult.SUCCESS;
+    }
+}
@@ -0,0 +1,140 @@
+package com.oopdemo.billing;
+
+import com.oopdemo.logging.LogManager;
+import com.oopdemo.logging.Logger;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Append-only record of the chunks of a billing run that are finished.
+ * 
+ * Each line covers one chunk: the first and last id it charged and its
+ * tally, e.g. "370071385772392448 370071385772396543 SUCCESS=4090 USD:...".
+ * A line is forced to disk before the chunk counts as done. A line torn by
+ * a crash is cut off when the file is opened again; its chunk is charged
+ * again, under the same idempotency keys.
+ */
+final class BillingCheckpoint implements Closeable {
+    private static final Logger LOG = LogManager.getLogger(BillingCheckpoint.class);
+    
+    private final FileChannel channel;
+    private final boolean fsync;
+    // Finished chunks as {firstId, lastId}
+    private final List<long[]> ranges = new ArrayList<>();
+    private final BillingTally recovered = new BillingTally();
+    
+    private BillingCheckpoint(FileChannel channel, boolean fsync) {
+        this.channel = channel;
+        this.fsync = fsync;
+    }
+    
+    /**
+     * Opens a checkpoint file, reading the chunks recorded so far.
+     * 
+     * @param file The file; created if missing
+     * @param fsync Whether each line is forced to disk
+     * @return The open checkpoint
+     */
+    static BillingCheckpoint open(Path file, boolean fsync) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        BillingCheckpoint checkpoint = new BillingCheckpoint(channel, fsync);
+        try {
+            checkpoint.load(file);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return checkpoint;
+    }
+    
+    private void load(Path file) throws IOException {
+        byte[] content = Files.readAllBytes(file);
+        int start = 0;
+        int valid = 0;
+        for (int i = 0; i < content.length; i++) {
+            if (content[i] != '\n') {
+                continue;
+            }
+            String line = new String(content, start, i - start, StandardCharsets.UTF_8);
+            try {
+                parseLine(line);
+            } catch (IllegalArgumentException e) {
+                LOG.warn("Ignoring the rest of {} after a malformed line: {}", file, line);
+                break;
+            }
+            start = i + 1;
+            valid = start;
+        }
+        if (valid < content.length) {
+            LOG.warn("Cutting {} incomplete bytes off {}", content.length - valid, file);
+            channel.truncate(valid);
+        }
+        channel.position(valid);
+        ranges.sort(Comparator.comparingLong(range -> range[0]));
+    }
+    
+    private void parseLine(String line) {
+        String[] fields = line.split(" ");
+        if (fields.length < 2) {
+            throw new IllegalArgumentException("Malformed checkpoint line");
+        }
+        BillingTally tally = new BillingTally();
+        for (int i = 2; i < fields.length; i++) {
+            tally.parseField(fields[i]);
+        }
+        ranges.add(new long[] {Long.parseLong(fields[0]), Long.parseLong(fields[1])});
+        recovered.merge(tally);
+    }
+    
+    /**
+     * Gets the chunks recorded before this run was resumed.
+     * @return Ranges of {firstId, lastId}, inclusive, ordered by firstId
+     */
+    List<long[]> getRanges() {
+        return ranges;
+    }
+    
+    /**
+     * Gets the combined tally of the chunks recorded before this run was resumed.
+     */
+    BillingTally getRecovered() {
+        return recovered;
+    }
+    
+    /**
+     * Records a finished chunk.
+     * 
+     * @param firstId First id the chunk covered
+     * @param lastId Last id the chunk covered
+     * @param tally The chunk's outcomes
+     */
+    synchronized void record(long firstId, long lastId, BillingTally tally) throws IOException {
+        StringBuilder line = new StringBuilder(128).append(firstId).append(' ').append(lastId);
+        tally.appendTo(line);
+        ByteBuffer buffer = ByteBuffer.wrap(line.append('\n').toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        if (fsync) {
+            channel.force(false);
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,86 @@
+package com.oopdemo.billing;
+
+import com.oopdemo.enums.PaymentResult;
+import com.oopdemo.interfaces.Billable;
+
+/**
+ * Abstract base class of all payment processors - demonstrates hierarchical
+ * inheritance: several processor types extend this one class.
+ * 
+ * {@link #charge} is a template method: it checks the bill once for every
+ * processor and leaves only the payment itself to the subclasses. Each
+ * charge carries an idempotency key, so a charge that is sent again (e.g.
+ * when an interrupted billing run resumes) can be recognised by the
+ * payment provider instead of being collected twice.
+ */
+public abstract class BillingProcessor {
+    private final String name;
+    
+    /**
+     * Constructor called by every processor through super().
+     * @param name Display name of the payment method
+     */
+    protected BillingProcessor(String name) {
+        this.name = name;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Template method - charges one bill.
+     * 
+     * @param idempotencyKey Identifies this charge; the same key is used whenever it is retried
+     * @param item What to bill
+     * @return The outcome; free bills succeed without contacting the provider
+     */
+    public final PaymentResult charge(String idempotencyKey, Billable item) {
+        double amount = item.calculateTotalCost();
+        String currency = item.getBillingCurrency();
+        if (!(amount >= 0) || currency == null || !supportsCurrency(currency)) {
+            return PaymentResult.FAILED;
+        }
+        if (amount == 0) {
+            return PaymentResult.SUCCESS;
+        }
+        return process(idempotencyKey, amount, currency);
+    }
+    
+    /**
+     * Hook for processors limited to some currencies; all are accepted by default.
+     * @param currency ISO currency code
+     * @return true if bills in the currency can be charged
+     */
+    protected boolean supportsCurrency(String currency) {
+        return true;
+    }
+    
+    /**
+     * Abstract method - each processor collects the payment its own way.
+     * 
+     * @param idempotencyKey Identifies the charge
+     * @param amount Positive amount to collect
+     * @param currency ISO currency code of the amount
+     * @return The outcome
+     */
+    protected abstract PaymentResult process(String idempotencyKey, double amount, String currency);
+    
+    /**
+     * Gives a number in [0, 1) that depends only on the key, so simulated
+     * outcomes repeat when the same charge is retried.
+     * 
+     * @param idempotencyKey The charge's key
+     * @return A uniformly spread value
+     */
+    protected static double draw(String idempotencyKey) {
+        long mixed = idempotencyKey.hashCode() * 0x9E3779B97F4A7C15L;
+        mixed = (mixed ^ (mixed >>> 29)) * 0xBF58476D1CE4E5B9L;
+        return ((mixed ^ (mixed >>> 32)) >>> 11) * 0x1.0p-53;
+    }
+    
+    @Override
+    public String toString() {
+        return name;
+    }
+}
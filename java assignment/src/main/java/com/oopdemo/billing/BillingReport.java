@@ -0,0 +1,142 @@
+package com.oopdemo.billing;
+
+import com.oopdemo.enums.PaymentResult;
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Outcome of a billing run: how many charges ended in each
+ * {@link PaymentResult}, the amounts collected and not collected per
+ * currency, and how fast the run went.
+ * 
+ * Counts and amounts cover the whole run, including chunks finished before
+ * it was resumed; the throughput only covers the charges of this session.
+ */
+public final class BillingReport {
+    private final String runId;
+    private final boolean complete;
+    private final Map<PaymentResult, Long> counts = new EnumMap<>(PaymentResult.class);
+    private final Map<String, BigDecimal> collected = new TreeMap<>();
+    private final Map<String, BigDecimal> uncollected = new TreeMap<>();
+    private final long resumedCharges;
+    private final long sessionCharges;
+    private final long elapsedMillis;
+    
+    BillingReport(String runId, boolean complete, BillingTally total, long resumedCharges, long sessionCharges,
+                  long elapsedMillis) {
+        this.runId = runId;
+        this.complete = complete;
+        for (PaymentResult result : PaymentResult.values()) {
+            counts.put(result, total.count(result));
+        }
+        for (Map.Entry<String, long[]> entry : total.cents().entrySet()) {
+            collected.put(entry.getKey(), BigDecimal.valueOf(entry.getValue()[0], 2));
+            uncollected.put(entry.getKey(), BigDecimal.valueOf(entry.getValue()[1], 2));
+        }
+        this.resumedCharges = resumedCharges;
+        this.sessionCharges = sessionCharges;
+        this.elapsedMillis = elapsedMillis;
+    }
+    
+    public String getRunId() {
+        return runId;
+    }
+    
+    /**
+     * Checks whether every bill of the run has been charged.
+     * @return false if the run was stopped; running it again resumes it
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+    
+    public long getCount(PaymentResult result) {
+        return counts.get(result);
+    }
+    
+    /**
+     * Gets the number of charges per outcome.
+     * @return Unmodifiable counts, including outcomes that did not occur
+     */
+    public Map<PaymentResult, Long> getCounts() {
+        return Collections.unmodifiableMap(counts);
+    }
+    
+    /**
+     * Gets the amounts collected successfully.
+     * @return Unmodifiable totals by currency code, exact to the cent
+     */
+    public Map<String, BigDecimal> getCollected() {
+        return Collections.unmodifiableMap(collected);
+    }
+    
+    /**
+     * Gets the amounts of all charges that did not succeed.
+     * @return Unmodifiable totals by currency code, exact to the cent
+     */
+    public Map<String, BigDecimal> getUncollected() {
+        return Collections.unmodifiableMap(uncollected);
+    }
+    
+    public long getTotalCharges() {
+        return resumedCharges + sessionCharges;
+    }
+    
+    /**
+     * Gets the number of charges made before the run was resumed.
+     * @return 0 for a run finished in one go
+     */
+    public long getResumedCharges() {
+        return resumedCharges;
+    }
+    
+    public long getSessionCharges() {
+        return sessionCharges;
+    }
+    
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+    
+    /**
+     * Gets the throughput of this session.
+     * @return Charges per second
+     */
+    public double getChargesPerSecond() {
+        return elapsedMillis == 0 ? sessionCharges * 1000.0 : sessionCharges * 1000.0 / elapsedMillis;
+    }
+    
+    /**
+     * Converts the report to a map, e.g. for a JSON response.
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("runId", runId);
+        map.put("complete", complete);
+        Map<String, Long> byName = new LinkedHashMap<>();
+        for (Map.Entry<PaymentResult, Long> entry : counts.entrySet()) {
+            byName.put(entry.getKey().name(), entry.getValue());
+        }
+        map.put("counts", byName);
+        map.put("collected", collected);
+        map.put("uncollected", uncollected);
+        map.put("totalCharges", getTotalCharges());
+        map.put("resumedCharges", resumedCharges);
+        map.put("sessionCharges", sessionCharges);
+        map.put("elapsedMs", elapsedMillis);
+        map.put("chargesPerSecond", Math.round(getChargesPerSecond()));
+        return map;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("Billing run %s %s: %d charges (%d resumed), %d succeeded, collected %s, "
+                        + "uncollected %s, %.0f charges/s", runId, complete ? "complete" : "stopped",
+                getTotalCharges(), resumedCharges, getCount(PaymentResult.SUCCESS), collected, uncollected,
+                getChargesPerSecond());
+    }
+}
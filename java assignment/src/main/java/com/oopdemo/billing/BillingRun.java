@@ -0,0 +1,204 @@
+package com.oopdemo.billing;
+
+import com.oopdemo.enums.PaymentResult;
+import com.oopdemo.interfaces.Billable;
+import com.oopdemo.logging.LogManager;
+import com.oopdemo.logging.Logger;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.ToLongFunction;
+import java.util.regex.Pattern;
+
+/**
+ * Charges a large set of bills in parallel on a fork-join pool.
+ * 
+ * The bills are sorted by id and split in halves until each task holds at
+ * most one chunk; every chunk is charged through the {@link BillingProcessor}
+ * by one worker, and the tallies of the chunks are merged as the tasks are
+ * joined. Nothing is shared between workers while they charge, so the run
+ * scales with the pool.
+ * 
+ * With a checkpoint directory, each finished chunk is recorded in the file
+ * of its run. Running the same run id again, e.g. after a crash or
+ * {@link #stop()}, skips the bills of recorded chunks and reports totals
+ * for the whole run. Every charge uses the idempotency key "runId:id", so
+ * a chunk that was charged but not yet recorded is charged again under the
+ * same keys. Ids must be unique, and bills added after a run started
+ * should have larger ids (as time-ordered ids do) to be picked up when it
+ * resumes.
+ */
+public class BillingRun {
+    private static final Logger LOG = LogManager.getLogger(BillingRun.class);
+    private static final Pattern RUN_ID = Pattern.compile("[A-Za-z0-9._-]+");
+    static final int DEFAULT_CHUNK_SIZE = 4096;
+    
+    private final BillingProcessor processor;
+    private final ForkJoinPool pool;
+    private final Path checkpointDirectory;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private boolean fsync = true;
+    private volatile boolean stopRequested;
+    
+    /**
+     * Creates a billing run engine.
+     * 
+     * @param processor Charges each bill
+     * @param pool The pool to run on, e.g. ForkJoinPool.commonPool()
+     * @param checkpointDirectory Directory for the checkpoint files, or null to run without checkpoints
+     */
+    public BillingRun(BillingProcessor processor, ForkJoinPool pool, Path checkpointDirectory) {
+        this.processor = processor;
+        this.pool = pool;
+        this.checkpointDirectory = checkpointDirectory;
+    }
+    
+    /**
+     * Sets how many bills one task charges and one checkpoint line covers.
+     * @param chunkSize Bills per chunk, at least 1
+     */
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+    
+    /**
+     * Sets whether each checkpoint line is forced to disk before the next
+     * chunk may count on it; without it a crash can lose recent progress.
+     */
+    public void setFsync(boolean fsync) {
+        this.fsync = fsync;
+    }
+    
+    /**
+     * Charges every bill not charged yet under the run id.
+     * 
+     * @param runId Names the run, e.g. "2026-10"; letters, digits, '.', '_' and '-' only
+     * @param items The bills
+     * @param idOf Gives each bill's unique id
+     * @return The report for the whole run; incomplete if {@link #stop()} was called
+     * @throws IOException if the checkpoint cannot be read or written
+     */
+    public <T extends Billable> BillingReport run(String runId, Collection<? extends T> items,
+                                                  ToLongFunction<? super T> idOf) throws IOException {
+        if (runId == null || !RUN_ID.matcher(runId).matches()) {
+            throw new IllegalArgumentException("Invalid run id: " + runId);
+        }
+        stopRequested = false;
+        long startedAt = System.nanoTime();
+        BillingCheckpoint checkpoint = checkpointDirectory != null
+                ? BillingCheckpoint.open(checkpointDirectory.resolve(runId + ".checkpoint"), fsync) : null;
+        try {
+            BillingTally resumed = checkpoint != null ? checkpoint.getRecovered() : new BillingTally();
+            @SuppressWarnings("unchecked")
+            T[] sorted = (T[]) items.toArray(new Billable[0]);
+            Arrays.parallelSort(sorted, Comparator.comparingLong(idOf));
+            long[] ids = new long[sorted.length];
+            int pending = 0;
+            List<long[]> done = checkpoint != null ? checkpoint.getRanges() : List.of();
+            int range = 0;
+            for (T item : sorted) {
+                long id = idOf.applyAsLong(item);
+                while (range < done.size() && done.get(range)[1] < id) {
+                    range++;
+                }
+                if (range < done.size() && done.get(range)[0] <= id) {
+                    continue; // Charged in an earlier session
+                }
+                sorted[pending] = item;
+                ids[pending++] = id;
+            }
+            LOG.info("Billing run {}: {} of {} bills left to charge", runId, pending, sorted.length);
+            
+            ChargeTask task = new ChargeTask(runId, sorted, ids, 0, pending, checkpoint);
+            BillingTally session = pending > 0 ? pool.invoke(task) : new BillingTally();
+            long elapsedMillis = (System.nanoTime() - startedAt) / 1_000_000;
+            long sessionCharges = session.total();
+            BillingReport report = new BillingReport(runId, sessionCharges == pending,
+                    new BillingTally().merge(resumed).merge(session), resumed.total(), sessionCharges,
+                    elapsedMillis);
+            LOG.info("{}", report);
+            return report;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            if (checkpoint != null) {
+                checkpoint.close();
+            }
+        }
+    }
+    
+    /**
+     * Asks a running run to stop. Chunks already being charged are finished
+     * and recorded; the rest are left for when the run is resumed.
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+    
+    /**
+     * Charges a range of the sorted bills, splitting it while it is larger than a chunk.
+     */
+    private final class ChargeTask extends RecursiveTask<BillingTally> {
+        private static final long serialVersionUID = 1L;
+        private final String runId;
+        private final Billable[] items;
+        private final long[] ids;
+        private final int from;
+        private final int to;
+        private final transient BillingCheckpoint checkpoint;
+        
+        ChargeTask(String runId, Billable[] items, long[] ids, int from, int to, BillingCheckpoint checkpoint) {
+            this.runId = runId;
+            this.items = items;
+            this.ids = ids;
+            this.from = from;
+            this.to = to;
+            this.checkpoint = checkpoint;
+        }
+        
+        @Override
+        protected BillingTally compute() {
+            if (to - from <= chunkSize) {
+                return chargeChunk();
+            }
+            int middle = (from + to) >>> 1;
+            ChargeTask left = new ChargeTask(runId, items, ids, from, middle, checkpoint);
+            left.fork();
+            BillingTally right = new ChargeTask(runId, items, ids, middle, to, checkpoint).compute();
+            return left.join().merge(right);
+        }
+        
+        private BillingTally chargeChunk() {
+            BillingTally tally = new BillingTally();
+            if (stopRequested) {
+                return tally;
+            }
+            String keyPrefix = runId + ':';
+            for (int i = from; i < to; i++) {
+                Billable item = items[i];
+                PaymentResult result;
+                try {
+                    result = processor.charge(keyPrefix + ids[i], item);
+                } catch (RuntimeException e) {
+                    LOG.warn("Charging {} failed: {}", ids[i], e.toString());
+                    result = PaymentResult.FAILED;
+                }
+                tally.add(result, item.getBillingCurrency(), item.calculateTotalCost());
+            }
+            if (checkpoint != null) {
+                try {
+                    checkpoint.record(ids[from], ids[to - 1], tally);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return tally;
+        }
+    }
+}
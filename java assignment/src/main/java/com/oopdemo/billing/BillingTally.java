@@ -0,0 +1,90 @@
+package com.oopdemo.billing;
+
+import com.oopdemo.enums.PaymentResult;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Outcome counts and amounts of a part of a billing run.
+ * 
+ * Amounts are kept in cents per currency, so adding up millions of charges
+ * loses nothing to rounding. Not thread-safe: each fork-join task fills its
+ * own tally and the tallies are merged as the tasks are joined.
+ */
+final class BillingTally {
+    private static final PaymentResult[] RESULTS = PaymentResult.values();
+    
+    private final long[] counts = new long[RESULTS.length];
+    // Currency -> {cents collected, cents not collected}
+    private final Map<String, long[]> cents = new TreeMap<>();
+    
+    void add(PaymentResult result, String currency, double amount) {
+        counts[result.ordinal()]++;
+        long[] amounts = cents.computeIfAbsent(currency, c -> new long[2]);
+        amounts[result == PaymentResult.SUCCESS ? 0 : 1] += Math.round(amount * 100.0);
+    }
+    
+    BillingTally merge(BillingTally other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        for (Map.Entry<String, long[]> entry : other.cents.entrySet()) {
+            long[] amounts = cents.computeIfAbsent(entry.getKey(), c -> new long[2]);
+            amounts[0] += entry.getValue()[0];
+            amounts[1] += entry.getValue()[1];
+        }
+        return this;
+    }
+    
+    long count(PaymentResult result) {
+        return counts[result.ordinal()];
+    }
+    
+    long total() {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        return total;
+    }
+    
+    Map<String, long[]> cents() {
+        return cents;
+    }
+    
+    /**
+     * Writes the tally as space-separated fields, e.g.
+     * "SUCCESS=4090 DECLINED=6 USD:5030044:7994".
+     */
+    void appendTo(StringBuilder line) {
+        for (PaymentResult result : RESULTS) {
+            if (counts[result.ordinal()] > 0) {
+                line.append(' ').append(result.name()).append('=').append(counts[result.ordinal()]);
+            }
+        }
+        for (Map.Entry<String, long[]> entry : cents.entrySet()) {
+            line.append(' ').append(entry.getKey()).append(':').append(entry.getValue()[0])
+                    .append(':').append(entry.getValue()[1]);
+        }
+    }
+    
+    /**
+     * Reads one field written by {@link #appendTo}.
+     * @throws IllegalArgumentException if the field is malformed
+     */
+    void parseField(String field) {
+        int equals = field.indexOf('=');
+        if (equals > 0) {
+            PaymentResult result = PaymentResult.valueOf(field.substring(0, equals));
+            counts[result.ordinal()] += Long.parseLong(field.substring(equals + 1));
+            return;
+        }
+        String[] parts = field.split(":");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Malformed tally field: " + field);
+        }
+        long[] amounts = cents.computeIfAbsent(parts[0], c -> new long[2]);
+        amounts[0] += Long.parseLong(parts[1]);
+        amounts[1] += Long.parseLong(parts[2]);
+    }
+}
@@ -0,0 +1,124 @@
+package com.oopdemo.billing;
+
+import com.oopdemo.logging.LogManager;
+import com.oopdemo.logging.Logger;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stops calls to a gateway that keeps failing, so payments fail fast instead
+ * of each waiting for its deadline while the gateway recovers.
+ * 
+ * After the given number of failures in a row the breaker opens and rejects
+ * every call. Once the open time has passed it lets a single probe call
+ * through (half-open): a success closes it again, a failure opens it for
+ * another period. While closed, checking the breaker is a single volatile
+ * read.
+ */
+public class CircuitBreaker {
+    private static final Logger LOG = LogManager.getLogger(CircuitBreaker.class);
+    
+    /**
+     * Whether calls are let through.
+     */
+    public enum State {
+        /** Calls pass; failures in a row are counted. */
+        CLOSED,
+        /** Calls are rejected until the open time has passed. */
+        OPEN,
+        /** One probe call is in flight; others are rejected. */
+        HALF_OPEN
+    }
+    
+    private final String name;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder opened = new LongAdder();
+    private volatile long openedAt;
+    
+    /**
+     * Creates a closed circuit breaker.
+     * 
+     * @param name Name for log messages
+     * @param failureThreshold Failures in a row that open the breaker, at least 1
+     * @param openMillis How long the breaker stays open before it lets a probe through
+     */
+    public CircuitBreaker(String name, int failureThreshold, long openMillis) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = Math.max(0, openMillis) * 1_000_000;
+    }
+    
+    /**
+     * Asks to make a call. Every permitted call must be followed by
+     * {@link #onSuccess()} or {@link #onFailure()}.
+     * 
+     * @return true if the call may go ahead
+     */
+    public boolean tryAcquire() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (current == State.OPEN && System.nanoTime() - openedAt >= openNanos
+                && state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+            return true; // This call is the probe
+        }
+        rejected.increment();
+        return false;
+    }
+    
+    /**
+     * Records a call the gateway answered, whatever it answered about the payment.
+     */
+    public void onSuccess() {
+        if (consecutiveFailures.get() != 0) {
+            consecutiveFailures.set(0);
+        }
+        if (state.get() == State.HALF_OPEN && state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+            LOG.info("Circuit {} closed", name);
+        }
+    }
+    
+    /**
+     * Records a call that failed because of the gateway: an error or no answer in time.
+     */
+    public void onFailure() {
+        State current = state.get();
+        if (current == State.HALF_OPEN || (current == State.CLOSED
+                && consecutiveFailures.incrementAndGet() >= failureThreshold)) {
+            open(current);
+        }
+    }
+    
+    private void open(State from) {
+        openedAt = System.nanoTime();
+        if (state.compareAndSet(from, State.OPEN)) {
+            consecutiveFailures.set(0);
+            opened.increment();
+            LOG.warn("Circuit {} opened for {} ms", name, openNanos / 1_000_000);
+        }
+    }
+    
+    public State getState() {
+        return state.get();
+    }
+    
+    /**
+     * Gets the number of calls rejected while the breaker was open or probing.
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+    
+    /**
+     * Gets how many times the breaker has opened.
+     */
+    public long getOpened() {
+        return opened.sum();
+    }
+}
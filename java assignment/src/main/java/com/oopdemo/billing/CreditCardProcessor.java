@@ -0,0 +1,30 @@
+package com.oopdemo.billing;
+
+import com.oopdemo.enums.PaymentResult;
+
+/**
+ * Credit card payments - demonstrates one branch of the processor hierarchy.
+ * 
+ * Simulates a card network: about 1% of charges are declined, 0.5% fail for
+ * insufficient funds and 0.2% for invalid card details.
+ */
+public class CreditCardProcessor extends BillingProcessor {
+    public CreditCardProcessor() {
+        super("Credit Card"); // Constructor chaining to the abstract class
+    }
+    
+    @Override
+    protected PaymentResult process(String idempotencyKey, double amount, String currency) {
+        double outcome = draw(idempotencyKey);
+        if (outcome < 0.010) {
+            return PaymentResult.DECLINED;
+        }
+        if (outcome < 0.015) {
+            return PaymentResult.INSUFFICIENT_FUNDS;
+        }
+        if (outcome < 0.017) {
+            return PaymentResult.INVALID_CARD;
+        }
+        return PaymentResult.SUCCESS;
+    }
+}
@@ -0,0 +1,33 @@
+package com.oopdemo.billing;
+
+import com.oopdemo.enums.PaymentResult;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Payments through a remote gateway - another branch of the processor
+ * hierarchy, so a {@link BillingRun} can charge through a {@link PaymentClient}.
+ * 
+ * Each charge waits for the client's final result. Payments the client
+ * rejected were never sent and are reported as NETWORK_ERROR.
+ */
+public class GatewayProcessor extends BillingProcessor {
+    private final PaymentClient client;
+    
+    public GatewayProcessor(String name, PaymentClient client) {
+        super(name); // Constructor chaining to the abstract class
+        this.client = client;
+    }
+    
+    public PaymentClient getClient() {
+        return client;
+    }
+    
+    @Override
+    protected PaymentResult process(String idempotencyKey, double amount, String currency) {
+        try {
+            return client.charge(idempotencyKey, amount, currency).join();
+        } catch (CompletionException e) {
+            return PaymentResult.NETWORK_ERROR;
+        }
+    }
+}
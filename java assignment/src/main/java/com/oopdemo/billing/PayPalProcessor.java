@@ -0,0 +1,27 @@
+package com.oopdemo.billing;
+
+import com.oopdemo.enums.PaymentResult;
+import java.util.Set;
+
+/**
+ * PayPal payments - demonstrates overriding a hook of the template method.
+ * 
+ * Only charges a few currencies; about 0.8% of charges are declined.
+ */
+public class PayPalProcessor extends BillingProcessor {
+    private static final Set<String> CURRENCIES = Set.of("USD", "EUR", "GBP");
+    
+    public PayPalProcessor() {
+        super("PayPal"); // Constructor chaining to the abstract class
+    }
+    
+    @Override
+    protected boolean supportsCurrency(String currency) {
+        return CURRENCIES.contains(currency);
+    }
+    
+    @Override
+    protected PaymentResult process(String idempotencyKey, double amount, String currency) {
+        return draw(idempotencyKey) < 0.008 ? PaymentResult.DECLINED : PaymentResult.SUCCESS;
+    }
+}
@@ -0,0 +1,220 @@
+package com.oopdemo.billing;
+
+import com.oopdemo.enums.PaymentResult;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Asynchronous payments through a {@link PaymentGateway}, protected against
+ * a slow or failing gateway.
+ * 
+ * - Deadline: every payment has one deadline for all of its attempts, and
+ *   each attempt has a shorter timeout of its own, so a lost answer can
+ *   still be retried. An attempt unanswered in time ends as TIMEOUT.
+ * - Retry: retryable results (TIMEOUT, NETWORK_ERROR, and gateway errors,
+ *   which count as NETWORK_ERROR) are sent again after an exponential
+ *   backoff with full jitter, while attempts and time are left. Retries use
+ *   the same idempotency key, so a payment whose answer was lost is not
+ *   collected twice.
+ * - Circuit breaker: failing attempts open the {@link CircuitBreaker} and
+ *   payments are then rejected without calling the gateway.
+ * - Bulkhead: at most a fixed number of attempts are in flight; payments
+ *   beyond that are rejected instead of queueing up.
+ * 
+ * A rejected payment completes exceptionally with a
+ * RejectedExecutionException and was never sent; if an earlier attempt was
+ * sent, the payment completes with that attempt's result instead.
+ * 
+ * Retries are started on the timer thread, so gateways must not block in
+ * {@link PaymentGateway#submit}.
+ */
+public class PaymentClient {
+    private static final PaymentResult[] RESULTS = PaymentResult.values();
+    
+    private final PaymentGateway gateway;
+    private final CircuitBreaker circuitBreaker;
+    private final Semaphore bulkhead;
+    private final int maxConcurrent;
+    private volatile long deadlineMillis = 2000;
+    private volatile long attemptTimeoutMillis = 500;
+    private volatile int maxAttempts = 3;
+    private volatile long backoffMillis = 25;
+    private volatile long maxBackoffMillis = 1000;
+    
+    private final LongAdder payments = new LongAdder();
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder bulkheadRejected = new LongAdder();
+    private final LongAdder circuitRejected = new LongAdder();
+    private final LongAdder[] results = new LongAdder[RESULTS.length];
+    
+    /**
+     * Creates a client.
+     * 
+     * @param gateway The gateway to pay through
+     * @param circuitBreaker Guards the gateway; should not be shared with other gateways
+     * @param maxConcurrent Attempts that may be in flight at once
+     */
+    public PaymentClient(PaymentGateway gateway, CircuitBreaker circuitBreaker, int maxConcurrent) {
+        this.gateway = gateway;
+        this.circuitBreaker = circuitBreaker;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.bulkhead = new Semaphore(this.maxConcurrent);
+        for (int i = 0; i < results.length; i++) {
+            results[i] = new LongAdder();
+        }
+    }
+    
+    /**
+     * Sets the time a payment may take, retries included.
+     * @param deadlineMillis Milliseconds from the call to charge, at least 1
+     */
+    public void setDeadlineMillis(long deadlineMillis) {
+        this.deadlineMillis = Math.max(1, deadlineMillis);
+    }
+    
+    /**
+     * Sets how long one attempt may wait for its answer.
+     * @param attemptTimeoutMillis Milliseconds, at least 1; never longer than what is left of the deadline
+     */
+    public void setAttemptTimeoutMillis(long attemptTimeoutMillis) {
+        this.attemptTimeoutMillis = Math.max(1, attemptTimeoutMillis);
+    }
+    
+    /**
+     * Sets how often a payment is sent at most.
+     * @param maxAttempts Attempts including the first, at least 1
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+    
+    /**
+     * Sets the wait before a retry: a random time up to backoffMillis,
+     * doubling with every retry up to maxBackoffMillis.
+     */
+    public void setBackoff(long backoffMillis, long maxBackoffMillis) {
+        this.backoffMillis = Math.max(1, backoffMillis);
+        this.maxBackoffMillis = Math.max(this.backoffMillis, maxBackoffMillis);
+    }
+    
+    public PaymentGateway getGateway() {
+        return gateway;
+    }
+    
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+    
+    /**
+     * Sends a payment.
+     * 
+     * @param idempotencyKey Identifies the payment at the gateway
+     * @param amount Positive amount to collect
+     * @param currency ISO currency code of the amount
+     * @return The final result; exceptional with RejectedExecutionException if it was never sent
+     */
+    public CompletableFuture<PaymentResult> charge(String idempotencyKey, double amount, String currency) {
+        payments.increment();
+        CompletableFuture<PaymentResult> payment = new CompletableFuture<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+        attempt(idempotencyKey, amount, currency, 1, deadline, null, payment);
+        return payment;
+    }
+    
+    private void attempt(String idempotencyKey, double amount, String currency, int attempt, long deadline,
+                         PaymentResult previous, CompletableFuture<PaymentResult> payment) {
+        long remainingNanos = deadline - System.nanoTime();
+        if (remainingNanos <= 0) {
+            finish(payment, PaymentResult.TIMEOUT);
+            return;
+        }
+        if (!bulkhead.tryAcquire()) {
+            bulkheadRejected.increment();
+            reject(payment, previous, "Too many payments in flight to " + gateway.getName());
+            return;
+        }
+        if (!circuitBreaker.tryAcquire()) {
+            bulkhead.release();
+            circuitRejected.increment();
+            reject(payment, previous, "Circuit open for " + gateway.getName());
+            return;
+        }
+        attempts.increment();
+        CompletableFuture<PaymentResult> answer = new CompletableFuture<>();
+        try {
+            gateway.submit(idempotencyKey, amount, currency).whenComplete((result, error) ->
+                    answer.complete(error != null || result == null ? PaymentResult.NETWORK_ERROR : result));
+        } catch (RuntimeException e) {
+            answer.complete(PaymentResult.NETWORK_ERROR);
+        }
+        answer.completeOnTimeout(PaymentResult.TIMEOUT,
+                Math.min(remainingNanos, TimeUnit.MILLISECONDS.toNanos(attemptTimeoutMillis)), TimeUnit.NANOSECONDS);
+        answer.thenAccept(result -> {
+            bulkhead.release();
+            if (result.isRetryable()) {
+                circuitBreaker.onFailure();
+            } else {
+                circuitBreaker.onSuccess();
+            }
+            if (result == PaymentResult.TIMEOUT) {
+                timeouts.increment();
+            }
+            if (result.isRetryable() && attempt < maxAttempts) {
+                long ceiling = Math.min(maxBackoffMillis, backoffMillis << Math.min(attempt - 1, 30));
+                long backoff = ThreadLocalRandom.current().nextLong(ceiling + 1);
+                if (deadline - System.nanoTime() > TimeUnit.MILLISECONDS.toNanos(backoff)) {
+                    retries.increment();
+                    CompletableFuture.delayedExecutor(backoff, TimeUnit.MILLISECONDS, Runnable::run).execute(() ->
+                            attempt(idempotencyKey, amount, currency, attempt + 1, deadline, result, payment));
+                    return;
+                }
+            }
+            finish(payment, result);
+        });
+    }
+    
+    private void reject(CompletableFuture<PaymentResult> payment, PaymentResult previous, String reason) {
+        if (previous != null) {
+            finish(payment, previous);
+        } else {
+            payment.completeExceptionally(new RejectedExecutionException(reason));
+        }
+    }
+    
+    private void finish(CompletableFuture<PaymentResult> payment, PaymentResult result) {
+        results[result.ordinal()].increment();
+        payment.complete(result);
+    }
+    
+    /**
+     * Gets payment, retry and rejection counters.
+     * @return Map from counter name to value; "results" holds the final result counts
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("gateway", gateway.getName());
+        stats.put("payments", payments.sum());
+        stats.put("attempts", attempts.sum());
+        stats.put("retries", retries.sum());
+        stats.put("timeouts", timeouts.sum());
+        stats.put("inFlight", maxConcurrent - bulkhead.availablePermits());
+        stats.put("bulkheadRejected", bulkheadRejected.sum());
+        stats.put("circuitRejected", circuitRejected.sum());
+        stats.put("circuitState", circuitBreaker.getState().name());
+        stats.put("circuitOpened", circuitBreaker.getOpened());
+        Map<String, Long> byResult = new LinkedHashMap<>();
+        for (PaymentResult result : RESULTS) {
+            byResult.put(result.name(), results[result.ordinal()].sum());
+        }
+        stats.put("results", byResult);
+        return stats;
+    }
+}
@@ -0,0 +1,29 @@
+package com.oopdemo.billing;
+
+import com.oopdemo.enums.PaymentResult;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Interface defining contract for remote payment gateways.
+ * Calls are asynchronous: a gateway answers on its own threads, so callers
+ * can keep many payments in flight without blocking a thread per payment.
+ */
+public interface PaymentGateway {
+    /**
+     * Gets a short name for statistics and log messages.
+     * @return The gateway name
+     */
+    String getName();
+    
+    /**
+     * Sends one payment.
+     * The future completes with the gateway's answer; it may also complete
+     * exceptionally, or not at all, when the gateway cannot be reached.
+     * 
+     * @param idempotencyKey Identifies the payment; the same key is sent with every retry
+     * @param amount Positive amount to collect
+     * @param currency ISO currency code of the amount
+     * @return The pending answer
+     */
+    CompletableFuture<PaymentResult> submit(String idempotencyKey, double amount, String currency);
+}
@@ -0,0 +1,142 @@
+package com.oopdemo.billing;
+
+import com.oopdemo.enums.PaymentResult;
+import java.net.ConnectException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Local stand-in for a payment gateway, for demos and offline measurements.
+ * 
+ * Every answer is delayed by the configured latency plus a uniform jitter,
+ * and a share of the calls is made slow to produce a latency tail. Failures
+ * can be injected at fixed rates: declined payments, connection errors
+ * (the future completes exceptionally) and dropped calls (the future never
+ * completes, so only the caller's deadline ends them). Outcomes are drawn
+ * at random for every call, so a retried payment can succeed.
+ */
+public class StubPaymentGateway implements PaymentGateway, AutoCloseable {
+    private final String name;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final LongAdder submitted = new LongAdder();
+    private volatile long latencyMicros = 5_000;
+    private volatile long jitterMicros = 5_000;
+    private volatile double slowRate;
+    private volatile long slowMicros = 200_000;
+    private volatile double declineRate = 0.01;
+    private volatile double networkErrorRate;
+    private volatile double dropRate;
+    
+    /**
+     * Creates a stub gateway answering with 5-10 ms latency and 1% declines.
+     * 
+     * @param name Name for statistics
+     * @param threads Threads that complete the delayed answers
+     */
+    public StubPaymentGateway(String name, int threads) {
+        this.name = name;
+        AtomicInteger count = new AtomicInteger();
+        this.scheduler = new ScheduledThreadPoolExecutor(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "payment-stub-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    @Override
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Sets how long an answer takes.
+     * 
+     * @param latencyMillis Minimum time to answer
+     * @param jitterMillis Largest random time added to it
+     */
+    public void setLatency(double latencyMillis, double jitterMillis) {
+        this.latencyMicros = Math.max(0, Math.round(latencyMillis * 1000));
+        this.jitterMicros = Math.max(0, Math.round(jitterMillis * 1000));
+    }
+    
+    /**
+     * Makes a share of the calls slow.
+     * 
+     * @param rate Share of calls, from 0 to 1
+     * @param slowMillis Time those calls take instead of the normal latency
+     */
+    public void setSlowCalls(double rate, double slowMillis) {
+        this.slowRate = rate(rate);
+        this.slowMicros = Math.max(0, Math.round(slowMillis * 1000));
+    }
+    
+    public void setDeclineRate(double declineRate) {
+        this.declineRate = rate(declineRate);
+    }
+    
+    public void setNetworkErrorRate(double networkErrorRate) {
+        this.networkErrorRate = rate(networkErrorRate);
+    }
+    
+    /**
+     * Sets the share of calls that are never answered.
+     * @param dropRate Share of calls, from 0 to 1
+     */
+    public void setDropRate(double dropRate) {
+        this.dropRate = rate(dropRate);
+    }
+    
+    private static double rate(double rate) {
+        if (!(rate >= 0 && rate <= 1)) {
+            throw new IllegalArgumentException("Rate must be between 0 and 1: " + rate);
+        }
+        return rate;
+    }
+    
+    @Override
+    public CompletableFuture<PaymentResult> submit(String idempotencyKey, double amount, String currency) {
+        submitted.increment();
+        CompletableFuture<PaymentResult> answer = new CompletableFuture<>();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double outcome = random.nextDouble();
+        if (outcome < dropRate) {
+            return answer;
+        }
+        outcome -= dropRate;
+        long delayMicros = random.nextDouble() < slowRate ? slowMicros
+                : latencyMicros + (jitterMicros > 0 ? random.nextLong(jitterMicros + 1) : 0);
+        Runnable reply;
+        if (outcome < networkErrorRate) {
+            reply = () -> answer.completeExceptionally(new ConnectException("Connection refused by " + name));
+        } else {
+            PaymentResult result = outcome - networkErrorRate < declineRate
+                    ? PaymentResult.DECLINED : PaymentResult.SUCCESS;
+            reply = () -> answer.complete(result);
+        }
+        if (delayMicros == 0) {
+            reply.run();
+        } else {
+            scheduler.schedule(reply, delayMicros, TimeUnit.MICROSECONDS);
+        }
+        return answer;
+    }
+    
+    /**
+     * Gets the number of calls received, retries included.
+     */
+    public long getSubmitted() {
+        return submitted.sum();
+    }
+    
+    /**
+     * Stops the answer threads; answers still pending are never sent.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -1,9 +1,31 @@
 package com.oopdemo.demo;
 
+import com.oopdemo.billing.BillingProcessor;
+import com.oopdemo.billing.BillingReport;
+import com.oopdemo.billing.BillingRun;
+import com.oopdemo.billing.CircuitBreaker;
+import com.oopdemo.billing.CreditCardProcessor;
+import com.oopdemo.billing.PaymentClient;
+import com.oopdemo.billing.StubPaymentGateway;
+import com.oopdemo.enums.PaymentResult;
+import com.oopdemo.enums.SubscriptionStatus;
+import com.oopdemo.enums.UserStatus;
+import com.oopdemo.logging.LogLevel;
+import com.oopdemo.logging.LogManager;
+import com.oopdemo.subscriptions.AbstractSubscription;
+import com.oopdemo.subscriptions.BasicSubscription;
+import com.oopdemo.subscriptions.EnterpriseSubscription;
+import com.oopdemo.subscriptions.PremiumSubscription;
+import com.oopdemo.subscriptions.SubscriptionManager;
 import com.oopdemo.users.User;
 import com.oopdemo.users.RegularUser;
 import com.oopdemo.users.AdminUser;
+import java.io.IOException;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Demonstration class for User hierarchy showcasing OOP concepts.
@@ -56,8 +78,13 @@ public class UserHierarchyDemo {
         System.out.println("\n4. Interface Implementation Demonstration:");
         System.out.println("Using Manageable interface methods...");
         
-        regularUser.updateStatus("PREMIUM");
-        adminUser.updateStatus("SUPER_ADMIN");
+        regularUser.updateStatus(UserStatus.INACTIVE);
+        adminUser.updateStatus(UserStatus.SUSPENDED);
+        try {
+            regularUser.updateStatus(UserStatus.PENDING); // Not a legal transition
+        } catch (IllegalStateException e) {
+            System.out.println("Rejected: " + e.getMessage());
+        }
         
         // Demonstrate admin-specific functionality
         System.out.println("\n5. Admin-Specific Functionality:");
@@ -65,6 +92,8 @@ public class UserHierarchyDemo {
         adminUser.manageUser(regularUser, "notify");
         
         System.out.println("\nAdmin permissions: " + adminUser.getAdminPermissions());
+        System.out.println("Can delete users: " + adminUser.hasPermission("DELETE_USERS")
+                + ", can export data: " + adminUser.hasPermission("DATA_EXPORT"));
         System.out.println("Regular user subscription limits: " + regularUser.getSubscriptionLimits());
         
         // Demonstrate dynamic method dispatch
@@ -77,6 +106,66 @@ public class UserHierarchyDemo {
         System.out.println("userRef1 access level: " + userRef1.getAccessLevel()); // Calls RegularUser implementation
         System.out.println("userRef2 access level: " + userRef2.getAccessLevel()); // Calls AdminUser implementation
         
+        // Demonstrate the subscription hierarchy through Billable references
+        System.out.println("\n7. Subscriptions (Multilevel Inheritance):");
+        SubscriptionManager subscriptions = new SubscriptionManager();
+        AbstractSubscription basic = new BasicSubscription(userRef1, 1);
+        AbstractSubscription premium = new PremiumSubscription(userRef1, 12, true);
+        AbstractSubscription enterprise = new EnterpriseSubscription(userRef1, 1, 25);
+        for (AbstractSubscription subscription : new AbstractSubscription[] {basic, premium, enterprise}) {
+            subscriptions.subscribe(subscription);
+            System.out.printf("%s: %.2f %s per bill%n", subscription.getTierName(),
+                    subscription.calculateTotalCost(), subscription.getBillingCurrency()); // Tier-specific pricing
+        }
+        try {
+            subscriptions.subscribe(new BasicSubscription(userRef1, 1)); // Over the regular user limit
+        } catch (IllegalStateException e) {
+            System.out.println("Rejected: " + e.getMessage());
+        }
+        subscriptions.activate(basic.getSubscriptionId());
+        subscriptions.activate(premium.getSubscriptionId());
+        subscriptions.cancel(enterprise.getSubscriptionId());
+        System.out.println("Subscriptions of " + userRef1.getName() + ": " + subscriptions.findByUser(userRef1).size()
+                + ", active: " + subscriptions.countByStatus(SubscriptionStatus.ACTIVE));
+        
+        // Demonstrate hierarchical inheritance: the run only knows the BillingProcessor type
+        System.out.println("\n8. Billing Run (Hierarchical Inheritance):");
+        BillingProcessor processor = new CreditCardProcessor();
+        BillingRun billingRun = new BillingRun(processor, ForkJoinPool.commonPool(), null);
+        try {
+            BillingReport report = billingRun.run("demo", subscriptions.findByStatus(SubscriptionStatus.ACTIVE),
+                    AbstractSubscription::getSubscriptionId);
+            System.out.println(processor.getName() + ": " + report.getCount(PaymentResult.SUCCESS) + " of "
+                    + report.getTotalCharges() + " charges succeeded, collected " + report.getCollected());
+        } catch (IOException e) {
+            System.out.println("Billing run failed: " + e.getMessage()); // Only possible with a checkpoint directory
+        }
+        
+        // Demonstrate asynchronous payments that survive an unreliable gateway
+        System.out.println("\n9. Payment Gateway (Retries and Circuit Breaking):");
+        try (StubPaymentGateway gateway = new StubPaymentGateway("stub", 2)) {
+            gateway.setLatency(1, 2);
+            gateway.setNetworkErrorRate(0.2); // One call in five fails and is retried
+            PaymentClient client = new PaymentClient(gateway, new CircuitBreaker("stub", 10, 1000), 100);
+            client.setDeadlineMillis(500);
+            List<CompletableFuture<PaymentResult>> payments = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                payments.add(client.charge("demo-payment:" + i, 9.99, "USD"));
+            }
+            CompletableFuture.allOf(payments.toArray(new CompletableFuture<?>[0])).join();
+            System.out.println("50 payments, " + client.getStats().get("retries") + " retries: "
+                    + client.getStats().get("results"));
+            
+            gateway.setNetworkErrorRate(1.0); // The gateway goes down
+            for (int i = 0; i < 20; i++) {
+                client.charge("demo-outage:" + i, 9.99, "USD")
+                        .exceptionally(e -> null) // Rejected while the circuit is open
+                        .join();
+            }
+            System.out.println("During the outage the circuit is " + client.getCircuitBreaker().getState()
+                    + ", " + client.getStats().get("circuitRejected") + " payments rejected without a call");
+        }
+        
         System.out.println("\n=== User Hierarchy Demonstration Complete ===");
     }
     
@@ -84,6 +173,9 @@ public class UserHierarchyDemo {
      * Main method for standalone testing.
      */
     public static void main(String[] args) {
+        // Print model messages inline, in order with the demo output
+        LogManager.setPlainFormat(true);
+        LogManager.configure(LogManager.Mode.SYNC, LogLevel.DEBUG);
         demonstrateUserHierarchy();
     }
 }
\ No newline at end of file
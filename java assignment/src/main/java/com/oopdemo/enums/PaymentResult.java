@@ -10,17 +10,23 @@ public enum PaymentResult {
     DECLINED("Payment was declined"),
     INSUFFICIENT_FUNDS("Insufficient funds"),
     INVALID_CARD("Invalid card information"),
-    NETWORK_ERROR("Network error occurred"),
-    TIMEOUT("Payment processing timed out");
+    NETWORK_ERROR("Network error occurred", true),
+    TIMEOUT("Payment processing timed out", true);
     
     private final String message;
+    private final boolean retryable;
     
     /**
      * Constructor for PaymentResult enum.
      * @param message Descriptive message for the result
      */
     PaymentResult(String message) {
+        this(message, false);
+    }
+    
+    PaymentResult(String message, boolean retryable) {
         this.message = message;
+        this.retryable = retryable;
     }
     
     /**
@@ -31,6 +37,14 @@ public enum PaymentResult {
         return message;
     }
     
+    /**
+     * Checks whether the payment may succeed if it is sent again.
+     * @return true for transient failures of the gateway, false for answers about the payment itself
+     */
+    public boolean isRetryable() {
+        return retryable;
+    }
+    
     @Override
     public String toString() {
         return message;
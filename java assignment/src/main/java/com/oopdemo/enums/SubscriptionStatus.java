@@ -1,8 +1,16 @@
 package com.oopdemo.enums;
 
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+
 /**
  * Enumeration for subscription status values.
  * Demonstrates proper use of enums in Java OOP design.
+ * 
+ * Follows the same transitions as {@link UserStatus}: a new subscription is
+ * PENDING until it is activated, ACTIVE and INACTIVE (paused) change into
+ * each other, SUSPENDED can be resumed, and CANCELLED is final.
  */
 public enum SubscriptionStatus {
     ACTIVE("Active"),
@@ -11,7 +19,16 @@ public enum SubscriptionStatus {
     CANCELLED("Cancelled"),
     PENDING("Pending");
     
+    static {
+        ACTIVE.allowed = EnumSet.of(INACTIVE, SUSPENDED, CANCELLED);
+        INACTIVE.allowed = EnumSet.of(ACTIVE, SUSPENDED, CANCELLED);
+        SUSPENDED.allowed = EnumSet.of(ACTIVE, CANCELLED);
+        CANCELLED.allowed = EnumSet.noneOf(SubscriptionStatus.class);
+        PENDING.allowed = EnumSet.of(ACTIVE, CANCELLED);
+    }
+    
     private final String displayName;
+    private Set<SubscriptionStatus> allowed;
     
     /**
      * Constructor for SubscriptionStatus enum.
@@ -29,6 +46,34 @@ public enum SubscriptionStatus {
         return displayName;
     }
     
+    /**
+     * Checks whether a subscription in this status may change to another status.
+     * 
+     * @param target The status to change to
+     * @return true if the transition is legal; a status never transitions to itself
+     */
+    public boolean canTransitionTo(SubscriptionStatus target) {
+        return allowed.contains(target);
+    }
+    
+    /**
+     * Parses a status name, ignoring case.
+     * 
+     * @param name The status name, e.g. "active"
+     * @return The status
+     * @throws IllegalArgumentException if the name is null or not a status
+     */
+    public static SubscriptionStatus fromName(String name) {
+        if (name != null) {
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                // Fall through to the descriptive message
+            }
+        }
+        throw new IllegalArgumentException("Unknown status: " + name);
+    }
+    
     @Override
     public String toString() {
         return displayName;
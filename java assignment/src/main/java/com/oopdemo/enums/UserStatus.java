@@ -0,0 +1,79 @@
+package com.oopdemo.enums;
+
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Enumeration for the status of a user account.
+ * Demonstrates an enum used as a state machine: each status knows which
+ * statuses it may change to.
+ * 
+ * Uses the same vocabulary as {@link SubscriptionStatus}:
+ * - PENDING can become ACTIVE or CANCELLED
+ * - ACTIVE and INACTIVE can change into each other, or become SUSPENDED or CANCELLED
+ * - SUSPENDED can become ACTIVE again or CANCELLED
+ * - CANCELLED is final
+ */
+public enum UserStatus {
+    ACTIVE("Active"),
+    INACTIVE("Inactive"),
+    SUSPENDED("Suspended"),
+    CANCELLED("Cancelled"),
+    PENDING("Pending");
+    
+    static {
+        ACTIVE.allowed = EnumSet.of(INACTIVE, SUSPENDED, CANCELLED);
+        INACTIVE.allowed = EnumSet.of(ACTIVE, SUSPENDED, CANCELLED);
+        SUSPENDED.allowed = EnumSet.of(ACTIVE, CANCELLED);
+        CANCELLED.allowed = EnumSet.noneOf(UserStatus.class);
+        PENDING.allowed = EnumSet.of(ACTIVE, CANCELLED);
+    }
+    
+    private final String displayName;
+    private Set<UserStatus> allowed;
+    
+    /**
+     * Constructor for UserStatus enum.
+     * @param displayName Human-readable display name
+     */
+    UserStatus(String displayName) {
+        this.displayName = displayName;
+    }
+    
+    /**
+     * Gets the display name for the status.
+     * @return String representing the display name
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+    
+    /**
+     * Checks whether a user in this status may change to another status.
+     * 
+     * @param target The status to change to
+     * @return true if the transition is legal; a status never transitions to itself
+     */
+    public boolean canTransitionTo(UserStatus target) {
+        return allowed.contains(target);
+    }
+    
+    /**
+     * Parses a status name, ignoring case.
+     * 
+     * @param name The status name, e.g. "suspended"
+     * @return The status
+     * @throws IllegalArgumentException if the name is null or not a status
+     */
+    public static UserStatus fromName(String name) {
+        if (name != null) {
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                // Fall through to the descriptive message
+            }
+        }
+        throw new IllegalArgumentException("Unknown status: " + name);
+    }
+}
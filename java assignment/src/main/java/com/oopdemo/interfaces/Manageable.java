@@ -1,5 +1,7 @@
 package com.oopdemo.interfaces;
 
+import com.oopdemo.enums.UserStatus;
+
 /**
  * Interface defining contract for objects that can be managed.
  * Demonstrates interface implementation in OOP design.
@@ -13,13 +15,15 @@ public interface Manageable {
     
     /**
      * Gets the current status of the manageable object.
-     * @return String representing the current status
+     * @return The current status
      */
-    String getStatus();
+    UserStatus getStatus();
     
     /**
      * Updates the status of the manageable object.
      * @param newStatus The new status to set
+     * @return true if the status changed, false if it already was the new status
+     * @throws IllegalStateException if the current status may not change to the new one
      */
-    void updateStatus(String newStatus);
+    boolean updateStatus(UserStatus newStatus);
 }
\ No newline at end of file
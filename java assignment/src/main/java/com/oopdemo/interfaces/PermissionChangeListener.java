@@ -0,0 +1,14 @@
+package com.oopdemo.interfaces;
+
+/**
+ * Interface defining contract for objects that observe permission grants.
+ * Demonstrates the observer pattern through interface implementation.
+ */
+public interface PermissionChangeListener {
+    /**
+     * Called after a permission has been granted to a manageable object.
+     * @param source The object that received the permission
+     * @param permission The permission that was added
+     */
+    void onPermissionAdded(Manageable source, String permission);
+}
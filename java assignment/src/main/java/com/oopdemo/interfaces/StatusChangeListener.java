@@ -0,0 +1,17 @@
+package com.oopdemo.interfaces;
+
+import com.oopdemo.enums.UserStatus;
+
+/**
+ * Interface defining contract for objects that observe status changes.
+ * Demonstrates the observer pattern through interface implementation.
+ */
+public interface StatusChangeListener {
+    /**
+     * Called after a manageable object has changed its status.
+     * @param source The object whose status changed
+     * @param oldStatus The status before the change
+     * @param newStatus The status after the change
+     */
+    void onStatusChanged(Manageable source, UserStatus oldStatus, UserStatus newStatus);
+}
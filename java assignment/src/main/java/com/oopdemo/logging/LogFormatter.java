@@ -0,0 +1,56 @@
+package com.oopdemo.logging;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+
+/**
+ * Turns one log event into a line of text.
+ * Full lines look like {@code 2024-01-01T12:00:00.123Z INFO  [main] User - message}.
+ */
+final class LogFormatter {
+    private LogFormatter() {
+    }
+    
+    static void format(StringBuilder line, long timestamp, LogLevel level, String thread, String logger,
+                       String template, Object arg1, Object arg2, Object arg3, int argCount,
+                       Throwable error, boolean plain) {
+        if (!plain) {
+            line.append(Instant.ofEpochMilli(timestamp)).append(' ');
+            String levelName = level.name();
+            line.append(levelName);
+            for (int i = levelName.length(); i < 5; i++) {
+                line.append(' ');
+            }
+            line.append(" [").append(thread).append("] ").append(logger).append(" - ");
+        }
+        appendMessage(line, template, arg1, arg2, arg3, argCount);
+        if (error != null) {
+            StringWriter trace = new StringWriter();
+            error.printStackTrace(new PrintWriter(trace));
+            line.append(System.lineSeparator()).append(trace.toString().trim());
+        }
+    }
+    
+    // Replaces each {} in the template with the next argument
+    private static void appendMessage(StringBuilder line, String template, Object arg1, Object arg2, Object arg3,
+                                      int argCount) {
+        if (template == null) {
+            line.append("null");
+            return;
+        }
+        int argIndex = 0;
+        int start = 0;
+        while (argIndex < argCount) {
+            int placeholder = template.indexOf("{}", start);
+            if (placeholder < 0) {
+                break;
+            }
+            line.append(template, start, placeholder);
+            line.append(argIndex == 0 ? arg1 : argIndex == 1 ? arg2 : arg3);
+            argIndex++;
+            start = placeholder + 2;
+        }
+        line.append(template, start, template.length());
+    }
+}
@@ -0,0 +1,23 @@
+package com.oopdemo.logging;
+
+/**
+ * Enumeration for log severity levels, from most to least verbose.
+ * OFF disables logging entirely.
+ */
+public enum LogLevel {
+    TRACE,
+    DEBUG,
+    INFO,
+    WARN,
+    ERROR,
+    OFF;
+    
+    /**
+     * Checks whether a message at this level passes a threshold.
+     * @param threshold The lowest level that is logged
+     * @return true if messages at this level should be logged
+     */
+    public boolean isAtLeast(LogLevel threshold) {
+        return this != OFF && ordinal() >= threshold.ordinal();
+    }
+}
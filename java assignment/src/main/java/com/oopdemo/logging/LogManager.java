@@ -0,0 +1,149 @@
+package com.oopdemo.logging;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Central configuration of the logging facility and factory for {@link Logger}s.
+ * 
+ * Three modes are supported:
+ * - ASYNC: callers hand events to a ring buffer and a background thread
+ *   formats and writes them in batches (the default)
+ * - SYNC: events are formatted and printed on the calling thread, which keeps
+ *   log lines in order with other console output (used by the console demo)
+ * - OFF: logging is switched off entirely; log calls return immediately
+ * 
+ * Defaults come from the system properties log.mode (async, sync, off),
+ * log.level (TRACE ... ERROR, OFF), log.format (full, plain) and
+ * log.buffer (ring buffer slots).
+ */
+public final class LogManager {
+    /**
+     * How log events reach the console.
+     */
+    public enum Mode {
+        SYNC,
+        ASYNC,
+        OFF
+    }
+    
+    static final int DEFAULT_BUFFER_SIZE = 8192;
+    
+    private static volatile Mode mode = Mode.ASYNC;
+    private static volatile LogLevel threshold = LogLevel.INFO;
+    // Lowest enabled level after applying the mode; the only field read by disabled log calls
+    private static volatile int enabledOrdinal = LogLevel.INFO.ordinal();
+    private static volatile boolean plainFormat;
+    private static volatile RingBufferAppender appender;
+    private static int bufferSize = DEFAULT_BUFFER_SIZE;
+    
+    static {
+        bufferSize = Integer.getInteger("log.buffer", DEFAULT_BUFFER_SIZE);
+        plainFormat = "plain".equalsIgnoreCase(System.getProperty("log.format"));
+        configure(parse(Mode.class, System.getProperty("log.mode"), Mode.ASYNC),
+                  parse(LogLevel.class, System.getProperty("log.level"), LogLevel.INFO));
+        Thread hook = new Thread(() -> flush(2000), "log-shutdown");
+        Runtime.getRuntime().addShutdownHook(hook);
+    }
+    
+    private LogManager() {
+    }
+    
+    /**
+     * Gets a logger named after a class.
+     * 
+     * @param type The class that logs
+     * @return A logger using the class's simple name
+     */
+    public static Logger getLogger(Class<?> type) {
+        return new Logger(type.getSimpleName());
+    }
+    
+    /**
+     * Changes the logging mode and level. Events still buffered when switching
+     * away from ASYNC are written out first.
+     * 
+     * @param newMode The new mode
+     * @param level The lowest level that is logged
+     */
+    public static synchronized void configure(Mode newMode, LogLevel level) {
+        RingBufferAppender previous = appender;
+        if (newMode == Mode.ASYNC && previous == null) {
+            appender = new RingBufferAppender(bufferSize, () -> plainFormat);
+        }
+        mode = newMode;
+        threshold = level;
+        enabledOrdinal = newMode == Mode.OFF ? LogLevel.OFF.ordinal() : level.ordinal();
+        if (newMode != Mode.ASYNC && previous != null) {
+            appender = null;
+            previous.shutdown(2000);
+        }
+    }
+    
+    /**
+     * Switches between the full format (time, level, thread, logger, message)
+     * and plain message-only lines.
+     * 
+     * @param plain true for message-only lines
+     */
+    public static void setPlainFormat(boolean plain) {
+        plainFormat = plain;
+    }
+    
+    public static Mode getMode() {
+        return mode;
+    }
+    
+    public static LogLevel getLevel() {
+        return threshold;
+    }
+    
+    /**
+     * Waits until all buffered events have been written.
+     * 
+     * @param timeoutMillis Maximum time to wait
+     * @return true if the buffer was drained in time
+     */
+    public static boolean flush(long timeoutMillis) {
+        RingBufferAppender current = appender;
+        return current == null || current.awaitDrained(TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+    }
+    
+    /**
+     * Gets how many events were dropped because the ring buffer was full.
+     * @return Number of dropped events since startup
+     */
+    public static long getDroppedCount() {
+        RingBufferAppender current = appender;
+        return current == null ? 0 : current.getDroppedCount();
+    }
+    
+    static boolean isEnabled(LogLevel level) {
+        return level.ordinal() >= enabledOrdinal;
+    }
+    
+    static void append(LogLevel level, String logger, String template, Object arg1, Object arg2, Object arg3,
+                       int argCount, Throwable error) {
+        RingBufferAppender current = appender;
+        if (mode == Mode.ASYNC && current != null) {
+            current.offer(level, logger, template, arg1, arg2, arg3, argCount, error);
+            return;
+        }
+        StringBuilder line = new StringBuilder(128);
+        LogFormatter.format(line, System.currentTimeMillis(), level, Thread.currentThread().getName(), logger,
+                            template, arg1, arg2, arg3, argCount, error, plainFormat);
+        System.out.println(line);
+    }
+    
+    private static <E extends Enum<E>> E parse(Class<E> type, String value, E defaultValue) {
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Ignoring invalid log setting: " + value);
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.oopdemo.logging;
+
+/**
+ * Named logger handed out by {@link LogManager}.
+ * 
+ * Messages are templates with {} placeholders. Arguments are only formatted
+ * when the level is enabled, and in async mode not on the caller's thread
+ * at all, so a disabled or deferred log call costs almost nothing.
+ */
+public final class Logger {
+    private final String name;
+    
+    Logger(String name) {
+        this.name = name;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Checks whether messages at a level would be logged.
+     * @param level The level to check
+     * @return true if the level is enabled
+     */
+    public boolean isEnabled(LogLevel level) {
+        return LogManager.isEnabled(level);
+    }
+    
+    public boolean isDebugEnabled() {
+        return LogManager.isEnabled(LogLevel.DEBUG);
+    }
+    
+    public void debug(String message) {
+        log(LogLevel.DEBUG, message, null, null, null, 0, null);
+    }
+    
+    public void debug(String template, Object arg) {
+        log(LogLevel.DEBUG, template, arg, null, null, 1, null);
+    }
+    
+    public void debug(String template, Object arg1, Object arg2) {
+        log(LogLevel.DEBUG, template, arg1, arg2, null, 2, null);
+    }
+    
+    public void info(String message) {
+        log(LogLevel.INFO, message, null, null, null, 0, null);
+    }
+    
+    public void info(String template, Object arg) {
+        log(LogLevel.INFO, template, arg, null, null, 1, null);
+    }
+    
+    public void info(String template, Object arg1, Object arg2) {
+        log(LogLevel.INFO, template, arg1, arg2, null, 2, null);
+    }
+    
+    public void info(String template, Object arg1, Object arg2, Object arg3) {
+        log(LogLevel.INFO, template, arg1, arg2, arg3, 3, null);
+    }
+    
+    public void warn(String message) {
+        log(LogLevel.WARN, message, null, null, null, 0, null);
+    }
+    
+    public void warn(String template, Object arg) {
+        log(LogLevel.WARN, template, arg, null, null, 1, null);
+    }
+    
+    public void warn(String template, Object arg1, Object arg2) {
+        log(LogLevel.WARN, template, arg1, arg2, null, 2, null);
+    }
+    
+    public void warn(String template, Object arg1, Object arg2, Object arg3) {
+        log(LogLevel.WARN, template, arg1, arg2, arg3, 3, null);
+    }
+    
+    public void error(String message) {
+        log(LogLevel.ERROR, message, null, null, null, 0, null);
+    }
+    
+    public void error(String message, Throwable error) {
+        log(LogLevel.ERROR, message, null, null, null, 0, error);
+    }
+    
+    public void error(String template, Object arg, Throwable error) {
+        log(LogLevel.ERROR, template, arg, null, null, 1, error);
+    }
+    
+    private void log(LogLevel level, String template, Object arg1, Object arg2, Object arg3,
+                     int argCount, Throwable error) {
+        if (LogManager.isEnabled(level)) {
+            LogManager.append(level, name, template, arg1, arg2, arg3, argCount, error);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.oopdemo.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Hands log events from any number of threads to one writer thread through a
+ * preallocated ring of slots.
+ * 
+ * Producers claim a sequence number with a CAS, copy the event's fields into
+ * the slot and publish it by writing the slot's sequence. Nothing is formatted
+ * or allocated on the producer side. When the ring is full the event is
+ * dropped and counted rather than blocking the caller.
+ * 
+ * The writer formats events in order and prints them in batches, so the
+ * console lock is taken once per batch instead of once per line.
+ */
+final class RingBufferAppender {
+    private static final int WRITE_BATCH_CHARS = 8 * 1024;
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+    
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final BooleanSupplier plainFormat;
+    private final Thread writer;
+    private volatile long consumed;
+    private volatile boolean writerParked;
+    private volatile boolean running = true;
+    
+    RingBufferAppender(int requestedSize, BooleanSupplier plainFormat) {
+        int size = Integer.highestOneBit(Math.max(16, requestedSize - 1) << 1); // Next power of two
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = size - 1;
+        this.plainFormat = plainFormat;
+        this.writer = new Thread(this::run, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+    
+    /**
+     * Publishes one event to the ring.
+     * @return false if the ring was full and the event was dropped
+     */
+    boolean offer(LogLevel level, String logger, String template, Object arg1, Object arg2, Object arg3,
+                  int argCount, Throwable error) {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed >= slots.length || !running) {
+                dropped.increment();
+                return false;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+        
+        Slot slot = slots[(int) (sequence & mask)];
+        slot.timestamp = System.currentTimeMillis();
+        slot.level = level;
+        slot.thread = Thread.currentThread().getName();
+        slot.logger = logger;
+        slot.template = template;
+        slot.arg1 = arg1;
+        slot.arg2 = arg2;
+        slot.arg3 = arg3;
+        slot.argCount = argCount;
+        slot.error = error;
+        slot.sequence = sequence; // Volatile write publishes the fields above
+        
+        if (writerParked) {
+            LockSupport.unpark(writer);
+        }
+        return true;
+    }
+    
+    long getDroppedCount() {
+        return dropped.sum();
+    }
+    
+    // Waits until everything claimed so far has been written
+    boolean awaitDrained(long timeoutNanos) {
+        long target = claimed.get();
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (consumed < target) {
+            if (System.nanoTime() - deadline >= 0 || !writer.isAlive()) {
+                return false;
+            }
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(100_000);
+        }
+        return true;
+    }
+    
+    void shutdown(long timeoutMillis) {
+        awaitDrained(timeoutMillis * 1_000_000L);
+        running = false;
+        LockSupport.unpark(writer);
+    }
+    
+    private void run() {
+        StringBuilder pending = new StringBuilder(WRITE_BATCH_CHARS * 2);
+        long next = 0;
+        long lastReported = 0;
+        while (true) {
+            Slot slot = slots[(int) (next & mask)];
+            if (slot.sequence == next) {
+                LogFormatter.format(pending, slot.timestamp, slot.level, slot.thread, slot.logger, slot.template,
+                                    slot.arg1, slot.arg2, slot.arg3, slot.argCount, slot.error,
+                                    plainFormat.getAsBoolean());
+                pending.append(System.lineSeparator());
+                slot.clear();
+                consumed = ++next; // Frees the slot for producers
+                if (pending.length() >= WRITE_BATCH_CHARS) {
+                    write(pending);
+                }
+                continue;
+            }
+            
+            long droppedNow = dropped.sum();
+            if (droppedNow != lastReported) {
+                pending.append("WARN  Log buffer full, dropped ").append(droppedNow - lastReported)
+                       .append(" events").append(System.lineSeparator());
+                lastReported = droppedNow;
+            }
+            if (pending.length() > 0) {
+                write(pending);
+            }
+            if (!running && next == claimed.get()) {
+                return;
+            }
+            writerParked = true;
+            if (slot.sequence != next) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            writerParked = false;
+        }
+    }
+    
+    private static void write(StringBuilder pending) {
+        System.out.print(pending);
+        System.out.flush();
+        pending.setLength(0);
+    }
+    
+    /**
+     * One preallocated event holder.
+     */
+    private static final class Slot {
+        volatile long sequence = -1;
+        long timestamp;
+        LogLevel level;
+        String thread;
+        String logger;
+        String template;
+        Object arg1;
+        Object arg2;
+        Object arg3;
+        int argCount;
+        Throwable error;
+        
+        void clear() {
+            arg1 = null;
+            arg2 = null;
+            arg3 = null;
+            error = null;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.oopdemo.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Holds the metrics of a process and renders them in the Prometheus text
+ * format or as a map for JSON.
+ * 
+ * Timers are grouped in families, e.g. "http_server_requests" with one
+ * timer per route; each timer is created on first use and kept. Gauges are
+ * read from suppliers such as the getStats() methods of other components
+ * when the metrics are rendered, so they cost nothing in between.
+ * 
+ * Latency percentiles cover everything recorded since start, like the
+ * error counts next to them.
+ */
+public final class MetricsRegistry {
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+    private static final String[] QUANTILE_NAMES = {"p50", "p99", "p999"};
+    
+    private final Map<String, Timers> timers = new ConcurrentHashMap<>();
+    private final Map<String, Supplier<Map<String, Object>>> gauges = new ConcurrentHashMap<>();
+    
+    /**
+     * Gets a family of timers, creating it on first use.
+     * 
+     * @param family Metric name prefix, e.g. "http_server_requests"
+     * @param label Label that tells the timers apart, e.g. "route"
+     * @param help Description shown in the Prometheus output
+     * @return The family
+     */
+    public Timers timers(String family, String label, String help) {
+        return timers.computeIfAbsent(family, name -> new Timers(name, label, help));
+    }
+    
+    /**
+     * Registers gauges read from a map of statistics. Numbers become gauges
+     * named {@code <prefix>_<key>}; nested maps, e.g. one per notification
+     * sink, add their key as a "name" label. Other values are left out of
+     * the Prometheus output.
+     * 
+     * @param prefix Metric name prefix
+     * @param stats Called every time the metrics are rendered
+     */
+    public void gauges(String prefix, Supplier<Map<String, Object>> stats) {
+        gauges.put(prefix, stats);
+    }
+    
+    /**
+     * Renders every metric in the Prometheus text exposition format.
+     * @return The text, ending with a newline
+     */
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder(4096);
+        for (Timers family : sorted(timers)) {
+            family.writePrometheus(out);
+        }
+        for (Map.Entry<String, Supplier<Map<String, Object>>> entry : sortedEntries(gauges)) {
+            Map<String, List<String>> series = new LinkedHashMap<>();
+            collectGauges(metricName(entry.getKey()), null, entry.getValue().get(), series);
+            for (Map.Entry<String, List<String>> gauge : series.entrySet()) {
+                out.append("# TYPE ").append(gauge.getKey()).append(" gauge\n");
+                for (String line : gauge.getValue()) {
+                    out.append(line).append('\n');
+                }
+            }
+        }
+        return out.toString();
+    }
+    
+    /**
+     * Gets every metric as nested maps: timer families by timer name, and
+     * the statistics maps of the gauges as they are.
+     * @return Map that can be written as JSON
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (Timers family : sorted(timers)) {
+            result.put(family.family, family.toMap());
+        }
+        for (Map.Entry<String, Supplier<Map<String, Object>>> entry : sortedEntries(gauges)) {
+            result.put(entry.getKey(), entry.getValue().get());
+        }
+        return result;
+    }
+    
+    // Helper methods
+    private static List<Timers> sorted(Map<String, Timers> map) {
+        List<Timers> list = new ArrayList<>();
+        for (Map.Entry<String, Timers> entry : sortedEntries(map)) {
+            list.add(entry.getValue());
+        }
+        return list;
+    }
+    
+    private static <V> List<Map.Entry<String, V>> sortedEntries(Map<String, V> map) {
+        List<Map.Entry<String, V>> entries = new ArrayList<>(map.entrySet());
+        entries.sort(Map.Entry.comparingByKey());
+        return entries;
+    }
+    
+    private static void collectGauges(String prefix, String labelValue, Map<String, Object> stats,
+                                      Map<String, List<String>> series) {
+        if (stats == null) {
+            return;
+        }
+        for (Map.Entry<String, Object> entry : stats.entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof Number) {
+                String name = prefix + "_" + metricName(entry.getKey());
+                String labels = labelValue == null ? "" : "{name=\"" + escapeLabel(labelValue) + "\"}";
+                boolean integral = value instanceof Long || value instanceof Integer;
+                series.computeIfAbsent(name, key -> new ArrayList<>())
+                        .add(name + labels + " " + (integral ? value : ((Number) value).doubleValue()));
+            } else if (value instanceof Map && labelValue == null) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> nested = (Map<String, Object>) value;
+                collectGauges(prefix, entry.getKey(), nested, series);
+            }
+        }
+    }
+    
+    // camelCase and punctuation to snake_case, e.g. directBuffers -> direct_buffers
+    static String metricName(String key) {
+        StringBuilder name = new StringBuilder(key.length() + 8);
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (Character.isUpperCase(c)) {
+                if (i > 0) {
+                    name.append('_');
+                }
+                name.append(Character.toLowerCase(c));
+            } else if (Character.isLetterOrDigit(c) && c < 0x80) {
+                name.append(c);
+            } else {
+                name.append('_');
+            }
+        }
+        return name.toString();
+    }
+    
+    static String escapeLabel(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+    
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+    
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1e3) / 1e3; // Microsecond precision is plenty
+    }
+    
+    /**
+     * Timers of one metric family, one per label value.
+     */
+    public static final class Timers {
+        private final String family;
+        private final String label;
+        private final String help;
+        private final ConcurrentMap<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+        
+        private Timers(String family, String label, String help) {
+            this.family = family;
+            this.label = label;
+            this.help = help;
+        }
+        
+        /**
+         * Gets the timer for a label value, creating it on first use.
+         * Keep the label values few, e.g. routes rather than raw URLs.
+         */
+        public OperationMetrics get(String name) {
+            OperationMetrics metrics = operations.get(name);
+            return metrics != null ? metrics : operations.computeIfAbsent(name, OperationMetrics::new);
+        }
+        
+        private void writePrometheus(StringBuilder out) {
+            List<OperationMetrics> list = new ArrayList<>();
+            List<LatencyHistogram.Snapshot> snapshots = new ArrayList<>();
+            for (Map.Entry<String, OperationMetrics> entry : sortedEntries(operations)) {
+                list.add(entry.getValue());
+                snapshots.add(entry.getValue().getLatency().snapshot());
+            }
+            String seconds = family + "_seconds";
+            out.append("# HELP ").append(seconds).append(' ').append(help).append('\n');
+            out.append("# TYPE ").append(seconds).append(" summary\n");
+            for (int i = 0; i < list.size(); i++) {
+                String labels = label + "=\"" + escapeLabel(list.get(i).getName()) + "\"";
+                LatencyHistogram.Snapshot snapshot = snapshots.get(i);
+                for (double quantile : QUANTILES) {
+                    out.append(seconds).append('{').append(labels).append(",quantile=\"").append(quantile).append("\"} ")
+                            .append(seconds(snapshot.getValueAtQuantile(quantile))).append('\n');
+                }
+                out.append(seconds).append("_sum{").append(labels).append("} ")
+                        .append(seconds(snapshot.getSumNanos())).append('\n');
+                out.append(seconds).append("_count{").append(labels).append("} ").append(snapshot.getCount()).append('\n');
+            }
+            out.append("# TYPE ").append(family).append("_max_seconds gauge\n");
+            for (int i = 0; i < list.size(); i++) {
+                out.append(family).append("_max_seconds{").append(label).append("=\"")
+                        .append(escapeLabel(list.get(i).getName())).append("\"} ")
+                        .append(seconds(snapshots.get(i).getMaxNanos())).append('\n');
+            }
+            out.append("# TYPE ").append(family).append("_errors_total counter\n");
+            for (OperationMetrics metrics : list) {
+                out.append(family).append("_errors_total{").append(label).append("=\"")
+                        .append(escapeLabel(metrics.getName())).append("\"} ").append(metrics.getErrors()).append('\n');
+            }
+            out.append("# TYPE ").append(family).append("_in_flight gauge\n");
+            for (OperationMetrics metrics : list) {
+                out.append(family).append("_in_flight{").append(label).append("=\"")
+                        .append(escapeLabel(metrics.getName())).append("\"} ").append(metrics.getInFlight()).append('\n');
+            }
+        }
+        
+        private Map<String, Object> toMap() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            for (Map.Entry<String, OperationMetrics> entry : sortedEntries(operations)) {
+                OperationMetrics metrics = entry.getValue();
+                LatencyHistogram.Snapshot snapshot = metrics.getLatency().snapshot();
+                Map<String, Object> values = new LinkedHashMap<>();
+                values.put("count", snapshot.getCount());
+                values.put("errors", metrics.getErrors());
+                values.put("inFlight", metrics.getInFlight());
+                values.put("meanMillis", snapshot.getCount() == 0 ? 0.0 : millis(snapshot.getSumNanos() / snapshot.getCount()));
+                for (int i = 0; i < QUANTILES.length; i++) {
+                    values.put(QUANTILE_NAMES[i] + "Millis", millis(snapshot.getValueAtQuantile(QUANTILES[i])));
+                }
+                values.put("maxMillis", millis(snapshot.getMaxNanos()));
+                result.put(entry.getKey(), values);
+            }
+            return result;
+        }
+    }
+}
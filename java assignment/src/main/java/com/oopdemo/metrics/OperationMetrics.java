@@ -0,0 +1,62 @@
+package com.oopdemo.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency, error and in-flight counts of one operation, e.g. one HTTP
+ * route. All updates are lock-free, so it can sit on every request path.
+ * 
+ * Usage: {@code long started = metrics.start(); ... metrics.stop(started, failed);}
+ */
+public final class OperationMetrics {
+    private final String name;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder inFlight = new LongAdder();
+    
+    OperationMetrics(String name) {
+        this.name = name;
+    }
+    
+    /**
+     * Marks the start of a call.
+     * @return Start time to pass to {@link #stop(long, boolean)}
+     */
+    public long start() {
+        inFlight.increment();
+        return System.nanoTime();
+    }
+    
+    /**
+     * Marks the end of a call and records its duration.
+     * 
+     * @param startNanos The value {@link #start()} returned
+     * @param failed Whether the call counts as an error
+     */
+    public void stop(long startNanos, boolean failed) {
+        latency.record(System.nanoTime() - startNanos);
+        if (failed) {
+            errors.increment();
+        }
+        inFlight.decrement();
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+    
+    public long getErrors() {
+        return errors.sum();
+    }
+    
+    /**
+     * Gets the number of calls started but not yet stopped.
+     */
+    public long getInFlight() {
+        return inFlight.sum();
+    }
+}
@@ -0,0 +1,77 @@
+package com.oopdemo.notifications;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Sink that appends notifications to a local file, one line each.
+ * A batch is written with a single flush.
+ */
+public class FileNotificationSink implements NotificationSink {
+    private final Path file;
+    private BufferedWriter writer;
+    
+    /**
+     * Creates a sink appending to the given file; parent directories are created on demand.
+     * 
+     * @param file The file to append to
+     */
+    public FileNotificationSink(Path file) {
+        this.file = file;
+    }
+    
+    @Override
+    public String getName() {
+        return "file:" + file.getFileName();
+    }
+    
+    @Override
+    public void deliver(List<Notification> batch) throws IOException {
+        // Only the dispatcher's single worker for this sink calls deliver
+        if (writer == null) {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        try {
+            for (Notification notification : batch) {
+                writer.write(Instant.ofEpochMilli(notification.getCreatedAt()).toString());
+                writer.write(' ');
+                writer.write(notification.getRecipientId());
+                writer.write(' ');
+                writer.write(notification.toString());
+                writer.newLine();
+            }
+            writer.flush();
+        } catch (IOException e) {
+            // Reopen on the next attempt
+            closeQuietly();
+            throw e;
+        }
+    }
+    
+    @Override
+    public void close() {
+        closeQuietly();
+    }
+    
+    private void closeQuietly() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException ignored) {
+                // Nothing left to do with a broken writer
+            }
+            writer = null;
+        }
+    }
+}
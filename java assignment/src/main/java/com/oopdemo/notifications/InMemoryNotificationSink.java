@@ -0,0 +1,57 @@
+package com.oopdemo.notifications;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sink that keeps delivered notifications in memory.
+ * Meant for tests and demos; it can also be told to fail to exercise retries.
+ */
+public class InMemoryNotificationSink implements NotificationSink {
+    private final List<Notification> delivered = new ArrayList<>();
+    private final AtomicInteger failuresToInject = new AtomicInteger();
+    private final AtomicInteger batches = new AtomicInteger();
+    
+    @Override
+    public String getName() {
+        return "memory";
+    }
+    
+    @Override
+    public void deliver(List<Notification> batch) {
+        if (failuresToInject.getAndUpdate(n -> n > 0 ? n - 1 : 0) > 0) {
+            throw new IllegalStateException("Injected delivery failure");
+        }
+        batches.incrementAndGet();
+        synchronized (delivered) {
+            delivered.addAll(batch);
+        }
+    }
+    
+    /**
+     * Makes the next deliveries fail.
+     * @param count How many delivery attempts should throw
+     */
+    public void failNext(int count) {
+        failuresToInject.set(count);
+    }
+    
+    /**
+     * Gets a copy of everything delivered so far.
+     * @return Delivered notifications in delivery order
+     */
+    public List<Notification> getDelivered() {
+        synchronized (delivered) {
+            return new ArrayList<>(delivered);
+        }
+    }
+    
+    /**
+     * Gets how many batches were delivered successfully.
+     * @return The batch count
+     */
+    public int getBatchCount() {
+        return batches.get();
+    }
+}
@@ -0,0 +1,63 @@
+package com.oopdemo.notifications;
+
+/**
+ * Immutable notification waiting to be delivered.
+ * Carries copies of the recipient details, so sinks never touch user objects.
+ */
+public final class Notification {
+    private final String recipientId;
+    private final String recipientName;
+    private final String contactInfo;
+    private final String message;
+    private final boolean audited;
+    private final long createdAt;
+    
+    /**
+     * Creates a notification.
+     * 
+     * @param recipientId Id of the receiving user
+     * @param recipientName Name of the receiving user
+     * @param contactInfo Where to send it (the user's contact info)
+     * @param message The notification text
+     * @param audited true if the notification must also be kept for audit (admin notifications)
+     */
+    public Notification(String recipientId, String recipientName, String contactInfo,
+                        String message, boolean audited) {
+        this.recipientId = recipientId;
+        this.recipientName = recipientName;
+        this.contactInfo = contactInfo;
+        this.message = message;
+        this.audited = audited;
+        this.createdAt = System.currentTimeMillis();
+    }
+    
+    public String getRecipientId() {
+        return recipientId;
+    }
+    
+    public String getRecipientName() {
+        return recipientName;
+    }
+    
+    public String getContactInfo() {
+        return contactInfo;
+    }
+    
+    public String getMessage() {
+        return message;
+    }
+    
+    public boolean isAudited() {
+        return audited;
+    }
+    
+    public long getCreatedAt() {
+        return createdAt;
+    }
+    
+    @Override
+    public String toString() {
+        return (audited ? "ADMIN NOTIFICATION to " : "Notification to ") +
+               recipientName + " (" + contactInfo + "): " + message;
+    }
+}
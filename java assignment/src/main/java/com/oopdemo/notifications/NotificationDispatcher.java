@@ -0,0 +1,255 @@
+package com.oopdemo.notifications;
+
+import com.oopdemo.logging.LogManager;
+import com.oopdemo.logging.Logger;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Asynchronous, batched delivery of notifications to pluggable sinks.
+ * 
+ * Every sink gets its own bounded queue and worker thread, so a slow sink
+ * never holds up the others. Callers only pay for an enqueue: when a queue
+ * is full, {@link #dispatch} waits briefly and then reports the notification
+ * as rejected, which pushes back on producers instead of growing memory.
+ * 
+ * Workers drain up to a batch of notifications at a time (waiting up to the
+ * linger time for a batch to fill) and retry failed batches with
+ * exponential backoff before counting them as failed.
+ * 
+ * The dispatcher installed with {@link #install} is used by
+ * {@code User.sendNotification}, so every Notifiable user goes through it.
+ */
+public class NotificationDispatcher {
+    private static final Logger LOG = LogManager.getLogger(NotificationDispatcher.class);
+    
+    private static volatile NotificationDispatcher installed;
+    
+    private final List<Channel> channels = new ArrayList<>();
+    private final long enqueueTimeoutMillis;
+    private volatile boolean running;
+    
+    /**
+     * Creates a dispatcher. Add sinks, then call {@link #start()}.
+     * 
+     * @param enqueueTimeoutMillis How long dispatch may wait for queue space before rejecting
+     */
+    public NotificationDispatcher(long enqueueTimeoutMillis) {
+        this.enqueueTimeoutMillis = enqueueTimeoutMillis;
+    }
+    
+    /**
+     * Makes a dispatcher the one used by all users, or removes it with null.
+     * Without one, users fall back to printing notifications.
+     * 
+     * @param dispatcher The dispatcher to install
+     */
+    public static void install(NotificationDispatcher dispatcher) {
+        installed = dispatcher;
+    }
+    
+    /**
+     * Gets the installed dispatcher.
+     * @return The dispatcher, or null if none is installed
+     */
+    public static NotificationDispatcher getInstalled() {
+        return installed;
+    }
+    
+    /**
+     * Adds a sink with its own queue and batching settings.
+     * 
+     * @param sink The sink to deliver to
+     * @param queueCapacity Maximum notifications waiting for this sink
+     * @param batchSize Maximum notifications per deliver call
+     * @param lingerMillis How long to wait for a batch to fill up
+     * @param maxRetries Retries per batch before it is counted as failed
+     * @return This dispatcher
+     */
+    public synchronized NotificationDispatcher addSink(NotificationSink sink, int queueCapacity, int batchSize,
+                                                       long lingerMillis, int maxRetries) {
+        if (running) {
+            throw new IllegalStateException("Sinks must be added before start()");
+        }
+        channels.add(new Channel(sink, queueCapacity, batchSize, lingerMillis, maxRetries));
+        return this;
+    }
+    
+    /**
+     * Starts one worker thread per sink.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (Channel channel : channels) {
+            Thread worker = new Thread(channel::run, "notify-" + channel.sink.getName());
+            worker.setDaemon(true);
+            channel.worker = worker;
+            worker.start();
+        }
+    }
+    
+    /**
+     * Queues a notification for every sink.
+     * 
+     * @param notification The notification to send
+     * @return true if all sinks accepted it, false if a queue stayed full (the notification was
+     *         dropped for those sinks)
+     */
+    public boolean dispatch(Notification notification) {
+        if (!running) {
+            return false;
+        }
+        boolean accepted = true;
+        for (Channel channel : channels) {
+            try {
+                if (channel.queue.offer(notification, enqueueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    channel.enqueued.increment();
+                } else {
+                    channel.rejected.increment();
+                    accepted = false;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                channel.rejected.increment();
+                accepted = false;
+            }
+        }
+        return accepted;
+    }
+    
+    /**
+     * Stops accepting notifications, delivers what is queued and closes the sinks.
+     * 
+     * @param timeoutMillis How long to wait for each sink to drain
+     */
+    public synchronized void shutdown(long timeoutMillis) {
+        running = false;
+        for (Channel channel : channels) {
+            if (channel.worker == null) {
+                continue;
+            }
+            try {
+                channel.worker.join(timeoutMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    /**
+     * Gets delivery statistics per sink.
+     * @return Map from sink name to its counters
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (Channel channel : channels) {
+            Map<String, Object> sinkStats = new LinkedHashMap<>();
+            sinkStats.put("queued", channel.queue.size());
+            sinkStats.put("enqueued", channel.enqueued.sum());
+            sinkStats.put("rejected", channel.rejected.sum());
+            sinkStats.put("delivered", channel.delivered.sum());
+            sinkStats.put("batches", channel.batches.sum());
+            sinkStats.put("retries", channel.retries.sum());
+            sinkStats.put("failed", channel.failed.sum());
+            stats.put(channel.sink.getName(), sinkStats);
+        }
+        return stats;
+    }
+    
+    /**
+     * Queue, settings, worker and counters of one sink.
+     */
+    private final class Channel {
+        private static final long INITIAL_BACKOFF_MILLIS = 50;
+        
+        final NotificationSink sink;
+        final BlockingQueue<Notification> queue;
+        final int batchSize;
+        final long lingerNanos;
+        final int maxRetries;
+        final LongAdder enqueued = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+        final LongAdder delivered = new LongAdder();
+        final LongAdder batches = new LongAdder();
+        final LongAdder retries = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        Thread worker;
+        
+        Channel(NotificationSink sink, int queueCapacity, int batchSize, long lingerMillis, int maxRetries) {
+            this.sink = sink;
+            this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+            this.batchSize = Math.max(1, batchSize);
+            this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, lingerMillis));
+            this.maxRetries = Math.max(0, maxRetries);
+        }
+        
+        void run() {
+            List<Notification> batch = new ArrayList<>(batchSize);
+            try {
+                while (running || !queue.isEmpty()) {
+                    Notification first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    fill(batch);
+                    deliverWithRetry(batch);
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                sink.close();
+            }
+        }
+        
+        // Takes what is already queued, then lingers for the rest of the batch
+        private void fill(List<Notification> batch) throws InterruptedException {
+            queue.drainTo(batch, batchSize - batch.size());
+            long deadline = System.nanoTime() + lingerNanos;
+            while (batch.size() < batchSize && running) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                Notification next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    break;
+                }
+                batch.add(next);
+                queue.drainTo(batch, batchSize - batch.size());
+            }
+        }
+        
+        private void deliverWithRetry(List<Notification> batch) throws InterruptedException {
+            long backoff = INITIAL_BACKOFF_MILLIS;
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    sink.deliver(batch);
+                    delivered.add(batch.size());
+                    batches.increment();
+                    return;
+                } catch (Exception e) {
+                    if (attempt >= maxRetries) {
+                        failed.add(batch.size());
+                        LOG.warn("Notification sink {} dropped {} notifications: {}",
+                                 sink.getName(), batch.size(), e.getMessage());
+                        return;
+                    }
+                    retries.increment();
+                    Thread.sleep(backoff);
+                    backoff = Math.min(backoff * 2, 5000);
+                }
+            }
+        }
+    }
+}
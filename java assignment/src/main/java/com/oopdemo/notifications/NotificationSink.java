@@ -0,0 +1,30 @@
+package com.oopdemo.notifications;
+
+import java.util.List;
+
+/**
+ * Interface defining contract for destinations that deliver notifications.
+ * Sinks receive notifications in batches so they can amortize expensive I/O.
+ */
+public interface NotificationSink {
+    /**
+     * Gets a short name for statistics and log messages.
+     * @return The sink name
+     */
+    String getName();
+    
+    /**
+     * Delivers a batch of notifications.
+     * Throwing an exception makes the dispatcher retry the whole batch.
+     * 
+     * @param batch The notifications to deliver, oldest first
+     * @throws Exception if the batch could not be delivered
+     */
+    void deliver(List<Notification> batch) throws Exception;
+    
+    /**
+     * Releases resources held by the sink. Called once after the last batch.
+     */
+    default void close() {
+    }
+}
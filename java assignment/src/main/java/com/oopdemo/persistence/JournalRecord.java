@@ -0,0 +1,177 @@
+package com.oopdemo.persistence;
+
+import com.oopdemo.users.AdminUser;
+import com.oopdemo.users.User;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Binary format shared by journal segments and snapshots.
+ * 
+ * Every file starts with {@link #MAGIC} and {@link #VERSION}. It is followed
+ * by framed records: {@code int length, int crc32, byte type, payload}, where
+ * length and checksum cover the type and payload. A record whose checksum
+ * does not match marks the end of the valid data, e.g. a write torn by a crash.
+ * 
+ * Strings are stored as an int byte count (-1 for null) and UTF-8 bytes.
+ */
+final class JournalRecord {
+    static final int MAGIC = 0x4F55524A; // "OURJ"
+    static final int VERSION = 1;
+    static final int FILE_HEADER_BYTES = 8;
+    static final int FRAME_HEADER_BYTES = 8;
+    static final int MAX_RECORD_BYTES = 1 << 20;
+    
+    // Record types
+    static final byte USER = 1;
+    static final byte STATUS = 2;
+    static final byte PERMISSION = 3;
+    static final byte END = 4;
+    
+    // User kinds inside USER records
+    static final byte REGULAR_USER = 0;
+    static final byte ADMIN_USER = 1;
+    
+    private JournalRecord() {
+    }
+    
+    /**
+     * Encodes the full current state of a user.
+     * Holds the user's lock so status and permissions are read consistently.
+     */
+    static byte[] user(User user) {
+        Encoder out = new Encoder(FRAME_HEADER_BYTES + 128, USER);
+        synchronized (user) {
+            boolean admin = user instanceof AdminUser;
+            out.putByte(admin ? ADMIN_USER : REGULAR_USER);
+            out.putString(user.getUserId());
+            out.putString(user.getName());
+            out.putString(user.getEmail());
+            out.putLong(user.getRegistrationEpochDay());
+            out.putString(user.getStatus().name());
+            List<String> permissions = admin ? ((AdminUser) user).getAdminPermissions() : List.of();
+            out.putInt(permissions.size());
+            for (String permission : permissions) {
+                out.putString(permission);
+            }
+        }
+        return out.frame();
+    }
+    
+    static byte[] status(String userId, String status) {
+        Encoder out = new Encoder(FRAME_HEADER_BYTES + 48, STATUS);
+        out.putString(userId);
+        out.putString(status);
+        return out.frame();
+    }
+    
+    static byte[] permission(String userId, String permission) {
+        Encoder out = new Encoder(FRAME_HEADER_BYTES + 48, PERMISSION);
+        out.putString(userId);
+        out.putString(permission);
+        return out.frame();
+    }
+    
+    /**
+     * Encodes the trailer of a snapshot, which proves the snapshot is complete.
+     */
+    static byte[] end(long userCount) {
+        Encoder out = new Encoder(FRAME_HEADER_BYTES + 9, END);
+        out.putLong(userCount);
+        return out.frame();
+    }
+    
+    static void writeFileHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+    }
+    
+    /**
+     * Reads a string written by the encoder.
+     * 
+     * @param buffer Buffer positioned at the string
+     * @param scratch Reusable array for the UTF-8 bytes; replaced when too small
+     */
+    static String getString(ByteBuffer buffer, byte[][] scratch) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = scratch[0];
+        if (bytes.length < length) {
+            bytes = new byte[Math.max(length, bytes.length * 2)];
+            scratch[0] = bytes;
+        }
+        buffer.get(bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Growable buffer that builds one framed record.
+     */
+    private static final class Encoder {
+        private byte[] bytes;
+        private int length = FRAME_HEADER_BYTES;
+        
+        Encoder(int capacity, byte type) {
+            bytes = new byte[capacity];
+            putByte(type);
+        }
+        
+        void putByte(byte value) {
+            ensure(1);
+            bytes[length++] = value;
+        }
+        
+        void putInt(int value) {
+            ensure(4);
+            bytes[length++] = (byte) (value >>> 24);
+            bytes[length++] = (byte) (value >>> 16);
+            bytes[length++] = (byte) (value >>> 8);
+            bytes[length++] = (byte) value;
+        }
+        
+        void putLong(long value) {
+            putInt((int) (value >>> 32));
+            putInt((int) value);
+        }
+        
+        void putString(String value) {
+            if (value == null) {
+                putInt(-1);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            putInt(utf8.length);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, bytes, length, utf8.length);
+            length += utf8.length;
+        }
+        
+        // Fills in length and checksum and returns exactly the record's bytes
+        byte[] frame() {
+            int bodyLength = length - FRAME_HEADER_BYTES;
+            if (bodyLength > MAX_RECORD_BYTES) {
+                throw new IllegalArgumentException("Journal record too large: " + bodyLength + " bytes");
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes, FRAME_HEADER_BYTES, bodyLength);
+            ByteBuffer.wrap(bytes).putInt(bodyLength).putInt((int) crc.getValue());
+            return length == bytes.length ? bytes : Arrays.copyOf(bytes, length);
+        }
+        
+        private void ensure(int n) {
+            if (length + n > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + n));
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.oopdemo.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Reads the records of a journal segment or snapshot through memory-mapped
+ * windows of the file, so recovery does not copy the data through the heap
+ * and is limited by how fast records can be applied rather than by I/O.
+ */
+final class RecordReader {
+    private static final long WINDOW_BYTES = 256L * 1024 * 1024;
+    
+    /**
+     * Receives each valid record.
+     */
+    interface Handler {
+        /**
+         * @param type The record type
+         * @param payload The payload, positioned after the type byte; only valid during the call
+         */
+        void onRecord(byte type, ByteBuffer payload) throws IOException;
+    }
+    
+    private RecordReader() {
+    }
+    
+    /**
+     * Passes every record of a file to the handler, stopping at the first
+     * record that is incomplete or fails its checksum.
+     * 
+     * @param file The file to read
+     * @param handler Receives the records in file order
+     * @return The file offset just after the last valid record
+     */
+    static long read(Path file, Handler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < JournalRecord.FILE_HEADER_BYTES) {
+                return 0;
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, JournalRecord.FILE_HEADER_BYTES);
+            if (header.getInt() != JournalRecord.MAGIC || header.getInt() != JournalRecord.VERSION) {
+                throw new IOException("Not a journal file: " + file);
+            }
+            
+            CRC32 crc = new CRC32();
+            long offset = JournalRecord.FILE_HEADER_BYTES;
+            while (offset < size) {
+                long windowSize = Math.min(WINDOW_BYTES, size - offset);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, offset, windowSize);
+                int consumed = readWindow(window, crc, handler);
+                if (consumed < 0) {
+                    return offset - consumed - 1; // Corrupt record
+                }
+                if (consumed == 0 || offset + windowSize == size) {
+                    return offset + consumed; // End of file, possibly with a torn record
+                }
+                offset += consumed;
+            }
+            return offset;
+        }
+    }
+    
+    // Returns the bytes consumed, or -(offset + 1) of a corrupt record
+    private static int readWindow(ByteBuffer window, CRC32 crc, Handler handler) throws IOException {
+        int position = 0;
+        int limit = window.limit();
+        while (limit - position >= JournalRecord.FRAME_HEADER_BYTES) {
+            int length = window.getInt(position);
+            int checksum = window.getInt(position + 4);
+            if (length <= 0 || length > JournalRecord.MAX_RECORD_BYTES) {
+                return -(position + 1);
+            }
+            if (limit - position - JournalRecord.FRAME_HEADER_BYTES < length) {
+                break; // Continues in the next window, or is torn
+            }
+            ByteBuffer body = window.slice(position + JournalRecord.FRAME_HEADER_BYTES, length);
+            crc.reset();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                return -(position + 1);
+            }
+            byte type = body.get();
+            handler.onRecord(type, body);
+            position += JournalRecord.FRAME_HEADER_BYTES + length;
+        }
+        return position;
+    }
+}
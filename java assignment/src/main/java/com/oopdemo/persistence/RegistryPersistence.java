@@ -0,0 +1,384 @@
+package com.oopdemo.persistence;
+
+import com.oopdemo.enums.UserStatus;
+import com.oopdemo.logging.LogManager;
+import com.oopdemo.logging.Logger;
+import com.oopdemo.registry.UserRegistry;
+import com.oopdemo.users.AdminUser;
+import com.oopdemo.users.RegularUser;
+import com.oopdemo.users.User;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Makes a UserRegistry durable with a write-ahead log and periodic snapshots.
+ * 
+ * On {@link #open} the latest snapshot is loaded and the journal segments
+ * written after it are replayed, both through memory-mapped reads. From then
+ * on a {@link UserJournal} records every change. A background task writes a
+ * compacted snapshot (one record per user with its current state) when the
+ * snapshot interval has passed or the journal has grown large, and then
+ * deletes the journal segments the snapshot covers.
+ * 
+ * Recovered users are added to the registry in large batches spread over
+ * all processors. Snapshots are taken while the registry keeps changing. Replaying the journal
+ * on top of such a snapshot is still correct because every record sets a
+ * value rather than changing it relative to the previous one.
+ */
+public class RegistryPersistence implements Closeable {
+    private static final Logger LOG = LogManager.getLogger(RegistryPersistence.class);
+    static final long SEGMENT_BYTES = 64L * 1024 * 1024;
+    static final long SNAPSHOT_AFTER_BYTES = 256L * 1024 * 1024;
+    private static final long CHECK_INTERVAL_SECONDS = 10;
+    private static final int SNAPSHOT_BUFFER_BYTES = 1024 * 1024;
+    
+    private final Path directory;
+    private final UserRegistry registry;
+    private final UserJournal journal;
+    private final long snapshotIntervalMillis;
+    private final ScheduledExecutorService scheduler;
+    private volatile long lastSnapshotAt = System.currentTimeMillis();
+    
+    private RegistryPersistence(Path directory, UserRegistry registry, UserJournal journal,
+                                long snapshotIntervalSeconds) {
+        this.directory = directory;
+        this.registry = registry;
+        this.journal = journal;
+        this.snapshotIntervalMillis = TimeUnit.SECONDS.toMillis(snapshotIntervalSeconds);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "registry-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Recovers the registry from a data directory and starts journaling changes.
+     * 
+     * @param directory Directory for snapshots and journal segments; created if missing
+     * @param registry Empty registry to restore into
+     * @param fsync Whether changes are forced to disk before they count as persisted
+     * @param snapshotIntervalSeconds How often a snapshot is taken while there are changes (0 to disable)
+     * @return The running persistence layer
+     */
+    public static RegistryPersistence open(Path directory, UserRegistry registry, boolean fsync,
+                                           long snapshotIntervalSeconds) throws IOException {
+        Files.createDirectories(directory);
+        long nextSegment = new Recovery(directory, registry).run();
+        
+        UserJournal journal = new UserJournal(directory, nextSegment, fsync, SEGMENT_BYTES);
+        registry.addListener(journal);
+        
+        RegistryPersistence persistence = new RegistryPersistence(directory, registry, journal,
+                                                                  snapshotIntervalSeconds);
+        persistence.scheduler.scheduleWithFixedDelay(persistence::snapshotIfDue, CHECK_INTERVAL_SECONDS,
+                                                     CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        return persistence;
+    }
+    
+    /**
+     * Writes a snapshot of the whole registry and deletes the journal segments it covers.
+     * 
+     * @return Number of users in the snapshot
+     */
+    public synchronized long snapshot() throws IOException {
+        long started = System.nanoTime();
+        long sealed = journal.roll();
+        Path target = snapshotPath(directory, sealed);
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        
+        long count = 0;
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            JournalRecord.writeFileHeader(channel);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(SNAPSHOT_BUFFER_BYTES);
+            for (User user : registry.getAll()) {
+                write(channel, buffer, JournalRecord.user(user));
+                count++;
+            }
+            write(channel, buffer, JournalRecord.end(count));
+            flush(channel, buffer);
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        lastSnapshotAt = System.currentTimeMillis();
+        
+        // Everything up to the sealed segment is now covered by the snapshot
+        for (long segment : numberedFiles(directory, "wal-", ".log")) {
+            if (segment <= sealed) {
+                Files.deleteIfExists(UserJournal.segmentPath(directory, segment));
+            }
+        }
+        for (long older : numberedFiles(directory, "snapshot-", ".dat")) {
+            if (older < sealed) {
+                Files.deleteIfExists(snapshotPath(directory, older));
+            }
+        }
+        LOG.info("Snapshot of {} users written in {} ms", count,
+                 TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        return count;
+    }
+    
+    public UserJournal getJournal() {
+        return journal;
+    }
+    
+    /**
+     * Stops taking snapshots, writes out the journal and detaches it from the registry.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        synchronized (this) {
+            registry.removeListener(journal);
+            journal.close();
+        }
+    }
+    
+    // Helper methods
+    private void snapshotIfDue() {
+        long pending = journal.getBytesSinceRoll();
+        boolean intervalPassed = snapshotIntervalMillis > 0
+                && System.currentTimeMillis() - lastSnapshotAt >= snapshotIntervalMillis;
+        if (pending == 0 || (!intervalPassed && pending < SNAPSHOT_AFTER_BYTES)) {
+            return;
+        }
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Snapshot failed, keeping the journal", e);
+        }
+    }
+    
+    private static void write(FileChannel channel, ByteBuffer buffer, byte[] frame) throws IOException {
+        if (buffer.remaining() < frame.length) {
+            flush(channel, buffer);
+        }
+        buffer.put(frame);
+    }
+    
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+    
+    static Path snapshotPath(Path directory, long sealedSegment) {
+        return directory.resolve(String.format("snapshot-%016d.dat", sealedSegment));
+    }
+    
+    // Numbers of the files named prefix + number + suffix, in ascending order
+    static List<Long> numberedFiles(Path directory, String prefix, String suffix) throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                 .filter(name -> name.startsWith(prefix) && name.endsWith(suffix))
+                 .forEach(name -> {
+                     try {
+                         numbers.add(Long.parseLong(name.substring(prefix.length(),
+                                                                   name.length() - suffix.length())));
+                     } catch (NumberFormatException e) {
+                         LOG.warn("Ignoring unexpected file {}", name);
+                     }
+                 });
+        }
+        numbers.sort(null);
+        return numbers;
+    }
+    
+    /**
+     * Loads the latest snapshot and replays the journal segments after it.
+     * New users are collected into a batch before they are registered; later
+     * records for users still in the batch are applied to the batch.
+     */
+    private static final class Recovery {
+        private static final int BATCH_SIZE = 64 * 1024;
+        
+        private final Path directory;
+        private final UserRegistry registry;
+        private final byte[][] scratch = {new byte[256]};
+        private final List<User> batch = new ArrayList<>(BATCH_SIZE);
+        private final Map<String, User> batchById = new HashMap<>(BATCH_SIZE * 2);
+        private long records;
+        private long orphans;
+        private long unknownStatuses;
+        private long snapshotUsers = -1;
+        
+        Recovery(Path directory, UserRegistry registry) {
+            this.directory = directory;
+            this.registry = registry;
+        }
+        
+        // Returns the number the next journal segment must use
+        long run() throws IOException {
+            long started = System.nanoTime();
+            List<Long> snapshots = numberedFiles(directory, "snapshot-", ".dat");
+            long covered = 0;
+            if (!snapshots.isEmpty()) {
+                covered = snapshots.get(snapshots.size() - 1);
+                Path snapshot = snapshotPath(directory, covered);
+                RecordReader.read(snapshot, this::apply);
+                if (snapshotUsers < 0) {
+                    throw new IOException("Snapshot " + snapshot + " is incomplete");
+                }
+                registerBatch();
+            }
+            
+            long lastSegment = covered;
+            for (long segment : numberedFiles(directory, "wal-", ".log")) {
+                lastSegment = Math.max(lastSegment, segment);
+                if (segment <= covered) {
+                    continue;
+                }
+                Path file = UserJournal.segmentPath(directory, segment);
+                long valid = RecordReader.read(file, this::apply);
+                if (valid < Files.size(file)) {
+                    LOG.warn("Journal segment {} ends with {} unreadable bytes, ignoring them",
+                             file.getFileName(), Files.size(file) - valid);
+                }
+            }
+            registerBatch();
+            if (registry.size() > 0 || records > 0) {
+                LOG.info("Recovered {} users from {} records in {} ms", registry.size(), records,
+                         TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            }
+            if (orphans > 0) {
+                LOG.warn("Skipped {} journal records for unknown users", orphans);
+            }
+            if (unknownStatuses > 0) {
+                LOG.warn("Ignored {} stored statuses that are not a known status", unknownStatuses);
+            }
+            return lastSegment + 1;
+        }
+        
+        private void apply(byte type, ByteBuffer payload) {
+            records++;
+            switch (type) {
+                case JournalRecord.USER:
+                    applyUser(payload);
+                    break;
+                case JournalRecord.STATUS: {
+                    User user = find(JournalRecord.getString(payload, scratch));
+                    String status = JournalRecord.getString(payload, scratch);
+                    if (user == null) {
+                        orphans++;
+                    } else {
+                        restoreStatus(user, status);
+                    }
+                    break;
+                }
+                case JournalRecord.PERMISSION: {
+                    User user = find(JournalRecord.getString(payload, scratch));
+                    String permission = JournalRecord.getString(payload, scratch);
+                    if (user instanceof AdminUser) {
+                        ((AdminUser) user).restorePermission(permission);
+                    } else {
+                        orphans++;
+                    }
+                    break;
+                }
+                case JournalRecord.END:
+                    snapshotUsers = payload.getLong();
+                    break;
+                default:
+                    LOG.warn("Ignoring journal record of unknown type {}", type);
+            }
+        }
+        
+        private void applyUser(ByteBuffer payload) {
+            byte kind = payload.get();
+            String userId = JournalRecord.getString(payload, scratch);
+            String name = JournalRecord.getString(payload, scratch);
+            String email = JournalRecord.getString(payload, scratch);
+            LocalDate registrationDate = LocalDate.ofEpochDay(payload.getLong());
+            String status = JournalRecord.getString(payload, scratch);
+            int permissionCount = payload.getInt();
+            
+            User user = find(userId);
+            boolean known = user != null;
+            if (!known) {
+                user = kind == JournalRecord.ADMIN_USER
+                        ? new AdminUser(userId, name, email, registrationDate)
+                        : new RegularUser(userId, name, email, registrationDate);
+                UserStatus restored = parseStatus(status);
+                if (restored != null) {
+                    user.restoreStatus(restored);
+                }
+            } else {
+                restoreStatus(user, status); // Also in the snapshot the journal is replayed onto
+            }
+            for (int i = 0; i < permissionCount; i++) {
+                String permission = JournalRecord.getString(payload, scratch);
+                if (user instanceof AdminUser) {
+                    ((AdminUser) user).restorePermission(permission);
+                }
+            }
+            if (!known) {
+                batch.add(user);
+                batchById.put(userId, user);
+                if (batch.size() == BATCH_SIZE) {
+                    registerBatch();
+                }
+            }
+        }
+        
+        private User find(String userId) {
+            User user = batchById.get(userId);
+            return user != null ? user : registry.findById(userId);
+        }
+        
+        private void registerBatch() {
+            if (!batch.isEmpty()) {
+                registry.addAllParallel(batch);
+                batch.clear();
+                batchById.clear();
+            }
+        }
+        
+        // Sets a user's status and keeps the registry's status index in step
+        private void restoreStatus(User user, String stored) {
+            UserStatus status = parseStatus(stored);
+            if (status == null) {
+                return;
+            }
+            if (batchById.get(user.getUserId()) == user) {
+                user.restoreStatus(status); // Not registered yet, so not indexed yet
+                return;
+            }
+            synchronized (user) {
+                UserStatus previous = user.getStatus();
+                if (status != previous) {
+                    user.restoreStatus(status);
+                    registry.onStatusChanged(user, previous, status);
+                }
+            }
+        }
+        
+        // Journals written before statuses were typed may hold free-form values; the user keeps its status
+        private UserStatus parseStatus(String stored) {
+            try {
+                return UserStatus.fromName(stored);
+            } catch (IllegalArgumentException e) {
+                unknownStatuses++;
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package com.oopdemo.persistence;
+
+import com.oopdemo.enums.UserStatus;
+import com.oopdemo.logging.LogManager;
+import com.oopdemo.logging.Logger;
+import com.oopdemo.registry.RegistryListener;
+import com.oopdemo.users.AdminUser;
+import com.oopdemo.users.User;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Append-only write-ahead log of every change to the registry.
+ * 
+ * Threads making changes only encode a record and queue it. A single writer
+ * thread takes everything that has queued up, writes it with one system call
+ * and, when fsync is enabled, forces it to disk once for the whole group.
+ * Under load many changes share one fsync (group commit). A thread that must
+ * not answer before its changes are durable calls {@link #awaitPersisted()}.
+ * 
+ * The log is split into numbered segment files. A segment is sealed when it
+ * grows past the configured size or when a snapshot asks for it; sealed
+ * segments covered by a snapshot can be deleted.
+ */
+public class UserJournal implements RegistryListener, Closeable {
+    private static final Logger LOG = LogManager.getLogger(UserJournal.class);
+    private static final int QUEUE_CAPACITY = 64 * 1024;
+    private static final int MAX_GROUP = 4096;
+    private static final int WRITE_BUFFER_BYTES = 1024 * 1024;
+    
+    private final Path directory;
+    private final boolean fsync;
+    private final long segmentBytes;
+    private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final ThreadLocal<Entry> lastEntry = new ThreadLocal<>();
+    private final Object durableLock = new Object();
+    private final AtomicLong bytesSinceRoll = new AtomicLong();
+    private final LongAdder records = new LongAdder();
+    private final LongAdder groups = new LongAdder();
+    private final Thread writer;
+    private volatile boolean running = true;
+    private volatile IOException failure;
+    
+    // Only used by the writer thread after construction
+    private FileChannel channel;
+    private long segment;
+    private long segmentSize;
+    
+    /**
+     * Opens a new segment and starts the writer thread.
+     * 
+     * @param directory Directory holding the segments
+     * @param firstSegment Number of the segment to create; must not exist yet
+     * @param fsync Whether every group is forced to disk before it counts as persisted
+     * @param segmentBytes Size after which a segment is sealed and a new one started
+     */
+    public UserJournal(Path directory, long firstSegment, boolean fsync, long segmentBytes) throws IOException {
+        this.directory = directory;
+        this.fsync = fsync;
+        this.segmentBytes = segmentBytes;
+        this.segment = firstSegment - 1;
+        openNextSegment();
+        this.writer = new Thread(this::run, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+    
+    static Path segmentPath(Path directory, long segment) {
+        return directory.resolve(String.format("wal-%016d.log", segment));
+    }
+    
+    @Override
+    public void onUserAdded(User user) {
+        append(JournalRecord.user(user));
+    }
+    
+    @Override
+    public void onStatusChanged(User user, UserStatus oldStatus, UserStatus newStatus) {
+        append(JournalRecord.status(user.getUserId(), newStatus.name()));
+    }
+    
+    @Override
+    public void onPermissionAdded(AdminUser admin, String permission) {
+        append(JournalRecord.permission(admin.getUserId(), permission));
+    }
+    
+    /**
+     * Waits until the last record appended by the calling thread has been
+     * written (and forced to disk when fsync is enabled).
+     * 
+     * @throws UncheckedIOException if the journal could not be written, or
+     *         wrapping an InterruptedIOException if the wait was interrupted
+     */
+    @Override
+    public void awaitPersisted() {
+        Entry entry = lastEntry.get();
+        if (entry == null) {
+            return;
+        }
+        await(entry);
+        lastEntry.remove();
+    }
+    
+    /**
+     * Seals the current segment and starts a new one. Every record appended
+     * before this call is in the sealed segment or an earlier one.
+     * 
+     * @return Number of the sealed segment
+     */
+    public long roll() {
+        // Appends count their bytes after queueing them, so everything counted
+        // here is ahead of the marker; bytes appended meanwhile stay counted
+        long covered = bytesSinceRoll.get();
+        Entry marker = new Entry(null);
+        enqueue(marker);
+        await(marker);
+        bytesSinceRoll.addAndGet(-covered);
+        return marker.sealedSegment;
+    }
+    
+    /**
+     * Gets how many bytes were appended since the last {@link #roll()}.
+     * @return Bytes not yet covered by a snapshot
+     */
+    public long getBytesSinceRoll() {
+        return bytesSinceRoll.get();
+    }
+    
+    public long getRecordCount() {
+        return records.sum();
+    }
+    
+    /**
+     * Gets how many write groups were committed; records divided by groups
+     * is the average number of changes that shared one write and fsync.
+     * @return Number of committed groups
+     */
+    public long getGroupCount() {
+        return groups.sum();
+    }
+    
+    /**
+     * Writes out everything queued and stops the writer thread.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            writer.join(10000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    // Helper methods
+    private void append(byte[] frame) {
+        Entry entry = new Entry(frame);
+        enqueue(entry);
+        bytesSinceRoll.addAndGet(frame.length);
+        lastEntry.set(entry);
+    }
+    
+    private void enqueue(Entry entry) {
+        IOException error = failure;
+        if (error != null || !running) {
+            throw new UncheckedIOException("Journal is not writable",
+                                           error != null ? error : new IOException("Journal closed"));
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(entry); // Blocks producers when the writer falls behind
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void await(Entry entry) {
+        synchronized (durableLock) {
+            while (!entry.done && failure == null && writer.isAlive()) {
+                try {
+                    durableLock.wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new UncheckedIOException(
+                            new InterruptedIOException("Interrupted while waiting for the journal"));
+                }
+            }
+        }
+        if (!entry.done) {
+            throw new UncheckedIOException("Journal write failed",
+                                           failure != null ? failure : new IOException("Journal writer stopped"));
+        }
+    }
+    
+    private void run() {
+        List<Entry> group = new ArrayList<>(MAX_GROUP);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+        try {
+            while (running || !queue.isEmpty()) {
+                Entry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                queue.drainTo(group, MAX_GROUP - 1);
+                
+                for (Entry entry : group) {
+                    if (entry.frame == null) {
+                        writeOut(buffer);
+                        entry.sealedSegment = segment;
+                        openNextSegment();
+                    } else {
+                        write(buffer, entry.frame);
+                    }
+                }
+                writeOut(buffer);
+                if (fsync) {
+                    channel.force(false);
+                }
+                records.add(group.size());
+                groups.increment();
+                complete(group);
+                group.clear();
+                
+                if (segmentSize >= segmentBytes) {
+                    openNextSegment();
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+            LOG.error("Journal write failed, changes are no longer persisted", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeSegment();
+            synchronized (durableLock) {
+                durableLock.notifyAll();
+            }
+        }
+    }
+    
+    private void write(ByteBuffer buffer, byte[] frame) throws IOException {
+        if (buffer.remaining() < frame.length) {
+            writeOut(buffer);
+        }
+        buffer.put(frame);
+        segmentSize += frame.length;
+    }
+    
+    private void writeOut(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+    
+    private void complete(List<Entry> group) {
+        for (Entry entry : group) {
+            entry.done = true;
+        }
+        synchronized (durableLock) {
+            durableLock.notifyAll();
+        }
+    }
+    
+    // Seals the current segment (if any) and creates the next one
+    private void openNextSegment() throws IOException {
+        if (channel != null) {
+            channel.force(true);
+            channel.close();
+        }
+        segment++;
+        channel = FileChannel.open(segmentPath(directory, segment),
+                                   StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        JournalRecord.writeFileHeader(channel);
+        segmentSize = JournalRecord.FILE_HEADER_BYTES;
+    }
+    
+    private void closeSegment() {
+        try {
+            if (channel != null) {
+                channel.force(true);
+                channel.close();
+            }
+        } catch (IOException e) {
+            LOG.warn("Could not close journal segment {}: {}", segment, e.getMessage());
+        }
+    }
+    
+    /**
+     * One queued record, or a roll marker when the frame is null.
+     */
+    private static final class Entry {
+        final byte[] frame;
+        volatile boolean done;
+        long sealedSegment;
+        
+        Entry(byte[] frame) {
+            this.frame = frame;
+        }
+    }
+}
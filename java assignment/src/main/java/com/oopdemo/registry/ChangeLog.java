@@ -0,0 +1,123 @@
+package com.oopdemo.registry;
+
+import com.oopdemo.users.User;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The most recent changes of a {@link UserRegistry}, so clients that mirror
+ * the users can fetch only what changed since they last synced.
+ * 
+ * Every change the registry counts in its version is recorded here as the
+ * version it produced and the user it affected, in a ring of fixed size:
+ * recording never blocks and never allocates more than the record itself,
+ * and the oldest changes are overwritten. A client whose version has been
+ * overwritten has to fetch all users again.
+ */
+public final class ChangeLog {
+    private final AtomicReferenceArray<Change> ring;
+    private final int mask;
+    
+    /**
+     * Creates an empty log.
+     * @param capacity Number of changes kept, rounded up to a power of two
+     */
+    public ChangeLog(int capacity) {
+        int size = capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        ring = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+    }
+    
+    /**
+     * Gets the number of changes kept.
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+    
+    /**
+     * Records a change. Called by the registry right after it bumped its
+     * version, while it still holds the user's lock.
+     * 
+     * @param version The version the change produced
+     * @param user The user that was added or changed
+     */
+    void record(long version, User user) {
+        ring.set((int) (version & mask), new Change(version, user));
+    }
+    
+    /**
+     * Collects the users changed after a version, up to another one.
+     * 
+     * A change whose version was already handed out but that is not
+     * recorded yet ends the delta early; its version is then not covered and
+     * the client picks it up on the next call.
+     * 
+     * @param since The version the client has
+     * @param current The registry's version, read before calling
+     * @return The delta, or null if the log no longer reaches back to since
+     */
+    Delta since(long since, long current) {
+        if (since < 0 || since > current || current - since > getCapacity()) {
+            return null;
+        }
+        // A user changed more than once is listed once, in the place of its latest change
+        Set<User> users = new LinkedHashSet<>();
+        long covered = since;
+        for (long version = since + 1; version <= current; version++) {
+            Change change = ring.get((int) (version & mask));
+            if (change == null || change.version < version) {
+                break; // Not recorded yet
+            }
+            if (change.version > version) {
+                return null; // Overwritten by newer changes while reading
+            }
+            users.remove(change.user);
+            users.add(change.user);
+            covered = version;
+        }
+        return new Delta(covered, new ArrayList<>(users));
+    }
+    
+    private static final class Change {
+        final long version;
+        final User user;
+        
+        Change(long version, User user) {
+            this.version = version;
+            this.user = user;
+        }
+    }
+    
+    /**
+     * The users changed between two versions.
+     */
+    public static final class Delta {
+        private final long version;
+        private final List<User> users;
+        
+        private Delta(long version, List<User> users) {
+            this.version = version;
+            this.users = Collections.unmodifiableList(users);
+        }
+        
+        /**
+         * Gets the version the delta brings a client to; pass it as since on the next call.
+         */
+        public long getVersion() {
+            return version;
+        }
+        
+        /**
+         * Gets the users added or changed, each once, in the order of their
+         * latest change. Their current state may include later changes too.
+         */
+        public List<User> getUsers() {
+            return users;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.oopdemo.registry;
+
+import com.oopdemo.enums.UserStatus;
+import com.oopdemo.users.AdminUser;
+import com.oopdemo.users.User;
+
+/**
+ * Observer of every change to the users held by a {@link UserRegistry},
+ * e.g. a journal that persists them.
+ * 
+ * Callbacks run while the changed user's lock is held, so the changes of one
+ * user arrive in order. Status changes that race may arrive merged into one. They should return
+ * quickly; listeners that persist changes do the slow work later and let
+ * callers wait for it through {@link #awaitPersisted()}.
+ */
+public interface RegistryListener {
+    /**
+     * Called when a user has been added to the registry.
+     * @param user The new user
+     */
+    void onUserAdded(User user);
+    
+    /**
+     * Called when a registered user has changed status.
+     * @param user The user
+     * @param oldStatus The status before the change
+     * @param newStatus The status after the change
+     */
+    void onStatusChanged(User user, UserStatus oldStatus, UserStatus newStatus);
+    
+    /**
+     * Called when a registered admin has been granted a permission.
+     * @param admin The admin
+     * @param permission The permission that was added
+     */
+    void onPermissionAdded(AdminUser admin, String permission);
+    
+    /**
+     * Waits until the changes reported by the calling thread are durable.
+     * Listeners that do not persist anything return immediately.
+     */
+    default void awaitPersisted() {
+    }
+}
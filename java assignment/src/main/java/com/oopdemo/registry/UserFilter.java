@@ -0,0 +1,101 @@
+package com.oopdemo.registry;
+
+import com.oopdemo.enums.UserStatus;
+import com.oopdemo.users.User;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Selection criteria for scanning the user registry.
+ * A criterion left as null matches every user.
+ */
+public class UserFilter implements Predicate<User> {
+    private final UserStatus status;
+    private final String userType;
+    private final Set<String> userIds;
+    private final LocalDate registeredFrom;
+    private final LocalDate registeredTo;
+    
+    /**
+     * Creates a filter that matches every user.
+     */
+    public UserFilter() {
+        this(null, null);
+    }
+    
+    /**
+     * Creates a filter on status and user type.
+     * 
+     * @param status The status to match, or null for any
+     * @param userType The simple class name to match (e.g. "AdminUser"), or null for any
+     */
+    public UserFilter(UserStatus status, String userType) {
+        this(status, userType, null, null, null);
+    }
+    
+    /**
+     * Creates a filter on every supported criterion.
+     * 
+     * @param status The status to match, or null for any
+     * @param userType The simple class name to match, or null for any
+     * @param userIds The ids to match, or null for any
+     * @param registeredFrom First registration date to match (inclusive), or null for no lower bound
+     * @param registeredTo Last registration date to match (inclusive), or null for no upper bound
+     */
+    public UserFilter(UserStatus status, String userType, Set<String> userIds,
+                      LocalDate registeredFrom, LocalDate registeredTo) {
+        this.status = status;
+        this.userType = userType;
+        this.userIds = userIds == null ? null : Collections.unmodifiableSet(new LinkedHashSet<>(userIds));
+        this.registeredFrom = registeredFrom;
+        this.registeredTo = registeredTo;
+    }
+    
+    @Override
+    public boolean test(User user) {
+        if (status != null && status != user.getStatus()) {
+            return false;
+        }
+        if (userType != null && !userType.equals(user.getClass().getSimpleName())) {
+            return false;
+        }
+        if (userIds != null && !userIds.contains(user.getUserId())) {
+            return false;
+        }
+        long registered = user.getRegistrationEpochDay();
+        if (registeredFrom != null && registered < registeredFrom.toEpochDay()) {
+            return false;
+        }
+        if (registeredTo != null && registered > registeredTo.toEpochDay()) {
+            return false;
+        }
+        return true;
+    }
+    
+    public UserStatus getStatus() {
+        return status;
+    }
+    
+    public String getUserType() {
+        return userType;
+    }
+    
+    /**
+     * Gets the ids this filter is restricted to.
+     * @return Unmodifiable set of ids, or null if any id matches
+     */
+    public Set<String> getUserIds() {
+        return userIds;
+    }
+    
+    public LocalDate getRegisteredFrom() {
+        return registeredFrom;
+    }
+    
+    public LocalDate getRegisteredTo() {
+        return registeredTo;
+    }
+}
@@ -0,0 +1,475 @@
+package com.oopdemo.registry;
+
+import com.oopdemo.enums.UserStatus;
+import com.oopdemo.interfaces.Manageable;
+import com.oopdemo.interfaces.PermissionChangeListener;
+import com.oopdemo.interfaces.StatusChangeListener;
+import com.oopdemo.users.AdminUser;
+import com.oopdemo.users.IdKey;
+import com.oopdemo.users.User;
+import com.oopdemo.users.UserIds;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Thread-safe, hash-indexed store of all users known to the system.
+ * 
+ * Users are looked up by id in constant time and can also be found through
+ * secondary indexes on email, status and user type. Iteration follows the
+ * order of the users' numeric ids. Ids come from a roughly time-ordered
+ * {@link com.oopdemo.users.IdGenerator}, but not in arrival order: the
+ * generator hands each thread a block of ids, and bulk imports create a
+ * whole chunk of users before adding them, so a user added later can sort
+ * before one added earlier. Callers that need everything changed since they
+ * last looked use {@link #changesSince(String, long)}, not an id range. All
+ * operations are safe to call from many HTTP threads at once; reads never
+ * block writes.
+ * 
+ * The registry listens to status changes of the users it holds so the
+ * status index, and the user count kept per status, always reflect the
+ * current status of each user. Additions, status changes and permission
+ * grants are passed on to the registered {@link RegistryListener}s, e.g.
+ * the journal that makes them durable. Each of these changes also bumps a
+ * version number, so readers can tell whether anything changed since they
+ * last looked, e.g. to reuse a cached response, and is recorded in a
+ * bounded {@link ChangeLog} that tells them which users changed. Versions
+ * start over with every registry, so they are only comparable together with
+ * the registry's epoch.
+ * 
+ * Index keys reuse what the users already hold where possible: ids are
+ * keyed by their number, wrapped once in an {@link IdKey} that both id
+ * indexes share, and the email index is split by the pooled domain, so
+ * indexing a user adds no copies of its id or address.
+ */
+public class UserRegistry implements StatusChangeListener, PermissionChangeListener {
+    public static final int DEFAULT_CHANGE_LOG_CAPACITY = 64 * 1024;
+    
+    // Keyed by the numeric id, or by the text id for ids that are not canonical
+    private final Map<Object, User> usersById = new ConcurrentHashMap<>();
+    // Keyed by the numeric id, or for ids that are not canonical by a number drawn from
+    // the id generator at registration; numeric keys are shared with usersById, drawn
+    // ones are only kept here, so they never resolve as an id
+    private final ConcurrentSkipListMap<IdKey, User> usersByOrder = new ConcurrentSkipListMap<>();
+    // Lower-case domain -> lower-case local part -> the single User with that email, or a
+    // Set<User> once an address is shared; most emails are unique and a set per user would
+    // dominate the cost of add()
+    private final Map<String, Map<String, Object>> usersByEmail = new ConcurrentHashMap<>();
+    // Both filled for every status up front and only read afterwards
+    private final Map<UserStatus, Set<User>> usersByStatus = new EnumMap<>(UserStatus.class);
+    private final Map<UserStatus, LongAdder> statusCounts = new EnumMap<>(UserStatus.class);
+    private final Map<String, Set<User>> usersByType = new ConcurrentHashMap<>();
+    private final LongAdder userCount = new LongAdder();
+    private final AtomicLong version = new AtomicLong();
+    // Tells this registry's versions apart from those of an earlier one, e.g. before a restart
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final ChangeLog changes;
+    private final List<RegistryListener> listeners = new CopyOnWriteArrayList<>();
+    
+    public UserRegistry() {
+        this(DEFAULT_CHANGE_LOG_CAPACITY);
+    }
+    
+    /**
+     * Creates an empty registry.
+     * @param changeLogCapacity Number of recent changes kept for {@link #changesSince(String, long)}
+     */
+    public UserRegistry(int changeLogCapacity) {
+        changes = new ChangeLog(changeLogCapacity);
+        for (UserStatus status : UserStatus.values()) {
+            usersByStatus.put(status, ConcurrentHashMap.newKeySet());
+            statusCounts.put(status, new LongAdder());
+        }
+    }
+    
+    /**
+     * Registers a listener for all later changes.
+     * @param listener The listener to add
+     */
+    public void addListener(RegistryListener listener) {
+        listeners.add(listener);
+    }
+    
+    public void removeListener(RegistryListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Waits until every listener has persisted the changes made by the calling thread.
+     * Call this before acknowledging a change to a client.
+     */
+    public void awaitPersisted() {
+        for (RegistryListener listener : listeners) {
+            listener.awaitPersisted();
+        }
+    }
+    
+    /**
+     * Adds a user to the registry and all of its indexes.
+     * 
+     * @param user The user to add
+     * @return true if the user was added, false if a user with the same id already exists
+     */
+    public boolean add(User user) {
+        if (user.getNumericId() >= 0) {
+            IdKey key = IdKey.of(user.getNumericId());
+            if (usersById.putIfAbsent(key, user) != null) {
+                return false;
+            }
+            // A user whose id is not canonical may have drawn this number for its order;
+            // the id wins and that user draws another
+            User displaced = usersByOrder.put(key, user);
+            if (displaced != null) {
+                putInOrder(displaced);
+            }
+        } else {
+            if (usersById.putIfAbsent(user.getUserId(), user) != null) {
+                return false;
+            }
+            putInOrder(user);
+        }
+        userCount.increment();
+        usersByEmail.computeIfAbsent(domainKey(user.getEmailDomain()), domain -> new ConcurrentHashMap<>())
+                .merge(localKey(user.getEmailLocalPart()), user, UserRegistry::mergeEmail);
+        indexOf(usersByType, typeKey(user)).add(user);
+        
+        // Index the status the user reports changes from, and do it under the user's
+        // lock, so a concurrent status change cannot reach the index (or the listeners)
+        // before the user itself
+        synchronized (user) {
+            UserStatus status = user.setStatusChangeListener(this);
+            if (user instanceof AdminUser) {
+                ((AdminUser) user).setPermissionChangeListener(this);
+            }
+            usersByStatus.get(status).add(user);
+            statusCounts.get(status).increment();
+            changes.record(version.incrementAndGet(), user);
+            for (RegistryListener listener : listeners) {
+                listener.onUserAdded(user);
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Adds several users, e.g. one chunk of a bulk import.
+     * 
+     * @param users The users to add
+     * @return The users that were rejected because their id already exists
+     */
+    public List<User> addAll(Collection<? extends User> users) {
+        List<User> rejected = new ArrayList<>();
+        for (User user : users) {
+            if (!add(user)) {
+                rejected.add(user);
+            }
+        }
+        return rejected;
+    }
+    
+    /**
+     * Adds many users using all available processors, e.g. when restoring the
+     * registry from storage. Listeners are called from several threads at
+     * once, and when the list holds the same id twice it is not defined which
+     * of the two is kept.
+     * 
+     * @param users The users to add
+     * @return The users that were rejected because their id already exists
+     */
+    public List<User> addAllParallel(List<? extends User> users) {
+        Queue<User> rejected = new ConcurrentLinkedQueue<>();
+        users.parallelStream().forEach(user -> {
+            if (!add(user)) {
+                rejected.add(user);
+            }
+        });
+        return new ArrayList<>(rejected);
+    }
+    
+    /**
+     * Finds a user by id in constant time.
+     * 
+     * @param userId The id to look up
+     * @return The user, or null if no user has this id
+     */
+    public User findById(String userId) {
+        if (userId == null) {
+            return null;
+        }
+        long numericId = UserIds.parse(userId);
+        return usersById.get(numericId >= 0 ? IdKey.of(numericId) : userId);
+    }
+    
+    /**
+     * Finds all users registered with an email address (case-insensitive).
+     * 
+     * @param email The email address to look up
+     * @return Unmodifiable view of the matching users, empty if none
+     */
+    @SuppressWarnings("unchecked")
+    public Collection<User> findByEmail(String email) {
+        Object users = null;
+        if (email != null) {
+            int at = email.lastIndexOf('@');
+            Map<String, Object> domain = usersByEmail.get(domainKey(at < 0 ? null : email.substring(at + 1)));
+            users = domain == null ? null : domain.get(localKey(at < 0 ? email : email.substring(0, at)));
+        }
+        if (users == null) {
+            return Collections.emptySet();
+        }
+        return users instanceof User ? Collections.singleton((User) users) : view((Set<User>) users);
+    }
+    
+    /**
+     * Finds all users currently in a given status.
+     * 
+     * @param status The status to look up
+     * @return Unmodifiable view of the matching users, empty if none
+     */
+    public Collection<User> findByStatus(UserStatus status) {
+        return status == null ? Collections.emptySet() : view(usersByStatus.get(status));
+    }
+    
+    /**
+     * Counts the users in a given status without scanning them.
+     * 
+     * @param status The status to count
+     * @return Number of registered users currently in the status
+     */
+    public long countByStatus(UserStatus status) {
+        return statusCounts.get(status).sum();
+    }
+    
+    /**
+     * Gets the number of users in each status.
+     * @return Count per status, including statuses no user is in
+     */
+    public Map<UserStatus, Long> getStatusCounts() {
+        Map<UserStatus, Long> counts = new EnumMap<>(UserStatus.class);
+        for (Map.Entry<UserStatus, LongAdder> entry : statusCounts.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().sum());
+        }
+        return counts;
+    }
+    
+    /**
+     * Finds all users of a given type, e.g. "RegularUser" or "AdminUser".
+     * 
+     * @param userType The simple class name of the user type
+     * @return Unmodifiable view of the matching users, empty if none
+     */
+    public Collection<User> findByType(String userType) {
+        return userType == null ? Collections.emptySet() : view(usersByType, userType);
+    }
+    
+    /**
+     * Gets all users in id order.
+     * The view is weakly consistent: it never throws on concurrent updates.
+     * 
+     * @return Unmodifiable view of all users
+     */
+    public Collection<User> getAll() {
+        return Collections.unmodifiableCollection(usersByOrder.values());
+    }
+    
+    /**
+     * Visits users in id order, starting after a cursor.
+     * Nothing is copied, so the cost of a page does not depend on registry size.
+     * 
+     * The cursor is the numeric id of the last user visited, so a scan can
+     * also start after any id. Ids are not handed out in arrival order, so a
+     * scan from a user's id is not a list of the users added after it; use
+     * {@link #changesSince(String, long)} for that.
+     * 
+     * @param afterCursor Cursor returned by the previous page or a numeric id, or -1 to start at the beginning
+     * @param filter Users that do not match are skipped and do not count towards the limit
+     * @param limit Maximum number of users to visit
+     * @param visitor Receives each matching user
+     * @return Cursor for the next page, or -1 if the end of the registry was reached
+     */
+    public long scan(long afterCursor, Predicate<? super User> filter, int limit, Consumer<? super User> visitor) {
+        if (limit <= 0) {
+            return afterCursor;
+        }
+        int visited = 0;
+        for (Map.Entry<IdKey, User> entry : usersByOrder.tailMap(IdKey.of(afterCursor), false).entrySet()) {
+            User user = entry.getValue();
+            if (!filter.test(user)) {
+                continue;
+            }
+            visitor.accept(user);
+            if (++visited == limit) {
+                return entry.getKey().getId();
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Visits every user matching a filter, starting from the narrowest index:
+     * the id list if there is one, then the status or type index, and only
+     * otherwise the whole registry.
+     * 
+     * @param filter The selection criteria
+     * @param visitor Receives each matching user
+     */
+    public void forEachMatching(UserFilter filter, Consumer<? super User> visitor) {
+        Iterable<User> candidates;
+        if (filter.getUserIds() != null) {
+            List<User> byId = new ArrayList<>(filter.getUserIds().size());
+            for (String userId : filter.getUserIds()) {
+                User user = findById(userId);
+                if (user != null) {
+                    byId.add(user);
+                }
+            }
+            candidates = byId;
+        } else if (filter.getStatus() != null) {
+            candidates = findByStatus(filter.getStatus());
+        } else if (filter.getUserType() != null) {
+            candidates = findByType(filter.getUserType());
+        } else {
+            candidates = usersByOrder.values();
+        }
+        for (User user : candidates) {
+            if (filter.test(user)) {
+                visitor.accept(user);
+            }
+        }
+    }
+    
+    /**
+     * Gets the number of registered users.
+     * @return The user count
+     */
+    public int size() {
+        return userCount.intValue();
+    }
+    
+    /**
+     * Gets the number of changes made so far: additions, status changes and
+     * permission grants. It is bumped after the change is visible, so a
+     * result computed after reading version v reflects at least v.
+     * 
+     * @return A number that only grows; it starts over with each {@link #getEpoch() epoch}
+     */
+    public long getVersion() {
+        return version.get();
+    }
+    
+    /**
+     * Gets the epoch of this registry's versions. A new registry, e.g. after
+     * a restart, has a different epoch, and its versions count from zero again.
+     */
+    public String getEpoch() {
+        return epoch;
+    }
+    
+    /**
+     * Gets the users added or changed after a version, from the change log.
+     * 
+     * @param epoch The {@link #getEpoch() epoch} the version belongs to
+     * @param since A version returned earlier by this method or {@link #getVersion()}
+     * @return The changed users and the version to ask from next time, or
+     *         null if the version is from another epoch or the changes since
+     *         it are no longer kept, and the caller has to read all users again
+     */
+    public ChangeLog.Delta changesSince(String epoch, long since) {
+        if (!this.epoch.equals(epoch)) {
+            return null;
+        }
+        return changes.since(since, version.get());
+    }
+    
+    /**
+     * Keeps the status index and counts current when a registered user changes status.
+     * Called by the user while it holds its own lock.
+     */
+    @Override
+    public void onStatusChanged(Manageable source, UserStatus oldStatus, UserStatus newStatus) {
+        User user = (User) source;
+        usersByStatus.get(oldStatus).remove(user);
+        statusCounts.get(oldStatus).decrement();
+        usersByStatus.get(newStatus).add(user);
+        statusCounts.get(newStatus).increment();
+        changes.record(version.incrementAndGet(), user);
+        for (RegistryListener listener : listeners) {
+            listener.onStatusChanged(user, oldStatus, newStatus);
+        }
+    }
+    
+    /**
+     * Passes a permission granted to a registered admin on to the listeners.
+     * Called by the admin while it holds its own lock.
+     */
+    @Override
+    public void onPermissionAdded(Manageable source, String permission) {
+        changes.record(version.incrementAndGet(), (User) source);
+        for (RegistryListener listener : listeners) {
+            listener.onPermissionAdded((AdminUser) source, permission);
+        }
+    }
+    
+    // Helper methods
+    private static Set<User> indexOf(Map<String, Set<User>> index, String key) {
+        return index.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet());
+    }
+    
+    private static Collection<User> view(Map<String, Set<User>> index, String key) {
+        Set<User> users = index.get(key);
+        return users == null ? Collections.emptySet() : view(users);
+    }
+    
+    private static Collection<User> view(Set<User> users) {
+        return Collections.unmodifiableSet(users);
+    }
+    
+    // Turns a single user into a set when a second user registers with the same email
+    @SuppressWarnings("unchecked")
+    // Files a user whose id is not canonical under a number drawn from the id generator
+    private void putInOrder(User user) {
+        IdKey key;
+        do {
+            key = IdKey.of(User.getIdGenerator().nextId());
+        } while (usersById.containsKey(key) || usersByOrder.putIfAbsent(key, user) != null);
+    }
+    
+    private static Object mergeEmail(Object existing, Object added) {
+        if (existing instanceof Set) {
+            ((Set<User>) existing).add((User) added);
+            return existing;
+        }
+        Set<User> users = ConcurrentHashMap.newKeySet();
+        users.add((User) existing);
+        users.add((User) added);
+        return users;
+    }
+    
+    // Addresses without '@' get a key no real domain can have
+    private static String domainKey(String domain) {
+        return domain == null ? "@" : domain.toLowerCase(Locale.ROOT);
+    }
+    
+    // Returns the user's own string when it is already lower case
+    private static String localKey(String localPart) {
+        return localPart == null ? "" : localPart.toLowerCase(Locale.ROOT);
+    }
+    
+    private static String typeKey(User user) {
+        return user.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,664 @@
+package com.oopdemo.registry;
+
+import com.oopdemo.enums.UserStatus;
+import com.oopdemo.users.AdminUser;
+import com.oopdemo.users.User;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Finds users by parts of their name or email, e.g. "jo smi" or "example.com".
+ * 
+ * Names and emails are split into lower-case tokens of letters or digits,
+ * so "jo.smith42@example.com" has the tokens jo, smith, 42, example and com,
+ * and every user gets a number in the order it was indexed. Two structures
+ * are kept current as users are added: an ordered dictionary from each token
+ * to the numbers of its users, which answers a prefix as one range lookup the
+ * way a trie would, and for every trigram (three consecutive characters) of
+ * every token the numbers of the users containing it. Both lists only grow at the end, so they stay sorted, and a
+ * substring is found by walking its rarest trigram's list and skipping ahead
+ * in the lists of its other trigrams. Names and emails never change, so each
+ * user is indexed once.
+ * 
+ * A query is split the same way and every term has to match. A term scores
+ * 3 for a token equal to it, 2 for a token starting with it and, if it has
+ * at least three characters, 1 for a token containing it; users are ranked
+ * by their total, then in the order they were indexed. Candidates come from
+ * the rarest term, best matches first and in index order within each tier,
+ * and are checked against the others; a query stops once no later candidate
+ * can reach or tie the results. It reads at
+ * most {@link #MAX_POSTINGS} list entries and compares the name and email of
+ * at most {@link #MAX_CANDIDATES} users, so its cost does not grow with the
+ * number of users.
+ * 
+ * Indexing takes a lock, searching takes none.
+ */
+public class UserSearchIndex implements RegistryListener {
+    public static final int MAX_POSTINGS = 5_000;
+    public static final int MAX_CANDIDATES = 1_000;
+    public static final int MAX_TERMS = 8;
+    
+    private static final int EXACT = 3;
+    private static final int PREFIX = 2;
+    private static final int SUBSTRING = 1;
+    private static final int GRAM = 3;
+    
+    // Token -> the Integer number of the single user with that token, or Postings once it
+    // is shared; most name and local-part tokens belong to one user
+    private final ConcurrentSkipListMap<String, Object> tokens = new ConcurrentSkipListMap<>();
+    private final Map<String, Postings> trigrams = new ConcurrentHashMap<>();
+    // Indexed users by number; the array is replaced when it grows and only read up to count
+    private volatile User[] users = new User[1024];
+    private volatile int count;
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder truncated = new LongAdder();
+    
+    /**
+     * Creates an index of the users a registry holds now and adds later.
+     * 
+     * @param registry The registry; it should not be adding users yet
+     * @return The index, registered as a listener of the registry
+     */
+    public static UserSearchIndex of(UserRegistry registry) {
+        UserSearchIndex index = new UserSearchIndex();
+        for (User user : registry.getAll()) {
+            index.add(user);
+        }
+        registry.addListener(index);
+        return index;
+    }
+    
+    @Override
+    public void onUserAdded(User user) {
+        add(user);
+    }
+    
+    @Override
+    public void onStatusChanged(User user, UserStatus oldStatus, UserStatus newStatus) {
+        // Not searchable
+    }
+    
+    @Override
+    public void onPermissionAdded(AdminUser admin, String permission) {
+        // Not searchable
+    }
+    
+    /**
+     * Adds a user's name and email to the index. Adding the same user twice
+     * lists it twice.
+     * @param user The user
+     */
+    public synchronized void add(User user) {
+        int number = count;
+        User[] array = users;
+        if (number == array.length) {
+            array = Arrays.copyOf(array, number + (number >> 1));
+            users = array;
+        }
+        array[number] = user;
+        count = number + 1; // Before the number is listed anywhere, so readers find the user
+        
+        List<String> userTokens = new ArrayList<>();
+        tokenize(user.getName(), userTokens);
+        tokenize(user.getEmailLocalPart(), userTokens);
+        tokenize(user.getEmailDomain(), userTokens);
+        for (String token : userTokens) {
+            // Only this thread modifies the maps, so the merge function runs once
+            tokens.merge(token, number, UserSearchIndex::mergePostings);
+            for (int i = 0; i + GRAM <= token.length(); i++) {
+                String trigram = token.substring(i, i + GRAM);
+                Postings postings = trigrams.get(trigram);
+                if (postings == null) {
+                    trigrams.put(trigram, new Postings(number));
+                } else {
+                    postings.add(number); // Once per user, however often the trigram occurs
+                }
+            }
+        }
+    }
+    
+    /**
+     * Finds the users whose name or email matches every term of a query,
+     * best matches first.
+     * 
+     * @param query Terms separated by spaces or punctuation; only the first {@link #MAX_TERMS} are used
+     * @param limit Maximum number of users returned
+     * @return The users found
+     */
+    public Result search(String query, int limit) {
+        searches.increment();
+        List<String> terms = new ArrayList<>();
+        tokenize(query, terms);
+        if (terms.size() > MAX_TERMS) {
+            terms = new ArrayList<>(terms.subList(0, MAX_TERMS));
+        }
+        if (terms.isEmpty() || limit <= 0) {
+            return new Result(Collections.emptyList(), false);
+        }
+        
+        // The trigrams of each term, rarest first; a term with a trigram that occurs nowhere
+        // matches no one. The term with the rarest trigram supplies the candidates, since that
+        // trigram bounds how many users can match it; a term too short for trigrams only
+        // does when all are
+        Map<String, Postings[]> termTrigrams = new LinkedHashMap<>();
+        String driver = terms.get(0);
+        int driverBound = Integer.MAX_VALUE;
+        for (String term : terms) {
+            if (term.length() < GRAM) {
+                if (driverBound == Integer.MAX_VALUE && term.length() > driver.length()) {
+                    driver = term;
+                }
+                continue;
+            }
+            Postings[] grams = trigramsOf(term);
+            if (grams == null) {
+                return new Result(Collections.emptyList(), false);
+            }
+            termTrigrams.put(term, grams);
+            if (grams[0].size < driverBound) {
+                driver = term;
+                driverBound = grams[0].size;
+            }
+        }
+        
+        Search search = new Search(terms, driver, termTrigrams, limit);
+        Object exact = tokens.get(driver);
+        Cursor exactCursor = exact == null ? null : new Cursor(exact);
+        if (search.startTier(EXACT) && exact != null) {
+            search.visit(exact);
+        }
+        if (search.startTier(PREFIX)) {
+            search.visitPrefixes(tokens.subMap(driver, false, driver + Character.MAX_VALUE, false).values(),
+                                 exactCursor);
+        }
+        if (termTrigrams.containsKey(driver) && search.startTier(SUBSTRING)) {
+            search.intersect(exactCursor);
+        }
+        if (search.truncated) {
+            truncated.increment();
+        }
+        return search.result();
+    }
+    
+    /**
+     * Gets indexing and search counters.
+     * @return Map from counter name to value
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("indexed", count);
+        stats.put("trigrams", trigrams.size());
+        stats.put("searches", searches.sum());
+        stats.put("truncated", truncated.sum());
+        return stats;
+    }
+    
+    // Helper methods
+    private static void tokenize(String text, Collection<String> out) {
+        if (text == null) {
+            return;
+        }
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && kind(text.charAt(i)) == 0) {
+                i++;
+            }
+            int start = i;
+            int kind = i < length ? kind(text.charAt(i)) : 0;
+            while (i < length && kind(text.charAt(i)) == kind) {
+                i++;
+            }
+            if (i > start) {
+                // A token that is the whole text and already lower case is the text itself
+                String token = text.substring(start, i).toLowerCase(Locale.ROOT);
+                if (!out.contains(token)) {
+                    out.add(token);
+                }
+            }
+        }
+    }
+    
+    // 1 for letters, 2 for digits, 0 for characters between tokens
+    private static int kind(char c) {
+        return Character.isLetter(c) ? 1 : Character.isDigit(c) ? 2 : 0;
+    }
+    
+    // Scores the best token of text for a term: EXACT, PREFIX, SUBSTRING or 0; allocates nothing
+    private static int score(String text, String term) {
+        if (text == null) {
+            return 0;
+        }
+        int best = 0;
+        int length = text.length();
+        int termLength = term.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && kind(text.charAt(i)) == 0) {
+                i++;
+            }
+            int start = i;
+            int kind = i < length ? kind(text.charAt(i)) : 0;
+            while (i < length && kind(text.charAt(i)) == kind) {
+                i++;
+            }
+            if (i - start < termLength) {
+                continue;
+            }
+            if (text.regionMatches(true, start, term, 0, termLength)) {
+                if (i - start == termLength) {
+                    return EXACT;
+                }
+                best = PREFIX;
+            } else if (best == 0 && termLength >= GRAM) {
+                char first = term.charAt(0);
+                for (int from = start + 1; from + termLength <= i; from++) {
+                    if (Character.toLowerCase(text.charAt(from)) == first
+                            && text.regionMatches(true, from, term, 0, termLength)) {
+                        best = SUBSTRING;
+                        break;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+    
+    private static int score(User user, String term) {
+        int best = score(user.getName(), term);
+        if (best < EXACT) {
+            best = Math.max(best, score(user.getEmailLocalPart(), term));
+        }
+        if (best < EXACT) {
+            best = Math.max(best, score(user.getEmailDomain(), term));
+        }
+        return best;
+    }
+    
+    // The postings of each trigram of a term, rarest first, or null if one occurs nowhere
+    private Postings[] trigramsOf(String term) {
+        Postings[] grams = new Postings[term.length() - GRAM + 1];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = trigrams.get(term.substring(i, i + GRAM));
+            if (grams[i] == null) {
+                return null;
+            }
+        }
+        Arrays.sort(grams, Comparator.comparingInt((Postings postings) -> postings.size));
+        return grams;
+    }
+    
+    private static Object mergePostings(Object existing, Object added) {
+        Postings postings;
+        if (existing instanceof Postings) {
+            postings = (Postings) existing;
+        } else {
+            postings = new Postings((Integer) existing);
+        }
+        postings.add((Integer) added);
+        return postings;
+    }
+    
+    /**
+     * The numbers of the users holding one token or trigram, ascending.
+     * Only the index lock's holder appends; readers see a prefix of the
+     * array without locking, since the array is published before the size.
+     */
+    private static final class Postings {
+        private volatile int[] numbers;
+        private volatile int size;
+        
+        Postings(int first) {
+            numbers = new int[] {first};
+            size = 1;
+        }
+        
+        void add(int number) {
+            int[] array = numbers;
+            int used = size;
+            if (array[used - 1] == number) {
+                return; // Numbers only grow, so a repeat is always the last one
+            }
+            if (used == array.length) {
+                array = Arrays.copyOf(array, used + (used >> 1) + 1);
+                numbers = array;
+            }
+            array[used] = number;
+            size = used + 1;
+        }
+    }
+    
+    /**
+     * Walks a list of numbers by seeking: each call gallops ahead from the
+     * previous answer, so walking one list against another costs little more
+     * than reading the shorter one.
+     */
+    private static final class Cursor {
+        static final int END = Integer.MAX_VALUE;
+        
+        private final int[] numbers;
+        private final int size;
+        private int position;
+        
+        Cursor(Object entry) {
+            if (entry instanceof Postings) {
+                Postings postings = (Postings) entry;
+                size = postings.size; // Before the array, see Postings
+                numbers = postings.numbers;
+            } else {
+                numbers = new int[] {(Integer) entry};
+                size = 1;
+            }
+        }
+        
+        /**
+         * Moves to the first number at least as large as the given one.
+         * @return That number, or END if there is none
+         */
+        int seek(int number) {
+            int low = position;
+            int high = position;
+            int step = 1;
+            while (high < size && numbers[high] < number) {
+                low = high + 1;
+                high += step;
+                step <<= 1;
+            }
+            high = Math.min(high, size - 1);
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (numbers[middle] < number) {
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            position = low;
+            return low < size ? numbers[low] : END;
+        }
+        
+        // Like seek, for numbers that may also be asked out of order
+        boolean contains(int number) {
+            if (position > 0 && numbers[position - 1] >= number) {
+                position = 0;
+            }
+            return seek(number) == number;
+        }
+    }
+    
+    /**
+     * The state of one query: the users matching so far and how many of
+     * them reach each total score.
+     */
+    private final class Search {
+        private final List<String> terms;
+        private final String driver;
+        private final int limit;
+        // The driver's trigrams, rarest first, and the rarest trigram of every other term;
+        // a candidate has to contain them all
+        private final Postings[] driverTrigrams;
+        private final Postings[] otherTerms;
+        private final Cursor[] termFilters;
+        private final User[] indexed = users;
+        private final List<Hit> hits = new ArrayList<>();
+        private final int[] hitsByScore;
+        private int tier;
+        private int postingsRead;
+        private int candidates;
+        private boolean truncated;
+        private boolean done;
+        
+        Search(List<String> terms, String driver, Map<String, Postings[]> termTrigrams, int limit) {
+            this.terms = terms;
+            this.driver = driver;
+            this.limit = limit;
+            driverTrigrams = termTrigrams.get(driver);
+            List<Postings> others = new ArrayList<>();
+            for (Map.Entry<String, Postings[]> term : termTrigrams.entrySet()) {
+                if (!term.getKey().equals(driver)) {
+                    others.add(term.getValue()[0]);
+                }
+            }
+            otherTerms = others.toArray(new Postings[0]);
+            termFilters = new Cursor[otherTerms.length];
+            for (int i = 0; i < otherTerms.length; i++) {
+                termFilters[i] = new Cursor(otherTerms[i]);
+            }
+            hitsByScore = new int[EXACT * terms.size() + 1];
+        }
+        
+        // Moves on to candidates whose driver score is the given tier; false if none of them can make the results
+        boolean startTier(int tier) {
+            this.tier = tier;
+            done = done || isSettled(0);
+            return !done;
+        }
+        
+        /**
+         * Checks the users of the dictionary entry equal to the driver.
+         * @param entry An Integer or Postings
+         */
+        void visit(Object entry) {
+            Cursor users = new Cursor(entry);
+            for (int number = users.seek(0); number != Cursor.END && read(); number = users.seek(number + 1)) {
+                if (containsAll(termFilters, number)) {
+                    check(number, null);
+                }
+            }
+        }
+        
+        /**
+         * Checks the users of the dictionary entries starting with the driver.
+         * Their lists are merged first, since the entries come in dictionary
+         * order and ties have to be found in index order.
+         * @param entries Integers or Postings
+         * @param exact The users holding the driver as a token, checked in the first tier, or null
+         */
+        void visitPrefixes(Collection<Object> entries, Cursor exact) {
+            int[] merged = new int[16];
+            int size = 0;
+            boolean cut = false;
+            collect:
+            for (Object entry : entries) {
+                Cursor users = new Cursor(entry);
+                for (int number = users.seek(0); number != Cursor.END; number = users.seek(number + 1)) {
+                    if (postingsRead == MAX_POSTINGS) {
+                        cut = true;
+                        break collect;
+                    }
+                    postingsRead++;
+                    if (size == merged.length) {
+                        merged = Arrays.copyOf(merged, size << 1);
+                    }
+                    merged[size++] = number;
+                }
+            }
+            Arrays.sort(merged, 0, size);
+            for (int i = 0; i < size && !done; i++) {
+                // A user holding several of the tokens is listed once for each
+                if ((i == 0 || merged[i] != merged[i - 1]) && containsAll(termFilters, merged[i])) {
+                    check(merged[i], exact);
+                }
+            }
+            if (cut) {
+                truncated = true;
+                done = true;
+            }
+        }
+        
+        /**
+         * Checks the users holding all of the driver's trigrams and the other
+         * terms' rarest ones. Each list skips ahead to the number another
+         * stopped at, so the lists are walked together instead of probing
+         * every number of the rarest.
+         * @param exact The users holding the driver as a token, checked in the first tier, or null
+         */
+        void intersect(Cursor exact) {
+            Cursor lead = new Cursor(driverTrigrams[0]);
+            List<Cursor> filters = new ArrayList<>();
+            for (int i = 1; i < driverTrigrams.length; i++) {
+                filters.add(new Cursor(driverTrigrams[i]));
+            }
+            for (Postings other : otherTerms) {
+                filters.add(new Cursor(other));
+            }
+            
+            int number = lead.seek(0);
+            while (number != Cursor.END && read()) {
+                int next = number;
+                for (Cursor filter : filters) {
+                    next = filter.seek(number);
+                    if (next != number) {
+                        break;
+                    }
+                }
+                if (next == number) {
+                    if (exact == null || !exact.contains(number)) {
+                        check(number, null);
+                    }
+                    next = number + 1;
+                }
+                number = next == Cursor.END ? next : lead.seek(next);
+            }
+        }
+        
+        // Counts one list entry read; false once the query is done
+        private boolean read() {
+            if (done) {
+                return false;
+            }
+            if (++postingsRead > MAX_POSTINGS) {
+                truncated = true;
+                done = true;
+            }
+            return !done;
+        }
+        
+        private void check(int number, Cursor exact) {
+            if (exact != null && exact.contains(number)) {
+                return;
+            }
+            if (++candidates > MAX_CANDIDATES) {
+                truncated = true;
+                done = true;
+                return;
+            }
+            // Numbers may be newer than the array this search started with
+            User user = (number < indexed.length ? indexed : users)[number];
+            // Trigrams may occur apart, and users whose best match for the driver is a
+            // prefix were checked in the previous tier
+            if (tier == SUBSTRING && score(user, driver) != SUBSTRING) {
+                return;
+            }
+            int total = tier;
+            for (String term : terms) {
+                if (term.equals(driver)) {
+                    continue;
+                }
+                int termScore = score(user, term);
+                if (termScore == 0) {
+                    return;
+                }
+                total += termScore;
+            }
+            hits.add(new Hit(user, number, total));
+            hitsByScore[total]++;
+            done = isSettled(number + 1);
+        }
+        
+        private boolean containsAll(Cursor[] filters, int number) {
+            for (Cursor filter : filters) {
+                if (!filter.contains(number)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        /**
+         * Checks whether limit hits already rank before any candidate still to
+         * come: they score more than it can, or as much but were indexed before it.
+         * @param next The lowest number a candidate still to come in this tier can have; 0 at the start of a tier
+         */
+        private boolean isSettled(int next) {
+            int best = tier + EXACT * (terms.size() - 1);
+            int found = 0;
+            for (int score = best + 1; score < hitsByScore.length; score++) {
+                found += hitsByScore[score];
+            }
+            if (found >= limit) {
+                return true;
+            }
+            if (next == 0 || found + hitsByScore[best] < limit) {
+                return false;
+            }
+            for (Hit hit : hits) {
+                if (hit.score == best && hit.number < next) {
+                    found++;
+                }
+            }
+            return found >= limit;
+        }
+        
+        Result result() {
+            hits.sort(Comparator.comparingInt((Hit hit) -> hit.score).reversed()
+                              .thenComparingInt(hit -> hit.number));
+            List<User> found = new ArrayList<>(Math.min(limit, hits.size()));
+            for (int i = 0; i < hits.size() && i < limit; i++) {
+                found.add(hits.get(i).user);
+            }
+            return new Result(found, truncated);
+        }
+    }
+    
+    private static final class Hit {
+        final User user;
+        final int number;
+        final int score;
+        
+        Hit(User user, int number, int score) {
+            this.user = user;
+            this.number = number;
+            this.score = score;
+        }
+    }
+    
+    /**
+     * The users found by one search.
+     */
+    public static final class Result {
+        private final List<User> users;
+        private final boolean truncated;
+        
+        private Result(List<User> users, boolean truncated) {
+            this.users = Collections.unmodifiableList(users);
+            this.truncated = truncated;
+        }
+        
+        /**
+         * Gets the users found, best matches first.
+         */
+        public List<User> getUsers() {
+            return users;
+        }
+        
+        /**
+         * Checks whether the search stopped at {@link #MAX_POSTINGS} or
+         * {@link #MAX_CANDIDATES}, before it could rule out better matches
+         * than the ones returned.
+         */
+        public boolean isTruncated() {
+            return truncated;
+        }
+    }
+}
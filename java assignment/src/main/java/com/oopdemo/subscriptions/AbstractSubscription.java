@@ -0,0 +1,126 @@
+package com.oopdemo.subscriptions;
+
+import com.oopdemo.enums.SubscriptionStatus;
+import com.oopdemo.interfaces.Billable;
+import com.oopdemo.users.User;
+import java.time.LocalDate;
+
+/**
+ * Abstract base class of all subscriptions - demonstrates an abstract class
+ * implementing an interface and the template method pattern.
+ * 
+ * This class showcases:
+ * - Implementation of the Billable interface
+ * - A final template method (calculateTotalCost) built from abstract and overridable steps
+ * - Constructor chaining from every subscription type
+ * 
+ * A subscription belongs to one user and is billed every billingMonths
+ * months. Its status is changed through {@link SubscriptionManager}, which
+ * keeps its indexes in step; reading it never blocks.
+ */
+public abstract class AbstractSubscription implements Billable {
+    /** Discount for paying a year in advance. */
+    protected static final double ANNUAL_DISCOUNT = 0.10;
+    
+    private final long subscriptionId;
+    private final User owner;
+    private final int billingMonths;
+    private final String currency;
+    private final int startEpochDay;
+    private volatile SubscriptionStatus status = SubscriptionStatus.PENDING;
+    
+    /**
+     * Constructor called by every subclass through super().
+     * 
+     * @param owner The subscribing user
+     * @param billingMonths Months covered by each bill: 1 (monthly) or 12 (annual)
+     * @param currency ISO currency code of the bills, e.g. "USD"
+     */
+    protected AbstractSubscription(User owner, int billingMonths, String currency) {
+        if (billingMonths != 1 && billingMonths != 12) {
+            throw new IllegalArgumentException("Billing period must be 1 or 12 months: " + billingMonths);
+        }
+        // Drawn from the user id generator, so subscription ids are time-ordered as well
+        this.subscriptionId = User.getIdGenerator().nextId();
+        this.owner = owner;
+        this.billingMonths = billingMonths;
+        this.currency = currency.intern();
+        this.startEpochDay = (int) LocalDate.now().toEpochDay();
+    }
+    
+    /**
+     * Abstract method - each subscription type names its tier.
+     * @return The tier name, e.g. "Premium"
+     */
+    public abstract String getTierName();
+    
+    /**
+     * Abstract method - each subscription type sets its own price.
+     * @return The price of one month before discounts
+     */
+    public abstract double getMonthlyPrice();
+    
+    /**
+     * Hook for extra charges per bill; none by default.
+     * @return The amount added to each bill before discounts
+     */
+    protected double getAddOnCost() {
+        return 0.0;
+    }
+    
+    /**
+     * Hook for the discount on each bill; annual billing is discounted by default.
+     * @return The fraction taken off each bill, from 0 to 1
+     */
+    protected double getDiscountRate() {
+        return billingMonths == 12 ? ANNUAL_DISCOUNT : 0.0;
+    }
+    
+    /**
+     * Template method - the cost of one bill, rounded to cents.
+     * 
+     * @return (monthly price x months + add-ons) less the discount
+     */
+    @Override
+    public final double calculateTotalCost() {
+        double cost = getMonthlyPrice() * billingMonths + getAddOnCost();
+        return Math.round(cost * (1.0 - getDiscountRate()) * 100.0) / 100.0;
+    }
+    
+    @Override
+    public String getBillingCurrency() {
+        return currency;
+    }
+    
+    public long getSubscriptionId() {
+        return subscriptionId;
+    }
+    
+    public User getOwner() {
+        return owner;
+    }
+    
+    public int getBillingMonths() {
+        return billingMonths;
+    }
+    
+    public SubscriptionStatus getStatus() {
+        return status;
+    }
+    
+    public LocalDate getStartDate() {
+        return LocalDate.ofEpochDay(startEpochDay);
+    }
+    
+    // Only SubscriptionManager changes the status, while holding this subscription's lock
+    void setStatus(SubscriptionStatus status) {
+        this.status = status;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("%s subscription %d of %s - %s, %.2f %s every %d month(s)",
+                getTierName(), subscriptionId, owner.getUserId(), status, calculateTotalCost(), currency,
+                billingMonths);
+    }
+}
@@ -0,0 +1,35 @@
+package com.oopdemo.subscriptions;
+
+import com.oopdemo.users.User;
+
+/**
+ * Basic tier - demonstrates the simplest specialization in the multilevel hierarchy.
+ * A flat monthly price with no add-ons.
+ */
+public class BasicSubscription extends Subscription {
+    public static final double MONTHLY_PRICE = 9.99;
+    
+    /**
+     * Creates a basic subscription billed in US dollars.
+     * 
+     * @param owner The subscribing user
+     * @param billingMonths Months covered by each bill: 1 or 12
+     */
+    public BasicSubscription(User owner, int billingMonths) {
+        this(owner, billingMonths, "USD"); // Constructor chaining with this()
+    }
+    
+    public BasicSubscription(User owner, int billingMonths, String currency) {
+        super(owner, billingMonths, currency); // Multi-level constructor chaining
+    }
+    
+    @Override
+    public String getTierName() {
+        return "Basic";
+    }
+    
+    @Override
+    public double getMonthlyPrice() {
+        return MONTHLY_PRICE;
+    }
+}
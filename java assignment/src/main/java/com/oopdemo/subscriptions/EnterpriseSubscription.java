@@ -0,0 +1,61 @@
+package com.oopdemo.subscriptions;
+
+import com.oopdemo.users.User;
+
+/**
+ * Enterprise tier - demonstrates a price computed from the subscription's own state.
+ * 
+ * Priced per seat in bands, like tax brackets: each seat is charged the rate
+ * of the band it falls into, so adding a seat never makes the bill cheaper.
+ */
+public class EnterpriseSubscription extends Subscription {
+    // Seats up to each bound cost the rate at the same index; the last band is open
+    private static final int[] SEAT_BANDS = {10, 100, Integer.MAX_VALUE};
+    private static final double[] SEAT_RATES = {15.00, 12.00, 9.00};
+    
+    private final int seats;
+    
+    /**
+     * Creates an enterprise subscription billed in US dollars.
+     * 
+     * @param owner The subscribing user
+     * @param billingMonths Months covered by each bill: 1 or 12
+     * @param seats Number of seats, at least 1
+     */
+    public EnterpriseSubscription(User owner, int billingMonths, int seats) {
+        this(owner, billingMonths, seats, "USD"); // Constructor chaining with this()
+    }
+    
+    public EnterpriseSubscription(User owner, int billingMonths, int seats, String currency) {
+        super(owner, billingMonths, currency); // Multi-level constructor chaining
+        if (seats < 1) {
+            throw new IllegalArgumentException("Seats must be at least 1: " + seats);
+        }
+        this.seats = seats;
+    }
+    
+    @Override
+    public String getTierName() {
+        return "Enterprise";
+    }
+    
+    /**
+     * Override computing the price from the seat bands.
+     * @return The price of one month for all seats
+     */
+    @Override
+    public double getMonthlyPrice() {
+        double price = 0.0;
+        int priced = 0;
+        for (int band = 0; priced < seats; band++) {
+            int inBand = Math.min(seats, SEAT_BANDS[band]) - priced;
+            price += inBand * SEAT_RATES[band];
+            priced += inBand;
+        }
+        return price;
+    }
+    
+    public int getSeats() {
+        return seats;
+    }
+}
@@ -0,0 +1,55 @@
+package com.oopdemo.subscriptions;
+
+import com.oopdemo.users.User;
+
+/**
+ * Premium tier - demonstrates overriding the template method's hooks.
+ * Adds optional priority support to every bill and a larger annual discount.
+ */
+public class PremiumSubscription extends Subscription {
+    public static final double MONTHLY_PRICE = 19.99;
+    public static final double PRIORITY_SUPPORT_MONTHLY = 5.00;
+    private static final double ANNUAL_DISCOUNT_PREMIUM = 0.15;
+    
+    private final boolean prioritySupport;
+    
+    /**
+     * Creates a premium subscription billed in US dollars.
+     * 
+     * @param owner The subscribing user
+     * @param billingMonths Months covered by each bill: 1 or 12
+     * @param prioritySupport Whether priority support is added
+     */
+    public PremiumSubscription(User owner, int billingMonths, boolean prioritySupport) {
+        this(owner, billingMonths, prioritySupport, "USD"); // Constructor chaining with this()
+    }
+    
+    public PremiumSubscription(User owner, int billingMonths, boolean prioritySupport, String currency) {
+        super(owner, billingMonths, currency); // Multi-level constructor chaining
+        this.prioritySupport = prioritySupport;
+    }
+    
+    @Override
+    public String getTierName() {
+        return "Premium";
+    }
+    
+    @Override
+    public double getMonthlyPrice() {
+        return MONTHLY_PRICE;
+    }
+    
+    @Override
+    protected double getAddOnCost() {
+        return prioritySupport ? PRIORITY_SUPPORT_MONTHLY * getBillingMonths() : 0.0;
+    }
+    
+    @Override
+    protected double getDiscountRate() {
+        return getBillingMonths() == 12 ? ANNUAL_DISCOUNT_PREMIUM : 0.0;
+    }
+    
+    public boolean hasPrioritySupport() {
+        return prioritySupport;
+    }
+}
@@ -0,0 +1,51 @@
+package com.oopdemo.subscriptions;
+
+import com.oopdemo.users.User;
+
+/**
+ * Concrete base subscription - the middle level of the multilevel hierarchy
+ * AbstractSubscription -> Subscription -> Basic/Premium/EnterpriseSubscription.
+ * 
+ * Used directly for a custom plan with a negotiated monthly price; the tiered
+ * plans extend it and override the price.
+ */
+public class Subscription extends AbstractSubscription {
+    private final double monthlyPrice;
+    
+    /**
+     * Constructor for a custom plan - demonstrates constructor chaining.
+     * 
+     * @param owner The subscribing user
+     * @param monthlyPrice The agreed price of one month
+     * @param billingMonths Months covered by each bill: 1 or 12
+     * @param currency ISO currency code of the bills
+     */
+    public Subscription(User owner, double monthlyPrice, int billingMonths, String currency) {
+        super(owner, billingMonths, currency); // Constructor chaining to the abstract class
+        if (monthlyPrice < 0) {
+            throw new IllegalArgumentException("Monthly price must not be negative: " + monthlyPrice);
+        }
+        this.monthlyPrice = monthlyPrice;
+    }
+    
+    /**
+     * Constructor for the tiered plans, whose price comes from getMonthlyPrice().
+     * 
+     * @param owner The subscribing user
+     * @param billingMonths Months covered by each bill: 1 or 12
+     * @param currency ISO currency code of the bills
+     */
+    protected Subscription(User owner, int billingMonths, String currency) {
+        this(owner, 0.0, billingMonths, currency);
+    }
+    
+    @Override
+    public String getTierName() {
+        return "Custom";
+    }
+    
+    @Override
+    public double getMonthlyPrice() {
+        return monthlyPrice;
+    }
+}
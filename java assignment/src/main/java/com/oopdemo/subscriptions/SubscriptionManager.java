@@ -0,0 +1,244 @@
+package com.oopdemo.subscriptions;
+
+import com.oopdemo.enums.SubscriptionStatus;
+import com.oopdemo.logging.LogManager;
+import com.oopdemo.logging.Logger;
+import com.oopdemo.users.IdKey;
+import com.oopdemo.users.User;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Thread-safe store of all subscriptions, indexed by id, by user and by status.
+ * 
+ * Every lookup is a hash lookup, and the number of subscriptions per status
+ * is kept as it changes, so none of them scan. A user's subscriptions are
+ * kept as a small array that is replaced whenever one is added; users hold
+ * only a few, and reading them needs no lock.
+ * 
+ * Status changes go through the manager and follow the transitions of
+ * {@link SubscriptionStatus}. Each one holds only the lock of the
+ * subscription it changes, so the status index always matches the
+ * subscriptions' own status while changes to different subscriptions run
+ * in parallel.
+ */
+public class SubscriptionManager {
+    private static final Logger LOG = LogManager.getLogger(SubscriptionManager.class);
+    private static final AbstractSubscription[] NONE = new AbstractSubscription[0];
+    
+    private final Map<IdKey, AbstractSubscription> subscriptionsById = new ConcurrentHashMap<>();
+    // Keyed like UserRegistry: the numeric user id, or the text id when it is not canonical
+    private final Map<Object, AbstractSubscription[]> subscriptionsByUser = new ConcurrentHashMap<>();
+    // Both filled for every status up front and only read afterwards
+    private final Map<SubscriptionStatus, Set<AbstractSubscription>> subscriptionsByStatus =
+            new EnumMap<>(SubscriptionStatus.class);
+    private final Map<SubscriptionStatus, LongAdder> statusCounts = new EnumMap<>(SubscriptionStatus.class);
+    
+    public SubscriptionManager() {
+        for (SubscriptionStatus status : SubscriptionStatus.values()) {
+            subscriptionsByStatus.put(status, ConcurrentHashMap.newKeySet());
+            statusCounts.put(status, new LongAdder());
+        }
+    }
+    
+    /**
+     * Adds a new subscription in its initial (PENDING) status.
+     * 
+     * @param subscription The subscription to add
+     * @throws IllegalStateException if the owner may not subscribe: they are
+     *         suspended or cancelled, or already hold as many subscriptions
+     *         that are not cancelled as {@link User#getMaxActiveSubscriptions} allows
+     */
+    public void subscribe(AbstractSubscription subscription) {
+        User owner = subscription.getOwner();
+        switch (owner.getStatus()) {
+            case SUSPENDED:
+            case CANCELLED:
+                throw new IllegalStateException("User " + owner.getUserId() + " is " + owner.getStatus()
+                        + " and cannot subscribe");
+            default:
+                break;
+        }
+        IdKey id = IdKey.of(subscription.getSubscriptionId());
+        if (subscriptionsById.containsKey(id)) {
+            throw duplicate(subscription);
+        }
+        // Held until the subscription is in every index, so its status cannot change in between
+        synchronized (subscription) {
+            // compute locks the user's entry, so checking the limit and adding are one step
+            subscriptionsByUser.compute(userKey(owner), (key, held) -> {
+                AbstractSubscription[] current = held != null ? held : NONE;
+                int limit = owner.getMaxActiveSubscriptions();
+                if (countNotCancelled(current) >= limit) {
+                    throw new IllegalStateException("User " + owner.getUserId() + " already has " + limit
+                            + " subscriptions");
+                }
+                AbstractSubscription[] grown = Arrays.copyOf(current, current.length + 1);
+                grown[current.length] = subscription;
+                return grown;
+            });
+            SubscriptionStatus status = subscription.getStatus();
+            subscriptionsByStatus.get(status).add(subscription);
+            statusCounts.get(status).increment();
+            // Last, so a subscription can only be found and changed by id once it is fully added
+            if (subscriptionsById.putIfAbsent(id, subscription) != null) {
+                subscriptionsByStatus.get(status).remove(subscription);
+                statusCounts.get(status).decrement();
+                subscriptionsByUser.computeIfPresent(userKey(owner), (key, held) -> without(held, subscription));
+                throw duplicate(subscription);
+            }
+        }
+        LOG.debug("Added {}", subscription);
+    }
+    
+    /**
+     * Changes the status of a subscription.
+     * 
+     * @param subscriptionId The subscription's id
+     * @param target The status to change to
+     * @return true if the status changed, false if the subscription is unknown or already has the status
+     * @throws IllegalStateException if the subscription may not change to the target status
+     */
+    public boolean changeStatus(long subscriptionId, SubscriptionStatus target) {
+        AbstractSubscription subscription = subscriptionsById.get(IdKey.of(subscriptionId));
+        if (subscription == null) {
+            return false;
+        }
+        SubscriptionStatus current;
+        synchronized (subscription) {
+            current = subscription.getStatus();
+            if (current == target) {
+                return false;
+            }
+            if (!current.canTransitionTo(target)) {
+                throw new IllegalStateException("Cannot change subscription " + subscriptionId
+                        + " from " + current.name() + " to " + target.name());
+            }
+            subscription.setStatus(target);
+            subscriptionsByStatus.get(current).remove(subscription);
+            statusCounts.get(current).decrement();
+            subscriptionsByStatus.get(target).add(subscription);
+            statusCounts.get(target).increment();
+        }
+        LOG.info("Subscription {} status updated from {} to {}", subscriptionId, current.name(), target.name());
+        return true;
+    }
+    
+    public boolean activate(long subscriptionId) {
+        return changeStatus(subscriptionId, SubscriptionStatus.ACTIVE);
+    }
+    
+    public boolean pause(long subscriptionId) {
+        return changeStatus(subscriptionId, SubscriptionStatus.INACTIVE);
+    }
+    
+    public boolean suspend(long subscriptionId) {
+        return changeStatus(subscriptionId, SubscriptionStatus.SUSPENDED);
+    }
+    
+    public boolean cancel(long subscriptionId) {
+        return changeStatus(subscriptionId, SubscriptionStatus.CANCELLED);
+    }
+    
+    /**
+     * Finds a subscription by id.
+     * 
+     * @param subscriptionId The subscription's id
+     * @return The subscription, or null if there is none
+     */
+    public AbstractSubscription findById(long subscriptionId) {
+        return subscriptionsById.get(IdKey.of(subscriptionId));
+    }
+    
+    /**
+     * Finds all subscriptions of a user, including cancelled ones.
+     * 
+     * @param user The user
+     * @return Unmodifiable list in the order the subscriptions were added
+     */
+    public List<AbstractSubscription> findByUser(User user) {
+        AbstractSubscription[] held = subscriptionsByUser.get(userKey(user));
+        return held != null ? Collections.unmodifiableList(Arrays.asList(held)) : List.of();
+    }
+    
+    /**
+     * Finds all subscriptions with a status.
+     * 
+     * @param status The status
+     * @return Live, unmodifiable view of the matching subscriptions
+     */
+    public Collection<AbstractSubscription> findByStatus(SubscriptionStatus status) {
+        return Collections.unmodifiableSet(subscriptionsByStatus.get(status));
+    }
+    
+    public long countByStatus(SubscriptionStatus status) {
+        return statusCounts.get(status).sum();
+    }
+    
+    /**
+     * Gets the number of subscriptions in every status.
+     * @return Counts in status order, including statuses no subscription has
+     */
+    public Map<SubscriptionStatus, Long> getStatusCounts() {
+        Map<SubscriptionStatus, Long> counts = new EnumMap<>(SubscriptionStatus.class);
+        for (Map.Entry<SubscriptionStatus, LongAdder> entry : statusCounts.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().sum());
+        }
+        return counts;
+    }
+    
+    /**
+     * Visits every subscription, in no particular order.
+     * @param visitor Called once per subscription
+     */
+    public void forEach(Consumer<? super AbstractSubscription> visitor) {
+        subscriptionsById.values().forEach(visitor);
+    }
+    
+    public int size() {
+        return subscriptionsById.size();
+    }
+    
+    private static Object userKey(User user) {
+        return user.getNumericId() >= 0 ? IdKey.of(user.getNumericId()) : user.getUserId();
+    }
+    
+    private static IllegalStateException duplicate(AbstractSubscription subscription) {
+        return new IllegalStateException("Duplicate subscription " + subscription.getSubscriptionId());
+    }
+    
+    // The subscriptions without one of them, or null if none are left
+    private static AbstractSubscription[] without(AbstractSubscription[] subscriptions,
+                                                  AbstractSubscription removed) {
+        for (int i = 0; i < subscriptions.length; i++) {
+            if (subscriptions[i] == removed) {
+                if (subscriptions.length == 1) {
+                    return null;
+                }
+                AbstractSubscription[] shrunk = new AbstractSubscription[subscriptions.length - 1];
+                System.arraycopy(subscriptions, 0, shrunk, 0, i);
+                System.arraycopy(subscriptions, i + 1, shrunk, i, shrunk.length - i);
+                return shrunk;
+            }
+        }
+        return subscriptions;
+    }
+    
+        private static int countNotCancelled(AbstractSubscription[] subscriptions) {
+        int count = 0;
+        for (AbstractSubscription subscription : subscriptions) {
+            if (subscription.getStatus() != SubscriptionStatus.CANCELLED) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
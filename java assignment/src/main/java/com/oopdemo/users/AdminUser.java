@@ -1,8 +1,12 @@
 package com.oopdemo.users;
 
+import com.oopdemo.enums.UserStatus;
+import com.oopdemo.interfaces.PermissionChangeListener;
+import com.oopdemo.logging.LogManager;
+import com.oopdemo.logging.Logger;
 import java.time.LocalDate;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * AdminUser class extending User - demonstrates single inheritance with enhanced functionality.
@@ -13,9 +17,21 @@ import java.util.List;
  * - Constructor chaining using super()
  * - Implementation of abstract method from parent class
  * - Additional functionality specific to admin users
+ * 
+ * Permissions are held as a shared {@link PermissionSet} bitset, so admins
+ * with the same permissions do not each keep a copy of them and checking one
+ * takes constant time. Every management action requires USER_MANAGEMENT.
+ * Admins start with it and no permission is ever revoked, so today the check
+ * never fails; it is there for when permissions can be taken away.
  */
 public class AdminUser extends User {
-    private List<String> adminPermissions;
+    private static final Logger LOG = LogManager.getLogger(AdminUser.class);
+    private static final int USER_MANAGEMENT = Permissions.register(Permissions.USER_MANAGEMENT);
+    
+    private volatile PermissionSet adminPermissions = PermissionSet.DEFAULTS;
+    
+    // Observer notified when a permission is granted (e.g. the registry journaling it)
+    private volatile PermissionChangeListener permissionChangeListener;
     
     /**
      * Constructor with name and email - demonstrates constructor chaining.
@@ -26,9 +42,7 @@ public class AdminUser extends User {
      */
     public AdminUser(String name, String email) {
         super(name, email); // Constructor chaining to parent class
-        this.adminPermissions = new ArrayList<>();
-        initializeAdminPermissions();
-        System.out.println("AdminUser constructor called for: " + name);
+        LOG.debug("AdminUser constructor called for: {}", name);
     }
     
     /**
@@ -41,9 +55,7 @@ public class AdminUser extends User {
      */
     public AdminUser(String userId, String name, String email, LocalDate registrationDate) {
         super(userId, name, email, registrationDate); // Constructor chaining to parent class
-        this.adminPermissions = new ArrayList<>();
-        initializeAdminPermissions();
-        System.out.println("AdminUser full constructor called for: " + name);
+        LOG.debug("AdminUser full constructor called for: {}", name);
     }
     
     /**
@@ -79,9 +91,12 @@ public class AdminUser extends User {
      */
     @Override
     public void sendNotification(String message) {
-        // Enhanced notification for admin users
-        System.out.println("ADMIN NOTIFICATION to " + name + " (" + email + "): " + message);
-        System.out.println("Admin notification logged for audit purposes.");
+        // Enhanced notification for admin users, marked for audit when queued
+        if (dispatchNotification(message, true)) {
+            return;
+        }
+        LOG.info("ADMIN NOTIFICATION to {} ({}): {}", name, getEmail(), message);
+        LOG.info("Admin notification logged for audit purposes.");
     }
     
     /**
@@ -89,54 +104,118 @@ public class AdminUser extends User {
      * 
      * @param permission The permission to add
      */
-    public void addPermission(String permission) {
+    public synchronized void addPermission(String permission) {
         if (!adminPermissions.contains(permission)) {
-            adminPermissions.add(permission);
-            System.out.println("Permission '" + permission + "' added to admin user: " + name);
+            adminPermissions = adminPermissions.with(permission);
+            LOG.info("Permission '{}' added to admin user: {}", permission, name);
+            
+            PermissionChangeListener listener = permissionChangeListener;
+            if (listener != null) {
+                listener.onPermissionAdded(this, permission);
+            }
         }
     }
     
+    /**
+     * Adds a permission without logging or notifying the listener, e.g. when
+     * an admin is restored from storage.
+     * 
+     * @param permission The stored permission
+     */
+    public synchronized void restorePermission(String permission) {
+        adminPermissions = adminPermissions.with(permission);
+    }
+    
+    /**
+     * Registers the observer that is told about granted permissions.
+     * Only one listener is kept; a later call replaces the earlier one.
+     * 
+     * @param listener The listener to notify, or null to remove it
+     */
+    public void setPermissionChangeListener(PermissionChangeListener listener) {
+        this.permissionChangeListener = listener;
+    }
+    
     /**
      * Method specific to AdminUser - demonstrates specialized behavior.
      * 
-     * @return List of admin permissions
+     * @return Unmodifiable list of admin permissions
      */
     public List<String> getAdminPermissions() {
-        return new ArrayList<>(adminPermissions); // Return copy to maintain encapsulation
+        return adminPermissions.asList(); // Immutable and shared, so no copy is needed
+    }
+    
+    /**
+     * Checks whether this admin holds a permission.
+     * 
+     * @param permission The permission name
+     * @return true if the permission was granted
+     */
+    public boolean hasPermission(String permission) {
+        return adminPermissions.contains(permission);
+    }
+    
+    /**
+     * Gets the permission a management action requires.
+     * 
+     * @param action The action passed to {@link #manageUser}
+     * @return The permission name, or null if the action is unknown
+     */
+    public static String requiredPermission(String action) {
+        int position = requiredPosition(action);
+        return position >= 0 ? Permissions.nameOf(position) : null;
     }
     
     /**
      * Method specific to AdminUser - demonstrates admin-only functionality.
      * 
      * @param targetUser The user to manage
-     * @param action The management action to perform
+     * @param action The management action to perform: suspend, activate, deactivate, cancel or notify
+     * @throws IllegalStateException if the target's status may not change as the action requires
+     * @throws SecurityException if this admin lacks the permission the action requires
      */
     public void manageUser(User targetUser, String action) {
-        System.out.println("Admin " + name + " performing action '" + action + 
-                         "' on user: " + targetUser.getName());
+        int position = requiredPosition(action);
+        if (position >= 0 && !adminPermissions.contains(position)) {
+            throw new SecurityException("Admin " + getUserId() + " lacks permission " + Permissions.nameOf(position));
+        }
+        LOG.info("Admin {} performing action '{}' on user: {}", name, action, targetUser.getName());
         
-        switch (action.toLowerCase()) {
+        switch (action.toLowerCase(Locale.ROOT)) {
             case "suspend":
-                targetUser.updateStatus("SUSPENDED");
+                targetUser.updateStatus(UserStatus.SUSPENDED);
                 break;
             case "activate":
-                targetUser.updateStatus("ACTIVE");
+                targetUser.updateStatus(UserStatus.ACTIVE);
+                break;
+            case "deactivate":
+                targetUser.updateStatus(UserStatus.INACTIVE);
+                break;
+            case "cancel":
+                targetUser.updateStatus(UserStatus.CANCELLED);
                 break;
             case "notify":
                 targetUser.sendNotification("You have been contacted by an administrator.");
                 break;
             default:
-                System.out.println("Unknown action: " + action);
+                LOG.warn("Unknown action: {}", action);
         }
     }
     
-    /**
-     * Initialize default admin permissions.
-     */
-    private void initializeAdminPermissions() {
-        adminPermissions.add("USER_MANAGEMENT");
-        adminPermissions.add("SYSTEM_CONFIGURATION");
-        adminPermissions.add("BILLING_ACCESS");
-        adminPermissions.add("AUDIT_LOGS");
+    // Bit position of the permission an action requires, or -1 for unknown actions
+    private static int requiredPosition(String action) {
+        if (action == null) {
+            return -1;
+        }
+        switch (action.toLowerCase(Locale.ROOT)) {
+            case "suspend":
+            case "activate":
+            case "deactivate":
+            case "cancel":
+            case "notify":
+                return USER_MANAGEMENT;
+            default:
+                return -1;
+        }
     }
 }
\ No newline at end of file
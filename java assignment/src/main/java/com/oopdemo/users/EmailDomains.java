@@ -0,0 +1,41 @@
+package com.oopdemo.users;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pool of email domains shared by all users.
+ * 
+ * Users store the part of their address before the last '@' themselves and
+ * only reference the domain, so millions of "@email.com" addresses keep a
+ * single copy of it.
+ */
+public final class EmailDomains {
+    private static final Map<String, String> domains = new ConcurrentHashMap<>();
+    
+    private EmailDomains() {
+    }
+    
+    /**
+     * Gets the pooled copy of a domain.
+     * 
+     * @param domain The domain, e.g. "email.com"
+     * @return The shared instance equal to the domain
+     */
+    public static String intern(String domain) {
+        String pooled = domains.get(domain);
+        if (pooled != null) {
+            return pooled;
+        }
+        String previous = domains.putIfAbsent(domain, domain);
+        return previous != null ? previous : domain;
+    }
+    
+    /**
+     * Gets the number of distinct domains seen so far.
+     * @return The pool size
+     */
+    public static int size() {
+        return domains.size();
+    }
+}
@@ -0,0 +1,15 @@
+package com.oopdemo.users;
+
+/**
+ * Source of numeric ids for new users.
+ * Demonstrates a pluggable strategy: install another implementation with
+ * {@link User#setIdGenerator}.
+ */
+@FunctionalInterface
+public interface IdGenerator {
+    /**
+     * Gets a new id. Must be thread-safe and never return the same id twice.
+     * @return A non-negative id
+     */
+    long nextId();
+}
@@ -0,0 +1,50 @@
+package com.oopdemo.users;
+
+/**
+ * Hash map key for a numeric id.
+ * 
+ * Ids from {@link SnowflakeIdGenerator} keep their varying bits in the middle
+ * of the long, which {@link Long#hashCode()} folds into a few thousand hash
+ * buckets; a map of millions of them degrades into long collision chains.
+ * This key scrambles all 64 bits into its hash, but still equals and sorts
+ * by the id itself, so one key serves both hash and sorted indexes.
+ */
+public final class IdKey implements Comparable<IdKey> {
+    private final long id;
+    private final int hash;
+    
+    private IdKey(long id) {
+        this.id = id;
+        long mixed = (id ^ (id >>> 33)) * 0xFF51AFD7ED558CCDL; // Finalizer of MurmurHash3
+        mixed = (mixed ^ (mixed >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        this.hash = (int) (mixed ^ (mixed >>> 33));
+    }
+    
+    public static IdKey of(long id) {
+        return new IdKey(id);
+    }
+    
+    public long getId() {
+        return id;
+    }
+    
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof IdKey && ((IdKey) obj).id == id;
+    }
+    
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+    
+    @Override
+    public int compareTo(IdKey other) {
+        return Long.compare(id, other.id);
+    }
+    
+    @Override
+    public String toString() {
+        return Long.toString(id);
+    }
+}
@@ -0,0 +1,136 @@
+package com.oopdemo.users;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable, interned bitset of admin permissions.
+ * 
+ * Each permission is a bit at the position {@link Permissions} gave its name,
+ * so checking one is a lookup and a mask rather than a scan of a list.
+ * Almost every admin holds the same few permissions, so admins share one
+ * instance per distinct set instead of each keeping its own. Granting a
+ * permission replaces the admin's set with the interned set that also holds
+ * the new permission. Names are listed in registration order.
+ */
+public final class PermissionSet {
+    private static final Map<PermissionSet, PermissionSet> interned = new ConcurrentHashMap<>();
+    
+    /** The permissions every admin starts with. */
+    public static final PermissionSet DEFAULTS = of(List.of(Permissions.USER_MANAGEMENT,
+            Permissions.SYSTEM_CONFIGURATION, Permissions.BILLING_ACCESS, Permissions.AUDIT_LOGS));
+    
+    private final long[] bits;
+    private final int hash;
+    private List<String> names;
+    
+    private PermissionSet(long[] bits) {
+        this.bits = bits;
+        this.hash = Arrays.hashCode(bits);
+    }
+    
+    /**
+     * Gets the shared set holding exactly these permissions.
+     * 
+     * @param permissions The permissions, registered if they are new
+     * @return The interned set
+     */
+    public static PermissionSet of(List<String> permissions) {
+        long[] bits = new long[0];
+        for (String permission : permissions) {
+            bits = set(bits, Permissions.register(permission));
+        }
+        return intern(bits);
+    }
+    
+    /**
+     * Gets the set that additionally holds a permission.
+     * 
+     * @param permission The permission to add
+     * @return The interned set with the permission, or this set if it already has it
+     */
+    public PermissionSet with(String permission) {
+        int position = Permissions.register(permission);
+        if (contains(position)) {
+            return this;
+        }
+        return intern(set(bits.clone(), position));
+    }
+    
+    public boolean contains(String permission) {
+        int position = Permissions.positionOf(permission);
+        return position >= 0 && contains(position);
+    }
+    
+    /**
+     * Checks a permission by its bit position.
+     * @param position A position from {@link Permissions#register}
+     * @return true if the permission is in this set
+     */
+    public boolean contains(int position) {
+        int word = position >>> 6;
+        return word < bits.length && (bits[word] & (1L << position)) != 0;
+    }
+    
+    public int size() {
+        int size = 0;
+        for (long word : bits) {
+            size += Long.bitCount(word);
+        }
+        return size;
+    }
+    
+    /**
+     * Gets the permission names as a list.
+     * @return Unmodifiable list shared by all holders of this set
+     */
+    public List<String> asList() {
+        return names;
+    }
+    
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof PermissionSet && Arrays.equals(bits, ((PermissionSet) obj).bits);
+    }
+    
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+    
+    @Override
+    public String toString() {
+        return names.toString();
+    }
+    
+    private static long[] set(long[] bits, int position) {
+        int word = position >>> 6;
+        long[] result = word < bits.length ? bits : Arrays.copyOf(bits, word + 1);
+        result[word] |= 1L << position;
+        return result;
+    }
+    
+    private static PermissionSet intern(long[] bits) {
+        PermissionSet candidate = new PermissionSet(bits);
+        PermissionSet existing = interned.get(candidate);
+        if (existing != null) {
+            return existing;
+        }
+        // Names are resolved once per distinct set, so reading them never allocates
+        List<String> names = new ArrayList<>(candidate.size());
+        for (int word = 0; word < bits.length; word++) {
+            long remaining = bits[word];
+            while (remaining != 0) {
+                names.add(Permissions.nameOf(word * 64 + Long.numberOfTrailingZeros(remaining)));
+                remaining &= remaining - 1;
+            }
+        }
+        candidate.names = Collections.unmodifiableList(names);
+        existing = interned.putIfAbsent(candidate, candidate);
+        return existing != null ? existing : candidate;
+    }
+}
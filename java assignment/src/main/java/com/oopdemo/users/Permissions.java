@@ -0,0 +1,86 @@
+package com.oopdemo.users;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of admin permission names.
+ * 
+ * Every name is given a bit position the first time it is seen, and
+ * {@link PermissionSet} stores permissions as bits in those positions. The
+ * positions only live in memory: storage and responses keep using names.
+ */
+public final class Permissions {
+    public static final String USER_MANAGEMENT = "USER_MANAGEMENT";
+    public static final String SYSTEM_CONFIGURATION = "SYSTEM_CONFIGURATION";
+    public static final String BILLING_ACCESS = "BILLING_ACCESS";
+    public static final String AUDIT_LOGS = "AUDIT_LOGS";
+    
+    private static final Map<String, Integer> positions = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[0];
+    
+    static {
+        register(USER_MANAGEMENT);
+        register(SYSTEM_CONFIGURATION);
+        register(BILLING_ACCESS);
+        register(AUDIT_LOGS);
+    }
+    
+    private Permissions() {
+    }
+    
+    /**
+     * Gets the bit position of a permission, registering it if it is new.
+     * 
+     * @param name The permission name
+     * @return The position, from 0 upwards in registration order
+     */
+    public static int register(String name) {
+        Integer position = positions.get(name);
+        if (position != null) {
+            return position;
+        }
+        synchronized (Permissions.class) {
+            position = positions.get(name);
+            if (position == null) {
+                String[] grown = Arrays.copyOf(names, names.length + 1);
+                grown[names.length] = name.intern();
+                position = names.length;
+                // Publish the name before the position so nameOf never sees a gap
+                names = grown;
+                positions.put(grown[position], position);
+            }
+            return position;
+        }
+    }
+    
+    /**
+     * Gets the bit position of a permission without registering it.
+     * 
+     * @param name The permission name
+     * @return The position, or -1 if no one was ever granted the permission
+     */
+    public static int positionOf(String name) {
+        Integer position = name == null ? null : positions.get(name);
+        return position != null ? position : -1;
+    }
+    
+    /**
+     * Gets the name registered at a bit position.
+     * 
+     * @param position A position returned by {@link #register}
+     * @return The permission name
+     */
+    public static String nameOf(int position) {
+        return names[position];
+    }
+    
+    /**
+     * Gets the number of registered permissions.
+     * @return The number of bit positions in use
+     */
+    public static int size() {
+        return names.length;
+    }
+}
@@ -1,5 +1,7 @@
 package com.oopdemo.users;
 
+import com.oopdemo.logging.LogManager;
+import com.oopdemo.logging.Logger;
 import java.time.LocalDate;
 
 /**
@@ -12,6 +14,8 @@ import java.time.LocalDate;
  * - Implementation of abstract method from parent class
  */
 public class RegularUser extends User {
+    private static final Logger LOG = LogManager.getLogger(RegularUser.class);
+    private static final int MAX_ACTIVE_SUBSCRIPTIONS = 3;
     
     /**
      * Constructor with name and email - demonstrates constructor chaining.
@@ -22,7 +26,7 @@ public class RegularUser extends User {
      */
     public RegularUser(String name, String email) {
         super(name, email); // Constructor chaining to parent class
-        System.out.println("RegularUser constructor called for: " + name);
+        LOG.debug("RegularUser constructor called for: {}", name);
     }
     
     /**
@@ -35,7 +39,7 @@ public class RegularUser extends User {
      */
     public RegularUser(String userId, String name, String email, LocalDate registrationDate) {
         super(userId, name, email, registrationDate); // Constructor chaining to parent class
-        System.out.println("RegularUser full constructor called for: " + name);
+        LOG.debug("RegularUser full constructor called for: {}", name);
     }
     
     /**
@@ -62,12 +66,22 @@ public class RegularUser extends User {
         return baseInfo + " | Access Level: " + getAccessLevel() + " | Type: Regular User";
     }
     
+    /**
+     * Override of parent's limit - regular users may only hold a few subscriptions.
+     * 
+     * @return The number of subscriptions that are not cancelled a regular user may hold
+     */
+    @Override
+    public int getMaxActiveSubscriptions() {
+        return MAX_ACTIVE_SUBSCRIPTIONS;
+    }
+    
     /**
      * Method specific to RegularUser - demonstrates specialized behavior.
      * 
      * @return String containing regular user specific information
      */
     public String getSubscriptionLimits() {
-        return "Regular users can have up to 3 active subscriptions";
+        return "Regular users can have up to " + MAX_ACTIVE_SUBSCRIPTIONS + " active subscriptions";
     }
 }
\ No newline at end of file
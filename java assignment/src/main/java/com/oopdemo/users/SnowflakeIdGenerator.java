@@ -0,0 +1,87 @@
+package com.oopdemo.users;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Snowflake-style generator of unique, time-ordered ids.
+ * 
+ * An id is 63 bits: milliseconds since {@link #EPOCH_MILLIS} (41 bits, good
+ * until 2093), a node number (6 bits) so several servers can share an id
+ * space, and a sequence within the millisecond (16 bits).
+ * 
+ * Threads do not share a lock: each thread reserves a small block of
+ * sequence numbers with one compare-and-set and then hands ids out of it on
+ * its own. A block is only used within the millisecond it was reserved, so
+ * ids sort by creation time to the millisecond. When more than 65536 ids are
+ * needed in a millisecond, or the clock goes backwards, the generator keeps
+ * counting from the last id rather than repeating one.
+ */
+public final class SnowflakeIdGenerator implements IdGenerator {
+    /** 2024-01-01T00:00:00Z, the zero point of the timestamps. */
+    public static final long EPOCH_MILLIS = 1_704_067_200_000L;
+    public static final int MAX_NODE = 63;
+    static final int NODE_BITS = 6;
+    static final int SEQUENCE_BITS = 16;
+    static final int BLOCK_SIZE = 64;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    
+    private final long nodeBits;
+    // Next unreserved (timestamp << SEQUENCE_BITS | sequence)
+    private final AtomicLong next = new AtomicLong();
+    private final ThreadLocal<Block> blocks = ThreadLocal.withInitial(Block::new);
+    
+    /**
+     * Creates a generator for one node.
+     * @param node Node number, 0 to {@link #MAX_NODE}; must differ between servers sharing ids
+     */
+    public SnowflakeIdGenerator(int node) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException("Node must be between 0 and " + MAX_NODE + ": " + node);
+        }
+        this.nodeBits = (long) node << SEQUENCE_BITS;
+    }
+    
+    @Override
+    public long nextId() {
+        Block block = blocks.get();
+        long millis = System.currentTimeMillis();
+        if (block.next == block.end || block.millis != millis) {
+            block.next = reserve(millis);
+            block.end = block.next + BLOCK_SIZE;
+            block.millis = millis;
+        }
+        long value = block.next++;
+        return ((value >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS)) | nodeBits | (value & SEQUENCE_MASK);
+    }
+    
+    /**
+     * Gets the creation time of an id made by this kind of generator.
+     * 
+     * @param id The id
+     * @return Milliseconds since 1970-01-01T00:00:00Z
+     */
+    public static long timestampOf(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS;
+    }
+    
+    // Reserves a block starting no earlier than the given time
+    private long reserve(long millis) {
+        long now = (millis - EPOCH_MILLIS) << SEQUENCE_BITS;
+        while (true) {
+            long current = next.get();
+            long start = Math.max(current, now);
+            if (next.compareAndSet(current, start + BLOCK_SIZE)) {
+                return start;
+            }
+        }
+    }
+    
+    /**
+     * The calling thread's reserved ids.
+     */
+    private static final class Block {
+        long next;
+        long end;
+        long millis;
+    }
+}
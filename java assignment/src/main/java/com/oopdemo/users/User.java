@@ -1,9 +1,16 @@
 package com.oopdemo.users;
 
+import com.oopdemo.enums.UserStatus;
 import com.oopdemo.interfaces.Manageable;
 import com.oopdemo.interfaces.Notifiable;
+import com.oopdemo.interfaces.StatusChangeListener;
+import com.oopdemo.logging.LogManager;
+import com.oopdemo.logging.Logger;
+import com.oopdemo.notifications.Notification;
+import com.oopdemo.notifications.NotificationDispatcher;
 import java.time.LocalDate;
-import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * Abstract base class representing any system user.
@@ -16,14 +23,40 @@ import java.util.UUID;
  * - Constructor chaining using this() and super()
  * - Interface implementation
  * - Proper encapsulation with protected fields
+ * 
+ * Users are kept compact because the registry may hold millions of them:
+ * the id is a number rendered on demand, the registration date is an epoch
+ * day and the email domain is shared through {@link EmailDomains}.
+ * 
+ * The status changes by compare-and-set, following the transitions allowed
+ * by {@link UserStatus}, so concurrent admin actions never block each other
+ * and cannot produce an illegal status. Listeners are then told about the
+ * change under the user's lock, in order.
  */
 public abstract class User implements Manageable, Notifiable {
+    private static final Logger LOG = LogManager.getLogger(User.class);
+    private static final UserStatus[] STATUSES = UserStatus.values();
+    private static final AtomicIntegerFieldUpdater<User> STATUS_STATE =
+            AtomicIntegerFieldUpdater.newUpdater(User.class, "statusState");
+    
     // Protected fields - accessible to subclasses but not external classes
-    protected String userId;
     protected String name;
-    protected String email;
-    protected LocalDate registrationDate;
-    protected String status;
+    
+    // Compact state, exposed through the getters below
+    private final long numericId;          // -1 if the id is not canonical
+    private final String externalId;       // Only set for ids UserIds cannot parse
+    private final String emailLocalPart;   // Everything before the last '@'
+    private final String emailDomain;      // Pooled; null if the address has no '@'
+    private final int registrationEpochDay;
+    // Low byte: ordinal of the current status; next byte: ordinal of the status
+    // the listener was last told about
+    private volatile int statusState;
+    
+    // Source of ids for users created without one
+    private static volatile IdGenerator idGenerator = new SnowflakeIdGenerator(0);
+    
+    // Observer notified on every status change (e.g. the registry keeping its indexes current)
+    private volatile StatusChangeListener statusChangeListener;
     
     /**
      * Constructor with name and email - demonstrates constructor chaining.
@@ -33,9 +66,9 @@ public abstract class User implements Manageable, Notifiable {
      * @param email The user's email address
      */
     public User(String name, String email) {
-        // Constructor chaining - calls the full constructor with generated ID and current date
-        this(generateId(), name, email, LocalDate.now());
-        System.out.println("User constructor (name, email) called for: " + name);
+        // Constructor chaining - calls the compact constructor with generated ID and current date
+        this(idGenerator.nextId(), null, name, email, LocalDate.now().toEpochDay());
+        LOG.debug("User constructor (name, email) called for: {}", name);
     }
     
     /**
@@ -48,12 +81,20 @@ public abstract class User implements Manageable, Notifiable {
      * @param registrationDate The date the user registered
      */
     public User(String userId, String name, String email, LocalDate registrationDate) {
-        System.out.println("User full constructor called for: " + name);
-        this.userId = userId;
+        this(UserIds.parse(userId), userId, name, email, registrationDate.toEpochDay());
+    }
+    
+    // Stores the fields in their compact form; externalId is dropped when the numeric id is valid
+    private User(long numericId, String externalId, String name, String email, long registrationEpochDay) {
+        LOG.debug("User full constructor called for: {}", name);
+        this.numericId = numericId;
+        this.externalId = numericId < 0 ? externalId : null;
         this.name = name;
-        this.email = email;
-        this.registrationDate = registrationDate;
-        this.status = "ACTIVE";
+        int at = email == null ? -1 : email.lastIndexOf('@');
+        this.emailLocalPart = at < 0 ? email : email.substring(0, at);
+        this.emailDomain = at < 0 ? null : EmailDomains.intern(email.substring(at + 1));
+        this.registrationEpochDay = Math.toIntExact(registrationEpochDay);
+        this.statusState = packStatus(UserStatus.ACTIVE, UserStatus.ACTIVE);
     }
     
     /**
@@ -72,7 +113,16 @@ public abstract class User implements Manageable, Notifiable {
      */
     public String getAccountInfo() {
         return String.format("User: %s (%s) - Registered: %s", 
-                           name, email, registrationDate);
+                           name, getEmail(), getRegistrationDate());
+    }
+    
+    /**
+     * Concrete method - gives the default, overridden where a user type is limited.
+     * 
+     * @return How many subscriptions that are not cancelled the user may hold
+     */
+    public int getMaxActiveSubscriptions() {
+        return Integer.MAX_VALUE;
     }
     
     /**
@@ -82,40 +132,159 @@ public abstract class User implements Manageable, Notifiable {
      * @return String containing the user's unique ID
      */
     public final String getUserId() {
-        return userId;
+        return externalId != null ? externalId : UserIds.format(numericId);
+    }
+    
+    /**
+     * Gets the id as a number, without rendering its text form.
+     * @return The numeric id, or -1 if the id is not a canonical "USER-" id
+     */
+    public final long getNumericId() {
+        return numericId;
     }
     
     // Implementation of Manageable interface
     @Override
     public String getId() {
-        return userId;
+        return getUserId();
     }
     
     @Override
-    public String getStatus() {
-        return status;
+    public UserStatus getStatus() {
+        return STATUSES[statusState & 0xFF];
     }
     
     @Override
-    public void updateStatus(String newStatus) {
-        this.status = newStatus;
-        System.out.println("User " + name + " status updated to: " + newStatus);
+    public boolean updateStatus(UserStatus newStatus) {
+        while (true) {
+            UserStatus current = getStatus();
+            if (current == newStatus) {
+                return false;
+            }
+            if (compareAndSetStatus(current, newStatus)) {
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * Changes the status only if it still is the expected one. Never blocks.
+     * 
+     * @param expected The status the caller saw
+     * @param newStatus The status to change to
+     * @return true if the status changed, false if it was no longer the expected status
+     * @throws IllegalStateException if the expected status may not change to the new one
+     */
+    public boolean compareAndSetStatus(UserStatus expected, UserStatus newStatus) {
+        if (!expected.canTransitionTo(newStatus)) {
+            throw new IllegalStateException("Cannot change status of " + getUserId()
+                    + " from " + expected + " to " + newStatus);
+        }
+        int state;
+        do {
+            state = statusState;
+            if ((state & 0xFF) != expected.ordinal()) {
+                return false;
+            }
+        } while (!STATUS_STATE.compareAndSet(this, state, (state & ~0xFF) | newStatus.ordinal()));
+        
+        LOG.info("User {} status updated to: {}", name, newStatus);
+        publishStatus();
+        return true;
+    }
+    
+    /**
+     * Sets the status without checking the transition, logging or notifying
+     * the listener, e.g. when a user is restored from storage.
+     * 
+     * @param status The stored status
+     */
+    public synchronized void restoreStatus(UserStatus status) {
+        statusState = packStatus(status, status);
+    }
+    
+    /**
+     * Registers the observer that is told about status changes.
+     * Only one listener is kept; a later call replaces the earlier one.
+     * 
+     * @param listener The listener to notify, or null to remove it
+     * @return The status the listener starts from; every later change is reported after it
+     */
+    public synchronized UserStatus setStatusChangeListener(StatusChangeListener listener) {
+        this.statusChangeListener = listener;
+        return markPublished();
+    }
+    
+    // Tells the listener about the current status if it has not been told yet. Runs under the
+    // user's lock so listeners see changes in order; when two changes race, the thread that
+    // publishes first reports both as one change and the other finds nothing left to do.
+    private synchronized void publishStatus() {
+        UserStatus published = STATUSES[(statusState >>> 8) & 0xFF];
+        UserStatus current = markPublished();
+        StatusChangeListener listener = statusChangeListener;
+        if (listener != null && published != current) {
+            listener.onStatusChanged(this, published, current);
+        }
+    }
+    
+    // Records the current status as published and returns it
+    private UserStatus markPublished() {
+        int state;
+        UserStatus current;
+        do {
+            state = statusState;
+            current = STATUSES[state & 0xFF];
+        } while (!STATUS_STATE.compareAndSet(this, state, packStatus(current, current)));
+        return current;
+    }
+    
+    private static int packStatus(UserStatus current, UserStatus published) {
+        return current.ordinal() | (published.ordinal() << 8);
     }
     
     // Implementation of Notifiable interface
     @Override
     public void sendNotification(String message) {
-        System.out.println("Notification to " + name + " (" + email + "): " + message);
+        if (!dispatchNotification(message, false)) {
+            LOG.info("Notification to {} ({}): {}", name, getEmail(), message);
+        }
+    }
+    
+    /**
+     * Hands a notification to the installed NotificationDispatcher, if there is one.
+     * Returns as soon as the notification is queued; delivery happens in the background.
+     * 
+     * @param message The notification message
+     * @param audited true if the notification must be kept for audit
+     * @return true if the dispatcher took it, false if no dispatcher is installed
+     * @throws RejectedExecutionException if the dispatcher's queue is full
+     */
+    protected final boolean dispatchNotification(String message, boolean audited) {
+        NotificationDispatcher dispatcher = NotificationDispatcher.getInstalled();
+        if (dispatcher == null) {
+            return false;
+        }
+        if (!dispatcher.dispatch(new Notification(getUserId(), name, getContactInfo(), message, audited))) {
+            throw new RejectedExecutionException("Notification queue is full");
+        }
+        return true;
     }
     
     @Override
     public String getContactInfo() {
-        return email;
+        return getEmail();
     }
     
-    // Utility method for generating unique IDs
-    private static String generateId() {
-        return "USER-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+    /**
+     * Replaces the generator that gives new users their ids.
+     * @param generator The generator to use from now on
+     */
+    public static void setIdGenerator(IdGenerator generator) {
+        idGenerator = generator;
+    }
+    
+    public static IdGenerator getIdGenerator() {
+        return idGenerator;
     }
     
     // Getters for protected fields (for demonstration purposes)
@@ -124,10 +293,34 @@ public abstract class User implements Manageable, Notifiable {
     }
     
     public String getEmail() {
-        return email;
+        return emailDomain == null ? emailLocalPart : emailLocalPart + '@' + emailDomain;
+    }
+    
+    /**
+     * Gets the part of the email address before the last '@'.
+     * @return The local part, or the whole address if it has no '@'
+     */
+    public String getEmailLocalPart() {
+        return emailLocalPart;
+    }
+    
+    /**
+     * Gets the pooled domain of the email address.
+     * @return The domain, or null if the address has no '@'
+     */
+    public String getEmailDomain() {
+        return emailDomain;
     }
     
     public LocalDate getRegistrationDate() {
-        return registrationDate;
+        return LocalDate.ofEpochDay(registrationEpochDay);
+    }
+    
+    /**
+     * Gets the registration date without creating a LocalDate.
+     * @return Days since 1970-01-01
+     */
+    public int getRegistrationEpochDay() {
+        return registrationEpochDay;
     }
 }
\ No newline at end of file
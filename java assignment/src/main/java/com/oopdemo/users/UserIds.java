@@ -0,0 +1,64 @@
+package com.oopdemo.users;
+
+/**
+ * Conversion between numeric user ids and their text form.
+ * 
+ * Users keep their id as a long and only render "USER-" plus upper-case hex
+ * digits when the text is asked for: 8 digits for ids below 2^32, 16 digits
+ * above. A text id is canonical when parsing and formatting it again gives
+ * the same text; any other id (e.g. one restored from old data) is kept as a
+ * String by the user instead.
+ */
+public final class UserIds {
+    static final String PREFIX = "USER-";
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    
+    private UserIds() {
+    }
+    
+    /**
+     * Renders a numeric id.
+     * 
+     * @param id A non-negative numeric id
+     * @return The text id, e.g. "USER-0000002A"
+     */
+    public static String format(long id) {
+        int digits = (id >>> 32) == 0 ? 8 : 16;
+        char[] text = new char[PREFIX.length() + digits];
+        PREFIX.getChars(0, PREFIX.length(), text, 0);
+        for (int i = text.length - 1; i >= PREFIX.length(); i--) {
+            text[i] = HEX[(int) (id & 0xF)];
+            id >>>= 4;
+        }
+        return new String(text);
+    }
+    
+    /**
+     * Parses a canonical text id.
+     * 
+     * @param userId The text id
+     * @return The numeric id, or -1 if the text is not a canonical id
+     */
+    public static long parse(String userId) {
+        if (userId == null || !userId.startsWith(PREFIX)) {
+            return -1;
+        }
+        int digits = userId.length() - PREFIX.length();
+        if (digits != 8 && digits != 16) {
+            return -1;
+        }
+        long id = 0;
+        for (int i = PREFIX.length(); i < userId.length(); i++) {
+            int value = Character.digit(userId.charAt(i), 16);
+            if (value < 0 || Character.isLowerCase(userId.charAt(i))) {
+                return -1;
+            }
+            id = (id << 4) | value;
+        }
+        // 16 digits must be needed, and the sign bit is reserved for "not numeric"
+        if (id < 0 || (digits == 16 && (id >>> 32) == 0)) {
+            return -1;
+        }
+        return id;
+    }
+}
@@ -0,0 +1,38 @@
+package com.oopdemo.web;
+
+import java.util.Map;
+
+/**
+ * Body of POST /api/users/admin-action.
+ */
+public final class AdminActionRequest {
+    private final String adminId;
+    private final String targetUserId;
+    private final String action;
+    
+    public AdminActionRequest(String adminId, String targetUserId, String action) {
+        this.adminId = adminId;
+        this.targetUserId = targetUserId;
+        this.action = action;
+    }
+    
+    /**
+     * Reads the request from parsed body parameters.
+     * @param params Parameters from RequestBodyParser
+     */
+    public static AdminActionRequest from(Map<String, String> params) {
+        return new AdminActionRequest(params.get("adminId"), params.get("targetUserId"), params.get("action"));
+    }
+    
+    public String getAdminId() {
+        return adminId;
+    }
+    
+    public String getTargetUserId() {
+        return targetUserId;
+    }
+    
+    public String getAction() {
+        return action;
+    }
+}
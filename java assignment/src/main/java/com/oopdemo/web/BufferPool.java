@@ -0,0 +1,60 @@
+package com.oopdemo.web;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Reusable direct buffers of one size for socket I/O.
+ * 
+ * Direct buffers are read and written by the kernel without an extra copy,
+ * but they are slow to allocate and are freed only by the garbage
+ * collector, so they are kept and handed out again. A connection borrows a
+ * buffer only while it has bytes in flight, so idle keep-alive connections
+ * hold none. Not thread-safe: each event loop has its own pool.
+ */
+final class BufferPool {
+    private final int bufferSize;
+    private final int maxPooled;
+    private final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+    private long allocated;
+    
+    /**
+     * Creates an empty pool.
+     * 
+     * @param bufferSize Capacity of every buffer
+     * @param maxPooled Buffers kept for reuse at most; more are left to the garbage collector
+     */
+    BufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+    
+    /**
+     * Takes a cleared buffer from the pool, allocating one if the pool is empty.
+     */
+    ByteBuffer acquire() {
+        ByteBuffer buffer = free.pollFirst();
+        if (buffer == null) {
+            allocated++;
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        return buffer;
+    }
+    
+    /**
+     * Returns a buffer; it must not be used afterwards.
+     */
+    void release(ByteBuffer buffer) {
+        if (free.size() < maxPooled) {
+            buffer.clear();
+            free.addFirst(buffer); // Reused first while it is still in the CPU cache
+        }
+    }
+    
+    /**
+     * Gets the number of buffers allocated so far.
+     */
+    long getAllocated() {
+        return allocated;
+    }
+}
@@ -0,0 +1,88 @@
+package com.oopdemo.web;
+
+import com.oopdemo.enums.UserStatus;
+import com.oopdemo.registry.UserFilter;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Body of POST /api/users/bulk-action: an admin action, the filter that
+ * selects its targets, how many targets are processed at once and whether
+ * to wait for the job to finish.
+ */
+public final class BulkActionRequest {
+    private final String adminId;
+    private final String action;
+    private final UserFilter filter;
+    private final int concurrency;
+    private final boolean wait;
+    
+    public BulkActionRequest(String adminId, String action, UserFilter filter, int concurrency, boolean wait) {
+        this.adminId = adminId;
+        this.action = action;
+        this.filter = filter;
+        this.concurrency = concurrency;
+        this.wait = wait;
+    }
+    
+    /**
+     * Reads the request from parsed body parameters: adminId, action, ids
+     * (comma-separated), status, userType, registeredFrom, registeredTo
+     * (ISO dates), concurrency and wait.
+     * 
+     * @param params Parameters from RequestBodyParser
+     * @throws IllegalArgumentException If a filter value or the concurrency is invalid
+     */
+    public static BulkActionRequest from(Map<String, String> params) {
+        Set<String> ids = null;
+        if (params.get("ids") != null && !params.get("ids").trim().isEmpty()) {
+            ids = new LinkedHashSet<>();
+            for (String id : params.get("ids").split(",")) {
+                if (!id.trim().isEmpty()) {
+                    ids.add(id.trim());
+                }
+            }
+        }
+        LocalDate from;
+        LocalDate to;
+        try {
+            from = params.get("registeredFrom") == null ? null : LocalDate.parse(params.get("registeredFrom"));
+            to = params.get("registeredTo") == null ? null : LocalDate.parse(params.get("registeredTo"));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+        UserStatus status = params.get("status") == null ? null : UserStatus.fromName(params.get("status"));
+        UserFilter filter = new UserFilter(status, params.get("userType"), ids, from, to);
+        int concurrency = params.get("concurrency") == null
+                ? Integer.MAX_VALUE : Integer.parseInt(params.get("concurrency"));
+        return new BulkActionRequest(params.get("adminId"), params.get("action"), filter, concurrency,
+                                     "true".equals(params.get("wait")));
+    }
+    
+    public String getAdminId() {
+        return adminId;
+    }
+    
+    public String getAction() {
+        return action;
+    }
+    
+    public UserFilter getFilter() {
+        return filter;
+    }
+    
+    /**
+     * Gets how many targets are processed at once.
+     * @return Integer.MAX_VALUE when not limited
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+    
+    public boolean isWait() {
+        return wait;
+    }
+}
@@ -0,0 +1,283 @@
+package com.oopdemo.web;
+
+import com.oopdemo.enums.UserStatus;
+import com.oopdemo.registry.UserFilter;
+import com.oopdemo.registry.UserRegistry;
+import com.oopdemo.users.AdminUser;
+import com.oopdemo.users.User;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs one admin action over every user matching a filter.
+ * Endpoint: POST/GET /api/users/bulk-action
+ * 
+ * Matching users are gathered into batches while the registry is scanned,
+ * and batches run on a shared worker pool. Each job caps how many of its
+ * batches run at once, so one large job cannot starve the others. Jobs run
+ * in the background; their progress and counters can be polled by id.
+ * The acting admin is never a target of its own job, so a filter that
+ * happens to match the caller cannot suspend or cancel it.
+ */
+public class BulkActionService {
+    static final int BATCH_SIZE = 256;
+    static final int MAX_RETAINED_JOBS = 100;
+    
+    /**
+     * Lifecycle of a bulk job.
+     */
+    public enum State {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+    
+    private final UserRegistry registry;
+    private final ExecutorService workers;
+    private final ExecutorService coordinators;
+    private final int maxConcurrency;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    
+    /**
+     * Creates a service whose workers use at most the given number of threads.
+     * 
+     * @param registry The registry to select users from
+     * @param maxConcurrency Worker threads shared by all jobs
+     */
+    public BulkActionService(UserRegistry registry, int maxConcurrency) {
+        this.registry = registry;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.workers = Executors.newFixedThreadPool(this.maxConcurrency, namedDaemon("bulk-worker-"));
+        this.coordinators = Executors.newCachedThreadPool(namedDaemon("bulk-coordinator-"));
+    }
+    
+    /**
+     * Starts a bulk job in the background.
+     * 
+     * @param admin The admin performing the action
+     * @param action One of the actions AdminUser.manageUser understands
+     * @param filter Which users to act on
+     * @param concurrency How many batches of this job may run at once (capped at the pool size)
+     * @return The started job
+     */
+    public Job start(AdminUser admin, String action, UserFilter filter, int concurrency) {
+        evictFinishedJobs();
+        Job job = new Job(action, Math.max(1, Math.min(concurrency, maxConcurrency)));
+        jobs.put(job.id, job);
+        coordinators.execute(() -> run(job, admin, filter));
+        return job;
+    }
+    
+    /**
+     * Looks up a job by id.
+     * 
+     * @param jobId The id returned when the job was started
+     * @return The job, or null if it is unknown or was evicted
+     */
+    public Job getJob(String jobId) {
+        return jobId == null ? null : jobs.get(jobId);
+    }
+    
+    public void shutdown() {
+        coordinators.shutdownNow();
+        workers.shutdownNow();
+    }
+    
+    // Scans the registry and feeds batches to the worker pool
+    private void run(Job job, AdminUser admin, UserFilter filter) {
+        Semaphore permits = new Semaphore(job.concurrency);
+        List<User> batch = new ArrayList<>(BATCH_SIZE);
+        try {
+            registry.forEachMatching(filter, user -> {
+                if (user == admin) {
+                    return;
+                }
+                job.matched.increment();
+                batch.add(user);
+                if (batch.size() == BATCH_SIZE) {
+                    submit(job, admin, new ArrayList<>(batch), permits);
+                    batch.clear();
+                }
+            });
+            if (!batch.isEmpty()) {
+                submit(job, admin, new ArrayList<>(batch), permits);
+            }
+            job.selectionComplete = true;
+            // All permits back means every batch of this job has finished
+            permits.acquire(job.concurrency);
+            job.finish(State.COMPLETED, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.finish(State.FAILED, "Interrupted");
+        } catch (RuntimeException e) {
+            job.finish(State.FAILED, e.getMessage());
+        }
+    }
+    
+    private void submit(Job job, AdminUser admin, List<User> batch, Semaphore permits) {
+        permits.acquireUninterruptibly();
+        job.batchesInFlight.incrementAndGet();
+        try {
+            workers.execute(() -> {
+                try {
+                    for (User target : batch) {
+                        apply(job, admin, target);
+                    }
+                    registry.awaitPersisted();
+                } finally {
+                    job.batchesInFlight.decrementAndGet();
+                    permits.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            job.batchesInFlight.decrementAndGet();
+            permits.release();
+            throw e;
+        }
+    }
+    
+    private void apply(Job job, AdminUser admin, User target) {
+        try {
+            UserStatus before = target.getStatus();
+            admin.manageUser(target, job.action);
+            if (isStatusAction(job.action) && before == target.getStatus()) {
+                job.unchanged.increment();
+            } else {
+                job.succeeded.increment();
+            }
+        } catch (RuntimeException e) {
+            job.failed.increment();
+        } finally {
+            job.processed.increment();
+        }
+    }
+    
+    private static boolean isStatusAction(String action) {
+        String lower = action.toLowerCase(Locale.ROOT);
+        return lower.equals("suspend") || lower.equals("activate")
+                || lower.equals("deactivate") || lower.equals("cancel");
+    }
+    
+    private void evictFinishedJobs() {
+        if (jobs.size() < MAX_RETAINED_JOBS) {
+            return;
+        }
+        Iterator<Job> it = jobs.values().iterator();
+        while (it.hasNext() && jobs.size() >= MAX_RETAINED_JOBS) {
+            if (it.next().state != State.RUNNING) {
+                it.remove();
+            }
+        }
+    }
+    
+    private static ThreadFactory namedDaemon(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+    
+    /**
+     * Progress and aggregate counts of one bulk job.
+     * Counters are updated by the worker threads and can be read at any time.
+     */
+    public static final class Job {
+        private final String id = UUID.randomUUID().toString();
+        private final String action;
+        private final int concurrency;
+        private final long startedAt = System.nanoTime();
+        private final LongAdder matched = new LongAdder();
+        private final LongAdder processed = new LongAdder();
+        private final LongAdder succeeded = new LongAdder();
+        private final LongAdder unchanged = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final AtomicInteger batchesInFlight = new AtomicInteger();
+        private volatile boolean selectionComplete;
+        private volatile State state = State.RUNNING;
+        private volatile String error;
+        private volatile long finishedAt;
+        
+        Job(String action, int concurrency) {
+            this.action = action;
+            this.concurrency = concurrency;
+        }
+        
+        public String getId() {
+            return id;
+        }
+        
+        public State getState() {
+            return state;
+        }
+        
+        /**
+         * Blocks until the job is no longer running or the timeout expires.
+         * 
+         * @param timeout Maximum time to wait
+         * @param unit Unit of the timeout
+         * @return true if the job finished in time
+         */
+        public synchronized boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while (state == State.RUNNING) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            return true;
+        }
+        
+        /**
+         * Gets a snapshot of the job for the JSON response.
+         * @return Map with the job id, state and counters
+         */
+        public Map<String, Object> toMap() {
+            long end = state == State.RUNNING ? System.nanoTime() : finishedAt;
+            long processedCount = processed.sum();
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(end - startedAt);
+            
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("jobId", id);
+            map.put("action", action);
+            map.put("state", state.name());
+            map.put("selectionComplete", selectionComplete);
+            map.put("matched", matched.sum());
+            map.put("processed", processedCount);
+            map.put("succeeded", succeeded.sum());
+            map.put("unchanged", unchanged.sum());
+            map.put("failed", failed.sum());
+            map.put("batchesInFlight", batchesInFlight.get());
+            map.put("concurrency", concurrency);
+            map.put("elapsedMs", elapsedMs);
+            map.put("usersPerSecond", elapsedMs == 0 ? processedCount : processedCount * 1000 / elapsedMs);
+            if (error != null) {
+                map.put("error", error);
+            }
+            return map;
+        }
+        
+        private synchronized void finish(State finalState, String message) {
+            error = message;
+            finishedAt = System.nanoTime();
+            state = finalState;
+            notifyAll();
+        }
+    }
+}
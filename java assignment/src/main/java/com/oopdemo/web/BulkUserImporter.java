@@ -0,0 +1,288 @@
+package com.oopdemo.web;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.oopdemo.registry.UserRegistry;
+import com.oopdemo.users.AdminUser;
+import com.oopdemo.users.RegularUser;
+import com.oopdemo.users.User;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Creates users in bulk from a streamed NDJSON or CSV body.
+ * Endpoint: POST /api/users/bulk
+ * 
+ * NDJSON lines look like {"type":"admin","name":"Jane","email":"jane@admin.com"};
+ * CSV lines are {@code type,name,email} with an optional header row. The type
+ * is "regular" or "admin" (or the class names "RegularUser"/"AdminUser").
+ * 
+ * Lines are read one at a time and users are committed to the registry in
+ * chunks. After each chunk its per-line results are written out as NDJSON and
+ * flushed, so neither the request nor the response is ever held in memory.
+ * The last line is a summary with the totals.
+ */
+public class BulkUserImporter {
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+    public static final int MAX_CHUNK_SIZE = 10000;
+    static final int MAX_LINE_LENGTH = 16 * 1024;
+    
+    /**
+     * Input formats accepted by the importer.
+     */
+    public enum Format {
+        NDJSON,
+        CSV
+    }
+    
+    private final UserRegistry registry;
+    
+    public BulkUserImporter(UserRegistry registry) {
+        this.registry = registry;
+    }
+    
+    /**
+     * Reads users from the input and writes one result line per input line.
+     * 
+     * @param in The request body
+     * @param format The format of the request body
+     * @param chunkSize How many users to commit to the registry at once
+     * @param out The response body
+     */
+    public void importUsers(InputStream in, Format format, int chunkSize, OutputStream out) throws IOException {
+        LineReader reader = new LineReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        JsonOutput json = JsonOutput.forStream(out);
+        StringBuilder line = new StringBuilder(256);
+        List<LineResult> chunk = new ArrayList<>(chunkSize);
+        List<User> pendingUsers = new ArrayList<>(chunkSize);
+        long lineNumber = 0;
+        long created = 0;
+        long failed = 0;
+        
+        while (true) {
+            int status = reader.readLine(line);
+            if (status == LineReader.EOF) {
+                break;
+            }
+            lineNumber++;
+            if (status == LineReader.TOO_LONG) {
+                chunk.add(LineResult.error(lineNumber, "Line longer than " + MAX_LINE_LENGTH + " characters"));
+            } else if (line.length() > 0 && !(format == Format.CSV && lineNumber == 1 && isCsvHeader(line))) {
+                chunk.add(parse(lineNumber, line.toString(), format, pendingUsers));
+            }
+            
+            if (pendingUsers.size() >= chunkSize || chunk.size() >= chunkSize * 2) {
+                long ok = commit(chunk, pendingUsers, json);
+                created += ok;
+                failed += chunk.size() - ok;
+                chunk.clear();
+            }
+        }
+        long ok = commit(chunk, pendingUsers, json);
+        created += ok;
+        failed += chunk.size() - ok;
+        
+        json.beginObject();
+        json.name("summary").value(true);
+        json.name("lines").value(lineNumber);
+        json.name("created").value(created);
+        json.name("failed").value(failed);
+        json.endObject().newline();
+        json.finish();
+    }
+    
+    // Commits the pending users and writes the results of the chunk; returns the number created
+    private long commit(List<LineResult> chunk, List<User> pendingUsers, JsonOutput json) throws IOException {
+        Set<User> rejected = pendingUsers.isEmpty()
+                ? new HashSet<>()
+                : new HashSet<>(registry.addAll(pendingUsers));
+        pendingUsers.clear();
+        registry.awaitPersisted(); // One wait per chunk, not per user
+        
+        long created = 0;
+        for (LineResult result : chunk) {
+            json.beginObject();
+            json.name("line").value(result.line);
+            if (result.user != null && !rejected.contains(result.user)) {
+                created++;
+                json.name("success").value(true);
+                json.name("userId").value(result.user.getUserId());
+                json.name("userType").value(result.user.getClass().getSimpleName());
+            } else {
+                json.name("success").value(false);
+                json.name("message").value(result.user != null ? "Duplicate user id" : result.error);
+            }
+            json.endObject().newline();
+        }
+        json.flush();
+        return created;
+    }
+    
+    private LineResult parse(long lineNumber, String line, Format format, List<User> pendingUsers) {
+        String type;
+        String name;
+        String email;
+        if (format == Format.CSV) {
+            List<String> fields = splitCsv(line);
+            if (fields.size() != 3) {
+                return LineResult.error(lineNumber, "Expected 3 fields: type,name,email");
+            }
+            type = fields.get(0);
+            name = fields.get(1);
+            email = fields.get(2);
+        } else {
+            try {
+                JsonElement element = JsonParser.parseString(line);
+                if (!element.isJsonObject()) {
+                    return LineResult.error(lineNumber, "Expected a JSON object");
+                }
+                JsonObject object = element.getAsJsonObject();
+                type = stringField(object, "type");
+                name = stringField(object, "name");
+                email = stringField(object, "email");
+            } catch (JsonParseException | IllegalStateException | UnsupportedOperationException e) {
+                return LineResult.error(lineNumber, "Invalid JSON: " + e.getMessage());
+            }
+        }
+        
+        if (name == null || name.trim().isEmpty() || email == null || email.trim().isEmpty()) {
+            return LineResult.error(lineNumber, "Name and email are required");
+        }
+        User user;
+        switch (type == null ? "regular" : type.trim().toLowerCase(Locale.ROOT)) {
+            case "regular":
+            case "regularuser":
+                user = new RegularUser(name.trim(), email.trim());
+                break;
+            case "admin":
+            case "adminuser":
+                user = new AdminUser(name.trim(), email.trim());
+                break;
+            default:
+                return LineResult.error(lineNumber, "Unknown user type: " + type);
+        }
+        pendingUsers.add(user);
+        return LineResult.created(lineNumber, user);
+    }
+    
+    private static String stringField(JsonObject object, String field) {
+        JsonElement value = object.get(field);
+        return value == null || value.isJsonNull() ? null : value.getAsString();
+    }
+    
+    private static boolean isCsvHeader(CharSequence line) {
+        String first = line.toString().trim().toLowerCase(Locale.ROOT);
+        return first.startsWith("type,") || first.startsWith("\"type\",");
+    }
+    
+    // Splits one CSV record, honouring double-quoted fields with "" escapes
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>(3);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+    
+    /**
+     * Outcome of one input line: either a user waiting to be committed or an error.
+     */
+    private static final class LineResult {
+        final long line;
+        final User user;
+        final String error;
+        
+        private LineResult(long line, User user, String error) {
+            this.line = line;
+            this.user = user;
+            this.error = error;
+        }
+        
+        static LineResult created(long line, User user) {
+            return new LineResult(line, user, null);
+        }
+        
+        static LineResult error(long line, String error) {
+            return new LineResult(line, null, error);
+        }
+    }
+    
+    /**
+     * Reads lines through its own char buffer and caps their length, so one
+     * huge line cannot exhaust memory.
+     */
+    private static final class LineReader {
+        static final int EOF = -1;
+        static final int OK = 0;
+        static final int TOO_LONG = 1;
+        
+        private final Reader reader;
+        private final char[] buffer = new char[8192];
+        private int position;
+        private int limit;
+        
+        LineReader(Reader reader) {
+            this.reader = reader;
+        }
+        
+        // Reads one line into the builder, without the line terminator
+        int readLine(StringBuilder line) throws IOException {
+            line.setLength(0);
+            boolean tooLong = false;
+            boolean readAny = false;
+            while (true) {
+                if (position == limit) {
+                    limit = reader.read(buffer, 0, buffer.length);
+                    position = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        return readAny ? (tooLong ? TOO_LONG : OK) : EOF;
+                    }
+                }
+                readAny = true;
+                char c = buffer[position++];
+                if (c == '\n') {
+                    return tooLong ? TOO_LONG : OK;
+                }
+                if (c != '\r') {
+                    if (line.length() < MAX_LINE_LENGTH) {
+                        line.append(c);
+                    } else {
+                        tooLong = true;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.oopdemo.web;
+
+import java.util.Map;
+
+/**
+ * Body of POST /api/users/regular and POST /api/users/admin.
+ */
+public final class CreateUserRequest {
+    private final String name;
+    private final String email;
+    
+    public CreateUserRequest(String name, String email) {
+        this.name = name;
+        this.email = email;
+    }
+    
+    /**
+     * Reads the request from parsed body parameters.
+     * @param params Parameters from RequestBodyParser
+     */
+    public static CreateUserRequest from(Map<String, String> params) {
+        return new CreateUserRequest(params.get("name"), params.get("email"));
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public String getEmail() {
+        return email;
+    }
+}
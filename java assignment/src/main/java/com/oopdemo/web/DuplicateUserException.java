@@ -0,0 +1,20 @@
+package com.oopdemo.web;
+
+/**
+ * A new user the registry rejected because another user already has its
+ * id; answered with 409 Conflict.
+ */
+public class DuplicateUserException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+    
+    private final String userId;
+    
+    public DuplicateUserException(String userId) {
+        super("Duplicate user id: " + userId);
+        this.userId = userId;
+    }
+    
+    public String getUserId() {
+        return userId;
+    }
+}
@@ -0,0 +1,391 @@
+package com.oopdemo.web;
+
+import com.oopdemo.enums.UserStatus;
+import com.oopdemo.logging.LogManager;
+import com.oopdemo.logging.Logger;
+import com.oopdemo.notifications.Notification;
+import com.oopdemo.notifications.NotificationSink;
+import com.oopdemo.registry.RegistryListener;
+import com.oopdemo.users.AdminUser;
+import com.oopdemo.users.User;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pushes user creations, status changes and notifications to clients as
+ * Server-Sent Events, e.g. dashboards that would otherwise poll the list.
+ * 
+ * Fan-out is shared: the registry and the notification dispatcher only
+ * queue small event records, and one thread encodes each event once into a
+ * frame and appends it to a ring that every subscriber reads from with its
+ * own cursor. Subscribers therefore cost no memory of their own beyond
+ * what their connection is writing, and an event costs one encoding
+ * however many clients receive it.
+ * 
+ * Each subscriber may fall a bounded number of frames behind. One that
+ * falls further, because its client reads too slowly, is cut off; the
+ * client's EventSource reconnects with the id of the last event it got and
+ * either resumes from the ring or, if that event is gone, receives a
+ * "resync" event telling it to reload, e.g. through /api/users/changes.
+ * A comment is sent every 15 seconds so dead connections are noticed.
+ */
+public class EventBroadcaster implements RegistryListener, NotificationSink {
+    private static final Logger LOG = LogManager.getLogger(EventBroadcaster.class);
+    private static final int QUEUE_CAPACITY = 16 * 1024;
+    private static final int MAX_BATCH = 1024;
+    private static final long HEARTBEAT_SECONDS = 15;
+    private static final byte[] HEARTBEAT = ": keep-alive\n\n".getBytes(StandardCharsets.UTF_8);
+    
+    private final int maxLag;
+    private final AtomicReferenceArray<Frame> ring;
+    private final int mask;
+    // Event ids of earlier server runs are not mistaken for ids of this one
+    private final String idPrefix = Long.toString(System.currentTimeMillis(), 36) + "-";
+    private final BlockingQueue<Event> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicBoolean overflowed = new AtomicBoolean();
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    // Id of the newest frame in the ring; only the fan-out thread writes it
+    private volatile long lastId;
+    private volatile boolean running;
+    private volatile boolean stopped;
+    private Thread thread;
+    
+    /**
+     * Creates a broadcaster; call {@link #start()} before subscribing clients.
+     * @param maxLag Number of frames a subscriber may fall behind before it is cut off
+     */
+    public EventBroadcaster(int maxLag) {
+        this.maxLag = Math.max(1, maxLag);
+        // Room for the lag of every subscriber plus one batch arriving before lags are checked
+        int size = Integer.highestOneBit(this.maxLag + MAX_BATCH + 1) << 1;
+        this.ring = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+    
+    /**
+     * Starts the fan-out thread.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::fanOut, "event-fanout");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * Stops the fan-out thread and ends every subscription, now and later;
+     * each connection is closed once it is woken and finds its stream ended.
+     */
+    public synchronized void shutdown() {
+        stopped = true;
+        if (running) {
+            running = false;
+            thread.interrupt();
+            try {
+                thread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (Subscription subscription : subscriptions) {
+            Runnable wakeup = subscription.wakeup;
+            if (wakeup != null) {
+                wakeup.run();
+            }
+        }
+        subscriptions.clear();
+    }
+    
+    /**
+     * Subscribes a client, resuming after the last event it received if the
+     * ring still holds everything after that one.
+     * 
+     * @param lastEventId The client's Last-Event-ID header, or null for a new client
+     * @return The stream to send to the client
+     */
+    Subscription subscribe(String lastEventId) {
+        long last = lastId;
+        long resumeAfter = parseId(lastEventId);
+        boolean resumed = resumeAfter >= 0 && resumeAfter <= last && last - resumeAfter < maxLag
+                && (resumeAfter == last || frameIdAt(resumeAfter + 1) == resumeAfter + 1);
+        StringBuilder greeting = new StringBuilder("retry: 3000\n");
+        if (lastEventId != null && !resumed) {
+            greeting.append("event: resync\ndata: {}\n\n"); // Events were missed; the client has to reload
+        } else {
+            greeting.append(": connected\n\n");
+        }
+        Subscription subscription = new Subscription(resumed ? resumeAfter + 1 : last + 1,
+                                                     greeting.toString().getBytes(StandardCharsets.UTF_8));
+        subscriptions.add(subscription);
+        return subscription;
+    }
+    
+    /**
+     * Gets subscriber and event counters.
+     * @return Map from counter name to value
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("subscribers", subscriptions.size());
+        stats.put("published", published.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("evicted", evicted.sum());
+        return stats;
+    }
+    
+    @Override
+    public void onUserAdded(User user) {
+        offer(new Event("user-created", user, null, null));
+    }
+    
+    @Override
+    public void onStatusChanged(User user, UserStatus oldStatus, UserStatus newStatus) {
+        offer(new Event("status-changed", user, oldStatus, newStatus));
+    }
+    
+    @Override
+    public void onPermissionAdded(AdminUser admin, String permission) {
+        // Not pushed: subscribers follow the user list, which does not show permissions
+    }
+    
+    @Override
+    public String getName() {
+        return "events";
+    }
+    
+    @Override
+    public void deliver(List<Notification> batch) {
+        for (Notification notification : batch) {
+            offer(new Event("notification", notification, null, null));
+        }
+    }
+    
+    // Helper methods
+    // Called while the registry holds the user's lock, so it only queues the event
+    private void offer(Event event) {
+        if (subscriptions.isEmpty()) {
+            return; // No one would receive it, e.g. while users are restored at startup
+        }
+        if (!queue.offer(event)) {
+            dropped.increment();
+            overflowed.set(true);
+        }
+    }
+    
+    private void fanOut() {
+        List<Event> batch = new ArrayList<>(MAX_BATCH);
+        while (running) {
+            long previous = lastId;
+            Event first;
+            try {
+                first = queue.poll(HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (first == null) {
+                append(HEARTBEAT);
+            } else {
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+                for (Event event : batch) {
+                    try {
+                        append(encode(event));
+                        published.increment();
+                    } catch (IOException | RuntimeException e) {
+                        LOG.warn("Encoding a {} event failed: {}", event.type, e.toString());
+                    }
+                }
+                batch.clear();
+            }
+            if (overflowed.getAndSet(false)) {
+                // Events were dropped for everyone; tell the clients to reload
+                append(frame("resync", "{}".getBytes(StandardCharsets.UTF_8)));
+            }
+            wakeSubscribers(previous);
+        }
+    }
+    
+    private void append(byte[] bytes) {
+        long id = lastId + 1;
+        ring.set((int) (id & mask), new Frame(id, bytes));
+        lastId = id; // Published after the frame, so readers never see an id without its frame
+    }
+    
+    // A subscriber is judged by what it had left when the batch arrived, so a burst of events
+    // alone does not cut off clients that were keeping up
+    private void wakeSubscribers(long previous) {
+        for (Subscription subscription : subscriptions) {
+            if (previous - subscription.next >= maxLag) {
+                subscription.end(); // Too slow; its connection is closed when it is woken
+            }
+            Runnable wakeup = subscription.wakeup;
+            if (wakeup != null) {
+                wakeup.run();
+            }
+        }
+    }
+    
+    private byte[] encode(Event event) throws IOException {
+        JsonOutput json = JsonOutput.forBuffer(); // The fan-out thread's own writer
+        if (event.subject instanceof Notification) {
+            Notification notification = (Notification) event.subject;
+            json.beginObject();
+            json.name("userId").value(notification.getRecipientId());
+            json.name("name").value(notification.getRecipientName());
+            json.name("message").value(notification.getMessage());
+            json.name("audited").value(notification.isAudited());
+            json.name("createdAt").value(notification.getCreatedAt());
+            json.endObject();
+        } else if (event.newStatus != null) {
+            User user = (User) event.subject;
+            json.beginObject();
+            json.name("userId").value(user.getUserId());
+            json.name("name").value(user.getName());
+            json.name("oldStatus").value(event.oldStatus.name());
+            json.name("newStatus").value(event.newStatus.name());
+            json.endObject();
+        } else {
+            UserJsonSerializer.write(json, (User) event.subject); // The user as it is now, not when queued
+        }
+        return frame(event.type, json.toByteArray());
+    }
+    
+    // id: <id>\nevent: <type>\ndata: <json>\n\n; encoded JSON never contains a line break. Built
+    // right before the frame is appended, so the next id is its own
+    private byte[] frame(String type, byte[] data) {
+        byte[] head = ("id: " + idPrefix + (lastId + 1) + "\nevent: " + type + "\ndata: ")
+                .getBytes(StandardCharsets.UTF_8);
+        byte[] frame = new byte[head.length + data.length + 2];
+        System.arraycopy(head, 0, frame, 0, head.length);
+        System.arraycopy(data, 0, frame, head.length, data.length);
+        frame[frame.length - 2] = '\n';
+        frame[frame.length - 1] = '\n';
+        return frame;
+    }
+    
+    private long parseId(String eventId) {
+        if (eventId == null || !eventId.startsWith(idPrefix)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(eventId.substring(idPrefix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    private long frameIdAt(long id) {
+        Frame frame = ring.get((int) (id & mask));
+        return frame == null ? -1 : frame.id;
+    }
+    
+    /**
+     * One event waiting to be encoded: a user with its status change, if
+     * any, or a notification.
+     */
+    private static final class Event {
+        final String type;
+        final Object subject;
+        final UserStatus oldStatus;
+        final UserStatus newStatus;
+        
+        Event(String type, Object subject, UserStatus oldStatus, UserStatus newStatus) {
+            this.type = type;
+            this.subject = subject;
+            this.oldStatus = oldStatus;
+            this.newStatus = newStatus;
+        }
+    }
+    
+    private static final class Frame {
+        final long id;
+        final byte[] bytes;
+        
+        Frame(long id, byte[] bytes) {
+            this.id = id;
+            this.bytes = bytes;
+        }
+    }
+    
+    /**
+     * One client's position in the ring, handed to the server as the
+     * response body of its connection.
+     */
+    final class Subscription implements ResponseStream {
+        private final AtomicBoolean ended = new AtomicBoolean();
+        private byte[] greeting;
+        // Id of the next frame to send; written by the connection, read by the fan-out thread
+        private volatile long next;
+        private volatile Runnable wakeup;
+        
+        private Subscription(long next, byte[] greeting) {
+            this.next = next;
+            this.greeting = greeting;
+        }
+        
+        @Override
+        public void start(Runnable wakeup) {
+            this.wakeup = wakeup;
+        }
+        
+        @Override
+        public byte[] next() throws IOException {
+            if (greeting != null) {
+                byte[] bytes = greeting;
+                greeting = null;
+                return bytes;
+            }
+            if (ended.get()) {
+                throw new IOException("Subscriber fell more than " + maxLag + " events behind");
+            }
+            if (stopped) {
+                throw new IOException("Event stream shut down");
+            }
+            long id = next;
+            if (id > lastId) {
+                return null;
+            }
+            Frame frame = ring.get((int) (id & mask));
+            if (frame.id != id) {
+                end(); // Overwritten before it was sent
+                throw new IOException("Subscriber fell more than " + maxLag + " events behind");
+            }
+            next = id + 1;
+            return frame.bytes;
+        }
+        
+        @Override
+        public boolean isEnded() {
+            return ended.get() || stopped;
+        }
+        
+        @Override
+        public void close() {
+            subscriptions.remove(this);
+        }
+        
+        private void end() {
+            if (ended.compareAndSet(false, true)) {
+                evicted.increment();
+            }
+        }
+    }
+}
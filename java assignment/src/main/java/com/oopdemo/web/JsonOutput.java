@@ -0,0 +1,345 @@
+package com.oopdemo.web;
+
+import com.google.gson.Gson;
+import com.oopdemo.users.User;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Small JSON writer that encodes UTF-8 straight into a reusable byte buffer.
+ * 
+ * Responses are built without intermediate Strings: users are written field
+ * by field through {@link UserJsonSerializer}, maps, lists and primitives are
+ * walked directly, and only other objects go through Gson. Each thread keeps
+ * one instance, so steady-state responses allocate almost nothing.
+ * 
+ * In buffer mode the whole document is kept and sent with an exact
+ * Content-Length. In stream mode the buffer is flushed to the target stream
+ * whenever it fills up, so memory stays constant for large documents.
+ */
+public final class JsonOutput {
+    private static final int INITIAL_CAPACITY = 8 * 1024;
+    private static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+    private static final int STREAM_FLUSH_THRESHOLD = 16 * 1024;
+    private static final int MAX_DEPTH = 64;
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+    private static final ThreadLocal<JsonOutput> CACHE = ThreadLocal.withInitial(JsonOutput::new);
+    private static final Gson FALLBACK = new Gson();
+    
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int length;
+    private OutputStream stream;
+    private final boolean[] firstInScope = new boolean[MAX_DEPTH];
+    private int depth;
+    private boolean afterName;
+    
+    private JsonOutput() {
+    }
+    
+    /**
+     * Gets this thread's writer, emptied and set up to collect the whole document.
+     * @return The thread's reusable writer
+     */
+    public static JsonOutput forBuffer() {
+        JsonOutput out = CACHE.get();
+        out.reset(null);
+        return out;
+    }
+    
+    /**
+     * Gets this thread's writer, emptied and set up to flush into a stream as it fills.
+     * 
+     * @param stream The stream that receives the encoded bytes
+     * @return The thread's reusable writer
+     */
+    public static JsonOutput forStream(OutputStream stream) {
+        JsonOutput out = CACHE.get();
+        out.reset(stream);
+        return out;
+    }
+    
+    public JsonOutput beginObject() throws IOException {
+        beforeValue();
+        writeByte('{');
+        push();
+        return this;
+    }
+    
+    public JsonOutput endObject() {
+        depth--;
+        writeByte('}');
+        return this;
+    }
+    
+    public JsonOutput beginArray() throws IOException {
+        beforeValue();
+        writeByte('[');
+        push();
+        return this;
+    }
+    
+    public JsonOutput endArray() {
+        depth--;
+        writeByte(']');
+        return this;
+    }
+    
+    public JsonOutput name(String name) throws IOException {
+        beforeValue();
+        writeString(name);
+        writeByte(':');
+        afterName = true;
+        return this;
+    }
+    
+    public JsonOutput value(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        writeString(value);
+        return this;
+    }
+    
+    public JsonOutput value(long value) throws IOException {
+        beforeValue();
+        writeAscii(Long.toString(value));
+        return this;
+    }
+    
+    public JsonOutput value(boolean value) throws IOException {
+        beforeValue();
+        writeAscii(value ? "true" : "false");
+        return this;
+    }
+    
+    public JsonOutput nullValue() throws IOException {
+        beforeValue();
+        writeAscii("null");
+        return this;
+    }
+    
+    /**
+     * Ends a top-level document with a line break, for newline-delimited JSON.
+     * @return This writer
+     */
+    public JsonOutput newline() {
+        writeByte('\n');
+        afterName = false;
+        return this;
+    }
+    
+    /**
+     * Pushes everything written so far to the stream without ending the document.
+     */
+    public void flush() throws IOException {
+        if (stream != null) {
+            stream.write(buffer, 0, length);
+            stream.flush();
+            length = 0;
+        }
+    }
+    
+    /**
+     * Writes any supported value: null, String, Boolean, Number, enum, User,
+     * Map, Iterable or array. Anything else is serialized by Gson.
+     * 
+     * @param value The value to write
+     * @return This writer
+     */
+    public JsonOutput value(Object value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        } else if (value instanceof String) {
+            return value((String) value);
+        } else if (value instanceof Boolean) {
+            return value(((Boolean) value).booleanValue());
+        } else if (value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte) {
+            return value(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            beforeValue();
+            writeAscii(FALLBACK.toJson(value));
+            return this;
+        } else if (value instanceof Enum) {
+            return value(((Enum<?>) value).name());
+        } else if (value instanceof User) {
+            UserJsonSerializer.write(this, (User) value);
+            return this;
+        } else if (value instanceof Map) {
+            beginObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                name(String.valueOf(entry.getKey()));
+                value(entry.getValue());
+            }
+            return endObject();
+        } else if (value instanceof Iterable) {
+            beginArray();
+            for (Object element : (Iterable<?>) value) {
+                value(element);
+            }
+            return endArray();
+        } else if (value instanceof Object[]) {
+            return value(Arrays.asList((Object[]) value));
+        }
+        // Fallback for arbitrary objects
+        beforeValue();
+        writeUtf8(FALLBACK.toJson(value), false);
+        return this;
+    }
+    
+    /**
+     * Sends the buffered document as a complete JSON response with an exact Content-Length.
+     * 
+     * @param exchange The exchange to answer
+     * @param statusCode The HTTP status code
+     */
+    public void send(HttpExchange exchange, int statusCode) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+        exchange.sendResponseHeaders(statusCode, length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(buffer, 0, length);
+        }
+        release();
+    }
+    
+    /**
+     * Copies the buffered document, e.g. to cache it.
+     * @return The encoded bytes
+     */
+    public byte[] toByteArray() {
+        byte[] bytes = Arrays.copyOf(buffer, length);
+        release();
+        return bytes;
+    }
+    
+    /**
+     * Writes whatever is still buffered to the stream and flushes it.
+     */
+    public void finish() throws IOException {
+        flush();
+        release();
+    }
+    
+    // Helper methods
+    private void reset(OutputStream target) {
+        stream = target;
+        length = 0;
+        depth = 0;
+        afterName = false;
+    }
+    
+    private void release() {
+        stream = null;
+        length = 0;
+        if (buffer.length > MAX_RETAINED_CAPACITY) {
+            buffer = new byte[INITIAL_CAPACITY]; // Do not keep one huge response alive per thread
+        }
+    }
+    
+    private void push() {
+        if (++depth >= MAX_DEPTH) {
+            throw new IllegalStateException("JSON nesting deeper than " + MAX_DEPTH);
+        }
+        firstInScope[depth] = true;
+    }
+    
+    private void beforeValue() throws IOException {
+        if (stream != null && length >= STREAM_FLUSH_THRESHOLD) {
+            stream.write(buffer, 0, length);
+            length = 0;
+        }
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth > 0) {
+            if (firstInScope[depth]) {
+                firstInScope[depth] = false;
+            } else {
+                buffer(1)[length++] = ',';
+            }
+        }
+    }
+    
+    private void writeByte(char c) {
+        buffer(1)[length++] = (byte) c;
+    }
+    
+    private void writeAscii(String text) {
+        int n = text.length();
+        byte[] b = buffer(n);
+        for (int i = 0; i < n; i++) {
+            b[length++] = (byte) text.charAt(i);
+        }
+    }
+    
+    private void writeString(String text) {
+        writeByte('"');
+        writeUtf8(text, true);
+        writeByte('"');
+    }
+    
+    private void writeUtf8(String text, boolean escape) {
+        int n = text.length();
+        for (int i = 0; i < n; i++) {
+            i = writeChar(text, i, escape);
+        }
+    }
+    
+    // Encodes the char at index i (and its low surrogate, if any); returns the last index consumed
+    private int writeChar(String text, int i, boolean escape) {
+        byte[] b = buffer(6);
+        char c = text.charAt(i);
+        if (c < 0x80) {
+            if (escape && (c < 0x20 || c == '"' || c == '\\')) {
+                b[length++] = '\\';
+                switch (c) {
+                    case '"': b[length++] = '"'; break;
+                    case '\\': b[length++] = '\\'; break;
+                    case '\n': b[length++] = 'n'; break;
+                    case '\r': b[length++] = 'r'; break;
+                    case '\t': b[length++] = 't'; break;
+                    default:
+                        b[length++] = 'u';
+                        b[length++] = '0';
+                        b[length++] = '0';
+                        b[length++] = HEX[c >> 4];
+                        b[length++] = HEX[c & 0xF];
+                }
+            } else {
+                b[length++] = (byte) c;
+            }
+        } else if (c < 0x800) {
+            b[length++] = (byte) (0xC0 | (c >> 6));
+            b[length++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                && Character.isLowSurrogate(text.charAt(i + 1))) {
+            int codePoint = Character.toCodePoint(c, text.charAt(i + 1));
+            b[length++] = (byte) (0xF0 | (codePoint >> 18));
+            b[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+            b[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+            b[length++] = (byte) (0x80 | (codePoint & 0x3F));
+            return i + 1;
+        } else if (Character.isSurrogate(c)) {
+            b[length++] = '?'; // Unpaired surrogate cannot be encoded
+        } else {
+            b[length++] = (byte) (0xE0 | (c >> 12));
+            b[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            b[length++] = (byte) (0x80 | (c & 0x3F));
+        }
+        return i;
+    }
+    
+    // Makes room for at least n more bytes and returns the (possibly new) buffer
+    private byte[] buffer(int n) {
+        if (length + n > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + n));
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,444 @@
+package com.oopdemo.web;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One request of NioHttpServer, presented as an HttpExchange so the same
+ * handlers serve both server modes.
+ * 
+ * The request body is a {@link NioRequestBody} that the event loop fills as
+ * the bytes arrive. The response goes to a {@link Sink} as the handler
+ * writes it, in pieces of up to 16 KB or whenever the handler flushes: with
+ * the length given to sendResponseHeaders, or chunked for length 0. A
+ * chunked response that ends before its first piece was sent goes out with
+ * its real Content-Length instead. A handler may also hand over a
+ * {@link ResponseStream}: that is written after the response head, as it
+ * produces bytes and without a length, until the connection closes.
+ */
+final class NioExchange extends HttpExchange {
+    static final int PIECE_BYTES = 16 * 1024;
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+    private static volatile String cachedDate = "";
+    private static volatile long cachedDateSecond;
+    
+    private final String method;
+    private final URI uri;
+    private final String protocol;
+    private final Headers requestHeaders;
+    private final Headers responseHeaders = new Headers();
+    private final boolean keepAlive;
+    private final Sink sink;
+    private final InetSocketAddress remoteAddress;
+    private final InetSocketAddress localAddress;
+    private final ResponseBody body = new ResponseBody();
+    private InputStream requestStream;
+    private OutputStream responseStream = body;
+    private Map<String, Object> attributes;
+    private int responseCode = -1;
+    private long declaredLength;
+    private ResponseStream stream;
+    
+    /**
+     * Receives the response of an exchange; implemented by the connection.
+     */
+    interface Sink {
+        /**
+         * Queues bytes for the socket, blocking while too many are waiting.
+         * 
+         * @param bytes The bytes; no longer touched by the caller
+         * @throws IOException if the connection is closed
+         */
+        void send(byte[] bytes) throws IOException;
+        
+        /**
+         * Ends the response; called once, after the last {@link #send}.
+         * 
+         * @param stream Stream to write once the response is out, or null
+         * @param reusable Whether the connection may carry another request
+         */
+        void finish(ResponseStream stream, boolean reusable);
+    }
+    
+    NioExchange(String method, URI uri, String protocol, Headers requestHeaders, InputStream requestBody,
+                boolean keepAlive, Sink sink, InetSocketAddress remoteAddress, InetSocketAddress localAddress) {
+        this.method = method;
+        this.uri = uri;
+        this.protocol = protocol;
+        this.requestHeaders = requestHeaders;
+        this.requestStream = requestBody;
+        this.keepAlive = keepAlive;
+        this.sink = sink;
+        this.remoteAddress = remoteAddress;
+        this.localAddress = localAddress;
+    }
+    
+    @Override
+    public Headers getRequestHeaders() {
+        return requestHeaders;
+    }
+    
+    @Override
+    public Headers getResponseHeaders() {
+        return responseHeaders;
+    }
+    
+    @Override
+    public URI getRequestURI() {
+        return uri;
+    }
+    
+    @Override
+    public String getRequestMethod() {
+        return method;
+    }
+    
+    @Override
+    public HttpContext getHttpContext() {
+        return null; // Routes are matched by NioHttpServer, not through contexts
+    }
+    
+    @Override
+    public void close() {
+        finish(false);
+    }
+    
+    @Override
+    public InputStream getRequestBody() {
+        return requestStream;
+    }
+    
+    @Override
+    public OutputStream getResponseBody() {
+        return responseStream;
+    }
+    
+    @Override
+    public void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+        if (responseCode != -1) {
+            throw new IOException("Response headers already sent");
+        }
+        responseCode = rCode;
+        declaredLength = responseLength;
+    }
+    
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+    
+    @Override
+    public int getResponseCode() {
+        return responseCode;
+    }
+    
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return localAddress;
+    }
+    
+    @Override
+    public String getProtocol() {
+        return protocol;
+    }
+    
+    @Override
+    public Object getAttribute(String name) {
+        return attributes == null ? null : attributes.get(name);
+    }
+    
+    @Override
+    public void setAttribute(String name, Object value) {
+        if (attributes == null) {
+            attributes = new HashMap<>();
+        }
+        attributes.put(name, value);
+    }
+    
+    @Override
+    public void setStreams(InputStream i, OutputStream o) {
+        if (i != null) {
+            requestStream = i;
+        }
+        if (o != null) {
+            responseStream = o;
+        }
+    }
+    
+    @Override
+    public HttpPrincipal getPrincipal() {
+        return null;
+    }
+    
+    /**
+     * Makes the rest of the response a stream that ends with the connection,
+     * e.g. server-sent events. Call it after sending the headers.
+     * 
+     * @param stream The stream; it is closed when the connection closes
+     */
+    void setResponseStream(ResponseStream stream) {
+        this.stream = stream;
+    }
+    
+    /**
+     * Checks whether the handler has started a response.
+     */
+    boolean isResponseStarted() {
+        return responseCode != -1;
+    }
+    
+    /**
+     * Sends what is left of the response and ends it; later calls do nothing.
+     * Called when the handler returns, or earlier when it closes the exchange.
+     * 
+     * @param failed Whether the handler failed; the response is then cut
+     *        short where it is and the connection closed
+     */
+    void finish(boolean failed) {
+        if (body.finished) {
+            return;
+        }
+        body.finished = true;
+        ResponseStream after = null;
+        boolean complete = false;
+        try {
+            if (responseCode == -1) {
+                responseCode = 500; // The handler returned without answering
+                declaredLength = -1;
+                failed = true;
+            }
+            if (stream != null && !failed) {
+                if (!body.committed) {
+                    body.committed = true;
+                    sink.send(encodeHead());
+                }
+                after = stream;
+                return;
+            }
+            if (stream != null) {
+                stream.close();
+                stream = null;
+            }
+            if (!body.committed && declaredLength == 0 && hasBody() && !failed) {
+                // Everything is here, so it is sent with its exact length
+                declaredLength = body.count > 0 ? body.count : -1;
+            }
+            complete = !failed && (declaredLength <= 0 || !hasBody() || body.written == declaredLength);
+            body.closeAfter = !complete;
+            body.send(complete);
+        } catch (IOException e) {
+            complete = false; // The connection is gone; the sink ignores the rest
+        } finally {
+            sink.finish(after, complete && keepAlive && !untilClose());
+        }
+    }
+    
+    static String reasonPhrase(int code) {
+        switch (code) {
+            case 200: return "OK";
+            case 201: return "Created";
+            case 202: return "Accepted";
+            case 204: return "No Content";
+            case 304: return "Not Modified";
+            case 400: return "Bad Request";
+            case 404: return "Not Found";
+            case 405: return "Method Not Allowed";
+            case 408: return "Request Timeout";
+            case 409: return "Conflict";
+            case 411: return "Length Required";
+            case 413: return "Content Too Large";
+            case 431: return "Request Header Fields Too Large";
+            case 500: return "Internal Server Error";
+            case 501: return "Not Implemented";
+            case 503: return "Service Unavailable";
+            default: return "Status";
+        }
+    }
+    
+    // Helper methods
+    private boolean bodyAllowed() {
+        return responseCode >= 200 && responseCode != 204 && responseCode != 304;
+    }
+    
+    private boolean hasBody() {
+        return !"HEAD".equals(method) && declaredLength >= 0 && bodyAllowed();
+    }
+    
+    private boolean isChunked() {
+        return hasBody() && declaredLength == 0 && "HTTP/1.1".equals(protocol);
+    }
+    
+    // An HTTP/1.0 client cannot read chunks, so a body of unknown length ends with the connection
+    private boolean untilClose() {
+        return stream != null || (hasBody() && declaredLength == 0 && !"HTTP/1.1".equals(protocol));
+    }
+    
+    // Encodes the status line and headers
+    private byte[] encodeHead() {
+        StringBuilder head = new StringBuilder(256);
+        head.append("HTTP/1.1 ").append(responseCode).append(' ').append(reasonPhrase(responseCode)).append("\r\n");
+        head.append("Date: ").append(currentDate()).append("\r\n");
+        boolean hasLength = false;
+        for (Map.Entry<String, List<String>> header : responseHeaders.entrySet()) {
+            if ("Content-Length".equalsIgnoreCase(header.getKey())) {
+                if (!hasBody() && stream == null) {
+                    hasLength = true; // Set by the handler, e.g. the size a GET would return
+                } else {
+                    continue;
+                }
+            }
+            if ("Connection".equalsIgnoreCase(header.getKey()) || "Transfer-Encoding".equalsIgnoreCase(header.getKey())) {
+                continue;
+            }
+            for (String value : header.getValue()) {
+                head.append(header.getKey()).append(": ").append(value).append("\r\n");
+            }
+        }
+        if (!hasLength && bodyAllowed() && !untilClose()) {
+            if (isChunked()) {
+                head.append("Transfer-Encoding: chunked\r\n");
+            } else {
+                head.append("Content-Length: ").append(Math.max(declaredLength, 0)).append("\r\n");
+            }
+        }
+        if (!keepAlive || untilClose() || body.closeAfter) {
+            head.append("Connection: close\r\n");
+        } else if ("HTTP/1.0".equals(protocol)) {
+            head.append("Connection: keep-alive\r\n");
+        }
+        head.append("\r\n");
+        return head.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+    
+    // The Date header only changes once a second, so it is formatted once a second
+    private static String currentDate() {
+        long second = System.currentTimeMillis() / 1000;
+        if (second != cachedDateSecond) {
+            cachedDate = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC));
+            cachedDateSecond = second;
+        }
+        return cachedDate;
+    }
+    
+    /**
+     * The response body as the handler writes it. Bytes are collected into
+     * a piece and passed to the sink, after the response head, when the
+     * piece is full, on flush and when the exchange finishes.
+     */
+    private final class ResponseBody extends OutputStream {
+        byte[] piece = new byte[1024];
+        int count;
+        long written;
+        boolean committed;
+        boolean finished;
+        boolean closeAfter;
+        
+        @Override
+        public void write(int b) throws IOException {
+            check(1);
+            if (!hasBody()) {
+                return; // E.g. HEAD: the body is not sent
+            }
+            ensureCapacity(count + 1);
+            piece[count++] = (byte) b;
+            written++;
+            if (count == PIECE_BYTES) {
+                send(false);
+            }
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            check(len);
+            if (!hasBody()) {
+                return;
+            }
+            while (len > 0) {
+                int take = Math.min(len, PIECE_BYTES - count);
+                ensureCapacity(count + take);
+                System.arraycopy(b, off, piece, count, take);
+                count += take;
+                off += take;
+                len -= take;
+                written += take;
+                if (count == PIECE_BYTES) {
+                    send(false);
+                }
+            }
+        }
+        
+        @Override
+        public void flush() throws IOException {
+            if (responseCode != -1 && !finished && (count > 0 || !committed)) {
+                send(false);
+            }
+        }
+        
+        @Override
+        public void close() {
+            finish(false);
+        }
+        
+        /**
+         * Passes the head (once) and the collected bytes to the sink.
+         * @param last Whether the response is complete; ends a chunked body
+         */
+        void send(boolean last) throws IOException {
+            if (!committed) {
+                committed = true;
+                sink.send(encodeHead());
+            }
+            if (count > 0) {
+                byte[] bytes = count == piece.length ? piece : Arrays.copyOf(piece, count);
+                if (isChunked()) {
+                    sink.send((Integer.toHexString(count) + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                    sink.send(bytes);
+                    sink.send(CRLF);
+                } else {
+                    sink.send(bytes);
+                }
+                if (bytes == piece) {
+                    piece = new byte[PIECE_BYTES]; // The sink owns the full piece now
+                }
+                count = 0;
+            }
+            if (last && isChunked()) {
+                sink.send(LAST_CHUNK);
+            }
+        }
+        
+        private void check(int len) throws IOException {
+            if (responseCode == -1) {
+                throw new IOException("Response headers not sent");
+            }
+            if (finished) {
+                throw new IOException("Response already finished");
+            }
+            if (hasBody() && declaredLength > 0 && written + len > declaredLength) {
+                throw new IOException("Response longer than its Content-Length of " + declaredLength);
+            }
+        }
+        
+        private void ensureCapacity(int needed) {
+            if (needed > piece.length) {
+                piece = Arrays.copyOf(piece, Math.min(Math.max(needed, piece.length * 2), PIECE_BYTES));
+            }
+        }
+    }
+}
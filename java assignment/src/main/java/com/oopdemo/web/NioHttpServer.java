@@ -0,0 +1,1173 @@
+package com.oopdemo.web;
+
+import com.oopdemo.logging.LogManager;
+import com.oopdemo.logging.Logger;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTTP/1.1 server on java.nio selectors, an alternative to the JDK's
+ * HttpServer with the same handlers (see {@link ServerConfig.ServerMode}).
+ * 
+ * One thread accepts connections and hands them round-robin to a few event
+ * loop threads. Each event loop owns its connections and a
+ * {@link BufferPool} of direct buffers: it reads and parses requests,
+ * passes complete ones to the executor (or runs them itself without one),
+ * and writes the responses. Connections are kept alive between requests,
+ * and pipelined requests are answered one after the other, in order; the
+ * next one is parsed from the bytes already received once the previous
+ * response is written.
+ * 
+ * Request heads must fit in one buffer (16 KB). A request goes to its
+ * handler as soon as its head is parsed, and the body, sent with a
+ * Content-Length or chunked, is streamed to the handler as it arrives; the
+ * event loop stops reading while the handler is behind. The response is
+ * written as the handler produces it, and a handler that writes faster
+ * than the client reads waits. Without an executor the handler runs on the
+ * event loop and must not wait, so the whole body is received first, up to
+ * 1 MB even when the server has no body limit, and the response is queued
+ * in full. {@link ResponseStream}s such as server-sent
+ * events are written whenever the stream has bytes and the socket has room,
+ * and end with the connection. A connection that makes no progress for the
+ * idle timeout while it waits on the client is closed.
+ */
+public class NioHttpServer {
+    private static final Logger LOG = LogManager.getLogger(NioHttpServer.class);
+    static final int BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 1024;
+    // Request bytes the handler has not read, and response bytes not yet written, before the other side waits
+    private static final int MAX_BUFFERED_BODY = 4 * BUFFER_SIZE;
+    private static final int MAX_QUEUED_RESPONSE = 4 * BUFFER_SIZE;
+    // Largest body held in full for a handler that runs on the event loop
+    static final int MAX_WHOLE_BODY = 64 * BUFFER_SIZE;
+    private static final int MAX_CHUNK_LINE = 4096;
+    private static final byte[] CONTINUE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+    
+    private final ServerSocketChannel serverChannel;
+    private final InetSocketAddress address;
+    private final Map<String, HttpHandler> routes = new LinkedHashMap<>();
+    private final EventLoop[] loops;
+    private final int maxBodyBytes;
+    private final long idleTimeoutNanos;
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+    private final AtomicInteger open = new AtomicInteger();
+    private final AtomicInteger streams = new AtomicInteger();
+    private volatile String[] prefixes = new String[0];
+    private volatile ExecutorService executor;
+    private volatile boolean running;
+    private Thread acceptor;
+    
+    /**
+     * Creates a server and binds its port.
+     * 
+     * @param address Address to listen on; port 0 picks a free port
+     * @param eventLoops Number of event loop threads
+     * @param maxBodyBytes Largest request body accepted, or 0 for no limit; larger ones get 413.
+     *        Without an executor bodies are held in full and at most 1 MB is accepted either way
+     * @param idleTimeoutSeconds How long a connection may go without traffic before it is closed
+     * @throws IOException if the port cannot be bound
+     */
+    public NioHttpServer(InetSocketAddress address, int eventLoops, int maxBodyBytes, int idleTimeoutSeconds)
+            throws IOException {
+        this.serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.bind(address);
+        } catch (IOException e) {
+            serverChannel.close();
+            throw e;
+        }
+        this.address = (InetSocketAddress) serverChannel.getLocalAddress();
+        this.loops = new EventLoop[Math.max(1, eventLoops)];
+        this.maxBodyBytes = maxBodyBytes;
+        this.idleTimeoutNanos = TimeUnit.SECONDS.toNanos(idleTimeoutSeconds);
+    }
+    
+    /**
+     * Routes requests whose path starts with the given prefix to a handler.
+     * Like HttpServer contexts, the longest matching prefix wins.
+     * 
+     * @param path Path prefix, e.g. "/api/users/list"
+     * @param handler The handler
+     */
+    public synchronized void createContext(String path, HttpHandler handler) {
+        routes.put(path, handler);
+        List<String> sorted = new ArrayList<>(routes.keySet());
+        sorted.sort((a, b) -> b.length() - a.length());
+        prefixes = sorted.toArray(new String[0]);
+    }
+    
+    /**
+     * Sets the executor that runs handlers; without one (null) they run on the event loops.
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+    
+    public InetSocketAddress getAddress() {
+        return address;
+    }
+    
+    /**
+     * Starts the acceptor and event loop threads.
+     */
+    public synchronized void start() throws IOException {
+        running = true;
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop(i);
+            loops[i].thread.start();
+        }
+        acceptor = new Thread(this::acceptConnections, "nio-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+    
+    /**
+     * Stops accepting, closes every connection and waits for the threads to end.
+     * Responses still being computed are dropped.
+     */
+    public synchronized void stop() {
+        running = false;
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            LOG.warn("Closing the server socket failed: {}", e.getMessage());
+        }
+        for (EventLoop loop : loops) {
+            if (loop == null) {
+                continue;
+            }
+            loop.selector.wakeup();
+            try {
+                loop.thread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    /**
+     * Gets connection and request counters.
+     * @return Map from counter name to value
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("accepted", accepted.sum());
+        stats.put("open", open.get());
+        stats.put("requests", requests.sum());
+        stats.put("streams", streams.get());
+        long buffers = 0;
+        for (EventLoop loop : loops) {
+            buffers += loop == null ? 0 : loop.buffersAllocated;
+        }
+        stats.put("directBuffers", buffers);
+        return stats;
+    }
+    
+    private void acceptConnections() {
+        int next = 0;
+        while (running) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                accepted.increment();
+                EventLoop loop = loops[next];
+                next = (next + 1) % loops.length;
+                loop.execute(() -> loop.register(channel));
+            } catch (ClosedChannelException e) {
+                return; // Stopped
+            } catch (IOException e) {
+                LOG.warn("Accepting a connection failed: {}", e.getMessage());
+                try {
+                    Thread.sleep(10); // E.g. out of file descriptors; let connections close
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+    
+    private HttpHandler route(String path) {
+        for (String prefix : prefixes) {
+            if (path.startsWith(prefix)) {
+                return routes.get(prefix);
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * A selector thread with its connections, buffers and task queue.
+     */
+    private final class EventLoop implements Runnable {
+        final Thread thread;
+        final Selector selector;
+        final BufferPool pool = new BufferPool(BUFFER_SIZE, MAX_POOLED_BUFFERS);
+        final Set<Connection> connections = new HashSet<>();
+        final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean wakeupPending = new AtomicBoolean();
+        volatile long buffersAllocated;
+        
+        EventLoop(int index) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "nio-loop-" + index);
+            thread.setDaemon(true);
+        }
+        
+        /**
+         * Runs a task on this loop's thread. Wakes the selector at most once
+         * per loop iteration, however many tasks arrive.
+         */
+        void execute(Runnable task) {
+            tasks.add(task);
+            if (Thread.currentThread() != thread && wakeupPending.compareAndSet(false, true)) {
+                selector.wakeup();
+            }
+        }
+        
+        void register(SocketChannel channel) {
+            try {
+                Connection connection = new Connection(this, channel);
+                connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+                connections.add(connection);
+                open.incrementAndGet();
+            } catch (IOException e) {
+                closeQuietly(channel);
+            }
+        }
+        
+        @Override
+        public void run() {
+            long nextIdleCheck = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+            while (running) {
+                wakeupPending.set(false);
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+                try {
+                    if (tasks.isEmpty()) {
+                        selector.select(this::handle, 1000);
+                    } else {
+                        selector.selectNow(this::handle); // Tasks queued by this thread are waiting
+                    }
+                } catch (IOException e) {
+                    LOG.warn("Selector failed: {}", e.getMessage());
+                }
+                long now = System.nanoTime();
+                if (now - nextIdleCheck >= 0) {
+                    closeIdle(now);
+                    nextIdleCheck = now + TimeUnit.SECONDS.toNanos(1);
+                }
+                buffersAllocated = pool.getAllocated();
+            }
+            for (Connection connection : new ArrayList<>(connections)) {
+                connection.close();
+            }
+            closeQuietly(selector);
+        }
+        
+        private void handle(SelectionKey key) {
+            Connection connection = (Connection) key.attachment();
+            if (!key.isValid()) {
+                connection.close();
+                return;
+            }
+            if (key.isReadable()) {
+                connection.onReadable();
+            }
+            if (key.isValid() && key.isWritable()) {
+                connection.onWritable();
+            }
+        }
+        
+        private void closeIdle(long now) {
+            List<Connection> idle = null;
+            for (Connection connection : connections) {
+                if (connection.waitsOnClient() && now - connection.lastActive > idleTimeoutNanos) {
+                    if (idle == null) {
+                        idle = new ArrayList<>();
+                    }
+                    idle.add(connection);
+                }
+            }
+            if (idle != null) {
+                for (Connection connection : idle) {
+                    connection.close();
+                }
+            }
+        }
+    }
+    
+    private enum State {
+        HEAD, BODY, RECEIVED, STREAMING
+    }
+    
+    private enum ChunkState {
+        SIZE, DATA, DATA_END, TRAILER
+    }
+    
+    /**
+     * One client connection. Only touched by its event loop, except for the
+     * response queue, which the thread running the handler fills.
+     */
+    private final class Connection implements NioExchange.Sink {
+        final EventLoop loop;
+        final SocketChannel channel;
+        SelectionKey key;
+        State state = State.HEAD;
+        long lastActive = System.nanoTime();
+        // Received bytes not parsed yet, in write mode; null while there are none
+        ByteBuffer in;
+        int scanned;
+        // The request being read
+        String method;
+        URI uri;
+        String protocol;
+        Headers headers;
+        boolean keepAlive;
+        ExecutorService workers;
+        NioRequestBody body;
+        long bodyLimit; // 0 for no limit
+        long bodyReceived;
+        long bodyRemaining; // Of the Content-Length body, or of the current chunk
+        boolean chunked;
+        ChunkState chunkState;
+        final StringBuilder chunkLine = new StringBuilder();
+        boolean readPaused;
+        boolean bodyBroken;
+        // Status for a body rejected while its handler read it; read by the handler's thread
+        volatile int bodyErrorStatus;
+        // The exchange being answered
+        boolean responding;
+        boolean dispatched;
+        // Response bytes queued by the handler's thread; guarded by the queue
+        final ArrayDeque<byte[]> queued = new ArrayDeque<>();
+        long queuedBytes;
+        long maxQueued;
+        boolean finished;
+        ResponseStream finishStream;
+        boolean reusable;
+        boolean closed;
+        final AtomicBoolean writeScheduled = new AtomicBoolean();
+        // The response bytes being written
+        ByteBuffer out;
+        byte[] outChunk;
+        int outOffset;
+        boolean writeBlocked;
+        // The stream that follows the response head, if any, and its bytes not yet in the buffer
+        ResponseStream stream;
+        byte[] streamChunk;
+        int streamOffset;
+        AtomicBoolean pumpScheduled;
+        
+        Connection(EventLoop loop, SocketChannel channel) {
+            this.loop = loop;
+            this.channel = channel;
+        }
+        
+        void onReadable() {
+            if (readPaused) {
+                return; // Resumed once the handler has caught up
+            }
+            if (in == null) {
+                in = loop.pool.acquire();
+            }
+            int read;
+            try {
+                read = channel.read(in);
+            } catch (IOException e) {
+                close();
+                return;
+            }
+            if (read < 0) {
+                close();
+                return;
+            }
+            lastActive = System.nanoTime();
+            if (state == State.STREAMING) {
+                loop.pool.release(in); // Clients send nothing more on a stream; only its end matters
+                in = null;
+                return;
+            }
+            parse();
+        }
+        
+        /**
+         * Parses what has been received: the next request head, and as much
+         * of the body as the handler has room for.
+         */
+        private void parse() {
+            in.flip();
+            try {
+                if (state == State.HEAD && !parseHead()) {
+                    return;
+                }
+                if (state == State.BODY) {
+                    receiveBody();
+                }
+            } finally {
+                if (in != null) {
+                    if (in.hasRemaining()) {
+                        in.compact();
+                    } else {
+                        loop.pool.release(in);
+                        in = null;
+                    }
+                }
+            }
+        }
+        
+        /**
+         * Parses the request line and headers once they are complete.
+         * @return true if the body follows; false if more bytes are needed, the
+         *         request had no body or the connection was answered and closed
+         */
+        private boolean parseHead() {
+            int start = in.position();
+            int end = -1;
+            for (int i = Math.max(start, start + scanned - 3); i <= in.limit() - 4; i++) {
+                if (in.get(i) == '\r' && in.get(i + 1) == '\n' && in.get(i + 2) == '\r' && in.get(i + 3) == '\n') {
+                    end = i + 4;
+                    break;
+                }
+            }
+            if (end < 0) {
+                scanned = in.remaining();
+                if (start == 0 && in.limit() == in.capacity()) {
+                    fail(431, "Request head too large");
+                }
+                return false;
+            }
+            scanned = 0;
+            byte[] bytes = new byte[end - start];
+            in.get(bytes);
+            String[] lines = new String(bytes, 0, bytes.length - 4, StandardCharsets.ISO_8859_1).split("\r\n");
+            String[] requestLine = lines[0].split(" ");
+            if (requestLine.length != 3 || !requestLine[2].startsWith("HTTP/1.")) {
+                fail(400, "Malformed request line");
+                return false;
+            }
+            method = requestLine[0];
+            protocol = requestLine[2];
+            try {
+                uri = URI.create(requestLine[1]);
+            } catch (IllegalArgumentException e) {
+                fail(400, "Malformed request target");
+                return false;
+            }
+            headers = new Headers();
+            for (int i = 1; i < lines.length; i++) {
+                int colon = lines[i].indexOf(':');
+                if (colon <= 0) {
+                    fail(400, "Malformed header");
+                    return false;
+                }
+                headers.add(lines[i].substring(0, colon).trim(), lines[i].substring(colon + 1).trim());
+            }
+            String connection = headers.getFirst("Connection");
+            keepAlive = "HTTP/1.1".equals(protocol)
+                    ? !"close".equalsIgnoreCase(connection) : "keep-alive".equalsIgnoreCase(connection);
+            
+            String transferEncoding = headers.getFirst("Transfer-Encoding");
+            String contentLength = headers.getFirst("Content-Length");
+            long length = 0;
+            chunked = false;
+            if (transferEncoding != null) {
+                // Both at once can be read two ways, which is how requests get smuggled past proxies
+                if (contentLength != null) {
+                    fail(400, "Send either Content-Length or Transfer-Encoding, not both");
+                    return false;
+                }
+                if (!"chunked".equalsIgnoreCase(transferEncoding.trim())) {
+                    fail(501, "Only the chunked transfer coding is supported");
+                    return false;
+                }
+                chunked = true;
+                chunkState = ChunkState.SIZE;
+                chunkLine.setLength(0);
+            }
+            workers = executor;
+            if (workers != null) {
+                bodyLimit = maxBodyBytes;
+            } else {
+                bodyLimit = maxBodyBytes > 0 ? Math.min(maxBodyBytes, MAX_WHOLE_BODY) : MAX_WHOLE_BODY;
+            }
+            if (!chunked && contentLength != null) {
+                try {
+                    length = Long.parseLong(contentLength);
+                } catch (NumberFormatException e) {
+                    length = -1;
+                }
+                if (length < 0) {
+                    fail(400, "Invalid Content-Length");
+                    return false;
+                }
+                if (bodyLimit > 0 && length > bodyLimit) {
+                    fail(413, "Request body larger than " + bodyLimit + " bytes");
+                    return false;
+                }
+            }
+            
+            // Without workers nothing reads until the body is complete, so it never pauses; bodyLimit bounds it
+            body = new NioRequestBody(workers == null ? Long.MAX_VALUE : MAX_BUFFERED_BODY, this::scheduleResume);
+            bodyReceived = 0;
+            bodyBroken = false;
+            bodyErrorStatus = 0;
+            readPaused = false;
+            if (!chunked && length == 0) {
+                body.end();
+                state = State.RECEIVED;
+                dispatch();
+                return false;
+            }
+            bodyRemaining = length;
+            state = State.BODY;
+            boolean bodyPending = chunked ? !in.hasRemaining() : in.remaining() < length;
+            if (bodyPending && "100-continue".equalsIgnoreCase(headers.getFirst("Expect"))) {
+                sendContinue();
+            }
+            if (workers != null && channel.isOpen()) {
+                dispatch(); // The handler reads the body while it arrives
+            }
+            return channel.isOpen();
+        }
+        
+        private void sendContinue() {
+            try {
+                ByteBuffer interim = ByteBuffer.wrap(CONTINUE);
+                channel.write(interim);
+                if (interim.hasRemaining()) {
+                    close(); // A 25-byte write only fails this way if the client is not reading at all
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+        
+        /**
+         * Passes received body bytes to the handler until the body ends, the
+         * received bytes run out or the handler has too many unread.
+         */
+        private void receiveBody() {
+            while (state == State.BODY && !readPaused && in != null && in.hasRemaining()) {
+                if (chunked) {
+                    if (!decodeChunked()) {
+                        return;
+                    }
+                } else {
+                    int take = (int) Math.min(in.remaining(), bodyRemaining);
+                    deliver(take);
+                    bodyRemaining -= take;
+                    if (bodyRemaining == 0) {
+                        endBody();
+                    }
+                }
+            }
+        }
+        
+        /**
+         * Decodes the next part of a chunked body.
+         * @return false if more bytes are needed or the body was rejected
+         */
+        private boolean decodeChunked() {
+            switch (chunkState) {
+                case SIZE: {
+                    String line = readChunkLine();
+                    if (line == null) {
+                        return false;
+                    }
+                    long size = parseChunkSize(line);
+                    if (size < 0) {
+                        bodyError(400, "Malformed chunk size");
+                        return false;
+                    }
+                    if (size == 0) {
+                        chunkState = ChunkState.TRAILER;
+                    } else {
+                        bodyRemaining = size;
+                        chunkState = ChunkState.DATA;
+                    }
+                    return true;
+                }
+                case DATA: {
+                    int take = (int) Math.min(in.remaining(), bodyRemaining);
+                    deliver(take);
+                    bodyRemaining -= take;
+                    if (bodyRemaining == 0) {
+                        chunkState = ChunkState.DATA_END;
+                    }
+                    return state == State.BODY;
+                }
+                case DATA_END: {
+                    String line = readChunkLine();
+                    if (line == null) {
+                        return false;
+                    }
+                    if (!line.isEmpty()) {
+                        bodyError(400, "Malformed chunk");
+                        return false;
+                    }
+                    chunkState = ChunkState.SIZE;
+                    return true;
+                }
+                default: {
+                    // Trailer fields are skipped up to the empty line that ends the body
+                    String line = readChunkLine();
+                    if (line == null) {
+                        return false;
+                    }
+                    if (line.isEmpty()) {
+                        endBody();
+                    }
+                    return true;
+                }
+            }
+        }
+        
+        /**
+         * Reads one line of chunk framing, which may arrive over several reads.
+         * @return The line without its line break, or null if it is not complete or too long
+         */
+        private String readChunkLine() {
+            while (in.hasRemaining()) {
+                byte b = in.get();
+                if (b == '\n') {
+                    int length = chunkLine.length();
+                    if (length > 0 && chunkLine.charAt(length - 1) == '\r') {
+                        chunkLine.setLength(length - 1);
+                    }
+                    String line = chunkLine.toString();
+                    chunkLine.setLength(0);
+                    return line;
+                }
+                if (chunkLine.length() == MAX_CHUNK_LINE) {
+                    bodyError(400, "Chunk line too long");
+                    return null;
+                }
+                chunkLine.append((char) (b & 0xff));
+            }
+            return null;
+        }
+        
+        /**
+         * Hands the next body bytes to the handler, and stops reading if it has too many unread.
+         */
+        private void deliver(int count) {
+            bodyReceived += count;
+            if (bodyLimit > 0 && bodyReceived > bodyLimit) {
+                bodyError(413, "Request body larger than " + bodyLimit + " bytes");
+                return;
+            }
+            byte[] bytes = new byte[count];
+            in.get(bytes);
+            if (!body.add(bytes)) {
+                readPaused = true;
+                updateInterest();
+            }
+        }
+        
+        private void endBody() {
+            body.end();
+            state = State.RECEIVED;
+            if (!dispatched) {
+                dispatch();
+            }
+            updateInterest();
+        }
+        
+        /**
+         * Rejects a body that turned out malformed or too large while it was received.
+         */
+        private void bodyError(int code, String message) {
+            if (!dispatched) {
+                fail(code, message);
+                return;
+            }
+            // The handler is already reading it: it sees the error, and the connection
+            // closes after its response
+            bodyErrorStatus = code;
+            body.fail(new IOException(message));
+            bodyBroken = true;
+            state = State.RECEIVED;
+            updateInterest();
+        }
+        
+        // Runs on the thread reading the body once it has caught up
+        private void scheduleResume() {
+            loop.execute(this::resumeBody);
+        }
+        
+        private void resumeBody() {
+            if (!readPaused || !channel.isOpen()) {
+                return;
+            }
+            readPaused = false;
+            if (in != null && state == State.BODY) {
+                parse();
+            }
+            updateInterest();
+        }
+        
+        /**
+         * Hands the request to its handler. Reading goes on only while the body is still arriving.
+         */
+        private void dispatch() {
+            responding = true;
+            dispatched = true;
+            updateInterest();
+            InetSocketAddress remote;
+            InetSocketAddress local;
+            try {
+                remote = (InetSocketAddress) channel.getRemoteAddress();
+                local = (InetSocketAddress) channel.getLocalAddress();
+            } catch (IOException e) {
+                close();
+                return;
+            }
+            beginResponse(workers == null ? Long.MAX_VALUE : MAX_QUEUED_RESPONSE);
+            NioExchange exchange = new NioExchange(method, uri, protocol, headers, body, keepAlive, this,
+                                                   remote, local);
+            Runnable task = () -> exchange.finish(!handle(exchange));
+            if (workers == null) {
+                task.run();
+                return;
+            }
+            try {
+                workers.execute(task);
+            } catch (RejectedExecutionException e) {
+                fail(503, "Server shutting down");
+            }
+        }
+        
+        /**
+         * Runs the handler for an exchange, on a worker thread or the event loop.
+         * @return false if it failed; a failure without a response is answered with 500,
+         *         or with 400 or 413 if the body was rejected
+         */
+        private boolean handle(NioExchange exchange) {
+            HttpHandler handler = route(exchange.getRequestURI().getPath() == null
+                    ? "/" : exchange.getRequestURI().getPath());
+            try {
+                if (handler == null) {
+                    exchange.sendResponseHeaders(404, -1);
+                } else {
+                    handler.handle(exchange);
+                }
+                return true;
+            } catch (IOException | RuntimeException e) {
+                LOG.debug("Handler for {} failed: {}", exchange.getRequestURI(), e.toString());
+                if (!exchange.isResponseStarted()) {
+                    try {
+                        exchange.sendResponseHeaders(bodyErrorStatus != 0 ? bodyErrorStatus : 500, -1);
+                    } catch (IOException ignored) {
+                        // Not possible before a response was started
+                    }
+                }
+                return false;
+            }
+        }
+        
+        /**
+         * Answers with an error and closes the connection; used before a handler is involved.
+         */
+        private void fail(int code, String message) {
+            state = State.RECEIVED;
+            responding = true;
+            bodyBroken = true;
+            if (in != null) {
+                loop.pool.release(in);
+                in = null;
+            }
+            if (body != null) {
+                body.fail(new IOException(message));
+            }
+            updateInterest();
+            beginResponse(Long.MAX_VALUE);
+            NioExchange exchange = new NioExchange("GET", URI.create("/"), "HTTP/1.1", new Headers(),
+                    InputStream.nullInputStream(), false, this, null, null);
+            byte[] json = ("{\"success\":false,\"message\":\"" + message + "\"}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            try {
+                exchange.sendResponseHeaders(code, json.length);
+                exchange.getResponseBody().write(json);
+            } catch (IOException e) {
+                // Queued in memory only
+            }
+            exchange.finish(false);
+        }
+        
+        private void beginResponse(long limit) {
+            synchronized (queued) {
+                queued.clear();
+                queuedBytes = 0;
+                maxQueued = limit;
+                finished = false;
+                finishStream = null;
+                reusable = false;
+            }
+        }
+        
+        @Override
+        public void send(byte[] bytes) throws IOException {
+            synchronized (queued) {
+                while (queuedBytes >= maxQueued && !closed) {
+                    try {
+                        queued.wait(); // The client reads slower than the handler writes
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while sending the response");
+                    }
+                }
+                if (closed) {
+                    throw new IOException("Connection closed");
+                }
+                queued.add(bytes);
+                queuedBytes += bytes.length;
+            }
+            scheduleWrite();
+        }
+        
+        @Override
+        public void finish(ResponseStream responseStream, boolean reuse) {
+            boolean orphaned;
+            synchronized (queued) {
+                orphaned = closed;
+                if (!closed) {
+                    finished = true;
+                    finishStream = responseStream;
+                    reusable = reuse;
+                }
+            }
+            if (orphaned) {
+                if (responseStream != null) {
+                    responseStream.close(); // The connection closed before the stream could start
+                }
+                return;
+            }
+            scheduleWrite();
+        }
+        
+        // Wakes the event loop at most once for however many pieces are queued meanwhile
+        private void scheduleWrite() {
+            if (!writeScheduled.getAndSet(true)) {
+                loop.execute(this::writeQueued);
+            }
+        }
+        
+        void onWritable() {
+            if (state == State.STREAMING) {
+                pump();
+            } else {
+                writeQueued();
+            }
+        }
+        
+        /**
+         * Writes the queued response bytes until none are left or the socket is full.
+         */
+        private void writeQueued() {
+            writeScheduled.set(false);
+            if (!channel.isOpen() || state == State.STREAMING) {
+                return;
+            }
+            try {
+                while (true) {
+                    if ((out == null || !out.hasRemaining()) && !fillFromQueue()) {
+                        break;
+                    }
+                    if (channel.write(out) > 0) {
+                        lastActive = System.nanoTime();
+                    }
+                    if (out.hasRemaining()) {
+                        writeBlocked = true; // Socket buffer full; continue when it drains
+                        updateInterest();
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                close();
+                return;
+            }
+            writeBlocked = false;
+            boolean done;
+            ResponseStream next;
+            boolean reuse;
+            synchronized (queued) {
+                done = finished && queued.isEmpty();
+                next = finishStream;
+                reuse = reusable;
+                if (done) {
+                    finished = false;
+                }
+            }
+            if (done) {
+                responseDone(next, reuse);
+            } else {
+                updateInterest();
+            }
+        }
+        
+        /**
+         * Copies queued response bytes into the direct buffer.
+         * @return false if none are queued
+         */
+        private boolean fillFromQueue() {
+            if (out == null) {
+                out = loop.pool.acquire();
+            }
+            out.clear();
+            while (out.hasRemaining()) {
+                if (outChunk == null) {
+                    synchronized (queued) {
+                        outChunk = queued.poll();
+                        if (outChunk != null) {
+                            queuedBytes -= outChunk.length;
+                            queued.notifyAll();
+                        }
+                    }
+                    if (outChunk == null) {
+                        break;
+                    }
+                    outOffset = 0;
+                    lastActive = System.nanoTime();
+                }
+                int take = Math.min(out.remaining(), outChunk.length - outOffset);
+                out.put(outChunk, outOffset, take);
+                outOffset += take;
+                if (outOffset == outChunk.length) {
+                    outChunk = null;
+                }
+            }
+            out.flip();
+            if (out.hasRemaining()) {
+                return true;
+            }
+            loop.pool.release(out); // Nothing to send for now; keep no buffer while waiting
+            out = null;
+            return false;
+        }
+        
+        /**
+         * Moves on once a response is completely written: to its stream, to the
+         * next request, or to closing the connection.
+         */
+        private void responseDone(ResponseStream next, boolean reuse) {
+            requests.increment();
+            responding = false;
+            dispatched = false;
+            if (next != null) {
+                stream = next;
+                startStream();
+                return;
+            }
+            // A body the handler did not wait for is not read past; the connection ends instead
+            if (!reuse || !running || state != State.RECEIVED || bodyBroken) {
+                close();
+                return;
+            }
+            body = null;
+            state = State.HEAD;
+            lastActive = System.nanoTime();
+            if (in != null) {
+                parse(); // A pipelined request may already be here
+            }
+            updateInterest();
+        }
+        
+        private void updateInterest() {
+            if (!key.isValid() || state == State.STREAMING) {
+                return;
+            }
+            int ops = 0;
+            if (state == State.HEAD || (state == State.BODY && !readPaused)) {
+                ops |= SelectionKey.OP_READ;
+            }
+            if (writeBlocked) {
+                ops |= SelectionKey.OP_WRITE;
+            }
+            key.interestOps(ops);
+        }
+        
+        /**
+         * Checks whether the connection waits on the client rather than on a
+         * handler; only then does the idle timeout apply.
+         */
+        boolean waitsOnClient() {
+            return !responding || writeBlocked || (state == State.BODY && !readPaused);
+        }
+        
+        /**
+         * Switches to writing the stream once the response head is out.
+         */
+        private void startStream() {
+            state = State.STREAMING;
+            streams.incrementAndGet();
+            if (in != null) {
+                loop.pool.release(in);
+                in = null;
+            }
+            key.interestOps(SelectionKey.OP_READ); // Only to notice when the client goes away
+            pumpScheduled = new AtomicBoolean();
+            stream.start(() -> {
+                if (!pumpScheduled.getAndSet(true)) {
+                    loop.execute(this::pump);
+                }
+            });
+            pump();
+        }
+        
+        /**
+         * Writes what the stream has until it has nothing more or the socket is full.
+         */
+        private void pump() {
+            pumpScheduled.set(false);
+            if (state != State.STREAMING || !channel.isOpen()) {
+                return;
+            }
+            try {
+                if (stream.isEnded()) {
+                    close();
+                    return;
+                }
+                while (true) {
+                    if ((out == null || !out.hasRemaining()) && !fillFromStream()) {
+                        loop.pool.release(out); // Nothing to send for now; keep no buffer while waiting
+                        out = null;
+                        key.interestOps(SelectionKey.OP_READ);
+                        return;
+                    }
+                    if (channel.write(out) > 0) {
+                        lastActive = System.nanoTime();
+                    }
+                    if (out.hasRemaining()) {
+                        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+        
+        /**
+         * Copies the stream's next bytes into the direct buffer.
+         * @return false if the stream has none for now
+         */
+        private boolean fillFromStream() throws IOException {
+            if (out == null) {
+                out = loop.pool.acquire();
+            }
+            out.clear();
+            while (out.hasRemaining()) {
+                if (streamChunk == null) {
+                    streamChunk = stream.next();
+                    streamOffset = 0;
+                    if (streamChunk == null) {
+                        break;
+                    }
+                }
+                int take = Math.min(out.remaining(), streamChunk.length - streamOffset);
+                out.put(streamChunk, streamOffset, take);
+                streamOffset += take;
+                if (streamOffset == streamChunk.length) {
+                    streamChunk = null;
+                }
+            }
+            out.flip();
+            return out.hasRemaining();
+        }
+        
+        void close() {
+            if (!loop.connections.remove(this)) {
+                return;
+            }
+            open.decrementAndGet();
+            ResponseStream orphan;
+            synchronized (queued) {
+                closed = true;
+                queued.clear();
+                queuedBytes = 0;
+                queued.notifyAll(); // A handler waiting to send gets an IOException
+                orphan = finished ? finishStream : null;
+            }
+            if (orphan != null) {
+                orphan.close();
+            }
+            if (body != null) {
+                body.fail(new IOException("Connection closed"));
+            }
+            if (stream != null) {
+                if (state == State.STREAMING) {
+                    streams.decrementAndGet();
+                }
+                stream.close();
+            }
+            key.cancel();
+            closeQuietly(channel);
+            if (in != null) {
+                loop.pool.release(in);
+                in = null;
+            }
+            if (out != null) {
+                loop.pool.release(out);
+                out = null;
+            }
+        }
+    }
+    
+    // Parses the hexadecimal size that starts a chunk line, ignoring chunk extensions; -1 if malformed
+    static long parseChunkSize(String line) {
+        int end = line.indexOf(';');
+        String hex = (end < 0 ? line : line.substring(0, end)).trim();
+        if (hex.isEmpty() || hex.length() > 15) {
+            return -1;
+        }
+        long size = 0;
+        for (int i = 0; i < hex.length(); i++) {
+            int digit = Character.digit(hex.charAt(i), 16);
+            if (digit < 0) {
+                return -1;
+            }
+            size = size * 16 + digit;
+        }
+        return size;
+    }
+    
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Nothing left to do
+        }
+    }
+}
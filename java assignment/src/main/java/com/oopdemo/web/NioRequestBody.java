@@ -0,0 +1,131 @@
+package com.oopdemo.web;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+
+/**
+ * Request body of a NioHttpServer exchange, read by the handler while the
+ * event loop is still receiving it.
+ * 
+ * The event loop adds the bytes as they arrive. Once the bytes waiting here
+ * reach the capacity it stops reading from the socket until the handler has
+ * taken half of them, so a slow handler holds the client back instead of
+ * filling memory. A handler that reads faster than the client sends blocks
+ * until more bytes arrive or the body ends.
+ */
+final class NioRequestBody extends InputStream {
+    private final ArrayDeque<byte[]> chunks = new ArrayDeque<>();
+    private final long capacity;
+    private final Runnable resume;
+    private byte[] current;
+    private int offset;
+    private long buffered;
+    private boolean paused;
+    private boolean ended;
+    private IOException failure;
+    
+    /**
+     * Creates an empty body.
+     * 
+     * @param capacity Bytes that may wait unread before the event loop pauses
+     * @param resume Run by the reading thread when a paused event loop may read again
+     */
+    NioRequestBody(long capacity, Runnable resume) {
+        this.capacity = capacity;
+        this.resume = resume;
+    }
+    
+    /**
+     * Adds received bytes; called by the event loop.
+     * 
+     * @param bytes The bytes; no longer touched by the caller
+     * @return false if the event loop should stop reading until resumed
+     */
+    synchronized boolean add(byte[] bytes) {
+        chunks.add(bytes);
+        buffered += bytes.length;
+        notifyAll();
+        if (buffered >= capacity) {
+            paused = true;
+        }
+        return !paused;
+    }
+    
+    /**
+     * Marks the body complete; reads return -1 once the bytes added are taken.
+     */
+    synchronized void end() {
+        ended = true;
+        notifyAll();
+    }
+    
+    /**
+     * Ends the body with an error, e.g. when the connection closes early.
+     * Bytes already added can still be read; then reads throw. Does nothing
+     * once the body has ended.
+     */
+    synchronized void fail(IOException error) {
+        if (!ended) {
+            failure = error;
+            ended = true;
+            notifyAll();
+        }
+    }
+    
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+    }
+    
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int take;
+        boolean wake;
+        synchronized (this) {
+            while (current == null && chunks.isEmpty()) {
+                if (failure != null) {
+                    throw new IOException(failure.getMessage(), failure);
+                }
+                if (ended) {
+                    return -1;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while reading the request body");
+                }
+            }
+            if (current == null) {
+                current = chunks.poll();
+                offset = 0;
+            }
+            take = Math.min(len, current.length - offset);
+            System.arraycopy(current, offset, b, off, take);
+            offset += take;
+            if (offset == current.length) {
+                current = null;
+            }
+            buffered -= take;
+            wake = paused && buffered <= capacity / 2;
+            if (wake) {
+                paused = false;
+            }
+        }
+        if (wake) {
+            resume.run();
+        }
+        return take;
+    }
+    
+    @Override
+    public synchronized int available() {
+        return (int) Math.min(buffered, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,32 @@
+package com.oopdemo.web;
+
+import java.util.Map;
+
+/**
+ * Body of POST /api/users/notify.
+ */
+public final class NotifyRequest {
+    private final String userId;
+    private final String message;
+    
+    public NotifyRequest(String userId, String message) {
+        this.userId = userId;
+        this.message = message;
+    }
+    
+    /**
+     * Reads the request from parsed body parameters.
+     * @param params Parameters from RequestBodyParser
+     */
+    public static NotifyRequest from(Map<String, String> params) {
+        return new NotifyRequest(params.get("userId"), params.get("message"));
+    }
+    
+    public String getUserId() {
+        return userId;
+    }
+    
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,24 @@
+package com.oopdemo.web;
+
+/**
+ * A request body that could not be read or parsed, with the HTTP status
+ * it should be answered with.
+ */
+public class RequestBodyException extends Exception {
+    private static final long serialVersionUID = 1L;
+    
+    private final int statusCode;
+    
+    public RequestBodyException(int statusCode, String message) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+    
+    /**
+     * Gets the status to answer with: 400 for malformed bodies, 413 for
+     * bodies over the size limit and 415 for unsupported content types.
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
@@ -0,0 +1,423 @@
+package com.oopdemo.web;
+
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads small form-encoded or JSON request bodies into flat parameter maps.
+ * 
+ * The body is read into a reusable byte buffer, never past the size limit,
+ * and keys and values are decoded from it as UTF-8. Values without escapes
+ * become Strings straight from the body bytes; percent and JSON escapes are
+ * resolved into a second reusable buffer first. Each thread keeps one
+ * instance, so a request allocates little more than its Strings and the map.
+ * 
+ * Both formats give the same map: parameters with an empty value and JSON
+ * nulls are left out, JSON numbers and booleans keep their literal text and
+ * JSON arrays of them are joined with commas, like the form field
+ * {@code ids=a,b,c}. Nested JSON objects and arrays are rejected.
+ */
+public final class RequestBodyParser {
+    private static final int INITIAL_CAPACITY = 4 * 1024;
+    private static final int MAX_RETAINED_CAPACITY = 256 * 1024;
+    private static final ThreadLocal<RequestBodyParser> CACHE = ThreadLocal.withInitial(RequestBodyParser::new);
+    
+    private byte[] body = new byte[INITIAL_CAPACITY];
+    private int length;
+    private byte[] scratch = new byte[INITIAL_CAPACITY];
+    private int decoded;
+    private byte[] input;
+    private int position;
+    private int end;
+    
+    private RequestBodyParser() {
+    }
+    
+    /**
+     * Gets this thread's parser.
+     * @return The thread's reusable parser
+     */
+    public static RequestBodyParser get() {
+        return CACHE.get();
+    }
+    
+    /**
+     * Reads a request body and parses it as JSON when its Content-Type says
+     * so, and as form data otherwise.
+     * 
+     * @param exchange The request to read
+     * @param maxBytes Largest body accepted
+     * @return Decoded parameters
+     * @throws RequestBodyException With 413 for a larger body, 415 for a multipart
+     *                              body and 400 for one that cannot be parsed
+     */
+    public Map<String, String> read(HttpExchange exchange, int maxBytes) throws IOException, RequestBodyException {
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        String type = contentType == null ? "" : contentType.toLowerCase(Locale.ROOT);
+        if (type.startsWith("multipart/")) {
+            throw new RequestBodyException(415, "Unsupported content type: " + contentType);
+        }
+        // A declared length over the limit is refused before anything is read
+        String declared = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (declared != null) {
+            try {
+                if (Long.parseLong(declared.trim()) > maxBytes) {
+                    throw tooLarge(maxBytes);
+                }
+            } catch (NumberFormatException e) {
+                throw new RequestBodyException(400, "Invalid Content-Length");
+            }
+        }
+        try {
+            readFully(exchange.getRequestBody(), maxBytes);
+            return type.contains("json") ? parseJson(body, 0, length) : parseForm(body, 0, length);
+        } finally {
+            release();
+        }
+    }
+    
+    /**
+     * Parses an application/x-www-form-urlencoded body.
+     * 
+     * @param bytes Array holding the body
+     * @param offset Index of its first byte
+     * @param count Number of bytes in it
+     * @return Decoded parameters; a pair is split at its first '='
+     * @throws RequestBodyException With 400 for a malformed percent escape
+     */
+    public Map<String, String> parseForm(byte[] bytes, int offset, int count) throws RequestBodyException {
+        Map<String, String> params = new HashMap<>();
+        begin(bytes, offset, count);
+        try {
+            int start = offset;
+            while (start < end) {
+                int separator = indexOf('&', start, end);
+                int equals = indexOf('=', start, separator);
+                if (equals > start && equals + 1 < separator) {
+                    params.put(decodeForm(start, equals), decodeForm(equals + 1, separator));
+                }
+                start = separator + 1;
+            }
+            return params;
+        } finally {
+            input = null;
+            release();
+        }
+    }
+    
+    /**
+     * Parses a JSON object whose values are strings, numbers, booleans,
+     * nulls or arrays of those.
+     * 
+     * @param bytes Array holding the UTF-8 encoded body
+     * @param offset Index of its first byte
+     * @param count Number of bytes in it
+     * @return Decoded parameters
+     * @throws RequestBodyException With 400 for anything else
+     */
+    public Map<String, String> parseJson(byte[] bytes, int offset, int count) throws RequestBodyException {
+        Map<String, String> params = new HashMap<>();
+        begin(bytes, offset, count);
+        try {
+            expect('{');
+            if (peek() == '}') {
+                position++;
+            } else {
+                while (true) {
+                    expect('"');
+                    String key = readString();
+                    expect(':');
+                    String value = readValue(true);
+                    if (value != null && !value.isEmpty()) {
+                        params.put(key, value);
+                    }
+                    int c = next();
+                    if (c == '}') {
+                        break;
+                    }
+                    if (c != ',') {
+                        throw malformed("expected ',' or '}'");
+                    }
+                }
+            }
+            if (peek() != -1) {
+                throw malformed("unexpected data after the object");
+            }
+            return params;
+        } finally {
+            input = null;
+            release();
+        }
+    }
+    
+    // Helper methods
+    private void readFully(InputStream in, int maxBytes) throws IOException, RequestBodyException {
+        int limit = (int) Math.min((long) maxBytes + 1, Integer.MAX_VALUE - 8);
+        length = 0;
+        while (true) {
+            if (length == body.length) {
+                body = Arrays.copyOf(body, Math.min(body.length * 2, limit));
+            }
+            int n = in.read(body, length, body.length - length);
+            if (n < 0) {
+                return;
+            }
+            length += n;
+            if (length > maxBytes) {
+                throw tooLarge(maxBytes);
+            }
+        }
+    }
+    
+    private void begin(byte[] bytes, int offset, int count) {
+        input = bytes;
+        position = offset;
+        end = offset + count;
+        if (scratch.length < count) {
+            scratch = new byte[count]; // Decoding never makes a value longer
+        }
+    }
+    
+    private void release() {
+        length = 0;
+        if (body.length > MAX_RETAINED_CAPACITY) {
+            body = new byte[INITIAL_CAPACITY]; // Do not keep one huge body alive per thread
+        }
+        if (scratch.length > MAX_RETAINED_CAPACITY) {
+            scratch = new byte[INITIAL_CAPACITY];
+        }
+    }
+    
+    private int indexOf(char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (input[i] == c) {
+                return i;
+            }
+        }
+        return to;
+    }
+    
+    private String decodeForm(int from, int to) throws RequestBodyException {
+        int i = from;
+        while (i < to && input[i] != '%' && input[i] != '+') {
+            i++;
+        }
+        if (i == to) {
+            return new String(input, from, to - from, StandardCharsets.UTF_8);
+        }
+        System.arraycopy(input, from, scratch, 0, i - from);
+        decoded = i - from;
+        while (i < to) {
+            byte b = input[i++];
+            if (b == '+') {
+                b = ' ';
+            } else if (b == '%') {
+                int high = i + 1 < to ? Character.digit(input[i], 16) : -1;
+                int low = high < 0 ? -1 : Character.digit(input[i + 1], 16);
+                if (low < 0) {
+                    throw new RequestBodyException(400, "Malformed form body: invalid percent escape");
+                }
+                b = (byte) (high << 4 | low);
+                i += 2;
+            }
+            scratch[decoded++] = b;
+        }
+        return new String(scratch, 0, decoded, StandardCharsets.UTF_8);
+    }
+    
+    // Reads the rest of a string whose opening quote has been consumed
+    private String readString() throws RequestBodyException {
+        int start = position;
+        int i = start;
+        while (i < end && input[i] != '"' && input[i] != '\\' && (input[i] & 0xFF) >= 0x20) {
+            i++;
+        }
+        if (i < end && input[i] == '"') {
+            position = i + 1;
+            return new String(input, start, i - start, StandardCharsets.UTF_8);
+        }
+        System.arraycopy(input, start, scratch, 0, i - start);
+        decoded = i - start;
+        while (true) {
+            if (i >= end) {
+                throw malformed("unterminated string");
+            }
+            int b = input[i++] & 0xFF;
+            if (b == '"') {
+                break;
+            }
+            if (b < 0x20) {
+                throw malformed("control character in string");
+            }
+            if (b != '\\') {
+                scratch[decoded++] = (byte) b;
+                continue;
+            }
+            if (i >= end) {
+                throw malformed("unterminated string");
+            }
+            switch (input[i++]) {
+                case '"': scratch[decoded++] = '"'; break;
+                case '\\': scratch[decoded++] = '\\'; break;
+                case '/': scratch[decoded++] = '/'; break;
+                case 'b': scratch[decoded++] = '\b'; break;
+                case 'f': scratch[decoded++] = '\f'; break;
+                case 'n': scratch[decoded++] = '\n'; break;
+                case 'r': scratch[decoded++] = '\r'; break;
+                case 't': scratch[decoded++] = '\t'; break;
+                case 'u':
+                    char c = readHex(i);
+                    i += 4;
+                    int codePoint = c;
+                    if (Character.isHighSurrogate(c) && i + 6 <= end && input[i] == '\\' && input[i + 1] == 'u') {
+                        char low = readHex(i + 2);
+                        if (Character.isLowSurrogate(low)) {
+                            codePoint = Character.toCodePoint(c, low);
+                            i += 6;
+                        }
+                    }
+                    writeUtf8(Character.isSurrogate((char) codePoint) && codePoint < 0x10000 ? '?' : codePoint);
+                    break;
+                default:
+                    throw malformed("invalid escape");
+            }
+        }
+        position = i;
+        return new String(scratch, 0, decoded, StandardCharsets.UTF_8);
+    }
+    
+    private char readHex(int from) throws RequestBodyException {
+        if (from + 4 > end) {
+            throw malformed("invalid unicode escape");
+        }
+        int value = 0;
+        for (int i = from; i < from + 4; i++) {
+            int digit = Character.digit(input[i], 16);
+            if (digit < 0) {
+                throw malformed("invalid unicode escape");
+            }
+            value = value << 4 | digit;
+        }
+        return (char) value;
+    }
+    
+    private void writeUtf8(int codePoint) {
+        if (codePoint < 0x80) {
+            scratch[decoded++] = (byte) codePoint;
+        } else if (codePoint < 0x800) {
+            scratch[decoded++] = (byte) (0xC0 | (codePoint >> 6));
+            scratch[decoded++] = (byte) (0x80 | (codePoint & 0x3F));
+        } else if (codePoint < 0x10000) {
+            scratch[decoded++] = (byte) (0xE0 | (codePoint >> 12));
+            scratch[decoded++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+            scratch[decoded++] = (byte) (0x80 | (codePoint & 0x3F));
+        } else {
+            scratch[decoded++] = (byte) (0xF0 | (codePoint >> 18));
+            scratch[decoded++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+            scratch[decoded++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+            scratch[decoded++] = (byte) (0x80 | (codePoint & 0x3F));
+        }
+    }
+    
+    // Reads a value; null for JSON null, arrays only at the top level of a field
+    private String readValue(boolean allowArray) throws RequestBodyException {
+        int c = peek();
+        if (c == '"') {
+            position++;
+            return readString();
+        }
+        if (c == '[' && allowArray) {
+            position++;
+            StringBuilder joined = new StringBuilder();
+            if (peek() == ']') {
+                position++;
+                return "";
+            }
+            while (true) {
+                String element = readValue(false);
+                if (element != null) {
+                    if (joined.length() > 0) {
+                        joined.append(',');
+                    }
+                    joined.append(element);
+                }
+                int next = next();
+                if (next == ']') {
+                    return joined.toString();
+                }
+                if (next != ',') {
+                    throw malformed("expected ',' or ']'");
+                }
+            }
+        }
+        if (c == '{' || c == '[') {
+            throw malformed("nested values are not supported");
+        }
+        int start = position;
+        while (position < end && isLiteralByte(input[position])) {
+            position++;
+        }
+        String literal = new String(input, start, position - start, StandardCharsets.ISO_8859_1);
+        if ("null".equals(literal)) {
+            return null;
+        }
+        if ("true".equals(literal) || "false".equals(literal)) {
+            return literal;
+        }
+        if (literal.isEmpty() || !(literal.charAt(0) == '-' || Character.isDigit(literal.charAt(0)))) {
+            throw malformed("unexpected value");
+        }
+        for (int i = 1; i < literal.length(); i++) {
+            char ch = literal.charAt(i);
+            if (!Character.isDigit(ch) && ch != '.' && ch != 'e' && ch != 'E' && ch != '-' && ch != '+') {
+                throw malformed("invalid number");
+            }
+        }
+        return literal;
+    }
+    
+    private static boolean isLiteralByte(byte b) {
+        return (b >= '0' && b <= '9') || (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z')
+                || b == '-' || b == '+' || b == '.';
+    }
+    
+    // Skips whitespace and returns the next byte without consuming it, or -1 at the end
+    private int peek() {
+        while (position < end) {
+            byte b = input[position];
+            if (b != ' ' && b != '\t' && b != '\n' && b != '\r') {
+                return b & 0xFF;
+            }
+            position++;
+        }
+        return -1;
+    }
+    
+    private int next() {
+        int c = peek();
+        if (c != -1) {
+            position++;
+        }
+        return c;
+    }
+    
+    private void expect(char c) throws RequestBodyException {
+        if (next() != c) {
+            throw malformed("expected '" + c + "'");
+        }
+    }
+    
+    private static RequestBodyException malformed(String detail) {
+        return new RequestBodyException(400, "Malformed JSON body: " + detail);
+    }
+    
+    private static RequestBodyException tooLarge(int maxBytes) {
+        return new RequestBodyException(413, "Request body larger than " + maxBytes + " bytes");
+    }
+}
@@ -0,0 +1,180 @@
+package com.oopdemo.web;
+
+import com.oopdemo.registry.UserRegistry;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Encoded responses of read endpoints, reused until the registry changes.
+ * 
+ * Every entry remembers the registry version read before its response was
+ * built, and is served only while the registry is still at that version:
+ * the next addition, status change or permission grant makes all entries
+ * stale at once, without the writers doing anything but bump the counter.
+ * Stale entries are dropped when the first response of a newer version is
+ * stored.
+ * 
+ * Memory is bounded: responses larger than a quarter of the budget are
+ * sent but not kept, and when the entries exceed the budget some are
+ * evicted until they fit again.
+ */
+public class ResponseCache {
+    private final UserRegistry registry;
+    private final long maxBytes;
+    private final String etagPrefix = "\"" + Long.toString(System.currentTimeMillis(), 36) + "-";
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong sweptVersion = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    
+    /**
+     * Creates an empty cache.
+     * 
+     * @param registry The registry whose version decides whether an entry is fresh
+     * @param maxBytes Total size of the responses kept; 0 keeps none
+     */
+    public ResponseCache(UserRegistry registry, long maxBytes) {
+        this.registry = registry;
+        this.maxBytes = Math.max(0, maxBytes);
+    }
+    
+    /**
+     * Builds the encoding of a response.
+     */
+    public interface Loader {
+        byte[] load() throws IOException;
+    }
+    
+    /**
+     * Gets the response for a key, building and storing it if there is none
+     * for the current registry version.
+     * 
+     * @param key Identifies the response, e.g. the endpoint and its normalized parameters
+     * @param loader Builds the response on a miss
+     * @return The fresh entry
+     */
+    public Entry getOrLoad(String key, Loader loader) throws IOException {
+        Entry entry = entries.get(key);
+        long version = registry.getVersion(); // Read before building, so the entry never claims more
+        if (entry != null && entry.version == version) {
+            hits.increment();
+            return entry;
+        }
+        misses.increment();
+        entry = new Entry(version, loader.load(), etagPrefix + version + "\"");
+        if (isEnabled() && entry.body.length <= maxBytes / 4) {
+            store(key, entry);
+        }
+        return entry;
+    }
+    
+    /**
+     * Checks a request's If-None-Match header against the current registry
+     * version, so an unchanged response can be answered with 304 without
+     * building or even looking it up.
+     * 
+     * @param ifNoneMatch The header value, or null
+     */
+    public boolean isCurrent(String ifNoneMatch) {
+        return ifNoneMatch != null && ifNoneMatch.equals(etagPrefix + registry.getVersion() + "\"");
+    }
+    
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+    
+    /**
+     * Gets hit, miss and size counters.
+     * @return Map from counter name to value
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("entries", entries.size());
+        stats.put("bytes", bytes.get());
+        stats.put("maxBytes", maxBytes);
+        return stats;
+    }
+    
+    // Helper methods
+    private void store(String key, Entry entry) {
+        while (true) {
+            Entry old = entries.get(key);
+            if (old != null && old.version > entry.version) {
+                return; // A slower request must not replace a newer response
+            }
+            if (old == null ? entries.putIfAbsent(key, entry) == null : entries.replace(key, old, entry)) {
+                bytes.addAndGet(entry.body.length - (old == null ? 0 : old.body.length));
+                break;
+            }
+        }
+        
+        // The first store of a newer version drops everything older
+        long swept = sweptVersion.get();
+        if (entry.version > swept && sweptVersion.compareAndSet(swept, entry.version)) {
+            for (Map.Entry<String, Entry> cached : entries.entrySet()) {
+                if (cached.getValue().version < entry.version) {
+                    remove(cached.getKey(), cached.getValue(), false);
+                }
+            }
+        }
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (bytes.get() > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Entry> cached = iterator.next();
+            if (cached.getValue() != entry) {
+                remove(cached.getKey(), cached.getValue(), true);
+            }
+        }
+    }
+    
+    private void remove(String key, Entry entry, boolean eviction) {
+        if (entries.remove(key, entry)) {
+            bytes.addAndGet(-entry.body.length);
+            if (eviction) {
+                evictions.increment();
+            }
+        }
+    }
+    
+    /**
+     * One encoded response and the registry version it reflects.
+     */
+    public static final class Entry {
+        private final long version;
+        private final byte[] body;
+        private final String etag;
+        
+        private Entry(long version, byte[] body, String etag) {
+            this.version = version;
+            this.body = body;
+            this.etag = etag;
+        }
+        
+        public long getVersion() {
+            return version;
+        }
+        
+        /**
+         * Gets the encoded response; it must not be modified.
+         */
+        public byte[] getBody() {
+            return body;
+        }
+        
+        /**
+         * Gets an ETag that changes with the registry version and with every server start.
+         */
+        public String getEtag() {
+            return etag;
+        }
+    }
+}
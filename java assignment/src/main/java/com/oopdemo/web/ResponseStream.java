@@ -0,0 +1,37 @@
+package com.oopdemo.web;
+
+import java.io.IOException;
+
+/**
+ * A response body that is produced over time and only ends with the
+ * connection, e.g. a stream of server-sent events.
+ * 
+ * The server asks for bytes whenever the stream signals that it has more,
+ * and only when it has room to write them, so a client that reads slowly
+ * leaves the bytes with the stream instead of piling them up in the server.
+ */
+interface ResponseStream {
+    /**
+     * Called once before the first {@link #next()}.
+     * @param wakeup Makes the server call next() again soon; may be run from any thread and as often as needed
+     */
+    void start(Runnable wakeup);
+    
+    /**
+     * Takes the next bytes to send. Called by one thread at a time.
+     * 
+     * @return The bytes, or null if there are none for now
+     * @throws IOException if the stream has ended and the connection should be closed
+     */
+    byte[] next() throws IOException;
+    
+    /**
+     * Checks whether the stream has ended, without taking anything.
+     */
+    boolean isEnded();
+    
+    /**
+     * Called once when the connection is closed, by either side.
+     */
+    void close();
+}
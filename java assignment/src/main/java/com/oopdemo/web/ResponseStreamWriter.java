@@ -0,0 +1,203 @@
+package com.oopdemo.web;
+
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes {@link ResponseStream}s to exchanges of the JDK's HttpServer,
+ * whose response bodies only support blocking writes.
+ * 
+ * A few shared threads serve every stream: a stream that was woken is
+ * queued once, and the next free thread writes what it has and moves on,
+ * so idle streams hold no thread. A client that stops reading without
+ * closing its connection holds a thread once its socket buffer is full, so
+ * a write that blocks longer than the write timeout, or that is still
+ * blocked when the stream ends, e.g. because the subscriber was cut off
+ * for falling behind, is interrupted. That closes the connection and frees
+ * the thread. The nio server mode never blocks a thread on a client.
+ */
+final class ResponseStreamWriter {
+    private static final long WATCHDOG_INTERVAL_MILLIS = 1000;
+    
+    private final ThreadPoolExecutor threads;
+    private final ScheduledExecutorService watchdog;
+    private final long writeTimeoutNanos;
+    private final Set<Drain> drains = ConcurrentHashMap.newKeySet();
+    
+    /**
+     * Creates a writer.
+     * @param threadCount Number of threads writing streams
+     * @param writeTimeoutSeconds Longest a write to one client may block before its connection is closed
+     */
+    ResponseStreamWriter(int threadCount, long writeTimeoutSeconds) {
+        AtomicInteger counter = new AtomicInteger();
+        threads = new ThreadPoolExecutor(threadCount, threadCount, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "stream-writer-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        threads.allowCoreThreadTimeOut(true);
+        writeTimeoutNanos = TimeUnit.SECONDS.toNanos(writeTimeoutSeconds);
+        watchdog = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "stream-writer-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watchdog.scheduleWithFixedDelay(this::abortStalled, WATCHDOG_INTERVAL_MILLIS, WATCHDOG_INTERVAL_MILLIS,
+                                        TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Starts writing a stream as the body of an exchange whose headers were
+     * sent with length 0 (chunked). The exchange is closed when the stream
+     * ends or the client goes away.
+     * 
+     * @param stream The stream
+     * @param exchange The exchange to write to
+     */
+    void start(ResponseStream stream, HttpExchange exchange) {
+        Drain drain = new Drain(stream, exchange);
+        drains.add(drain);
+        stream.start(drain::schedule);
+        drain.schedule();
+    }
+    
+    void shutdown() {
+        watchdog.shutdownNow();
+        threads.shutdownNow();
+    }
+    
+    private void abortStalled() {
+        long now = System.nanoTime();
+        for (Drain drain : drains) {
+            drain.abortIfStalled(now);
+        }
+    }
+    
+    /**
+     * Writes what one stream has. Wakeups that arrive while it runs make it
+     * run again, so at most one thread writes a stream at any time.
+     * 
+     * The JDK server writes to a blocking socket channel, which a thread
+     * interrupt closes; the interrupt is only sent while the write is in
+     * progress, so it never reaches the next stream the thread writes.
+     */
+    private final class Drain implements Runnable {
+        private final ResponseStream stream;
+        private final HttpExchange exchange;
+        private final AtomicInteger wakeups = new AtomicInteger();
+        private volatile boolean closed;
+        // Guarded by this: the thread inside a write, if any, and since when
+        private Thread writer;
+        private long writeStarted;
+        private boolean aborted;
+        
+        Drain(ResponseStream stream, HttpExchange exchange) {
+            this.stream = stream;
+            this.exchange = exchange;
+        }
+        
+        void schedule() {
+            if (stream.isEnded()) {
+                abort(); // Cut off; a write still blocked on the client would otherwise keep its thread
+            }
+            if (!closed && wakeups.getAndIncrement() == 0) {
+                try {
+                    threads.execute(this);
+                } catch (RejectedExecutionException e) {
+                    close(); // Shut down
+                }
+            }
+        }
+        
+        @Override
+        public void run() {
+            int pending = wakeups.get();
+            while (true) {
+                if (!closed) {
+                    write();
+                }
+                pending = wakeups.addAndGet(-pending);
+                if (pending == 0) {
+                    return;
+                }
+            }
+        }
+        
+        synchronized void abortIfStalled(long now) {
+            if (writer != null && now - writeStarted > writeTimeoutNanos) {
+                abort();
+            }
+        }
+        
+        private synchronized void abort() {
+            aborted = true;
+            if (writer != null) {
+                writer.interrupt();
+            }
+        }
+        
+        private void write() {
+            try {
+                OutputStream out = exchange.getResponseBody();
+                boolean wrote = false;
+                byte[] bytes;
+                while ((bytes = stream.next()) != null) {
+                    beginWrite();
+                    try {
+                        out.write(bytes);
+                    } finally {
+                        endWrite();
+                    }
+                    wrote = true;
+                }
+                if (wrote) {
+                    beginWrite();
+                    try {
+                        out.flush(); // Sends the chunk now rather than when the buffer fills
+                    } finally {
+                        endWrite();
+                    }
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+        
+        private synchronized void beginWrite() throws IOException {
+            if (aborted) {
+                throw new IOException("Stream aborted");
+            }
+            writer = Thread.currentThread();
+            writeStarted = System.nanoTime();
+        }
+        
+        private void endWrite() {
+            synchronized (this) {
+                writer = null;
+            }
+            Thread.interrupted(); // An abort that came as the write returned; this pooled thread moves on
+        }
+        
+        private void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            drains.remove(this);
+            stream.close();
+            exchange.close();
+        }
+    }
+}
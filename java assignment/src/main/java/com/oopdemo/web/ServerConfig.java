@@ -0,0 +1,360 @@
+package com.oopdemo.web;
+
+import com.oopdemo.logging.LogManager;
+import com.oopdemo.logging.Logger;
+import com.oopdemo.registry.UserRegistry;
+import com.oopdemo.users.SnowflakeIdGenerator;
+import java.util.Locale;
+
+/**
+ * Startup settings for SimpleWebServer.
+ * 
+ * Values come from system properties so the server can be tuned without
+ * recompiling, e.g. {@code java -Dserver.executor=virtual ... SimpleWebServer}.
+ * Unknown or malformed values fall back to the defaults.
+ */
+public class ServerConfig {
+    private static final Logger LOG = LogManager.getLogger(ServerConfig.class);
+    
+    /**
+     * Which HTTP implementation accepts connections and parses requests.
+     */
+    public enum ServerMode {
+        /** The JDK's com.sun.net.httpserver.HttpServer. */
+        JDK,
+        /** NioHttpServer: selector event loops with keep-alive, pipelining and pooled direct buffers. */
+        NIO
+    }
+    
+    /**
+     * How HTTP requests are handed to worker threads.
+     */
+    public enum ExecutorMode {
+        /** Every request on the JDK dispatcher thread (the original behaviour). */
+        SINGLE,
+        /** Bounded pool of platform threads with a bounded queue. */
+        PLATFORM,
+        /** One virtual thread per request, capped by a concurrency limit. */
+        VIRTUAL
+    }
+    
+    /**
+     * What happens when all workers are busy and the queue is full.
+     */
+    public enum RejectionPolicy {
+        /** Run the request on the dispatcher thread, which slows down accepting. */
+        CALLER_RUNS,
+        /** Answer immediately with 503 Service Unavailable. */
+        SHED
+    }
+    
+    private int port = 8082;
+    private ServerMode serverMode = ServerMode.JDK;
+    private int eventLoops = Runtime.getRuntime().availableProcessors();
+    private int maxBodyBytes;
+    private int maxFormBytes = 64 * 1024;
+    private long responseCacheBytes = 32 * 1024 * 1024;
+    private int changeLogCapacity = UserRegistry.DEFAULT_CHANGE_LOG_CAPACITY;
+    private int eventBufferSize = 1024;
+    private int idleTimeoutSeconds = 30;
+    private ExecutorMode executorMode = ExecutorMode.PLATFORM;
+    private int workerThreads = Runtime.getRuntime().availableProcessors() * 2;
+    private int queueCapacity = 1024;
+    private RejectionPolicy rejectionPolicy = RejectionPolicy.SHED;
+    private String staticRoot = "frontend";
+    private String notificationsFile = "notifications.log";
+    private String dataDirectory;
+    private long snapshotIntervalSeconds = 300;
+    private boolean fsync = true;
+    private int nodeId;
+    
+    /**
+     * Builds a configuration from system properties:
+     * <ul>
+     * <li>server.port - port to listen on</li>
+     * <li>server.mode - jdk or nio</li>
+     * <li>server.loops - selector threads in nio mode</li>
+     * <li>server.max.body - largest request body in bytes in nio mode, or 0 for no limit;
+     *     at most 1 MB when handlers run on the event loops</li>
+     * <li>server.max.form - largest form or JSON body in bytes</li>
+     * <li>server.cache.bytes - memory of the response cache in bytes</li>
+     * <li>server.changes - recent user changes kept for /api/users/changes</li>
+     * <li>server.events.buffer - events a subscriber of /api/events may fall behind</li>
+     * <li>server.idle.timeout - seconds a connection may stay idle in nio mode</li>
+     * <li>server.executor - single, platform or virtual</li>
+     * <li>server.threads - worker threads</li>
+     * <li>server.queue - requests waiting for a worker</li>
+     * <li>server.rejection - caller-runs or shed</li>
+     * <li>server.static.root - directory of the static files</li>
+     * <li>server.notifications.file - file notifications are appended to</li>
+     * <li>server.data.dir - directory users are persisted in</li>
+     * <li>server.snapshot.interval - seconds between snapshots</li>
+     * <li>server.fsync - whether the journal is forced to disk</li>
+     * <li>server.node.id - node number in generated user ids</li>
+     * </ul>
+     * 
+     * @return Configuration with defaults for every property that is not set
+     */
+    public static ServerConfig fromSystemProperties() {
+        ServerConfig config = new ServerConfig();
+        config.setPort(intProperty("server.port", config.port));
+        config.setServerMode(enumProperty("server.mode", ServerMode.class, config.serverMode));
+        config.setEventLoops(intProperty("server.loops", config.eventLoops));
+        config.setMaxBodyBytes(intProperty("server.max.body", config.maxBodyBytes));
+        config.setMaxFormBytes(intProperty("server.max.form", config.maxFormBytes));
+        config.setResponseCacheBytes(longProperty("server.cache.bytes", config.responseCacheBytes));
+        config.setChangeLogCapacity(intProperty("server.changes", config.changeLogCapacity));
+        config.setEventBufferSize(intProperty("server.events.buffer", config.eventBufferSize));
+        config.setIdleTimeoutSeconds(intProperty("server.idle.timeout", config.idleTimeoutSeconds));
+        config.setExecutorMode(enumProperty("server.executor", ExecutorMode.class, config.executorMode));
+        config.setWorkerThreads(intProperty("server.threads", config.workerThreads));
+        config.setQueueCapacity(intProperty("server.queue", config.queueCapacity));
+        config.setRejectionPolicy(enumProperty("server.rejection", RejectionPolicy.class, config.rejectionPolicy));
+        config.setStaticRoot(System.getProperty("server.static.root", config.staticRoot));
+        config.setNotificationsFile(System.getProperty("server.notifications.file", config.notificationsFile));
+        config.setDataDirectory(System.getProperty("server.data.dir", config.dataDirectory));
+        config.setSnapshotIntervalSeconds(longProperty("server.snapshot.interval", config.snapshotIntervalSeconds));
+        config.setFsync(Boolean.parseBoolean(System.getProperty("server.fsync", Boolean.toString(config.fsync))));
+        config.setNodeId(intProperty("server.node.id", config.nodeId));
+        return config;
+    }
+    
+    public int getPort() {
+        return port;
+    }
+    
+    public void setPort(int port) {
+        this.port = port;
+    }
+    
+    public ServerMode getServerMode() {
+        return serverMode;
+    }
+    
+    public void setServerMode(ServerMode serverMode) {
+        this.serverMode = serverMode;
+    }
+    
+    /**
+     * Gets the number of selector threads in NIO mode.
+     * @return At least 1; handlers still run on the executor unless it is SINGLE
+     */
+    public int getEventLoops() {
+        return eventLoops;
+    }
+    
+    public void setEventLoops(int eventLoops) {
+        this.eventLoops = Math.max(1, eventLoops);
+    }
+    
+    /**
+     * Gets the largest request body accepted in nio mode; larger ones are answered with 413.
+     * @return Size in bytes, or 0 for no limit
+     */
+    public int getMaxBodyBytes() {
+        return maxBodyBytes;
+    }
+    
+    public void setMaxBodyBytes(int maxBodyBytes) {
+        this.maxBodyBytes = Math.max(0, maxBodyBytes);
+    }
+    
+    /**
+     * Gets the largest form or JSON body the API handlers parse; larger ones
+     * are answered with 413. Streamed bulk imports are not limited by this.
+     * @return Size in bytes
+     */
+    public int getMaxFormBytes() {
+        return maxFormBytes;
+    }
+    
+    public void setMaxFormBytes(int maxFormBytes) {
+        this.maxFormBytes = Math.max(0, maxFormBytes);
+    }
+    
+    /**
+     * Gets the memory the cache of list and polymorphism responses may use.
+     * @return Size in bytes; 0 disables the cache
+     */
+    public long getResponseCacheBytes() {
+        return responseCacheBytes;
+    }
+    
+    public void setResponseCacheBytes(long responseCacheBytes) {
+        this.responseCacheBytes = Math.max(0, responseCacheBytes);
+    }
+    
+    /**
+     * Gets the number of recent user changes kept for /api/users/changes;
+     * clients that fall further behind get all users again.
+     * @return Number of changes
+     */
+    public int getChangeLogCapacity() {
+        return changeLogCapacity;
+    }
+    
+    public void setChangeLogCapacity(int changeLogCapacity) {
+        this.changeLogCapacity = Math.max(1, changeLogCapacity);
+    }
+    
+    /**
+     * Gets the number of events a subscriber of /api/events may fall behind
+     * before its connection is closed as too slow.
+     * @return Number of events
+     */
+    public int getEventBufferSize() {
+        return eventBufferSize;
+    }
+    
+    public void setEventBufferSize(int eventBufferSize) {
+        this.eventBufferSize = Math.max(1, eventBufferSize);
+    }
+    
+    /**
+     * Gets how long a kept-alive connection may sit idle in NIO mode before it is closed.
+     * @return Seconds
+     */
+    public int getIdleTimeoutSeconds() {
+        return idleTimeoutSeconds;
+    }
+    
+    public void setIdleTimeoutSeconds(int idleTimeoutSeconds) {
+        this.idleTimeoutSeconds = Math.max(1, idleTimeoutSeconds);
+    }
+    
+    public ExecutorMode getExecutorMode() {
+        return executorMode;
+    }
+    
+    public void setExecutorMode(ExecutorMode executorMode) {
+        this.executorMode = executorMode;
+    }
+    
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+    
+    public void setWorkerThreads(int workerThreads) {
+        this.workerThreads = Math.max(1, workerThreads);
+    }
+    
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+    
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = Math.max(0, queueCapacity);
+    }
+    
+    public RejectionPolicy getRejectionPolicy() {
+        return rejectionPolicy;
+    }
+    
+    public void setRejectionPolicy(RejectionPolicy rejectionPolicy) {
+        this.rejectionPolicy = rejectionPolicy;
+    }
+    
+    public String getStaticRoot() {
+        return staticRoot;
+    }
+    
+    public void setStaticRoot(String staticRoot) {
+        this.staticRoot = staticRoot;
+    }
+    
+    public String getNotificationsFile() {
+        return notificationsFile;
+    }
+    
+    public void setNotificationsFile(String notificationsFile) {
+        this.notificationsFile = notificationsFile;
+    }
+    
+    /**
+     * Gets the directory users are persisted in.
+     * @return The directory, or null to keep users in memory only
+     */
+    public String getDataDirectory() {
+        return dataDirectory;
+    }
+    
+    public void setDataDirectory(String dataDirectory) {
+        this.dataDirectory = dataDirectory == null || dataDirectory.trim().isEmpty() ? null : dataDirectory;
+    }
+    
+    public long getSnapshotIntervalSeconds() {
+        return snapshotIntervalSeconds;
+    }
+    
+    public void setSnapshotIntervalSeconds(long snapshotIntervalSeconds) {
+        this.snapshotIntervalSeconds = Math.max(0, snapshotIntervalSeconds);
+    }
+    
+    public boolean isFsync() {
+        return fsync;
+    }
+    
+    public void setFsync(boolean fsync) {
+        this.fsync = fsync;
+    }
+    
+    /**
+     * Gets the node number used in generated user ids.
+     * @return 0 to SnowflakeIdGenerator.MAX_NODE; servers sharing users need different numbers
+     */
+    public int getNodeId() {
+        return nodeId;
+    }
+    
+    public void setNodeId(int nodeId) {
+        this.nodeId = Math.max(0, Math.min(SnowflakeIdGenerator.MAX_NODE, nodeId));
+    }
+    
+    @Override
+    public String toString() {
+        return "mode=" + serverMode + (serverMode == ServerMode.NIO ? ", loops=" + eventLoops : "") +
+               ", executor=" + executorMode + ", threads=" + workerThreads +
+               ", queue=" + queueCapacity + ", rejection=" + rejectionPolicy +
+               ", data=" + (dataDirectory == null ? "in-memory" : dataDirectory);
+    }
+    
+    // Helper methods
+    private static int intProperty(String key, int defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            LOG.warn("Ignoring invalid {}={}", key, value);
+            return defaultValue;
+        }
+    }
+    
+    private static long longProperty(String key, long defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            LOG.warn("Ignoring invalid {}={}", key, value);
+            return defaultValue;
+        }
+    }
+    
+    private static <E extends Enum<E>> E enumProperty(String key, Class<E> type, E defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Ignoring invalid {}={}", key, value);
+            return defaultValue;
+        }
+    }
+}
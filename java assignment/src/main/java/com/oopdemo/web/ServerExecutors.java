@@ -0,0 +1,198 @@
+package com.oopdemo.web;
+
+import com.oopdemo.logging.LogManager;
+import com.oopdemo.logging.Logger;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Creates the executor that runs HTTP handlers for SimpleWebServer.
+ * 
+ * Both pooled modes are bounded. When the limit is hit the configured
+ * {@link ServerConfig.RejectionPolicy} applies: CALLER_RUNS runs the request
+ * on the dispatcher thread, SHED runs it there too but flags it so the
+ * handler answers with 503 instead of doing the work.
+ */
+public final class ServerExecutors {
+    private static final Logger LOG = LogManager.getLogger(ServerExecutors.class);
+    private static final ThreadLocal<Boolean> SHEDDING = new ThreadLocal<>();
+    private static final LongAdder REJECTED = new LongAdder();
+    
+    private ServerExecutors() {
+    }
+    
+    /**
+     * Creates an executor for the given configuration.
+     * 
+     * @param config The server configuration
+     * @return The executor, or null for SINGLE mode (dispatcher thread only)
+     */
+    public static ExecutorService create(ServerConfig config) {
+        switch (config.getExecutorMode()) {
+            case SINGLE:
+                return null;
+            case VIRTUAL:
+                ExecutorService virtual = newVirtualThreadExecutor();
+                if (virtual != null) {
+                    int limit = config.getWorkerThreads() + config.getQueueCapacity();
+                    return new BoundedExecutor(virtual, limit, config.getRejectionPolicy());
+                }
+                LOG.warn("Virtual threads need Java 21+, falling back to a platform pool");
+                return newPlatformPool(config);
+            case PLATFORM:
+            default:
+                return newPlatformPool(config);
+        }
+    }
+    
+    /**
+     * Tells a handler whether it is running as an overflow request that should be shed.
+     * 
+     * @return true if the current request was rejected by the executor under the SHED policy
+     */
+    public static boolean isShedding() {
+        return Boolean.TRUE.equals(SHEDDING.get());
+    }
+    
+    /**
+     * Gets the number of requests that did not fit into the executor.
+     * @return Total rejected requests since startup
+     */
+    public static long getRejectedCount() {
+        return REJECTED.sum();
+    }
+    
+    // Helper methods
+    private static ExecutorService newPlatformPool(ServerConfig config) {
+        int threads = config.getWorkerThreads();
+        BlockingQueue<Runnable> queue = config.getQueueCapacity() > 0
+                ? new ArrayBlockingQueue<>(config.getQueueCapacity())
+                : new SynchronousQueue<>();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, queue,
+                new WorkerThreadFactory(), rejectionHandler(config.getRejectionPolicy()));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+    
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+    
+    private static RejectedExecutionHandler rejectionHandler(ServerConfig.RejectionPolicy policy) {
+        return (task, executor) -> {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Server is shutting down");
+            }
+            runRejected(task, policy);
+        };
+    }
+    
+    private static void runRejected(Runnable task, ServerConfig.RejectionPolicy policy) {
+        REJECTED.increment();
+        if (policy == ServerConfig.RejectionPolicy.SHED) {
+            SHEDDING.set(Boolean.TRUE);
+        }
+        try {
+            task.run();
+        } finally {
+            SHEDDING.remove();
+        }
+    }
+    
+    /**
+     * Names worker threads so they are easy to spot in thread dumps.
+     */
+    private static final class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+        
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "http-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+    
+    /**
+     * Caps how many requests a thread-per-task executor runs at once.
+     * Virtual threads have no queue of their own, so the cap plays that role.
+     */
+    private static final class BoundedExecutor extends AbstractExecutorService {
+        private final ExecutorService delegate;
+        private final Semaphore permits;
+        private final ServerConfig.RejectionPolicy policy;
+        
+        BoundedExecutor(ExecutorService delegate, int limit, ServerConfig.RejectionPolicy policy) {
+            this.delegate = delegate;
+            this.permits = new Semaphore(Math.max(1, limit));
+            this.policy = policy;
+        }
+        
+        @Override
+        public void execute(Runnable task) {
+            if (delegate.isShutdown()) {
+                throw new RejectedExecutionException("Server is shutting down");
+            }
+            if (!permits.tryAcquire()) {
+                runRejected(task, policy);
+                return;
+            }
+            try {
+                delegate.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                throw e;
+            }
+        }
+        
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+        
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+        
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+        
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+        
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
@@ -3,65 +3,301 @@ package com.oopdemo.web;
 import com.sun.net.httpserver.HttpServer;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.Headers;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.util.Map;
 import java.util.HashMap;
-import com.google.gson.Gson;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.util.LinkedHashMap;
+import java.util.Locale;
 import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import com.oopdemo.enums.UserStatus;
+import com.oopdemo.logging.LogManager;
+import com.oopdemo.logging.Logger;
+import com.oopdemo.metrics.MetricsRegistry;
+import com.oopdemo.metrics.OperationMetrics;
+import com.oopdemo.persistence.RegistryPersistence;
+import com.oopdemo.registry.UserFilter;
+import com.oopdemo.registry.UserRegistry;
+import com.oopdemo.users.SnowflakeIdGenerator;
+import com.oopdemo.users.User;
+import com.oopdemo.users.UserIds;
+import com.oopdemo.notifications.FileNotificationSink;
+import com.oopdemo.notifications.NotificationDispatcher;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * Simple HTTP Server to expose OOP demo as REST API.
  * This allows frontend applications to interact with our Java OOP classes.
  */
 public class SimpleWebServer {
+    private static final Logger LOG = LogManager.getLogger(SimpleWebServer.class);
+    private static final int STREAM_WRITER_THREADS = 4;
+    private static final long STREAM_WRITE_TIMEOUT_SECONDS = 30;
+    
     private HttpServer server;
+    private NioHttpServer nioServer;
+    private final Map<String, HttpHandler> routes = new LinkedHashMap<>();
     private UserController userController;
-    private Gson gson;
+    private ServerConfig config;
+    private ExecutorService executor;
+    private StaticAssetCache staticAssets;
+    private BulkUserImporter bulkImporter;
+    private NotificationDispatcher notifications;
+    private RegistryPersistence persistence;
+    private ResponseCache responseCache;
+    private EventBroadcaster events;
+    private ResponseStreamWriter streamWriter;
+    private final BulkActionService bulkActions;
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final MetricsRegistry.Timers routeTimers =
+            metrics.timers("http_server_requests", "route", "Time spent handling requests, by route");
+    private final MetricsRegistry.Timers operationTimers =
+            metrics.timers("controller_operations", "operation", "Time spent in UserController operations");
     
     public SimpleWebServer(int port) throws IOException {
-        server = HttpServer.create(new InetSocketAddress(port), 0);
-        userController = new UserController();
-        gson = new Gson();
+        this(port, ServerConfig.fromSystemProperties());
+    }
+    
+    public SimpleWebServer(int port, ServerConfig config) throws IOException {
+        UserRegistry registry = new UserRegistry(config.getChangeLogCapacity());
+        bulkActions = new BulkActionService(registry, Runtime.getRuntime().availableProcessors());
+        userController = new UserController(registry, bulkActions);
+        bulkImporter = new BulkUserImporter(userController.getRegistry());
+        this.config = config;
+        responseCache = new ResponseCache(userController.getRegistry(), config.getResponseCacheBytes());
+        events = new EventBroadcaster(config.getEventBufferSize());
+        userController.getRegistry().addListener(events);
+        staticAssets = new StaticAssetCache(Paths.get(config.getStaticRoot()), this::getIndexHTML);
         setupRoutes();
+        metrics.gauges("users", () -> {
+            Map<String, Object> users = new LinkedHashMap<>();
+            users.put("registered", userController.getRegistry().size());
+            return users;
+        });
+        metrics.gauges("response_cache", responseCache::getStats);
+        metrics.gauges("events", events::getStats);
+        metrics.gauges("search", userController.getSearchIndex()::getStats);
+        metrics.gauges("executor", () -> {
+            Map<String, Object> executorStats = new LinkedHashMap<>();
+            executorStats.put("rejected", ServerExecutors.getRejectedCount());
+            return executorStats;
+        });
+        
+        // Both implementations serve the same handlers
+        if (config.getServerMode() == ServerConfig.ServerMode.NIO) {
+            nioServer = new NioHttpServer(new InetSocketAddress(port), config.getEventLoops(),
+                                          config.getMaxBodyBytes(), config.getIdleTimeoutSeconds());
+            routes.forEach(nioServer::createContext);
+            metrics.gauges("nio", nioServer::getStats);
+        } else {
+            server = HttpServer.create(new InetSocketAddress(port), 0);
+            routes.forEach(server::createContext);
+            streamWriter = new ResponseStreamWriter(STREAM_WRITER_THREADS, STREAM_WRITE_TIMEOUT_SECONDS);
+        }
     }
     
     private void setupRoutes() {
         // Serve static files (HTML, CSS, JS)
-        server.createContext("/", new StaticFileHandler());
+        routes.put("/", new InstrumentedHandler("/", new StaticFileHandler()));
         
         // API endpoints
-        server.createContext("/api/users/regular", new CreateRegularUserHandler());
-        server.createContext("/api/users/admin", new CreateAdminUserHandler());
-        server.createContext("/api/users/list", new GetAllUsersHandler());
-        server.createContext("/api/users/polymorphism", new PolymorphismDemoHandler());
-        server.createContext("/api/users/notify", new NotifyUserHandler());
-        server.createContext("/api/users/admin-action", new AdminActionHandler());
+        createApiContext("/api/users/regular", new CreateRegularUserHandler());
+        createApiContext("/api/users/admin", new CreateAdminUserHandler());
+        createApiContext("/api/users/list", new GetAllUsersHandler());
+        createApiContext("/api/users/changes", new UserChangesHandler());
+        createApiContext("/api/users/search", new SearchUsersHandler());
+        createApiContext("/api/users/polymorphism", new PolymorphismDemoHandler());
+        createApiContext("/api/users/notify", new NotifyUserHandler());
+        createApiContext("/api/users/admin-action", new AdminActionHandler());
+        createApiContext("/api/users/bulk", new BulkCreateUsersHandler());
+        createApiContext("/api/users/bulk-action", new BulkAdminActionHandler());
+        createApiContext("/api/users/status-counts", new StatusCountsHandler());
+        createApiContext("/api/metrics", new MetricsHandler());
+        createApiContext("/api/events", new EventStreamHandler());
     }
     
-    public void start() {
-        server.setExecutor(null);
-        server.start();
-        System.out.println("Server started on http://localhost:" + server.getAddress().getPort());
-        System.out.println("Open your browser and go to: http://localhost:" + server.getAddress().getPort());
+    private void createApiContext(String path, HttpHandler handler) {
+        routes.put(path, new InstrumentedHandler(path, new LoadSheddingHandler(handler)));
+    }
+    
+    /**
+     * Gets the request, controller and server metrics that /api/metrics reports.
+     */
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+    
+    public void start() throws IOException {
+        User.setIdGenerator(new SnowflakeIdGenerator(config.getNodeId()));
+        
+        // Restore users and journal every change when a data directory is configured
+        if (config.getDataDirectory() != null) {
+            persistence = RegistryPersistence.open(Paths.get(config.getDataDirectory()), userController.getRegistry(),
+                                                   config.isFsync(), config.getSnapshotIntervalSeconds());
+        }
+        
+        // Notifications are written to a local file in the background, and pushed to event subscribers
+        events.start();
+        notifications = new NotificationDispatcher(50)
+                .addSink(new FileNotificationSink(Paths.get(config.getNotificationsFile())), 10000, 256, 20, 3)
+                .addSink(events, 10000, 256, 5, 0);
+        notifications.start();
+        NotificationDispatcher.install(notifications);
+        metrics.gauges("notifications", notifications::getStats);
+        
+        executor = ServerExecutors.create(config);
+        int port;
+        if (nioServer != null) {
+            nioServer.setExecutor(executor);
+            nioServer.start();
+            port = nioServer.getAddress().getPort();
+        } else {
+            server.setExecutor(executor);
+            server.start();
+            port = server.getAddress().getPort();
+        }
+        LOG.info("Server started on http://localhost:{} ({})", port, config);
+        LOG.info("Open your browser and go to: http://localhost:{}", port);
     }
     
     public void stop() {
-        server.stop(0);
+        if (nioServer != null) {
+            nioServer.stop();
+        } else {
+            server.stop(0);
+        }
+        if (notifications != null) {
+            NotificationDispatcher.install(null);
+            notifications.shutdown(5000);
+        }
+        events.shutdown();
+        bulkActions.shutdown();
+        if (streamWriter != null) {
+            streamWriter.shutdown();
+        }
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (persistence != null) {
+            persistence.close();
+        }
     }
     
-    // Handler for serving static HTML files
+    // Records the latency of every request to a route; requests that throw or answer
+    // with a 5xx status count as errors
+    class InstrumentedHandler implements HttpHandler {
+        private final OperationMetrics timer;
+        private final HttpHandler delegate;
+        
+        InstrumentedHandler(String route, HttpHandler delegate) {
+            this.timer = routeTimers.get(route);
+            this.delegate = delegate;
+        }
+        
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            long started = timer.start();
+            boolean failed = true;
+            try {
+                delegate.handle(exchange);
+                failed = exchange.getResponseCode() >= 500;
+            } finally {
+                timer.stop(started, failed);
+            }
+        }
+    }
+    
+    // Answers 503 for requests the executor had no room for under the SHED policy,
+    // and logs requests and handler failures
+    class LoadSheddingHandler implements HttpHandler {
+        private final HttpHandler delegate;
+        
+        LoadSheddingHandler(HttpHandler delegate) {
+            this.delegate = delegate;
+        }
+        
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("{} {}", exchange.getRequestMethod(), exchange.getRequestURI());
+            }
+            if (!ServerExecutors.isShedding()) {
+                try {
+                    delegate.handle(exchange);
+                } catch (IOException | RuntimeException e) {
+                    LOG.error("Request " + exchange.getRequestURI().getPath() + " failed", e);
+                    throw e;
+                }
+                return;
+            }
+            LOG.warn("Shedding request {}: server busy", exchange.getRequestURI().getPath());
+            byte[] body = "{\"success\":false,\"message\":\"Server busy, retry later\"}".getBytes("UTF-8");
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            exchange.sendResponseHeaders(503, body.length);
+            OutputStream os = exchange.getResponseBody();
+            os.write(body);
+            os.close();
+        }
+    }
+    
+    // Handler for serving static HTML files from the precomputed asset cache
     class StaticFileHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
-            String response = getIndexHTML();
-            exchange.getResponseHeaders().set("Content-Type", "text/html");
-            exchange.sendResponseHeaders(200, response.length());
+            String method = exchange.getRequestMethod();
+            if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                exchange.sendResponseHeaders(405, -1);
+                exchange.close();
+                return;
+            }
+            
+            StaticAssetCache.Asset asset = staticAssets.get(exchange.getRequestURI().getPath());
+            if (asset == null) {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+            
+            Headers headers = exchange.getResponseHeaders();
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            boolean gzip = asset.getGzipBody() != null && acceptEncoding != null && acceptEncoding.contains("gzip");
+            headers.set("ETag", asset.getEtag(gzip));
+            headers.set("Cache-Control", "no-cache"); // Always revalidate; unchanged files cost a 304
+            headers.set("Vary", "Accept-Encoding");
+            if (asset.matches(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            
+            byte[] body = gzip ? asset.getGzipBody() : asset.getBody();
+            if (gzip) {
+                headers.set("Content-Encoding", "gzip");
+            }
+            headers.set("Content-Type", asset.getContentType());
+            
+            if ("HEAD".equals(method)) {
+                headers.set("Content-Length", Integer.toString(body.length));
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
             OutputStream os = exchange.getResponseBody();
-            os.write(response.getBytes());
+            os.write(body);
             os.close();
         }
     }
@@ -71,11 +307,20 @@ public class SimpleWebServer {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
             if ("POST".equals(exchange.getRequestMethod())) {
-                Map<String, String> params = parseRequestBody(exchange);
-                String name = params.get("name");
-                String email = params.get("email");
+                Map<String, String> params = readBody(exchange);
+                if (params == null) {
+                    return;
+                }
+                CreateUserRequest request = CreateUserRequest.from(params);
                 
-                Map<String, Object> result = userController.createRegularUser(name, email);
+                Map<String, Object> result;
+                try {
+                    result = timed("createRegularUser",
+                            () -> userController.createRegularUser(request.getName(), request.getEmail()));
+                } catch (DuplicateUserException e) {
+                    sendErrorResponse(exchange, 409, e.getMessage());
+                    return;
+                }
                 sendJsonResponse(exchange, result);
             } else {
                 sendErrorResponse(exchange, "Method not allowed");
@@ -87,11 +332,20 @@ public class SimpleWebServer {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
             if ("POST".equals(exchange.getRequestMethod())) {
-                Map<String, String> params = parseRequestBody(exchange);
-                String name = params.get("name");
-                String email = params.get("email");
+                Map<String, String> params = readBody(exchange);
+                if (params == null) {
+                    return;
+                }
+                CreateUserRequest request = CreateUserRequest.from(params);
                 
-                Map<String, Object> result = userController.createAdminUser(name, email);
+                Map<String, Object> result;
+                try {
+                    result = timed("createAdminUser",
+                            () -> userController.createAdminUser(request.getName(), request.getEmail()));
+                } catch (DuplicateUserException e) {
+                    sendErrorResponse(exchange, 409, e.getMessage());
+                    return;
+                }
                 sendJsonResponse(exchange, result);
             } else {
                 sendErrorResponse(exchange, "Method not allowed");
@@ -100,11 +354,197 @@ public class SimpleWebServer {
     }
     
     class GetAllUsersHandler implements HttpHandler {
+        private static final int DEFAULT_PAGE_SIZE = 100;
+        private static final int MAX_PAGE_SIZE = 1000;
+        
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendErrorResponse(exchange, "Method not allowed");
+                return;
+            }
+            
+            Map<String, String> query = parseQuery(exchange);
+            if (query == null) {
+                return;
+            }
+            if (query.isEmpty()) {
+                // No paging parameters: keep the original full-list response
+                sendCached(exchange, "list", () -> encodeJson(timed("getAllUsers", userController::getAllUsers)));
+                return;
+            }
+            
+            long cursor;
+            int limit;
+            try {
+                cursor = query.containsKey("cursor") ? Long.parseLong(query.get("cursor")) : -1;
+                limit = query.containsKey("limit") ? Integer.parseInt(query.get("limit")) : DEFAULT_PAGE_SIZE;
+            } catch (NumberFormatException e) {
+                sendErrorResponse(exchange, "Invalid cursor or limit");
+                return;
+            }
+            if (query.containsKey("afterId")) {
+                // Users whose id sorts after the given one; not the users added after it,
+                // which /api/users/changes answers
+                cursor = UserIds.parse(query.get("afterId"));
+                if (cursor < 0) {
+                    sendErrorResponse(exchange, "Invalid afterId");
+                    return;
+                }
+            }
+            if (limit < 1 || limit > MAX_PAGE_SIZE) {
+                sendErrorResponse(exchange, "limit must be between 1 and " + MAX_PAGE_SIZE);
+                return;
+            }
+            UserStatus status;
+            UserFilter filter;
+            try {
+                status = query.get("status") == null ? null : UserStatus.fromName(query.get("status"));
+                filter = new UserFilter(status, query.get("userType"));
+            } catch (IllegalArgumentException e) {
+                sendErrorResponse(exchange, e.getMessage());
+                return;
+            }
+            
+            if (responseCache.isEnabled()) {
+                // Pages are small enough to build in memory and keep until the next change
+                long from = cursor;
+                String key = "list|" + from + "|" + limit + "|" + status + "|" + query.get("userType");
+                sendCached(exchange, key, () -> {
+                    ByteArrayOutputStream page = new ByteArrayOutputStream(8 * 1024);
+                    streamPage(page, from, limit, filter);
+                    return page.toByteArray();
+                });
+                return;
+            }
+            // Length 0 selects chunked encoding, so the page is streamed as it is written
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+            exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream os = exchange.getResponseBody()) {
+                streamPage(os, cursor, limit, filter);
+            }
+        }
+        
+        private void streamPage(OutputStream os, long cursor, int limit, UserFilter filter) throws IOException {
+            OperationMetrics timer = operationTimers.get("streamUsers");
+            long started = timer.start();
+            boolean failed = true;
+            try {
+                userController.streamUsers(os, cursor, limit, filter);
+                failed = false;
+            } finally {
+                timer.stop(started, failed);
+            }
+        }
+    }
+    
+    class UserChangesHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendErrorResponse(exchange, "Method not allowed");
+                return;
+            }
+            
+            Map<String, String> query = parseQuery(exchange);
+            if (query == null) {
+                return;
+            }
+            // since is the epoch:version token of a previous response
+            String sinceParam = query.get("since");
+            String epoch = null;
+            long since = -1;
+            if (sinceParam != null && !sinceParam.isEmpty()) {
+                int colon = sinceParam.indexOf(':');
+                try {
+                    since = colon > 0 ? Long.parseLong(sinceParam.substring(colon + 1)) : -1;
+                } catch (NumberFormatException e) {
+                    since = -1;
+                }
+                if (since < 0) {
+                    sendErrorResponse(exchange, "Invalid since");
+                    return;
+                }
+                epoch = sinceParam.substring(0, colon);
+            }
+            String sinceEpoch = epoch;
+            long sinceVersion = since;
+            sendJsonResponse(exchange, timed("getChangesSince",
+                    () -> userController.getChangesSince(sinceEpoch, sinceVersion)));
+        }
+    }
+    
+    class SearchUsersHandler implements HttpHandler {
+        private static final int DEFAULT_LIMIT = 20;
+        private static final int MAX_LIMIT = 100;
+        
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendErrorResponse(exchange, "Method not allowed");
+                return;
+            }
+            
+            Map<String, String> query = parseQuery(exchange);
+            if (query == null) {
+                return;
+            }
+            String text = query.get("q");
+            if (text == null || text.trim().isEmpty()) {
+                sendErrorResponse(exchange, "q is required");
+                return;
+            }
+            int limit;
+            try {
+                limit = query.containsKey("limit") ? Integer.parseInt(query.get("limit")) : DEFAULT_LIMIT;
+            } catch (NumberFormatException e) {
+                sendErrorResponse(exchange, "Invalid limit");
+                return;
+            }
+            if (limit < 1 || limit > MAX_LIMIT) {
+                sendErrorResponse(exchange, "limit must be between 1 and " + MAX_LIMIT);
+                return;
+            }
+            sendJsonResponse(exchange, timed("searchUsers", () -> userController.searchUsers(text, limit)));
+        }
+    }
+    
+    // Streams user and notification events as Server-Sent Events until the client disconnects
+    class EventStreamHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendErrorResponse(exchange, "Method not allowed");
+                return;
+            }
+            
+            EventBroadcaster.Subscription subscription =
+                    events.subscribe(exchange.getRequestHeaders().getFirst("Last-Event-ID"));
+            try {
+                Headers headers = exchange.getResponseHeaders();
+                headers.set("Content-Type", "text/event-stream; charset=UTF-8");
+                headers.set("Cache-Control", "no-cache");
+                headers.set("Access-Control-Allow-Origin", "*");
+                exchange.sendResponseHeaders(200, 0);
+            } catch (IOException | RuntimeException e) {
+                subscription.close();
+                throw e;
+            }
+            // The handler returns right away; the server writes events as they come
+            if (exchange instanceof NioExchange) {
+                ((NioExchange) exchange).setResponseStream(subscription);
+            } else {
+                streamWriter.start(subscription, exchange);
+            }
+        }
+    }
+    
+    class StatusCountsHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
             if ("GET".equals(exchange.getRequestMethod())) {
-                Map<String, Object> result = userController.getAllUsers();
-                sendJsonResponse(exchange, result);
+                sendJsonResponse(exchange, timed("getStatusCounts", userController::getStatusCounts));
             } else {
                 sendErrorResponse(exchange, "Method not allowed");
             }
@@ -115,8 +555,8 @@ public class SimpleWebServer {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
             if ("GET".equals(exchange.getRequestMethod())) {
-                Map<String, Object> result = userController.demonstratePolymorphism();
-                sendJsonResponse(exchange, result);
+                sendCached(exchange, "polymorphism",
+                        () -> encodeJson(timed("demonstratePolymorphism", userController::demonstratePolymorphism)));
             } else {
                 sendErrorResponse(exchange, "Method not allowed");
             }
@@ -127,11 +567,14 @@ public class SimpleWebServer {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
             if ("POST".equals(exchange.getRequestMethod())) {
-                Map<String, String> params = parseRequestBody(exchange);
-                String userId = params.get("userId");
-                String message = params.get("message");
+                Map<String, String> params = readBody(exchange);
+                if (params == null) {
+                    return;
+                }
+                NotifyRequest request = NotifyRequest.from(params);
                 
-                Map<String, Object> result = userController.sendNotification(userId, message);
+                Map<String, Object> result = timed("sendNotification",
+                        () -> userController.sendNotification(request.getUserId(), request.getMessage()));
                 sendJsonResponse(exchange, result);
             } else {
                 sendErrorResponse(exchange, "Method not allowed");
@@ -143,12 +586,15 @@ public class SimpleWebServer {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
             if ("POST".equals(exchange.getRequestMethod())) {
-                Map<String, String> params = parseRequestBody(exchange);
-                String adminId = params.get("adminId");
-                String targetUserId = params.get("targetUserId");
-                String action = params.get("action");
+                Map<String, String> params = readBody(exchange);
+                if (params == null) {
+                    return;
+                }
+                AdminActionRequest request = AdminActionRequest.from(params);
                 
-                Map<String, Object> result = userController.demonstrateAdminFunctionality(adminId, targetUserId, action);
+                Map<String, Object> result = timed("demonstrateAdminFunctionality",
+                        () -> userController.demonstrateAdminFunctionality(
+                                request.getAdminId(), request.getTargetUserId(), request.getAction()));
                 sendJsonResponse(exchange, result);
             } else {
                 sendErrorResponse(exchange, "Method not allowed");
@@ -156,42 +602,218 @@ public class SimpleWebServer {
         }
     }
     
-    // Helper methods
-    private Map<String, String> parseRequestBody(HttpExchange exchange) throws IOException {
-        BufferedReader reader = new BufferedReader(new InputStreamReader(exchange.getRequestBody()));
-        StringBuilder body = new StringBuilder();
-        String line;
-        while ((line = reader.readLine()) != null) {
-            body.append(line);
+    class BulkCreateUsersHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                sendErrorResponse(exchange, "Method not allowed");
+                return;
+            }
+            
+            Map<String, String> query = parseQuery(exchange);
+            if (query == null) {
+                return;
+            }
+            int chunkSize = BulkUserImporter.DEFAULT_CHUNK_SIZE;
+            String chunkParam = query.get("chunk");
+            if (chunkParam != null) {
+                try {
+                    chunkSize = Integer.parseInt(chunkParam);
+                } catch (NumberFormatException e) {
+                    chunkSize = -1;
+                }
+                if (chunkSize < 1 || chunkSize > BulkUserImporter.MAX_CHUNK_SIZE) {
+                    sendErrorResponse(exchange, "chunk must be between 1 and " + BulkUserImporter.MAX_CHUNK_SIZE);
+                    return;
+                }
+            }
+            String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            BulkUserImporter.Format format = contentType != null && contentType.toLowerCase(Locale.ROOT).contains("csv")
+                    ? BulkUserImporter.Format.CSV
+                    : BulkUserImporter.Format.NDJSON;
+            
+            // Results are streamed back chunk by chunk while the body is still being read
+            exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson; charset=UTF-8");
+            exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream os = exchange.getResponseBody()) {
+                bulkImporter.importUsers(exchange.getRequestBody(), format, chunkSize, os);
+            }
         }
+    }
+    
+    class BulkAdminActionHandler implements HttpHandler {
+        private static final long MAX_WAIT_MILLIS = 30000;
         
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if ("GET".equals(exchange.getRequestMethod())) {
+                Map<String, String> query = parseQuery(exchange);
+                if (query == null) {
+                    return;
+                }
+                String jobId = query.get("jobId");
+                sendJsonResponse(exchange, timed("getBulkActionStatus", () -> userController.getBulkActionStatus(jobId)));
+                return;
+            }
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                sendErrorResponse(exchange, "Method not allowed");
+                return;
+            }
+            
+            Map<String, String> params = readBody(exchange);
+            if (params == null) {
+                return;
+            }
+            BulkActionRequest request;
+            try {
+                request = BulkActionRequest.from(params);
+            } catch (IllegalArgumentException e) {
+                sendErrorResponse(exchange, "Invalid filter: " + e.getMessage());
+                return;
+            }
+            long waitMillis = request.isWait() ? MAX_WAIT_MILLIS : 0;
+            
+            Map<String, Object> result = timed("startBulkAdminAction", () -> userController.startBulkAdminAction(
+                    request.getAdminId(), request.getAction(), request.getFilter(), request.getConcurrency(), waitMillis));
+            sendJsonResponse(exchange, result);
+        }
+    }
+    
+    // Serves the metrics in the Prometheus text format, or as JSON with ?format=json
+    class MetricsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendErrorResponse(exchange, "Method not allowed");
+                return;
+            }
+            Map<String, String> query = parseQuery(exchange);
+            if (query == null) {
+                return;
+            }
+            if ("json".equals(query.get("format"))) {
+                sendJsonResponse(exchange, metrics.toMap());
+                return;
+            }
+            byte[] body = metrics.toPrometheus().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        }
+    }
+    
+    // Helper methods
+    // Times a controller call; calls that throw or answer success=false count as errors
+    private Map<String, Object> timed(String operation, Supplier<Map<String, Object>> call) {
+        OperationMetrics timer = operationTimers.get(operation);
+        long started = timer.start();
+        boolean failed = true;
+        try {
+            Map<String, Object> result = call.get();
+            failed = Boolean.FALSE.equals(result.get("success"));
+            return result;
+        } finally {
+            timer.stop(started, failed);
+        }
+    }
+    
+    // Reads a form or JSON body; answers with the error status and returns null when it cannot
+    private Map<String, String> readBody(HttpExchange exchange) throws IOException {
+        try {
+            return RequestBodyParser.get().read(exchange, config.getMaxFormBytes());
+        } catch (RequestBodyException e) {
+            sendErrorResponse(exchange, e.getStatusCode(), e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Parses an application/x-www-form-urlencoded body into a map.
+     * 
+     * @param body The raw request body
+     * @return Decoded parameters; pairs without '=' or with an empty value are skipped
+     * @throws IllegalArgumentException If the body has a malformed percent escape
+     */
+    public static Map<String, String> parseFormData(String body) {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        try {
+            return RequestBodyParser.get().parseForm(bytes, 0, bytes.length);
+        } catch (RequestBodyException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+    
+    // Decodes the query string; answers 400 and returns null for a malformed percent escape
+    private Map<String, String> parseQuery(HttpExchange exchange) throws IOException {
         Map<String, String> params = new HashMap<>();
-        String[] pairs = body.toString().split("&");
-        for (String pair : pairs) {
-            String[] keyValue = pair.split("=");
-            if (keyValue.length == 2) {
-                params.put(URLDecoder.decode(keyValue[0], "UTF-8"), 
-                          URLDecoder.decode(keyValue[1], "UTF-8"));
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        try {
+            for (String pair : query.split("&")) {
+                int separator = pair.indexOf('=');
+                if (separator > 0) {
+                    params.put(URLDecoder.decode(pair.substring(0, separator), "UTF-8"),
+                              URLDecoder.decode(pair.substring(separator + 1), "UTF-8"));
+                }
             }
+        } catch (IllegalArgumentException e) {
+            sendErrorResponse(exchange, 400, "Malformed query string: invalid percent escape");
+            return null;
         }
         return params;
     }
     
+    // Answers from the response cache: 304 when the client already has the current
+    // version, otherwise the response built for the current registry version
+    private void sendCached(HttpExchange exchange, String key, ResponseCache.Loader loader) throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Cache-Control", "no-cache"); // Always revalidate; unchanged responses cost a 304
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (responseCache.isCurrent(ifNoneMatch)) {
+            headers.set("ETag", ifNoneMatch);
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        ResponseCache.Entry entry = responseCache.getOrLoad(key, loader);
+        headers.set("ETag", entry.getEtag());
+        headers.set("Content-Type", "application/json; charset=UTF-8");
+        headers.set("Access-Control-Allow-Origin", "*");
+        exchange.sendResponseHeaders(200, entry.getBody().length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(entry.getBody());
+        }
+    }
+    
+    private static byte[] encodeJson(Object data) throws IOException {
+        JsonOutput json = JsonOutput.forBuffer();
+        json.value(data);
+        return json.toByteArray();
+    }
+    
     private void sendJsonResponse(HttpExchange exchange, Object data) throws IOException {
-        String response = gson.toJson(data);
-        exchange.getResponseHeaders().set("Content-Type", "application/json");
-        exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
-        exchange.sendResponseHeaders(200, response.length());
-        OutputStream os = exchange.getResponseBody();
-        os.write(response.getBytes());
-        os.close();
+        // Encoded as UTF-8 into a per-thread buffer and sent with its exact byte length
+        JsonOutput json = JsonOutput.forBuffer();
+        json.value(data);
+        json.send(exchange, 200);
     }
     
     private void sendErrorResponse(HttpExchange exchange, String error) throws IOException {
+        sendErrorResponse(exchange, 200, error);
+    }
+    
+    private void sendErrorResponse(HttpExchange exchange, int statusCode, String error) throws IOException {
         Map<String, Object> errorResponse = new HashMap<>();
         errorResponse.put("success", false);
         errorResponse.put("message", error);
-        sendJsonResponse(exchange, errorResponse);
+        JsonOutput json = JsonOutput.forBuffer();
+        json.value(errorResponse);
+        json.send(exchange, statusCode);
     }
     
     private String getIndexHTML() {
@@ -260,6 +882,8 @@ public class SimpleWebServer {
                "                <select id='adminAction'>\n" +
                "                    <option value='suspend'>Suspend User</option>\n" +
                "                    <option value='activate'>Activate User</option>\n" +
+               "                    <option value='deactivate'>Deactivate User</option>\n" +
+               "                    <option value='cancel'>Cancel User</option>\n" +
                "                    <option value='notify'>Send Admin Notification</option>\n" +
                "                </select>\n" +
                "                <button onclick='performAdminAction()'>Perform Action</button>\n" +
@@ -270,6 +894,8 @@ public class SimpleWebServer {
                "    \n" +
                "    <script>\n" +
                "        let users = [];\n" +
+               "        const usersById = new Map();\n" +
+               "        let usersVersion = null;\n" +
                "        \n" +
                "        async function createRegularUser() {\n" +
                "            const name = document.getElementById('userName').value;\n" +
@@ -333,14 +959,22 @@ public class SimpleWebServer {
                "        \n" +
                "        async function loadUsers() {\n" +
                "            try {\n" +
-               "                const response = await fetch('/api/users/list');\n" +
+               "                // Fetch only the users changed since the last load; the server sends all of them\n" +
+               "                // with resync set when there is no earlier load or it is too far behind\n" +
+               "                const since = usersVersion === null ? '' : `?since=${encodeURIComponent(usersVersion)}`;\n" +
+               "                const response = await fetch(`/api/users/changes${since}`);\n" +
                "                const result = await response.json();\n" +
                "                \n" +
                "                if (result.success) {\n" +
-               "                    users = result.users;\n" +
-               "                    let html = `<h4>Total Users: ${result.count}</h4>`;\n" +
+               "                    if (result.resync) {\n" +
+               "                        usersById.clear();\n" +
+               "                    }\n" +
+               "                    result.users.forEach(user => usersById.set(user.userId, user));\n" +
+               "                    usersVersion = result.version;\n" +
+               "                    users = Array.from(usersById.values());\n" +
+               "                    let html = `<h4>Total Users: ${users.length}</h4>`;\n" +
                "                    \n" +
-               "                    result.users.forEach(user => {\n" +
+               "                    users.forEach(user => {\n" +
                "                        html += `<div class='user-card'>\n" +
                "                            <strong>${user.name}</strong> (${user.userType})<br>\n" +
                "                            Email: ${user.email}<br>\n" +
@@ -462,9 +1096,23 @@ public class SimpleWebServer {
                "            });\n" +
                "        }\n" +
                "        \n" +
+               "        // Reload when the server reports a change instead of polling; bursts of events\n" +
+               "        // cause one reload\n" +
+               "        let reloadPending = false;\n" +
+               "        function scheduleReload() {\n" +
+               "            if (!reloadPending) {\n" +
+               "                reloadPending = true;\n" +
+               "                setTimeout(() => { reloadPending = false; loadUsers(); }, 200);\n" +
+               "            }\n" +
+               "        }\n" +
+               "        \n" +
                "        // Load users on page load\n" +
                "        window.onload = function() {\n" +
                "            loadUsers();\n" +
+               "            if (window.EventSource) {\n" +
+               "                const events = new EventSource('/api/events');\n" +
+               "                ['user-created', 'status-changed', 'resync'].forEach(type => events.addEventListener(type, scheduleReload));\n" +
+               "            }\n" +
                "        };\n" +
                "    </script>\n" +
                "</body>\n" +
@@ -473,16 +1121,19 @@ public class SimpleWebServer {
     
     public static void main(String[] args) {
         try {
-            SimpleWebServer server = new SimpleWebServer(8082);
+            ServerConfig config = ServerConfig.fromSystemProperties();
+            SimpleWebServer server = new SimpleWebServer(config.getPort(), config);
             server.start();
             
-            System.out.println("\nPress Enter to stop the server...");
+            LOG.info("Press Enter to stop the server...");
             System.in.read();
             
             server.stop();
-            System.out.println("Server stopped.");
+            LOG.info("Server stopped.");
         } catch (IOException e) {
-            System.err.println("Error starting server: " + e.getMessage());
+            LOG.error("Error starting server", e);
+        } finally {
+            LogManager.flush(2000);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,225 @@
+package com.oopdemo.web;
+
+import com.oopdemo.logging.LogManager;
+import com.oopdemo.logging.Logger;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * In-memory cache of static files, ready to be written to the wire.
+ * 
+ * Each asset is read once and kept as raw bytes, a gzip variant (when it is
+ * actually smaller) and an ETag derived from the content. Files are checked
+ * for changes at most once per {@link #RECHECK_INTERVAL_MS} and reloaded when
+ * their size or modification time differs, so edits show up without a restart.
+ * 
+ * When the root has no index.html the built-in page from the supplier is
+ * served instead; it is rendered only once.
+ */
+public class StaticAssetCache {
+    private static final Logger LOG = LogManager.getLogger(StaticAssetCache.class);
+    static final long RECHECK_INTERVAL_MS = 1000;
+    
+    private final Path root;
+    private final Supplier<String> fallbackIndex;
+    private final Map<String, Asset> assets = new ConcurrentHashMap<>();
+    private volatile Asset fallbackAsset;
+    
+    /**
+     * Creates a cache for files below a root directory.
+     * 
+     * @param root Directory holding the static files
+     * @param fallbackIndex Page served for "/" when the root has no index.html
+     */
+    public StaticAssetCache(Path root, Supplier<String> fallbackIndex) {
+        this.root = root.toAbsolutePath().normalize();
+        this.fallbackIndex = fallbackIndex;
+    }
+    
+    /**
+     * Looks up the asset for a request path.
+     * 
+     * @param requestPath The path from the request URI, e.g. "/" or "/index.html"
+     * @return The asset, or null if nothing is served at this path
+     */
+    public Asset get(String requestPath) {
+        String relative = requestPath == null || requestPath.equals("/") ? "index.html" : requestPath.substring(1);
+        Path file = root.resolve(relative).normalize();
+        if (!file.startsWith(root)) {
+            return null; // Path traversal attempt
+        }
+        
+        Asset cached = assets.get(relative);
+        long now = System.currentTimeMillis();
+        if (cached != null && now - cached.checkedAt < RECHECK_INTERVAL_MS) {
+            return cached;
+        }
+        
+        try {
+            if (Files.isRegularFile(file)) {
+                long size = Files.size(file);
+                long modified = Files.getLastModifiedTime(file).toMillis();
+                if (cached != null && cached.size == size && cached.lastModified == modified) {
+                    cached.checkedAt = now;
+                    return cached;
+                }
+                Asset loaded = new Asset(Files.readAllBytes(file), contentTypeOf(relative), size, modified);
+                assets.put(relative, loaded);
+                return loaded;
+            }
+        } catch (IOException e) {
+            LOG.warn("Could not read static file {}: {}", file, e.getMessage());
+        }
+        
+        if (!"index.html".equals(relative)) {
+            assets.remove(relative);
+            return null;
+        }
+        // Cache the fallback like a file so a missing index.html is also only rechecked periodically
+        Asset asset = fallback();
+        asset.checkedAt = now;
+        assets.put(relative, asset);
+        return asset;
+    }
+    
+    // Helper methods
+    private Asset fallback() {
+        Asset asset = fallbackAsset;
+        if (asset == null) {
+            byte[] body = fallbackIndex.get().getBytes(StandardCharsets.UTF_8);
+            asset = new Asset(body, "text/html; charset=UTF-8", -1, 0);
+            fallbackAsset = asset;
+        }
+        return asset;
+    }
+    
+    private static String contentTypeOf(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".html") || lower.endsWith(".htm")) {
+            return "text/html; charset=UTF-8";
+        } else if (lower.endsWith(".css")) {
+            return "text/css; charset=UTF-8";
+        } else if (lower.endsWith(".js")) {
+            return "application/javascript; charset=UTF-8";
+        } else if (lower.endsWith(".json")) {
+            return "application/json; charset=UTF-8";
+        } else if (lower.endsWith(".svg")) {
+            return "image/svg+xml";
+        } else if (lower.endsWith(".png")) {
+            return "image/png";
+        } else if (lower.endsWith(".ico")) {
+            return "image/x-icon";
+        } else if (lower.endsWith(".txt") || lower.endsWith(".md")) {
+            return "text/plain; charset=UTF-8";
+        }
+        return "application/octet-stream";
+    }
+    
+    /**
+     * One cached file with its precomputed response variants.
+     */
+    public static final class Asset {
+        private final byte[] body;
+        private final byte[] gzipBody;
+        private final String etag;
+        private final String gzipEtag;
+        private final String contentType;
+        private final long size;
+        private final long lastModified;
+        private volatile long checkedAt;
+        
+        Asset(byte[] body, String contentType, long size, long lastModified) {
+            this.body = body;
+            this.contentType = contentType;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.etag = computeEtag(body);
+            this.gzipEtag = etag.substring(0, etag.length() - 1) + "-gz\"";
+            byte[] compressed = gzip(body);
+            this.gzipBody = compressed.length < body.length ? compressed : null;
+            this.checkedAt = System.currentTimeMillis();
+        }
+        
+        public byte[] getBody() {
+            return body;
+        }
+        
+        /**
+         * Gets the gzip-compressed body.
+         * @return Compressed bytes, or null if compression does not make the body smaller
+         */
+        public byte[] getGzipBody() {
+            return gzipBody;
+        }
+        
+        /**
+         * Gets the entity tag of one representation of this asset.
+         * The compressed variant has its own tag, as required for strong ETags.
+         * 
+         * @param gzip true for the gzip variant
+         * @return Quoted ETag value
+         */
+        public String getEtag(boolean gzip) {
+            return gzip ? gzipEtag : etag;
+        }
+        
+        public String getContentType() {
+            return contentType;
+        }
+        
+        /**
+         * Checks an If-None-Match header against this asset's ETag.
+         * 
+         * @param ifNoneMatch The header value, may be null
+         * @return true if the client's copy is current and 304 can be sent
+         */
+        public boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || tag.equals(etag) || tag.equals(gzipEtag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        private static String computeEtag(byte[] body) {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+                StringBuilder tag = new StringBuilder("\"");
+                for (int i = 0; i < 12; i++) {
+                    tag.append(String.format("%02x", digest[i]));
+                }
+                return tag.append('"').toString();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+        
+        private static byte[] gzip(byte[] body) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(body.length / 3 + 64);
+            try (GZIPOutputStream out = new GZIPOutputStream(buffer)) {
+                out.write(body);
+            } catch (IOException e) {
+                throw new IllegalStateException("In-memory gzip failed", e);
+            }
+            return buffer.toByteArray();
+        }
+    }
+}
@@ -1,12 +1,23 @@
 package com.oopdemo.web;
 
+import com.oopdemo.enums.UserStatus;
 import com.oopdemo.users.User;
 import com.oopdemo.users.RegularUser;
 import com.oopdemo.users.AdminUser;
+import com.oopdemo.registry.ChangeLog;
+import com.oopdemo.registry.UserFilter;
+import com.oopdemo.registry.UserRegistry;
+import com.oopdemo.registry.UserSearchIndex;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * REST Controller for User operations.
@@ -16,22 +27,51 @@ import java.util.Map;
  * In a real application, you would use @RestController, @GetMapping, etc.
  */
 public class UserController {
-    private List<User> users = new ArrayList<>();
+    private final UserRegistry registry;
+    private final BulkActionService bulkActions;
+    private final UserSearchIndex searchIndex;
+    
+    public UserController() {
+        this(new UserRegistry());
+    }
+    
+    public UserController(UserRegistry registry) {
+        this(registry, new BulkActionService(registry, Runtime.getRuntime().availableProcessors()));
+    }
+    
+    /**
+     * Creates a controller that runs bulk actions on the given service.
+     * The caller owns the service and shuts it down.
+     */
+    public UserController(UserRegistry registry, BulkActionService bulkActions) {
+        this.registry = registry;
+        this.bulkActions = bulkActions;
+        this.searchIndex = UserSearchIndex.of(registry);
+    }
     
     /**
      * Creates a new regular user.
      * Endpoint: POST /api/users/regular
+     * 
+     * @return The response
+     * @throws DuplicateUserException if the registry already holds a user with the new user's id;
+     *         nothing is stored
      */
     public Map<String, Object> createRegularUser(String name, String email) {
         try {
             RegularUser user = new RegularUser(name, email);
-            users.add(user);
+            if (!registry.add(user)) {
+                throw new DuplicateUserException(user.getUserId());
+            }
+            registry.awaitPersisted(); // Answer only once the user is durable
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("message", "Regular user created successfully");
-            response.put("user", userToMap(user));
+            response.put("user", user); // Serialized field by field by UserJsonSerializer
             return response;
+        } catch (DuplicateUserException e) {
+            throw e;
         } catch (Exception e) {
             Map<String, Object> response = new HashMap<>();
             response.put("success", false);
@@ -43,17 +83,26 @@ public class UserController {
     /**
      * Creates a new admin user.
      * Endpoint: POST /api/users/admin
+     * 
+     * @return The response
+     * @throws DuplicateUserException if the registry already holds a user with the new user's id;
+     *         nothing is stored
      */
     public Map<String, Object> createAdminUser(String name, String email) {
         try {
             AdminUser user = new AdminUser(name, email);
-            users.add(user);
+            if (!registry.add(user)) {
+                throw new DuplicateUserException(user.getUserId());
+            }
+            registry.awaitPersisted(); // Answer only once the user is durable
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("message", "Admin user created successfully");
-            response.put("user", userToMap(user));
+            response.put("user", user); // Serialized field by field by UserJsonSerializer
             return response;
+        } catch (DuplicateUserException e) {
+            throw e;
         } catch (Exception e) {
             Map<String, Object> response = new HashMap<>();
             response.put("success", false);
@@ -67,18 +116,109 @@ public class UserController {
      * Endpoint: GET /api/users
      */
     public Map<String, Object> getAllUsers() {
-        List<Map<String, Object>> userList = new ArrayList<>();
-        for (User user : users) {
-            userList.add(userToMap(user));
+        List<User> userList = new ArrayList<>(registry.getAll());
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("users", userList);
+        response.put("count", userList.size());
+        return response;
+    }
+    
+    /**
+     * Gets the users added or changed since a version, so a client can keep
+     * its copy of the list current without fetching all users after every
+     * change. The version is sent as epoch:version, so a version from before
+     * a restart is not mistaken for one of the current registry. Clients
+     * without a version, with one from another epoch, or whose version is
+     * older than the change log reaches back, get all users and resync set
+     * to true.
+     * Endpoint: GET /api/users/changes?since=
+     * 
+     * @param epoch The epoch from the client's previous response, or null for all users
+     * @param since The version from the client's previous response, or -1 for all users
+     */
+    public Map<String, Object> getChangesSince(String epoch, long since) {
+        ChangeLog.Delta delta = epoch == null || since < 0 ? null : registry.changesSince(epoch, since);
+        long version;
+        List<User> userList;
+        if (delta != null) {
+            version = delta.getVersion();
+            userList = delta.getUsers();
+        } else {
+            version = registry.getVersion(); // Before listing, so the list covers at least this version
+            userList = new ArrayList<>(registry.getAll());
         }
         
         Map<String, Object> response = new HashMap<>();
         response.put("success", true);
+        response.put("resync", delta == null);
+        response.put("version", registry.getEpoch() + ":" + version);
         response.put("users", userList);
-        response.put("count", users.size());
+        response.put("count", userList.size());
+        return response;
+    }
+    
+    /**
+     * Finds users by part of their name or email, best matches first.
+     * Endpoint: GET /api/users/search?q=&limit=
+     * 
+     * @param query Words or word beginnings to look for, e.g. "jo smi"
+     * @param limit Maximum number of users returned
+     */
+    public Map<String, Object> searchUsers(String query, int limit) {
+        UserSearchIndex.Result result = searchIndex.search(query, limit);
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("query", query);
+        response.put("users", result.getUsers());
+        response.put("count", result.getUsers().size());
+        response.put("truncated", result.isTruncated());
         return response;
     }
     
+    /**
+     * Streams one page of users as JSON, in id order.
+     * Users are written as they are visited, so memory use does not grow with the registry.
+     * Endpoint: GET /api/users/list?limit=&cursor=&afterId=&status=&userType=
+     * 
+     * @param out Stream to write the JSON response to
+     * @param cursor Cursor from the previous page, or -1 for the first page
+     * @param limit Maximum number of users in this page
+     * @param filter Status and user type criteria
+     */
+    public void streamUsers(OutputStream out, long cursor, int limit, UserFilter filter) throws IOException {
+        JsonOutput json = JsonOutput.forStream(out);
+        json.beginObject();
+        json.name("success").value(true);
+        json.name("users").beginArray();
+        int[] count = new int[1];
+        long nextCursor;
+        try {
+            nextCursor = registry.scan(cursor, filter, limit, user -> {
+                try {
+                    UserJsonSerializer.write(json, user);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                count[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        json.endArray();
+        json.name("count").value(count[0]);
+        json.name("limit").value(limit);
+        if (nextCursor < 0) {
+            json.name("nextCursor").nullValue();
+        } else {
+            json.name("nextCursor").value(Long.toString(nextCursor));
+        }
+        json.endObject();
+        json.finish();
+    }
+    
     /**
      * Demonstrates polymorphism through API.
      * Endpoint: GET /api/users/polymorphism-demo
@@ -86,7 +226,7 @@ public class UserController {
     public Map<String, Object> demonstratePolymorphism() {
         List<Map<String, Object>> demonstrations = new ArrayList<>();
         
-        for (User user : users) {
+        for (User user : registry.getAll()) {
             Map<String, Object> demo = new HashMap<>();
             demo.put("userId", user.getUserId());
             demo.put("name", user.getName());
@@ -116,8 +256,15 @@ public class UserController {
             return response;
         }
         
-        // Capture the notification output (in real app, you'd log this)
-        user.sendNotification(message);
+        // Only queues the notification when a NotificationDispatcher is installed
+        try {
+            user.sendNotification(message);
+        } catch (RejectedExecutionException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "Notification queue is full, try again later");
+            return response;
+        }
         
         Map<String, Object> response = new HashMap<>();
         response.put("success", true);
@@ -149,7 +296,23 @@ public class UserController {
         }
         
         AdminUser adminUser = (AdminUser) admin;
-        adminUser.manageUser(targetUser, action);
+        String permission = AdminUser.requiredPermission(action);
+        if (permission == null || !adminUser.hasPermission(permission)) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", permission == null ? "Unknown action: " + action
+                    : "Admin lacks permission " + permission);
+            return response;
+        }
+        try {
+            adminUser.manageUser(targetUser, action);
+        } catch (IllegalStateException | SecurityException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return response;
+        }
+        registry.awaitPersisted();
         
         Map<String, Object> response = new HashMap<>();
         response.put("success", true);
@@ -160,23 +323,122 @@ public class UserController {
         return response;
     }
     
-    // Helper methods
-    private User findUserById(String userId) {
-        for (User user : users) {
-            if (user.getUserId().equals(userId)) {
-                return user;
+    /**
+     * Starts an admin action over every user matching a filter.
+     * Endpoint: POST /api/users/bulk-action
+     * 
+     * @param adminId The admin performing the action
+     * @param action "suspend", "activate", "deactivate", "cancel" or "notify"
+     * @param filter Which users to act on
+     * @param concurrency How many batches may run in parallel
+     * @param waitMillis How long to wait for the job to finish before answering (0 to return at once)
+     */
+    public Map<String, Object> startBulkAdminAction(String adminId, String action, UserFilter filter,
+                                                    int concurrency, long waitMillis) {
+        User admin = findUserById(adminId);
+        Map<String, Object> response = new HashMap<>();
+        if (!(admin instanceof AdminUser)) {
+            response.put("success", false);
+            response.put("message", admin == null ? "Admin user not found" : "User is not an admin");
+            return response;
+        }
+        String permission = AdminUser.requiredPermission(action);
+        if (permission == null) {
+            response.put("success", false);
+            response.put("message", "Unknown action: " + action);
+            return response;
+        }
+        if (!((AdminUser) admin).hasPermission(permission)) {
+            response.put("success", false);
+            response.put("message", "Admin lacks permission " + permission);
+            return response;
+        }
+        
+        BulkActionService.Job job = bulkActions.start((AdminUser) admin, action, filter, concurrency);
+        if (waitMillis > 0) {
+            try {
+                job.await(waitMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
         }
-        return null;
+        response.put("success", true);
+        response.put("message", job.getState() == BulkActionService.State.RUNNING
+                ? "Bulk action started" : "Bulk action finished");
+        response.put("job", job.toMap());
+        return response;
+    }
+    
+    /**
+     * Reports progress of a bulk admin action.
+     * Endpoint: GET /api/users/bulk-action?jobId=
+     */
+    public Map<String, Object> getBulkActionStatus(String jobId) {
+        BulkActionService.Job job = bulkActions.getJob(jobId);
+        Map<String, Object> response = new HashMap<>();
+        if (job == null) {
+            response.put("success", false);
+            response.put("message", "Job not found");
+            return response;
+        }
+        response.put("success", true);
+        response.put("job", job.toMap());
+        return response;
+    }
+    
+    /**
+     * Counts users per status from the registry's counters, without a scan.
+     * Endpoint: GET /api/users/status-counts
+     */
+    public Map<String, Object> getStatusCounts() {
+        Map<String, Object> counts = new LinkedHashMap<>();
+        for (Map.Entry<UserStatus, Long> entry : registry.getStatusCounts().entrySet()) {
+            counts.put(entry.getKey().name(), entry.getValue());
+        }
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("counts", counts);
+        response.put("total", registry.size());
+        return response;
     }
     
-    private Map<String, Object> userToMap(User user) {
+    /**
+     * Looks up a user by id.
+     * 
+     * @param userId The user's id
+     * @return The user, or null if there is none
+     */
+    public User findUserById(String userId) {
+        return registry.findById(userId);
+    }
+    
+    /**
+     * Gets the registry backing this controller.
+     */
+    public UserRegistry getRegistry() {
+        return registry;
+    }
+    
+    /**
+     * Gets the name and email index behind {@link #searchUsers(String, int)}.
+     */
+    public UserSearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+    
+    // Helper methods
+    /**
+     * Converts a user to a generic map, e.g. for callers that serialize with Gson.
+     * Responses are written by UserJsonSerializer, which produces the same fields.
+     */
+    public Map<String, Object> userToMap(User user) {
         Map<String, Object> userMap = new HashMap<>();
         userMap.put("userId", user.getUserId());
         userMap.put("name", user.getName());
         userMap.put("email", user.getEmail());
         userMap.put("accessLevel", user.getAccessLevel());
-        userMap.put("status", user.getStatus());
+        userMap.put("status", user.getStatus().name());
         userMap.put("userType", user.getClass().getSimpleName());
         userMap.put("registrationDate", user.getRegistrationDate().toString());
         
@@ -0,0 +1,50 @@
+package com.oopdemo.web;
+
+import com.oopdemo.users.AdminUser;
+import com.oopdemo.users.RegularUser;
+import com.oopdemo.users.User;
+import java.io.IOException;
+
+/**
+ * Writes users as JSON without reflection or intermediate maps.
+ * 
+ * The field names and order match what {@code UserController.userToMap}
+ * produced through Gson, so clients see the same documents.
+ */
+public final class UserJsonSerializer {
+    
+    private UserJsonSerializer() {
+    }
+    
+    /**
+     * Writes one user, including the fields specific to its type.
+     * 
+     * @param out The writer to append to
+     * @param user The user to write
+     */
+    public static void write(JsonOutput out, User user) throws IOException {
+        out.beginObject();
+        out.name("userId").value(user.getUserId());
+        out.name("name").value(user.getName());
+        out.name("email").value(user.getEmail());
+        out.name("accessLevel").value(user.getAccessLevel());
+        out.name("status").value(user.getStatus().name());
+        out.name("userType").value(user.getClass().getSimpleName());
+        out.name("registrationDate").value(user.getRegistrationDate().toString());
+        
+        // Admin-specific data
+        if (user instanceof AdminUser) {
+            out.name("permissions").beginArray();
+            for (String permission : ((AdminUser) user).getAdminPermissions()) {
+                out.value(permission);
+            }
+            out.endArray();
+        }
+        
+        // Regular user-specific data
+        if (user instanceof RegularUser) {
+            out.name("subscriptionLimits").value(((RegularUser) user).getSubscriptionLimits());
+        }
+        out.endObject();
+    }
+}
@@ -0,0 +1,158 @@
+package com.oopdemo.billing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.oopdemo.enums.PaymentResult;
+import com.oopdemo.interfaces.Billable;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BillingRunTest {
+    private static final int BILLS = 1000;
+    
+    @TempDir
+    Path directory;
+    
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+    
+    @AfterEach
+    void shutdownPool() {
+        pool.shutdownNow();
+    }
+    
+    @Test
+    void stoppedRunResumesWithoutChargingTwice() throws Exception {
+        CountingProcessor processor = new CountingProcessor();
+        BillingRun run = new BillingRun(processor, pool, directory);
+        run.setChunkSize(50);
+        run.setFsync(false);
+        processor.stopAfter(300, run);
+        
+        BillingReport first = run.run("2026-10", bills(), Bill::getId);
+        assertFalse(first.isComplete());
+        assertTrue(first.getSessionCharges() < BILLS);
+        
+        processor.stopAfter(-1, null);
+        BillingReport resumed = run.run("2026-10", bills(), Bill::getId);
+        assertTrue(resumed.isComplete());
+        assertEquals(first.getSessionCharges(), resumed.getResumedCharges());
+        assertEquals(BILLS, resumed.getTotalCharges());
+        assertEquals(BILLS, resumed.getCount(PaymentResult.SUCCESS));
+        assertEquals(new BigDecimal("10000.00"), resumed.getCollected().get("USD"));
+        processor.assertEachChargedOnce("2026-10");
+    }
+    
+    @Test
+    void tornCheckpointLineIsChargedAgainUnderTheSameKeys() throws Exception {
+        CountingProcessor processor = new CountingProcessor();
+        BillingRun run = new BillingRun(processor, pool, directory);
+        run.setChunkSize(50);
+        run.setFsync(false);
+        processor.stopAfter(300, run);
+        run.run("2026-11", bills(), Bill::getId);
+        
+        // A crash while the next line was written
+        Files.write(directory.resolve("2026-11.checkpoint"), "901 950 SUCC".getBytes(StandardCharsets.US_ASCII),
+                    StandardOpenOption.APPEND);
+        processor.stopAfter(-1, null);
+        BillingReport resumed = run.run("2026-11", bills(), Bill::getId);
+        
+        assertTrue(resumed.isComplete());
+        assertEquals(BILLS, resumed.getTotalCharges());
+        processor.assertEachChargedOnce("2026-11");
+    }
+    
+    @Test
+    void runWithoutCheckpointsChargesEverything() throws Exception {
+        CountingProcessor processor = new CountingProcessor();
+        BillingRun run = new BillingRun(processor, pool, null);
+        run.setChunkSize(64);
+        
+        BillingReport report = run.run("once", bills(), Bill::getId);
+        assertTrue(report.isComplete());
+        assertEquals(0, report.getResumedCharges());
+        assertEquals(BILLS, report.getSessionCharges());
+        processor.assertEachChargedOnce("once");
+    }
+    
+    // Helper methods
+    private static List<Bill> bills() {
+        List<Bill> bills = new ArrayList<>();
+        for (int id = BILLS; id >= 1; id--) {
+            bills.add(new Bill(id)); // Not in id order; the run sorts them
+        }
+        return bills;
+    }
+    
+    private static final class Bill implements Billable {
+        private final long id;
+        
+        Bill(long id) {
+            this.id = id;
+        }
+        
+        long getId() {
+            return id;
+        }
+        
+        @Override
+        public double calculateTotalCost() {
+            return 10.0;
+        }
+        
+        @Override
+        public String getBillingCurrency() {
+            return "USD";
+        }
+    }
+    
+    /**
+     * Succeeds every charge and counts the keys; can ask a run to stop after some charges.
+     */
+    private static final class CountingProcessor extends BillingProcessor {
+        private final Map<String, AtomicInteger> charges = new ConcurrentHashMap<>();
+        private final AtomicInteger count = new AtomicInteger();
+        private volatile int stopAfter = -1;
+        private volatile BillingRun run;
+        
+        CountingProcessor() {
+            super("Counting");
+        }
+        
+        void stopAfter(int stopAfter, BillingRun run) {
+            this.count.set(0);
+            this.stopAfter = stopAfter;
+            this.run = run;
+        }
+        
+        @Override
+        protected PaymentResult process(String idempotencyKey, double amount, String currency) {
+            charges.computeIfAbsent(idempotencyKey, key -> new AtomicInteger()).incrementAndGet();
+            if (count.incrementAndGet() == stopAfter) {
+                run.stop();
+            }
+            return PaymentResult.SUCCESS;
+        }
+        
+        void assertEachChargedOnce(String runId) {
+            for (int id = 1; id <= BILLS; id++) {
+                AtomicInteger times = charges.get(runId + ":" + id);
+                assertEquals(1, times == null ? 0 : times.get(), "charges of bill " + id);
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.oopdemo.billing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.oopdemo.enums.PaymentResult;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class PaymentClientTest {
+    
+    @Test
+    void retriesRetryableResultsUnderTheSameKey() throws Exception {
+        // null stands for an answer that never comes
+        ScriptedGateway gateway = new ScriptedGateway(PaymentResult.NETWORK_ERROR, null, PaymentResult.SUCCESS);
+        PaymentClient client = client(gateway, new CircuitBreaker("test", 10, 60_000));
+        
+        assertEquals(PaymentResult.SUCCESS, client.charge("run:1", 10.0, "USD").get(5, TimeUnit.SECONDS));
+        assertEquals(List.of("run:1", "run:1", "run:1"), gateway.keys);
+    }
+    
+    @Test
+    void doesNotRetryAnswersAboutThePayment() throws Exception {
+        ScriptedGateway gateway = new ScriptedGateway(PaymentResult.DECLINED, PaymentResult.SUCCESS);
+        PaymentClient client = client(gateway, new CircuitBreaker("test", 10, 60_000));
+        
+        assertEquals(PaymentResult.DECLINED, client.charge("run:1", 10.0, "USD").get(5, TimeUnit.SECONDS));
+        assertEquals(1, gateway.keys.size());
+    }
+    
+    @Test
+    void deadlineCoversAllAttempts() throws Exception {
+        ScriptedGateway gateway = new ScriptedGateway(); // Never answers
+        PaymentClient client = client(gateway, new CircuitBreaker("test", 100, 60_000));
+        client.setMaxAttempts(100);
+        client.setDeadlineMillis(150);
+        client.setAttemptTimeoutMillis(40);
+        
+        long started = System.nanoTime();
+        PaymentResult result = client.charge("run:1", 10.0, "USD").get(5, TimeUnit.SECONDS);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        
+        assertEquals(PaymentResult.TIMEOUT, result);
+        assertTrue(elapsedMillis < 1000, "took " + elapsedMillis + " ms");
+        assertTrue(gateway.keys.size() >= 2 && gateway.keys.size() <= 5, "attempts " + gateway.keys.size());
+    }
+    
+    @Test
+    void openCircuitRejectsWithoutCallingTheGateway() throws Exception {
+        ScriptedGateway gateway = new ScriptedGateway(PaymentResult.NETWORK_ERROR);
+        PaymentClient client = client(gateway, new CircuitBreaker("test", 1, 60_000));
+        client.setMaxAttempts(1);
+        
+        assertEquals(PaymentResult.NETWORK_ERROR, client.charge("run:1", 10.0, "USD").get(5, TimeUnit.SECONDS));
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> client.charge("run:2", 10.0, "USD").get(5, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        assertEquals(1, gateway.keys.size());
+    }
+    
+    @Test
+    void retryRejectedByOpenCircuitKeepsTheEarlierResult() throws Exception {
+        ScriptedGateway gateway = new ScriptedGateway(PaymentResult.TIMEOUT, PaymentResult.SUCCESS);
+        PaymentClient client = client(gateway, new CircuitBreaker("test", 1, 60_000));
+        
+        assertEquals(PaymentResult.TIMEOUT, client.charge("run:1", 10.0, "USD").get(5, TimeUnit.SECONDS));
+        assertEquals(1, gateway.keys.size());
+    }
+    
+    @Test
+    void bulkheadRejectsPaymentsBeyondTheLimit() throws Exception {
+        ScriptedGateway gateway = new ScriptedGateway(); // Never answers, so the first payment stays in flight
+        PaymentClient client = new PaymentClient(gateway, new CircuitBreaker("test", 10, 60_000), 1);
+        client.setMaxAttempts(1);
+        client.setAttemptTimeoutMillis(2000);
+        
+        CompletableFuture<PaymentResult> first = client.charge("run:1", 10.0, "USD");
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> client.charge("run:2", 10.0, "USD").get(5, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        assertEquals(PaymentResult.TIMEOUT, first.get(5, TimeUnit.SECONDS));
+    }
+    
+    // Helper methods
+    private static PaymentClient client(PaymentGateway gateway, CircuitBreaker breaker) {
+        PaymentClient client = new PaymentClient(gateway, breaker, 10);
+        client.setAttemptTimeoutMillis(50);
+        client.setBackoff(1, 2);
+        return client;
+    }
+    
+    /**
+     * Answers each call with the next scripted result; null, or running out
+     * of results, means the answer never comes.
+     */
+    private static final class ScriptedGateway implements PaymentGateway {
+        final Queue<PaymentResult> answers;
+        final List<String> keys = new CopyOnWriteArrayList<>();
+        
+        ScriptedGateway(PaymentResult... answers) {
+            this.answers = new LinkedList<>(Arrays.asList(answers));
+        }
+        
+        @Override
+        public String getName() {
+            return "scripted";
+        }
+        
+        @Override
+        public synchronized CompletableFuture<PaymentResult> submit(String idempotencyKey, double amount,
+                                                                    String currency) {
+            keys.add(idempotencyKey);
+            PaymentResult answer = answers.poll();
+            return answer == null ? new CompletableFuture<>() : CompletableFuture.completedFuture(answer);
+        }
+    }
+}
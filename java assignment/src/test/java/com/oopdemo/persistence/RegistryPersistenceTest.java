@@ -0,0 +1,111 @@
+package com.oopdemo.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import com.oopdemo.enums.UserStatus;
+import com.oopdemo.registry.UserRegistry;
+import com.oopdemo.users.AdminUser;
+import com.oopdemo.users.RegularUser;
+import com.oopdemo.users.User;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RegistryPersistenceTest {
+    @TempDir
+    Path directory;
+    
+    @Test
+    void recoveryStopsAtTornRecord() throws Exception {
+        UserRegistry registry = new UserRegistry();
+        RegistryPersistence persistence = RegistryPersistence.open(directory, registry, false, 0);
+        User ann = new RegularUser("Ann", "ann@example.com");
+        User bob = new AdminUser("Bob", "bob@example.com");
+        registry.add(ann);
+        registry.add(bob);
+        ann.updateStatus(UserStatus.SUSPENDED);
+        persistence.close();
+        
+        // Cut the last record, the status change, in half as a crash during the write would
+        List<Long> segments = RegistryPersistence.numberedFiles(directory, "wal-", ".log");
+        Path last = UserJournal.segmentPath(directory, segments.get(segments.size() - 1));
+        try (FileChannel channel = FileChannel.open(last, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+        
+        UserRegistry recovered = new UserRegistry();
+        persistence = RegistryPersistence.open(directory, recovered, false, 0);
+        assertEquals(2, recovered.size());
+        assertEquals(UserStatus.ACTIVE, recovered.findById(ann.getUserId()).getStatus());
+        assertEquals(AdminUser.class, recovered.findById(bob.getUserId()).getClass());
+        
+        // Changes after recovery go to a new segment and survive the next restart
+        User cid = new RegularUser("Cid", "cid@example.com");
+        recovered.add(cid);
+        persistence.close();
+        
+        UserRegistry again = new UserRegistry();
+        RegistryPersistence.open(directory, again, false, 0).close();
+        assertEquals(3, again.size());
+        assertNotNull(again.findById(cid.getUserId()));
+    }
+    
+    @Test
+    void snapshotTakenDuringWritesLosesNothing() throws Exception {
+        UserRegistry registry = new UserRegistry();
+        RegistryPersistence persistence = RegistryPersistence.open(directory, registry, false, 0);
+        int writers = 4;
+        int usersPerWriter = 2000;
+        ExecutorService pool = Executors.newFixedThreadPool(writers);
+        List<Future<?>> done = new ArrayList<>();
+        try {
+            for (int w = 0; w < writers; w++) {
+                int writer = w;
+                done.add(pool.submit(() -> {
+                    for (int i = 0; i < usersPerWriter; i++) {
+                        String key = writer + "-" + i;
+                        User user = new RegularUser("User " + key, "u" + key + "@example.com");
+                        registry.add(user);
+                        if (i % 3 == 0) {
+                            user.updateStatus(UserStatus.INACTIVE);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (int i = 0; i < 5; i++) {
+                persistence.snapshot();
+            }
+            for (Future<?> future : done) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        persistence.close();
+        
+        Map<String, UserStatus> expected = new HashMap<>();
+        for (User user : registry.getAll()) {
+            expected.put(user.getUserId(), user.getStatus());
+        }
+        UserRegistry recovered = new UserRegistry();
+        RegistryPersistence.open(directory, recovered, false, 0).close();
+        
+        Map<String, UserStatus> actual = new HashMap<>();
+        for (User user : recovered.getAll()) {
+            actual.put(user.getUserId(), user.getStatus());
+        }
+        assertEquals(writers * usersPerWriter, expected.size());
+        assertEquals(expected, actual);
+    }
+}
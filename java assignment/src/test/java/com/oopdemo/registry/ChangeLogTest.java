@@ -0,0 +1,97 @@
+package com.oopdemo.registry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.oopdemo.enums.UserStatus;
+import com.oopdemo.users.RegularUser;
+import com.oopdemo.users.User;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ChangeLogTest {
+    
+    @Test
+    void capacityIsRoundedUpToPowerOfTwo() {
+        assertEquals(8, new ChangeLog(5).getCapacity());
+        assertEquals(8, new ChangeLog(8).getCapacity());
+        assertEquals(1, new ChangeLog(1).getCapacity());
+    }
+    
+    @Test
+    void sinceCoversExactlyTheLastCapacityChanges() {
+        ChangeLog log = new ChangeLog(8);
+        List<User> users = record(log, 20);
+        
+        ChangeLog.Delta oldest = log.since(12, 20);
+        assertNotNull(oldest);
+        assertEquals(20, oldest.getVersion());
+        assertEquals(users.subList(12, 20), oldest.getUsers());
+        
+        assertNull(log.since(11, 20)); // Version 12 has been overwritten
+    }
+    
+    @Test
+    void sinceOutsideTheVersionRangeIsNull() {
+        ChangeLog log = new ChangeLog(8);
+        record(log, 3);
+        
+        assertNull(log.since(-1, 3));
+        assertNull(log.since(4, 3));
+        ChangeLog.Delta current = log.since(3, 3);
+        assertEquals(3, current.getVersion());
+        assertTrue(current.getUsers().isEmpty());
+    }
+    
+    @Test
+    void deltaStopsAtChangeNotRecordedYet() {
+        ChangeLog log = new ChangeLog(8);
+        List<User> users = record(log, 2);
+        User late = new RegularUser("Late", "late@example.com");
+        log.record(4, late); // Version 3 was handed out but its change is not recorded yet
+        
+        ChangeLog.Delta delta = log.since(0, 4);
+        assertEquals(2, delta.getVersion());
+        assertEquals(users, delta.getUsers());
+    }
+    
+    @Test
+    void userChangedTwiceIsListedOnceAtItsLatestChange() {
+        ChangeLog log = new ChangeLog(8);
+        User ann = new RegularUser("Ann", "ann@example.com");
+        User bob = new RegularUser("Bob", "bob@example.com");
+        log.record(1, ann);
+        log.record(2, bob);
+        log.record(3, ann);
+        
+        assertEquals(List.of(bob, ann), log.since(0, 3).getUsers());
+    }
+    
+    @Test
+    void registryResyncsVersionsOfAnotherEpoch() {
+        UserRegistry registry = new UserRegistry(8);
+        User ann = new RegularUser("Ann", "ann@example.com");
+        registry.add(ann);
+        ann.updateStatus(UserStatus.INACTIVE);
+        
+        ChangeLog.Delta delta = registry.changesSince(registry.getEpoch(), 1);
+        assertEquals(2, delta.getVersion());
+        assertEquals(List.of(ann), delta.getUsers());
+        assertNull(registry.changesSince(registry.getEpoch() + "x", 1));
+        assertNull(registry.changesSince(null, 1));
+    }
+    
+    // Helper methods
+    private static List<User> record(ChangeLog log, int count) {
+        List<User> users = new ArrayList<>();
+        for (int version = 1; version <= count; version++) {
+            User user = new RegularUser("User " + version, "user" + version + "@example.com");
+            log.record(version, user);
+            users.add(user);
+        }
+        return users;
+    }
+}
@@ -0,0 +1,125 @@
+package com.oopdemo.registry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.oopdemo.enums.UserStatus;
+import com.oopdemo.users.RegularUser;
+import com.oopdemo.users.User;
+import com.oopdemo.users.UserIds;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import org.junit.jupiter.api.Test;
+
+class UserRegistryTest {
+    
+    @Test
+    void addRejectsDuplicateIdWithoutTouchingIndexes() {
+        UserRegistry registry = new UserRegistry();
+        User first = new RegularUser("Ann", "ann@example.com");
+        assertTrue(registry.add(first));
+        long version = registry.getVersion();
+        
+        User copy = new RegularUser(first.getUserId(), "Other", "other@example.com", first.getRegistrationDate());
+        assertFalse(registry.add(copy));
+        
+        assertEquals(1, registry.size());
+        assertSame(first, registry.findById(first.getUserId()));
+        assertTrue(registry.findByEmail("other@example.com").isEmpty());
+        assertEquals(1, registry.countByStatus(first.getStatus()));
+        assertEquals(version, registry.getVersion());
+    }
+    
+    @Test
+    void addAllReturnsRejectedUsers() {
+        UserRegistry registry = new UserRegistry();
+        User first = new RegularUser("Ann", "ann@example.com");
+        User copy = new RegularUser(first.getUserId(), "Ann", "ann@example.com", first.getRegistrationDate());
+        User second = new RegularUser("Bob", "bob@example.com");
+        
+        List<User> rejected = registry.addAll(List.of(first, copy, second));
+        
+        assertEquals(List.of(copy), rejected);
+        assertEquals(2, registry.size());
+    }
+    
+    @Test
+    void orderKeyOfANonCanonicalIdIsNotAnId() {
+        UserRegistry registry = new UserRegistry();
+        User legacy = new RegularUser("legacy-7", "Lee", "lee@example.com", LocalDate.of(2020, 1, 1));
+        assertTrue(registry.add(legacy));
+        String drawnId = UserIds.format(registry.scan(-1, user -> true, 1, user -> { }));
+        
+        assertNull(registry.findById(drawnId));
+        User user = new RegularUser(drawnId, "Ann", "ann@example.com", LocalDate.of(2020, 1, 1));
+        assertTrue(registry.add(user));
+        assertSame(user, registry.findById(drawnId));
+        assertSame(legacy, registry.findById("legacy-7"));
+        assertEquals(2, registry.getAll().size());
+    }
+    
+    @Test
+    void statusIndexAndCountsStayConsistentUnderConcurrentChanges() throws Exception {
+        UserRegistry registry = new UserRegistry();
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            User user = new RegularUser("User " + i, "user" + i + "@example.com");
+            registry.add(user);
+            users.add(user);
+        }
+        
+        // ACTIVE, INACTIVE and SUSPENDED can all reach ACTIVE, and ACTIVE can reach the other two
+        UserStatus[] targets = { UserStatus.ACTIVE, UserStatus.INACTIVE, UserStatus.SUSPENDED };
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> done = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                done.add(pool.submit(() -> {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 20000; i++) {
+                        User user = users.get(random.nextInt(users.size()));
+                        UserStatus current = user.getStatus();
+                        UserStatus target = targets[random.nextInt(targets.length)];
+                        if (current.canTransitionTo(target)) {
+                            user.compareAndSetStatus(current, target);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : done) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        
+        Map<UserStatus, Long> expected = new EnumMap<>(UserStatus.class);
+        for (UserStatus status : UserStatus.values()) {
+            expected.put(status, 0L);
+        }
+        for (User user : users) {
+            expected.merge(user.getStatus(), 1L, Long::sum);
+            assertTrue(registry.findByStatus(user.getStatus()).contains(user), user.getUserId());
+        }
+        assertEquals(expected, registry.getStatusCounts());
+        for (UserStatus status : UserStatus.values()) {
+            assertEquals(expected.get(status).longValue(), registry.findByStatus(status).size(), status.name());
+        }
+    }
+}
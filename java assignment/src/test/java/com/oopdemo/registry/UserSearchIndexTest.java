@@ -0,0 +1,93 @@
+package com.oopdemo.registry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.oopdemo.users.RegularUser;
+import com.oopdemo.users.User;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class UserSearchIndexTest {
+    private final UserSearchIndex index = new UserSearchIndex();
+    
+    @Test
+    void exactBeatsPrefixBeatsSubstring() {
+        // Indexed worst match first, so only the score can put them in order
+        User substring = add("Asmi Lee", "asmi@example.com");
+        User prefix = add("Smith Lee", "smith@example.com");
+        User exact = add("Smi Lee", "smi.lee@example.com");
+        
+        assertEquals(List.of(exact, prefix, substring), search("smi", 10));
+    }
+    
+    @Test
+    void equalScoresKeepIndexOrder() {
+        User first = add("Ann Smith", "ann@example.com");
+        User second = add("Bob Smith", "bob@example.com");
+        User third = add("Cid Smith", "cid@example.com");
+        
+        assertEquals(List.of(first, second, third), search("smith", 10));
+        assertEquals(List.of(first, second), search("smith", 2));
+    }
+    
+    @Test
+    void equalScoresFromDifferentTokensKeepIndexOrder() {
+        // The dictionary holds johan before john
+        User john = add("John", "j1@example.com");
+        User johan = add("Johan", "j2@example.com");
+        User johnny = add("Johnny", "j3@example.com");
+        
+        assertEquals(List.of(john, johan, johnny), search("joh", 10));
+        assertEquals(List.of(john), search("joh", 1));
+        assertEquals(List.of(john, johan), search("joh", 2));
+    }
+    
+    @Test
+    void everyTermHasToMatchAndScoresAddUp() {
+        User joan = add("Joan Smith", "joan@example.com");
+        User jo = add("Jo Smith", "jo@example.com");
+        add("Jo Brown", "brown@example.com");
+        add("Al Smith", "al@example.com");
+        
+        assertEquals(List.of(jo, joan), search("jo smi", 10));
+    }
+    
+    @Test
+    void shortTermsOnlyMatchWordBeginnings() {
+        User smith = add("Smith", "smith@example.com");
+        
+        assertTrue(search("mi", 10).isEmpty());
+        assertEquals(List.of(smith), search("mit", 10));
+        assertEquals(List.of(smith), search("sm", 10));
+    }
+    
+    @Test
+    void emailPartsAreSearchedCaseInsensitively() {
+        User ann = add("Ann", "ann.lee42@Example.org");
+        add("Bob", "bob@example.com");
+        
+        assertEquals(List.of(ann), search("EXAMPLE org", 10));
+        assertEquals(List.of(ann), search("lee 42", 10));
+        assertTrue(search("nobody", 10).isEmpty());
+    }
+    
+    @Test
+    void smallResultIsNotTruncated() {
+        add("Ann Smith", "ann@example.com");
+        
+        assertFalse(index.search("smith", 10).isTruncated());
+    }
+    
+    // Helper methods
+    private User add(String name, String email) {
+        User user = new RegularUser(name, email);
+        index.add(user);
+        return user;
+    }
+    
+    private List<User> search(String query, int limit) {
+        return index.search(query, limit).getUsers();
+    }
+}
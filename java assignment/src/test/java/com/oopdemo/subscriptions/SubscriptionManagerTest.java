@@ -0,0 +1,110 @@
+package com.oopdemo.subscriptions;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.oopdemo.enums.SubscriptionStatus;
+import com.oopdemo.users.RegularUser;
+import com.oopdemo.users.User;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+
+class SubscriptionManagerTest {
+    private final SubscriptionManager manager = new SubscriptionManager();
+    
+    @Test
+    void subscribeRejectsOwnersOverTheirLimit() {
+        User owner = new RegularUser("Ann", "ann@example.com");
+        for (int i = 0; i < owner.getMaxActiveSubscriptions(); i++) {
+            manager.subscribe(new BasicSubscription(owner, 1));
+        }
+        AbstractSubscription extra = new BasicSubscription(owner, 1);
+        
+        assertThrows(IllegalStateException.class, () -> manager.subscribe(extra));
+        assertNull(manager.findById(extra.getSubscriptionId()));
+        assertEquals(owner.getMaxActiveSubscriptions(), manager.findByUser(owner).size());
+        assertEquals(owner.getMaxActiveSubscriptions(), manager.countByStatus(SubscriptionStatus.PENDING));
+    }
+    
+    @Test
+    void subscribeRejectsTheSameSubscriptionTwice() {
+        AbstractSubscription subscription = new BasicSubscription(new RegularUser("Ann", "ann@example.com"), 1);
+        manager.subscribe(subscription);
+        
+        assertThrows(IllegalStateException.class, () -> manager.subscribe(subscription));
+        assertEquals(1, manager.findByUser(subscription.getOwner()).size());
+        assertEquals(1, manager.countByStatus(SubscriptionStatus.PENDING));
+    }
+    
+    @Test
+    void statusChangeDuringSubscribeKeepsCountsConsistent() throws Exception {
+        // One more than each owner may hold, so the last of every owner is rejected
+        List<AbstractSubscription> subscriptions = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            User owner = new RegularUser("User " + i, "user" + i + "@example.com");
+            for (int j = 0; j <= owner.getMaxActiveSubscriptions(); j++) {
+                subscriptions.add(new BasicSubscription(owner, 1));
+            }
+        }
+        Set<AbstractSubscription> rejected = ConcurrentHashMap.newKeySet();
+        AtomicBoolean subscribing = new AtomicBoolean(true);
+        
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            Future<?> subscriber = pool.submit(() -> {
+                for (AbstractSubscription subscription : subscriptions) {
+                    try {
+                        manager.subscribe(subscription);
+                    } catch (IllegalStateException e) {
+                        rejected.add(subscription);
+                    }
+                }
+                subscribing.set(false);
+            });
+            // Activate each subscription as soon as it can be found, racing its registration
+            List<Future<?>> activators = new ArrayList<>();
+            for (int t = 0; t < 2; t++) {
+                activators.add(pool.submit(() -> {
+                    boolean lastPass;
+                    do {
+                        lastPass = !subscribing.get();
+                        for (AbstractSubscription subscription : subscriptions) {
+                            if (subscription.getStatus() == SubscriptionStatus.PENDING) {
+                                manager.activate(subscription.getSubscriptionId());
+                            }
+                        }
+                    } while (!lastPass);
+                }));
+            }
+            subscriber.get();
+            for (Future<?> activator : activators) {
+                activator.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        
+        long total = 0;
+        for (SubscriptionStatus status : SubscriptionStatus.values()) {
+            long count = manager.countByStatus(status);
+            assertEquals(manager.findByStatus(status).size(), count, status.name());
+            total += count;
+        }
+        assertEquals(manager.size(), total);
+        assertEquals(subscriptions.size() - rejected.size(), manager.countByStatus(SubscriptionStatus.ACTIVE));
+        assertEquals(500, rejected.size());
+        for (AbstractSubscription subscription : rejected) {
+            assertNull(manager.findById(subscription.getSubscriptionId()));
+            assertFalse(manager.findByStatus(subscription.getStatus()).contains(subscription));
+        }
+    }
+}
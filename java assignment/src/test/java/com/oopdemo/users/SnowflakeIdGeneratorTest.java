@@ -0,0 +1,83 @@
+package com.oopdemo.users;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class SnowflakeIdGeneratorTest {
+    
+    @Test
+    void idsFromManyThreadsAreUnique() throws Exception {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1);
+        int threads = 8;
+        int perThread = 100_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<long[]>> tasks = IntStream.range(0, threads).mapToObj(t -> (Callable<long[]>) () -> {
+                long[] ids = new long[perThread];
+                for (int i = 0; i < perThread; i++) {
+                    ids[i] = generator.nextId();
+                }
+                return ids;
+            }).collect(Collectors.toList());
+            
+            Set<Long> seen = new HashSet<>();
+            for (Future<long[]> result : pool.invokeAll(tasks)) {
+                long[] ids = result.get();
+                for (int i = 0; i < ids.length; i++) {
+                    assertTrue(ids[i] >= 0);
+                    assertTrue(i == 0 || ids[i] > ids[i - 1], "ids of one thread ascend");
+                    assertTrue(seen.add(ids[i]), "duplicate id " + ids[i]);
+                }
+            }
+            assertEquals(threads * perThread, seen.size());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+    
+    @Test
+    void idsOfLaterMillisecondsSortAfterEarlierOnes() throws Exception {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(0);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            long first = pool.submit(generator::nextId).get();
+            Thread.sleep(5);
+            long second = generator.nextId(); // Another thread, with a block of its own
+            assertTrue(second > first);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+    
+    @Test
+    void idCarriesItsTimestampAndNode() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(5);
+        long before = System.currentTimeMillis();
+        long id = generator.nextId();
+        long after = System.currentTimeMillis();
+        
+        long timestamp = SnowflakeIdGenerator.timestampOf(id);
+        assertTrue(timestamp >= before && timestamp <= after, "timestamp " + timestamp);
+        long node = (id >>> SnowflakeIdGenerator.SEQUENCE_BITS) & ((1 << SnowflakeIdGenerator.NODE_BITS) - 1);
+        assertEquals(5, node);
+    }
+    
+    @Test
+    void rejectsNodeOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(-1));
+        assertThrows(IllegalArgumentException.class,
+                () -> new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE + 1));
+    }
+}
@@ -0,0 +1,81 @@
+package com.oopdemo.web;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.oopdemo.registry.UserRegistry;
+import com.oopdemo.users.User;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class BulkUserImporterTest {
+    private final UserRegistry registry = new UserRegistry();
+    private final BulkUserImporter importer = new BulkUserImporter(registry);
+    
+    @Test
+    void csvFieldsMayBeQuoted() {
+        assertEquals(List.of("admin", "Doe, Jane", "jane@example.com"),
+                     BulkUserImporter.splitCsv("admin,\"Doe, Jane\",jane@example.com"));
+        assertEquals(List.of("regular", "Jo \"JJ\" Smith", ""),
+                     BulkUserImporter.splitCsv("regular,\"Jo \"\"JJ\"\" Smith\","));
+        assertEquals(List.of("a,b"), BulkUserImporter.splitCsv("\"a,b\""));
+    }
+    
+    @Test
+    void csvImportSkipsTheHeaderAndReportsEachLine() throws IOException {
+        List<JsonObject> results = importCsv("type,name,email\r\n"
+                + "admin,\"Doe, Jane\",jane@example.com\r\n"
+                + "regular,Jo,jo@example.com,extra\n"
+                + "\n"
+                + "robot,Rob,rob@example.com\n"
+                + "regular,Ann,ann@example.com");
+        
+        assertEquals(4, results.size() - 1);
+        assertTrue(results.get(0).get("success").getAsBoolean());
+        assertEquals("AdminUser", results.get(0).get("userType").getAsString());
+        assertFalse(results.get(1).get("success").getAsBoolean());
+        assertEquals(3, results.get(1).get("line").getAsLong());
+        assertFalse(results.get(2).get("success").getAsBoolean());
+        assertTrue(results.get(3).get("success").getAsBoolean());
+        
+        JsonObject summary = results.get(results.size() - 1);
+        assertEquals(6, summary.get("lines").getAsLong());
+        assertEquals(2, summary.get("created").getAsLong());
+        assertEquals(2, summary.get("failed").getAsLong());
+        User jane = registry.findByEmail("jane@example.com").iterator().next();
+        assertEquals("Doe, Jane", jane.getName());
+    }
+    
+    @Test
+    void overlongLineFailsAloneAndReadingContinues() throws IOException {
+        String overlong = "regular," + "x".repeat(BulkUserImporter.MAX_LINE_LENGTH) + ",long@example.com";
+        List<JsonObject> results = importCsv("regular,Ann,ann@example.com\n" + overlong + "\nregular,Bob,bob@example.com\n");
+        
+        assertEquals(3, results.size() - 1);
+        assertTrue(results.get(0).get("success").getAsBoolean());
+        assertFalse(results.get(1).get("success").getAsBoolean());
+        assertTrue(results.get(1).get("message").getAsString().startsWith("Line longer than"));
+        assertTrue(results.get(2).get("success").getAsBoolean());
+        assertEquals(2, registry.size());
+    }
+    
+    // Helper methods
+    private List<JsonObject> importCsv(String body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        importer.importUsers(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)),
+                             BulkUserImporter.Format.CSV, 2, out);
+        List<JsonObject> results = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            results.add(JsonParser.parseString(line).getAsJsonObject());
+        }
+        return results;
+    }
+}
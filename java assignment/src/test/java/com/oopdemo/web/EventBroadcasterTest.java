@@ -0,0 +1,119 @@
+package com.oopdemo.web;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.oopdemo.users.RegularUser;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class EventBroadcasterTest {
+    private static final int MAX_LAG = 8;
+    private static final Pattern EVENT_ID = Pattern.compile("id: (\\S+)");
+    
+    private final EventBroadcaster events = new EventBroadcaster(MAX_LAG);
+    
+    @AfterEach
+    void shutdown() {
+        events.shutdown();
+    }
+    
+    @Test
+    void subscriberThatFallsBehindIsCutOff() throws Exception {
+        events.start();
+        EventBroadcaster.Subscription slow = events.subscribe(null);
+        EventBroadcaster.Subscription fast = events.subscribe(null);
+        StringBuffer received = new StringBuffer();
+        fast.start(() -> drain(fast, received)); // Keeps up: reads on every wakeup
+        slow.start(() -> { }); // Never reads
+        
+        int sent = 0;
+        for (int round = 0; round < 4; round++) {
+            for (int i = 0; i < MAX_LAG; i++) {
+                sent++;
+                events.onUserAdded(new RegularUser("User " + sent, "user" + sent + "@example.com"));
+            }
+            awaitCount(received, "event: user-created", sent);
+        }
+        
+        assertTrue(slow.isEnded());
+        assertFalse(fast.isEnded());
+        assertEquals(1L, events.getStats().get("evicted"));
+        slow.next(); // The greeting is still sent
+        assertThrows(IOException.class, slow::next);
+        slow.close();
+        fast.close();
+        assertEquals(0, events.getStats().get("subscribers"));
+    }
+    
+    @Test
+    void reconnectingClientResumesAfterItsLastEvent() throws Exception {
+        events.start();
+        EventBroadcaster.Subscription first = events.subscribe(null);
+        StringBuffer received = new StringBuffer();
+        first.start(() -> drain(first, received));
+        events.onUserAdded(new RegularUser("Ann", "ann@example.com"));
+        awaitCount(received, "event: user-created", 1);
+        first.close();
+        Matcher id = EVENT_ID.matcher(received);
+        assertTrue(id.find());
+        
+        String resumed = new String(events.subscribe(id.group(1)).next(), StandardCharsets.UTF_8);
+        assertTrue(resumed.contains(": connected"), resumed);
+        String unknown = new String(events.subscribe("earlier-run-7").next(), StandardCharsets.UTF_8);
+        assertTrue(unknown.contains("event: resync"), unknown);
+    }
+    
+    @Test
+    void shutdownEndsEverySubscription() throws Exception {
+        events.start();
+        EventBroadcaster.Subscription subscription = events.subscribe(null);
+        StringBuffer received = new StringBuffer();
+        subscription.start(() -> drain(subscription, received));
+        
+        events.shutdown();
+        assertTrue(subscription.isEnded());
+        assertTrue(received.toString().endsWith("ended"), received.toString()); // Woken, and found it ended
+        assertEquals(0, events.getStats().get("subscribers"));
+        assertEquals(0L, events.getStats().get("evicted"));
+        
+        EventBroadcaster.Subscription late = events.subscribe(null);
+        late.next();
+        assertThrows(IOException.class, late::next);
+    }
+    
+    // Helper methods
+    private static void drain(EventBroadcaster.Subscription subscription, StringBuffer received) {
+        try {
+            byte[] bytes;
+            while ((bytes = subscription.next()) != null) {
+                received.append(new String(bytes, StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            received.append("ended");
+        }
+    }
+    
+    private static void awaitCount(StringBuffer text, String needle, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (occurrences(text.toString(), needle) < count) {
+            assertTrue(System.nanoTime() < deadline, "timed out waiting for " + count + " x " + needle);
+            Thread.sleep(5);
+        }
+    }
+    
+    private static int occurrences(String text, String needle) {
+        int count = 0;
+        for (int i = text.indexOf(needle); i >= 0; i = text.indexOf(needle, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,199 @@
+package com.oopdemo.web;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class NioHttpServerTest {
+    private static final int MAX_BODY_BYTES = 16;
+    
+    private NioHttpServer server;
+    private ExecutorService workers;
+    
+    @BeforeEach
+    void startServer() throws IOException {
+        server = new NioHttpServer(new InetSocketAddress("127.0.0.1", 0), 1, MAX_BODY_BYTES, 30);
+        // Answers with the method, path and body it received
+        server.createContext("/echo", exchange -> {
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            byte[] response = (exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath() + " "
+                    + new String(body, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        workers = Executors.newFixedThreadPool(2);
+        server.setExecutor(workers);
+        server.start();
+    }
+    
+    @AfterEach
+    void stopServer() {
+        server.stop();
+        workers.shutdownNow();
+    }
+    
+    @Test
+    void pipelinedRequestsAreAnsweredInOrder() throws IOException {
+        try (Socket socket = connect()) {
+            send(socket, "GET /echo/a HTTP/1.1\r\nHost: x\r\n\r\n"
+                    + "POST /echo/b HTTP/1.1\r\nHost: x\r\nContent-Length: 5\r\n\r\nhello"
+                    + "POST /echo/c HTTP/1.1\r\nHost: x\r\nTransfer-Encoding: chunked\r\n\r\n3\r\nabc\r\n0\r\n\r\n");
+            InputStream in = socket.getInputStream();
+            assertEquals("200 GET /echo/a ", readResponse(in));
+            assertEquals("200 POST /echo/b hello", readResponse(in));
+            assertEquals("200 POST /echo/c abc", readResponse(in));
+        }
+    }
+    
+    @Test
+    void malformedRequestLineIsRejectedAndClosed() throws IOException {
+        try (Socket socket = connect()) {
+            send(socket, "NONSENSE\r\nHost: x\r\n\r\n");
+            InputStream in = socket.getInputStream();
+            assertEquals(400, status(readResponse(in)));
+            assertEquals(-1, in.read());
+        }
+    }
+    
+    @Test
+    void bodyAtLimitIsAccepted() throws IOException {
+        String body = "x".repeat(MAX_BODY_BYTES);
+        try (Socket socket = connect()) {
+            send(socket, "POST /echo HTTP/1.1\r\nHost: x\r\nContent-Length: " + body.length() + "\r\n\r\n" + body);
+            assertEquals("200 POST /echo " + body, readResponse(socket.getInputStream()));
+        }
+    }
+    
+    @Test
+    void declaredBodyOverLimitIsRejected() throws IOException {
+        try (Socket socket = connect()) {
+            send(socket, "POST /echo HTTP/1.1\r\nHost: x\r\nContent-Length: " + (MAX_BODY_BYTES + 1) + "\r\n\r\n");
+            assertEquals(413, status(readResponse(socket.getInputStream())));
+        }
+    }
+    
+    @Test
+    void chunkedBodyOverLimitIsRejected() throws IOException {
+        try (Socket socket = connect()) {
+            send(socket, "POST /echo HTTP/1.1\r\nHost: x\r\nTransfer-Encoding: chunked\r\n\r\n"
+                    + "a\r\n0123456789\r\na\r\n0123456789\r\n0\r\n\r\n");
+            InputStream in = socket.getInputStream();
+            assertEquals(413, status(readResponse(in)));
+            assertEquals(-1, in.read());
+        }
+    }
+    
+    @Test
+    void handlersOnTheEventLoopGetBoundedBodies() throws IOException {
+        // No body limit and no executor, so bodies are held in full before the handler runs
+        NioHttpServer single = new NioHttpServer(new InetSocketAddress("127.0.0.1", 0), 1, 0, 30);
+        single.createContext("/length", exchange -> {
+            byte[] response = Integer.toString(exchange.getRequestBody().readAllBytes().length)
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        single.start();
+        try (Socket socket = connect(single)) {
+            int limit = NioHttpServer.MAX_WHOLE_BODY;
+            send(socket, "POST /length HTTP/1.1\r\nHost: x\r\nContent-Length: " + limit + "\r\n\r\n"
+                    + "x".repeat(limit));
+            assertEquals("200 " + limit, readResponse(socket.getInputStream()));
+            
+            send(socket, "POST /length HTTP/1.1\r\nHost: x\r\nContent-Length: " + (limit + 1) + "\r\n\r\n");
+            assertEquals(413, status(readResponse(socket.getInputStream())));
+        }
+        try (Socket socket = connect(single)) {
+            String chunk = "x".repeat(NioHttpServer.BUFFER_SIZE);
+            StringBuilder request = new StringBuilder(
+                    "POST /length HTTP/1.1\r\nHost: x\r\nTransfer-Encoding: chunked\r\n\r\n");
+            for (int i = 0; i <= NioHttpServer.MAX_WHOLE_BODY / chunk.length(); i++) {
+                request.append(Integer.toHexString(chunk.length())).append("\r\n").append(chunk).append("\r\n");
+            }
+            send(socket, request.append("0\r\n\r\n").toString());
+            InputStream in = socket.getInputStream();
+            assertEquals(413, status(readResponse(in)));
+        } finally {
+            single.stop();
+        }
+    }
+    
+    // Helper methods
+    private Socket connect() throws IOException {
+        return connect(server);
+    }
+    
+    private static Socket connect(NioHttpServer server) throws IOException {
+        Socket socket = new Socket();
+        socket.connect(server.getAddress(), 5000);
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+    
+    private static void send(Socket socket, String request) throws IOException {
+        socket.getOutputStream().write(request.getBytes(StandardCharsets.UTF_8));
+        socket.getOutputStream().flush();
+    }
+    
+    private static int status(String response) {
+        return Integer.parseInt(response.substring(0, 3));
+    }
+    
+    // Reads one response and returns its status code and body, e.g. "200 GET /echo "
+    private static String readResponse(InputStream in) throws IOException {
+        String statusLine = readLine(in);
+        int contentLength = -1;
+        boolean chunked = false;
+        String line;
+        while (!(line = readLine(in)).isEmpty()) {
+            String lower = line.toLowerCase(Locale.ROOT);
+            if (lower.startsWith("content-length:")) {
+                contentLength = Integer.parseInt(line.substring(15).trim());
+            } else if (lower.startsWith("transfer-encoding:") && lower.contains("chunked")) {
+                chunked = true;
+            }
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if (chunked) {
+            int size;
+            while ((size = Integer.parseInt(readLine(in).trim(), 16)) > 0) {
+                body.write(in.readNBytes(size));
+                readLine(in);
+            }
+            readLine(in);
+        } else if (contentLength > 0) {
+            body.write(in.readNBytes(contentLength));
+        }
+        return statusLine.substring(9, 12) + " " + body.toString(StandardCharsets.UTF_8);
+    }
+    
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\n') {
+            if (c < 0) {
+                throw new IOException("Connection closed mid-response");
+            }
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,79 @@
+package com.oopdemo.web;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class RequestBodyParserTest {
+    private final RequestBodyParser parser = RequestBodyParser.get();
+    
+    @Test
+    void formDecodesPercentEscapesAndPlus() throws RequestBodyException {
+        Map<String, String> params = form("name=J%C3%B6+Doe&email=jo%40example.com&empty=&flag");
+        
+        assertEquals(Map.of("name", "Jö Doe", "email", "jo@example.com"), params);
+    }
+    
+    @Test
+    void formRejectsBrokenPercentEscapes() {
+        for (String body : new String[] {"name=%4", "name=%zz", "name=a%"}) {
+            RequestBodyException e = assertThrows(RequestBodyException.class, () -> form(body), body);
+            assertEquals(400, e.getStatusCode());
+        }
+    }
+    
+    @Test
+    void formHonoursOffsetAndCount() throws RequestBodyException {
+        byte[] bytes = "xxname=Ann&rest=ignored".getBytes(StandardCharsets.UTF_8);
+        
+        assertEquals(Map.of("name", "Ann"), parser.parseForm(bytes, 2, 8));
+    }
+    
+    @Test
+    void jsonDecodesEscapes() throws RequestBodyException {
+        Map<String, String> params = json("{\"name\": \"Line\\nTab\\t\\\"q\\\" \\u00e9 \\ud83d\\ude00 \\/\","
+                + " \"n\": -12.5e3, \"admin\": true, \"none\": null, \"ids\": [\"a\", 1, null]}");
+        
+        assertEquals(Map.of("name", "Line\nTab\t\"q\" é \uD83D\uDE00 /", "n", "-12.5e3", "admin", "true",
+                            "ids", "a,1"), params);
+    }
+    
+    @Test
+    void jsonRejectsNestedValues() {
+        for (String body : new String[] {"{\"a\": {\"b\": 1}}", "{\"a\": [[1]]}", "{\"a\": [{\"b\": 1}]}"}) {
+            RequestBodyException e = assertThrows(RequestBodyException.class, () -> json(body), body);
+            assertEquals(400, e.getStatusCode());
+        }
+    }
+    
+    @Test
+    void jsonRejectsMalformedInput() {
+        String[] bodies = {
+            "{\"a\": \"\\x\"}",
+            "{\"a\": \"\\u12\"}",
+            "{\"a\": \"unterminated}",
+            "{\"a\": \"tab\there\"}",
+            "{\"a\": 1} trailing",
+            "{\"a\": yes}",
+            "[1, 2]"
+        };
+        for (String body : bodies) {
+            RequestBodyException e = assertThrows(RequestBodyException.class, () -> json(body), body);
+            assertEquals(400, e.getStatusCode());
+        }
+    }
+    
+    // Helper methods
+    private Map<String, String> form(String body) throws RequestBodyException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        return parser.parseForm(bytes, 0, bytes.length);
+    }
+    
+    private Map<String, String> json(String body) throws RequestBodyException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        return parser.parseJson(bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,90 @@
+package com.oopdemo.web;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.oopdemo.registry.UserRegistry;
+import com.oopdemo.users.RegularUser;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class ResponseCacheTest {
+    private final UserRegistry registry = new UserRegistry();
+    private final AtomicInteger loads = new AtomicInteger();
+    
+    @Test
+    void entryIsReusedUntilTheRegistryChanges() throws IOException {
+        ResponseCache cache = new ResponseCache(registry, 1024);
+        ResponseCache.Entry first = cache.getOrLoad("list", () -> body(10));
+        assertSame(first, cache.getOrLoad("list", () -> body(10)));
+        assertEquals(1, loads.get());
+        
+        registry.add(new RegularUser("Ann", "ann@example.com"));
+        ResponseCache.Entry second = cache.getOrLoad("list", () -> body(10));
+        assertEquals(2, loads.get());
+        assertNotEquals(first.getEtag(), second.getEtag());
+    }
+    
+    @Test
+    void etagIsCurrentOnlyForTheCurrentVersion() throws IOException {
+        ResponseCache cache = new ResponseCache(registry, 1024);
+        String etag = cache.getOrLoad("list", () -> body(10)).getEtag();
+        assertTrue(cache.isCurrent(etag));
+        assertFalse(cache.isCurrent(null));
+        assertFalse(cache.isCurrent("\"other-0\""));
+        
+        registry.add(new RegularUser("Ann", "ann@example.com"));
+        assertFalse(cache.isCurrent(etag));
+    }
+    
+    @Test
+    void responsesLargerThanAQuarterOfTheBudgetAreNotKept() throws IOException {
+        ResponseCache cache = new ResponseCache(registry, 100);
+        cache.getOrLoad("big", () -> body(26));
+        cache.getOrLoad("big", () -> body(26));
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.getStats().get("entries"));
+    }
+    
+    @Test
+    void disabledCacheKeepsNothingButStillTagsResponses() throws IOException {
+        ResponseCache cache = new ResponseCache(registry, 0);
+        assertFalse(cache.isEnabled());
+        String etag = cache.getOrLoad("list", () -> body(1)).getEtag();
+        cache.getOrLoad("list", () -> body(1));
+        assertEquals(2, loads.get());
+        assertTrue(cache.isCurrent(etag));
+    }
+    
+    @Test
+    void entriesAreEvictedToStayWithinTheBudget() throws IOException {
+        ResponseCache cache = new ResponseCache(registry, 100);
+        for (int i = 0; i < 10; i++) {
+            cache.getOrLoad("page" + i, () -> body(20));
+        }
+        assertTrue((Long) cache.getStats().get("bytes") <= 100);
+        assertTrue((Long) cache.getStats().get("evictions") > 0);
+    }
+    
+    @Test
+    void staleEntriesAreDroppedWhenANewerVersionIsStored() throws IOException {
+        ResponseCache cache = new ResponseCache(registry, 1024);
+        cache.getOrLoad("a", () -> body(10));
+        cache.getOrLoad("b", () -> body(10));
+        registry.add(new RegularUser("Ann", "ann@example.com"));
+        
+        cache.getOrLoad("a", () -> body(10));
+        assertEquals(1, cache.getStats().get("entries"));
+        assertEquals(10L, cache.getStats().get("bytes"));
+    }
+    
+    // Helper methods
+    private byte[] body(int length) {
+        loads.incrementAndGet();
+        return new byte[length];
+    }
+}